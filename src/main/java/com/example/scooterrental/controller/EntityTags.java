@@ -0,0 +1,48 @@
+package com.example.scooterrental.controller;
+
+// ETag ресурса — <версия>-<хэш остального содержимого ответа> в кавычках: If-None-Match
+// сравнивается с тегом целиком, If-Match — только с версией сущности. Заголовки условных
+// запросов разбираются здесь
+final class EntityTags {
+
+    private EntityTags() {}
+
+    // If-None-Match: список тегов через запятую или *; сравнение слабое, префикс W/ не важен
+    static boolean noneMatchHits(String ifNoneMatch, String entityTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            String trimmed = tag.trim();
+            if (trimmed.startsWith("W/")) {
+                trimmed = trimmed.substring(2);
+            }
+            if (trimmed.equals("*") || trimmed.equals(quote(entityTag))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // If-Match: ожидаемая версия или null, если условия нет. Хэш содержимого отбрасывается:
+    // телеметрия и статистика не должны мешать правке. Сравнение сильное, поэтому слабый
+    // тег не совпадёт ни с одной версией и запрос получит 412
+    static String expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.contains(",")) {
+            throw new IllegalArgumentException("If-Match должен содержать ровно один ETag");
+        }
+        if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            tag = tag.substring(1, tag.length() - 1);
+        }
+        int separator = tag.indexOf('-');
+        return separator >= 0 ? tag.substring(0, separator) : tag;
+    }
+
+    static String quote(String tag) {
+        return "\"" + tag + "\"";
+    }
+}
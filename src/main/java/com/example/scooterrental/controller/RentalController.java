@@ -1,18 +1,33 @@
 package com.example.scooterrental.controller;
 
+import com.example.scooterrental.dto.CursorPageDto;
 import com.example.scooterrental.dto.RentalDto;
 import com.example.scooterrental.dto.RentalInfoDto;
 import com.example.scooterrental.exception.RentalNotFoundException;
 import com.example.scooterrental.exception.ScooterNotFoundException;
+import com.example.scooterrental.exception.ScooterUnavailableException;
 import com.example.scooterrental.exception.UserNotFoundException;
+import com.example.scooterrental.service.IdempotencyService;
 import com.example.scooterrental.service.RentalService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.Principal;
+import java.time.LocalDateTime;
 import java.util.List;
 
 import jakarta.validation.Valid;
@@ -21,19 +36,39 @@ import jakarta.validation.Valid;
 @RequestMapping("/api/rentals")
 public class RentalController {
 
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
     private final RentalService rentalService;
+    private final IdempotencyService idempotencyService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public RentalController(RentalService rentalService) {
+    public RentalController(
+            RentalService rentalService,
+            IdempotencyService idempotencyService,
+            ObjectMapper objectMapper) {
         this.rentalService = rentalService;
+        this.idempotencyService = idempotencyService;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping
     @PreAuthorize("hasRole('USER') or hasRole('MANAGER') or hasRole('ADMIN')")
-    public ResponseEntity<RentalDto> createRental(@Valid @RequestBody RentalDto rentalDto)
-            throws UserNotFoundException, ScooterNotFoundException {
-        RentalDto createdRental = rentalService.createRental(rentalDto);
-        return new ResponseEntity<>(createdRental, HttpStatus.CREATED);
+    public ResponseEntity<RentalDto> createRental(
+            @Valid @RequestBody RentalDto rentalDto,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false)
+                    String idempotencyKey,
+            Principal principal)
+            throws UserNotFoundException, ScooterNotFoundException, ScooterUnavailableException {
+        return idempotencyService.execute(
+                idempotencyKey,
+                idempotencyScope("POST /api/rentals", principal),
+                rentalDto,
+                RentalDto.class,
+                () -> {
+                    RentalDto createdRental = rentalService.createRental(rentalDto);
+                    return new ResponseEntity<>(createdRental, HttpStatus.CREATED);
+                });
     }
 
     @GetMapping("/{id}")
@@ -46,38 +81,107 @@ public class RentalController {
 
     @PutMapping("/{id}/end")
     @PreAuthorize("hasRole('USER') or hasRole('MANAGER') or hasRole('ADMIN')")
-    public ResponseEntity<RentalDto> endRental(@PathVariable Long id)
+    public ResponseEntity<RentalDto> endRental(
+            @PathVariable Long id,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false)
+                    String idempotencyKey,
+            Principal principal)
             throws RentalNotFoundException, ScooterNotFoundException {
-        RentalDto endRental = rentalService.endRental(id);
-        return new ResponseEntity<>(endRental, HttpStatus.OK);
+        return idempotencyService.execute(
+                idempotencyKey,
+                idempotencyScope("PUT /api/rentals/" + id + "/end", principal),
+                id,
+                RentalDto.class,
+                () -> {
+                    RentalDto endRental = rentalService.endRental(id);
+                    return new ResponseEntity<>(endRental, HttpStatus.OK);
+                });
     }
 
     @GetMapping
     @PreAuthorize("hasRole('MANAGER') or hasRole('ADMIN')")
-    public ResponseEntity<List<RentalInfoDto>> getAllRentals() {
-        List<RentalInfoDto> rentals = rentalService.getAllRentals();
+    public ResponseEntity<CursorPageDto<RentalInfoDto>> getAllRentals(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        CursorPageDto<RentalInfoDto> page = rentalService.getRentalsPage(cursor, limit);
+        return new ResponseEntity<>(page, HttpStatus.OK);
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasRole('MANAGER') or hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> streamAllRentals() {
+        // буфер генератора сбрасывается по заполнению, а не после каждой записи
+        ObjectWriter writer =
+                objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body =
+                outputStream -> {
+                    try (JsonGenerator generator =
+                            objectMapper.getFactory().createGenerator(outputStream)) {
+                        generator.writeStartArray();
+                        rentalService.streamAllRentals(
+                                rental -> {
+                                    try {
+                                        writer.writeValue(generator, rental);
+                                    } catch (IOException e) {
+                                        throw new UncheckedIOException(e);
+                                    }
+                                });
+                        generator.writeEndArray();
+                    }
+                };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    @GetMapping("/active")
+    @PreAuthorize("hasRole('MANAGER') or hasRole('ADMIN')")
+    public ResponseEntity<List<RentalInfoDto>> getActiveRentals(
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) Long scooterId,
+            @RequestParam(required = false) Long rentalPointId) {
+        List<RentalInfoDto> rentals =
+                rentalService.getActiveRentals(userId, scooterId, rentalPointId);
         return new ResponseEntity<>(rentals, HttpStatus.OK);
     }
 
     @GetMapping("/user/{userId}")
     @PreAuthorize("hasRole('MANAGER') or hasRole('ADMIN')")
-    public ResponseEntity<List<RentalInfoDto>> getRentalsByUser(@PathVariable Long userId) {
-        List<RentalInfoDto> rentals = rentalService.getRentalsByUser(userId);
+    public ResponseEntity<List<RentalInfoDto>> getRentalsByUser(
+            @PathVariable Long userId,
+            @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE_TIME)
+                    LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE_TIME)
+                    LocalDateTime to) {
+        List<RentalInfoDto> rentals = rentalService.getRentalsByUser(userId, from, to);
         return new ResponseEntity<>(rentals, HttpStatus.OK);
     }
 
     @GetMapping("/scooter/{scooterId}")
     @PreAuthorize("hasRole('MANAGER') or hasRole('ADMIN')")
-    public ResponseEntity<List<RentalInfoDto>> getRentalsByScooter(@PathVariable Long scooterId) {
-        List<RentalInfoDto> rentals = rentalService.getRentalsByScooter(scooterId);
+    public ResponseEntity<List<RentalInfoDto>> getRentalsByScooter(
+            @PathVariable Long scooterId,
+            @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE_TIME)
+                    LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE_TIME)
+                    LocalDateTime to) {
+        List<RentalInfoDto> rentals = rentalService.getRentalsByScooter(scooterId, from, to);
         return new ResponseEntity<>(rentals, HttpStatus.OK);
     }
 
     @GetMapping("/scooter/{scooterId}/history")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<List<RentalInfoDto>> getRentalHistoryByScooter(
-            @PathVariable Long scooterId) {
-        List<RentalInfoDto> rentals = rentalService.getRentalHistoryByScooter(scooterId);
+            @PathVariable Long scooterId,
+            @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE_TIME)
+                    LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE_TIME)
+                    LocalDateTime to) {
+        List<RentalInfoDto> rentals =
+                rentalService.getRentalHistoryByScooter(scooterId, from, to);
         return new ResponseEntity<>(rentals, HttpStatus.OK);
     }
+
+    // ключи разных пользователей и эндпоинтов не пересекаются
+    private String idempotencyScope(String endpoint, Principal principal) {
+        return endpoint + " " + (principal != null ? principal.getName() : "anonymous");
+    }
 }
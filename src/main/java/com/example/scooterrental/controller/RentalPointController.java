@@ -1,13 +1,21 @@
 package com.example.scooterrental.controller;
 
+import com.example.scooterrental.dto.CursorPageDto;
+import com.example.scooterrental.dto.MapClusterDto;
 import com.example.scooterrental.dto.RentalPointDto;
 import com.example.scooterrental.dto.RentalPointInfoDto;
+import com.example.scooterrental.dto.RentalPointScooterCountsDto;
+import com.example.scooterrental.dto.RentalPointViewDto;
+import com.example.scooterrental.dto.ScooterInfoDto;
+import com.example.scooterrental.dto.ScooterSearchFilterDto;
 import com.example.scooterrental.exception.RentalPointNotFoundException;
+import com.example.scooterrental.model.ScooterStatus;
 import com.example.scooterrental.service.RentalPointService;
 
 import jakarta.validation.Valid;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -34,20 +42,57 @@ public class RentalPointController {
         return new ResponseEntity<>(createdRentalPoint, HttpStatus.CREATED);
     }
 
+    @GetMapping("/scooter-counts")
+    public ResponseEntity<List<RentalPointScooterCountsDto>> getScooterCounts() {
+        List<RentalPointScooterCountsDto> counts = rentalPointService.getScooterCounts();
+        return new ResponseEntity<>(counts, HttpStatus.OK);
+    }
+
+    // маркеры точек проката для видимой области карты: близкие точки на масштабе zoom
+    // объединяются в один маркер с суммарными счётчиками самокатов
+    @GetMapping("/map-clusters")
+    public ResponseEntity<List<MapClusterDto>> getMapClusters(
+            @RequestParam double minLat,
+            @RequestParam double minLon,
+            @RequestParam double maxLat,
+            @RequestParam double maxLon,
+            @RequestParam int zoom) {
+        List<MapClusterDto> clusters =
+                rentalPointService.getMapClusters(minLat, minLon, maxLat, maxLon, zoom);
+        return new ResponseEntity<>(clusters, HttpStatus.OK);
+    }
+
+    // depth — уровни вложенных дочерних точек (без параметра — всё поддерево),
+    // include=scooters|counts|none — какие данные о самокатах попадут в ответ
     @GetMapping("/{id}")
-    public ResponseEntity<RentalPointInfoDto> getRentalPointById(@PathVariable Long id)
+    public ResponseEntity<RentalPointInfoDto> getRentalPointById(
+            @PathVariable Long id,
+            @RequestParam(required = false) Integer depth,
+            @RequestParam(defaultValue = "scooters") String include,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false)
+                    String ifNoneMatch)
             throws RentalPointNotFoundException {
-        RentalPointInfoDto rentalPoint = rentalPointService.getRentalPointById(id);
-        return new ResponseEntity<>(rentalPoint, HttpStatus.OK);
+        String tag = rentalPointService.getRentalPointEntityTag(id);
+        if (EntityTags.noneMatchHits(ifNoneMatch, tag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(EntityTags.quote(tag))
+                    .build();
+        }
+        RentalPointInfoDto rentalPoint =
+                rentalPointService.getRentalPointById(id, view(depth, include, false));
+        return ResponseEntity.ok().eTag(EntityTags.quote(tag)).body(rentalPoint);
     }
 
     @PutMapping("/{id}")
     @PreAuthorize("hasRole('MANAGER') or hasRole('ADMIN')")
     public ResponseEntity<RentalPointDto> updateRentalPoint(
-            @PathVariable Long id, @Valid @RequestBody RentalPointDto rentalPointDto)
+            @PathVariable Long id,
+            @Valid @RequestBody RentalPointDto rentalPointDto,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch)
             throws RentalPointNotFoundException {
         RentalPointDto updatedRentalPoint =
-                rentalPointService.updateRentalPoint(id, rentalPointDto);
+                rentalPointService.updateRentalPoint(
+                        id, rentalPointDto, EntityTags.expectedVersion(ifMatch));
         return new ResponseEntity<>(updatedRentalPoint, HttpStatus.OK);
     }
 
@@ -59,22 +104,114 @@ public class RentalPointController {
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
 
+    // flat=true — каждая точка один раз, без вложенных childPoints: для списков выбора
+    // достаточно GET /api/rental-points?flat=true&include=none.
+    // С include=none ответ зависит только от иерархии точек, поэтому его ETag — версия
+    // снимка иерархии, и повторный запрос с If-None-Match получает 304
     @GetMapping
-    public ResponseEntity<List<RentalPointInfoDto>> getAllRentalPoints() {
-        List<RentalPointInfoDto> rentalPoints = rentalPointService.getAllRentalPoints();
-        return new ResponseEntity<>(rentalPoints, HttpStatus.OK);
+    public ResponseEntity<List<RentalPointInfoDto>> getAllRentalPoints(
+            @RequestParam(required = false) Integer depth,
+            @RequestParam(defaultValue = "scooters") String include,
+            @RequestParam(defaultValue = "false") boolean flat,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false)
+                    String ifNoneMatch) {
+        RentalPointViewDto view = view(depth, include, flat);
+        String version = hierarchyVersion(view);
+        if (version != null && EntityTags.noneMatchHits(ifNoneMatch, version)) {
+            return notModified(version);
+        }
+        List<RentalPointInfoDto> rentalPoints = rentalPointService.getAllRentalPoints(view);
+        return withVersion(version).body(rentalPoints);
     }
 
     @GetMapping("/root")
-    public ResponseEntity<List<RentalPointInfoDto>> getRootRentalPoints() {
-        List<RentalPointInfoDto> rootRentalPoints = rentalPointService.getRootRentalPoints();
-        return new ResponseEntity<>(rootRentalPoints, HttpStatus.OK);
+    public ResponseEntity<List<RentalPointInfoDto>> getRootRentalPoints(
+            @RequestParam(required = false) Integer depth,
+            @RequestParam(defaultValue = "scooters") String include,
+            @RequestParam(defaultValue = "false") boolean flat,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false)
+                    String ifNoneMatch) {
+        RentalPointViewDto view = view(depth, include, flat);
+        String version = hierarchyVersion(view);
+        if (version != null && EntityTags.noneMatchHits(ifNoneMatch, version)) {
+            return notModified(version);
+        }
+        List<RentalPointInfoDto> rootRentalPoints = rentalPointService.getRootRentalPoints(view);
+        return withVersion(version).body(rootRentalPoints);
     }
 
     @GetMapping("/{id}/children")
-    public ResponseEntity<List<RentalPointInfoDto>> getChildRentalPoints(@PathVariable Long id)
+    public ResponseEntity<List<RentalPointInfoDto>> getChildRentalPoints(
+            @PathVariable Long id,
+            @RequestParam(required = false) Integer depth,
+            @RequestParam(defaultValue = "scooters") String include,
+            @RequestParam(defaultValue = "false") boolean flat,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false)
+                    String ifNoneMatch)
+            throws RentalPointNotFoundException {
+        RentalPointViewDto view = view(depth, include, flat);
+        String version = hierarchyVersion(view);
+        if (version != null && EntityTags.noneMatchHits(ifNoneMatch, version)) {
+            return notModified(version);
+        }
+        List<RentalPointInfoDto> childRentalPoints =
+                rentalPointService.getChildRentalPoints(id, view);
+        return withVersion(version).body(childRentalPoints);
+    }
+
+    // самокаты точки и всех её потомков, страницами как в /api/scooters/search
+    @GetMapping("/{id}/subtree/scooters")
+    public ResponseEntity<CursorPageDto<ScooterInfoDto>> getSubtreeScooters(
+            @PathVariable Long id,
+            @RequestParam(required = false) ScooterStatus status,
+            @RequestParam(required = false) Integer minChargeLevel,
+            @RequestParam(required = false) String model,
+            @RequestParam(required = false) Long tariffId,
+            @RequestParam(defaultValue = "id") String sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit)
+            throws RentalPointNotFoundException {
+        ScooterSearchFilterDto filter =
+                new ScooterSearchFilterDto(status, minChargeLevel, model, null, tariffId, null);
+        CursorPageDto<ScooterInfoDto> page =
+                rentalPointService.getSubtreeScooters(id, filter, sort, cursor, limit);
+        return new ResponseEntity<>(page, HttpStatus.OK);
+    }
+
+    @GetMapping("/{id}/subtree/scooter-counts")
+    public ResponseEntity<RentalPointScooterCountsDto> getSubtreeScooterCounts(
+            @PathVariable Long id) throws RentalPointNotFoundException {
+        RentalPointScooterCountsDto counts = rentalPointService.getSubtreeScooterCounts(id);
+        return new ResponseEntity<>(counts, HttpStatus.OK);
+    }
+
+    @GetMapping("/{id}/ancestors")
+    public ResponseEntity<List<RentalPointDto>> getAncestors(@PathVariable Long id)
             throws RentalPointNotFoundException {
-        List<RentalPointInfoDto> childRentalPoints = rentalPointService.getChildRentalPoints(id);
-        return new ResponseEntity<>(childRentalPoints, HttpStatus.OK);
+        List<RentalPointDto> ancestors = rentalPointService.getAncestors(id);
+        return new ResponseEntity<>(ancestors, HttpStatus.OK);
+    }
+
+    private static RentalPointViewDto view(Integer depth, String include, boolean flat) {
+        return new RentalPointViewDto(depth, RentalPointViewDto.Include.parse(include), flat);
+    }
+
+    // версия читается до ответа: если иерархия изменится между ними, клиент получит
+    // устаревший ETag и лишь перезапросит данные, а не пропустит изменение
+    private String hierarchyVersion(RentalPointViewDto view) {
+        return view.getInclude() == RentalPointViewDto.Include.NONE
+                ? rentalPointService.getHierarchyVersion()
+                : null;
+    }
+
+    private static <T> ResponseEntity<T> notModified(String version) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(EntityTags.quote(version))
+                .build();
+    }
+
+    private static ResponseEntity.BodyBuilder withVersion(String version) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        return version == null ? builder : builder.eTag(EntityTags.quote(version));
     }
 }
@@ -1,20 +1,38 @@
 package com.example.scooterrental.controller;
 
+import com.example.scooterrental.dto.CursorPageDto;
+import com.example.scooterrental.dto.NearbyRentalPointDto;
+import com.example.scooterrental.dto.ScooterAvailabilityDto;
+import com.example.scooterrental.dto.ScooterBulkStatusRequestDto;
+import com.example.scooterrental.dto.ScooterBulkStatusResultDto;
 import com.example.scooterrental.dto.ScooterDto;
+import com.example.scooterrental.dto.ScooterImportResultDto;
 import com.example.scooterrental.dto.ScooterInfoDto;
+import com.example.scooterrental.dto.ScooterSearchFilterDto;
+import com.example.scooterrental.dto.ScooterStatsDto;
+import com.example.scooterrental.dto.TelemetryIngestResultDto;
 import com.example.scooterrental.exception.RentalPointNotFoundException;
 import com.example.scooterrental.exception.ScooterNotFoundException;
+import com.example.scooterrental.fleet.BoundingBox;
+import com.example.scooterrental.fleet.ScooterChangeStream;
 import com.example.scooterrental.model.ScooterStatus;
+import com.example.scooterrental.service.ScooterImportService;
 import com.example.scooterrental.service.ScooterService;
+import com.example.scooterrental.service.TelemetryService;
 
 import jakarta.validation.Valid;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 @RestController
@@ -22,10 +40,20 @@ import java.util.List;
 public class ScooterController {
 
     private final ScooterService scooterService;
+    private final TelemetryService telemetryService;
+    private final ScooterImportService scooterImportService;
+    private final ScooterChangeStream scooterChangeStream;
 
     @Autowired
-    public ScooterController(ScooterService scooterService) {
+    public ScooterController(
+            ScooterService scooterService,
+            TelemetryService telemetryService,
+            ScooterImportService scooterImportService,
+            ScooterChangeStream scooterChangeStream) {
         this.scooterService = scooterService;
+        this.telemetryService = telemetryService;
+        this.scooterImportService = scooterImportService;
+        this.scooterChangeStream = scooterChangeStream;
     }
 
     @PostMapping
@@ -36,19 +64,58 @@ public class ScooterController {
         return new ResponseEntity<>(createdScooter, HttpStatus.CREATED);
     }
 
+    // столбцы: model, serialNumber, status, chargeLevel[, mileage, rentalPointId, tariffId]
+    @PostMapping(value = "/import", consumes = "text/csv")
+    @PreAuthorize("hasRole('MANAGER') or hasRole('ADMIN')")
+    public ResponseEntity<ScooterImportResultDto> importScootersCsv(InputStream body)
+            throws IOException {
+        ScooterImportResultDto result = scooterImportService.importCsv(body);
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
+
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasRole('MANAGER') or hasRole('ADMIN')")
+    public ResponseEntity<ScooterImportResultDto> importScootersJson(InputStream body)
+            throws IOException {
+        ScooterImportResultDto result = scooterImportService.importJson(body);
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
+
     @GetMapping("/{id}")
-    public ResponseEntity<ScooterInfoDto> getScooterById(@PathVariable Long id)
+    public ResponseEntity<ScooterInfoDto> getScooterById(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false)
+                    String ifNoneMatch)
             throws ScooterNotFoundException {
+        // тег читается до сборки ответа: если он устарел к моменту сборки, клиент лишь
+        // скачает ресурс ещё раз
+        String tag = scooterService.getScooterEntityTag(id);
+        if (EntityTags.noneMatchHits(ifNoneMatch, tag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(EntityTags.quote(tag))
+                    .build();
+        }
         ScooterInfoDto scooter = scooterService.getScooterById(id);
-        return new ResponseEntity<>(scooter, HttpStatus.OK);
+        return ResponseEntity.ok().eTag(EntityTags.quote(tag)).body(scooter);
+    }
+
+    @GetMapping("/{id}/stats")
+    public ResponseEntity<ScooterStatsDto> getScooterStats(@PathVariable Long id)
+            throws ScooterNotFoundException {
+        ScooterStatsDto stats = scooterService.getScooterStats(id);
+        return new ResponseEntity<>(stats, HttpStatus.OK);
     }
 
     @PutMapping("/{id}")
     @PreAuthorize("hasRole('MANAGER') or hasRole('ADMIN')")
     public ResponseEntity<ScooterDto> updateScooter(
-            @PathVariable Long id, @Valid @RequestBody ScooterDto scooterDto)
+            @PathVariable Long id,
+            @Valid @RequestBody ScooterDto scooterDto,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch)
             throws ScooterNotFoundException, RentalPointNotFoundException {
-        ScooterDto updatedScooter = scooterService.updateScooter(id, scooterDto);
+        ScooterDto updatedScooter =
+                scooterService.updateScooter(
+                        id, scooterDto, EntityTags.expectedVersion(ifMatch));
         return new ResponseEntity<>(updatedScooter, HttpStatus.OK);
     }
 
@@ -66,6 +133,76 @@ public class ScooterController {
         return new ResponseEntity<>(scooters, HttpStatus.OK);
     }
 
+    @GetMapping("/search")
+    public ResponseEntity<CursorPageDto<ScooterInfoDto>> searchScooters(
+            @RequestParam(required = false) ScooterStatus status,
+            @RequestParam(required = false) Integer minChargeLevel,
+            @RequestParam(required = false) String model,
+            @RequestParam(required = false) Long rentalPointId,
+            @RequestParam(required = false) Long tariffId,
+            @RequestParam(required = false) Long underRentalPointId,
+            @RequestParam(defaultValue = "id") String sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        ScooterSearchFilterDto filter =
+                new ScooterSearchFilterDto(
+                        status, minChargeLevel, model, rentalPointId, tariffId, underRentalPointId);
+        CursorPageDto<ScooterInfoDto> page =
+                scooterService.searchScooters(filter, sort, cursor, limit);
+        return new ResponseEntity<>(page, HttpStatus.OK);
+    }
+
+    @GetMapping("/availability")
+    public ResponseEntity<List<ScooterAvailabilityDto>> getAvailability(
+            @RequestParam(defaultValue = "AVAILABLE") ScooterStatus status,
+            @RequestParam(required = false) Long rentalPointId,
+            @RequestParam(required = false) Integer minChargeLevel) {
+        List<ScooterAvailabilityDto> scooters =
+                scooterService.getAvailability(status, rentalPointId, minChargeLevel);
+        return new ResponseEntity<>(scooters, HttpStatus.OK);
+    }
+
+    @GetMapping("/nearby")
+    public ResponseEntity<List<NearbyRentalPointDto>> findNearby(
+            @RequestParam double lat,
+            @RequestParam double lon,
+            @RequestParam(defaultValue = "1000") double radius,
+            @RequestParam(defaultValue = "10") int limit) {
+        List<NearbyRentalPointDto> points = scooterService.findNearby(lat, lon, radius, limit);
+        return new ResponseEntity<>(points, HttpStatus.OK);
+    }
+
+    // SSE: события scooter с номером вида <эпоха>-<номер> в id; при переподключении браузер
+    // сам присылает Last-Event-ID, параметр since нужен клиентам, которые не умеют задавать
+    // заголовок
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamStatusChanges(
+            @RequestParam(required = false) Long rentalPointId,
+            @RequestParam(required = false) Double minLat,
+            @RequestParam(required = false) Double minLon,
+            @RequestParam(required = false) Double maxLat,
+            @RequestParam(required = false) Double maxLon,
+            @RequestParam(required = false) String since,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        BoundingBox box = scooterService.resolveBoundingBox(minLat, minLon, maxLat, maxLon);
+        return scooterChangeStream.subscribe(
+                rentalPointId, box, lastEventId != null ? lastEventId : since);
+    }
+
+    // поток NDJSON: по одному измерению на строку, сохраняется в базу пачками
+    @PostMapping(value = "/telemetry", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("hasRole('MANAGER') or hasRole('ADMIN')")
+    public ResponseEntity<TelemetryIngestResultDto> ingestTelemetry(InputStream body)
+            throws IOException {
+        TelemetryIngestResultDto result = telemetryService.ingest(body);
+        if (result.getDropped() > 0) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(result);
+        }
+        return new ResponseEntity<>(result, HttpStatus.ACCEPTED);
+    }
+
     @GetMapping("/rental-point/{rentalPointId}")
     public ResponseEntity<List<ScooterInfoDto>> getScootersByRentalPoint(
             @PathVariable Long rentalPointId) {
@@ -76,9 +213,21 @@ public class ScooterController {
     @PatchMapping("/{id}/status")
     @PreAuthorize("hasRole('MANAGER') or hasRole('ADMIN')")
     public ResponseEntity<Void> updateScooterStatus(
-            @PathVariable Long id, @RequestParam ScooterStatus newStatus)
+            @PathVariable Long id,
+            @RequestParam ScooterStatus newStatus,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch)
             throws ScooterNotFoundException {
-        scooterService.updateScooterStatus(id, newStatus);
+        scooterService.updateScooterStatus(id, newStatus, EntityTags.expectedVersion(ifMatch));
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
+
+    // переход применяется ко всем самокатам одним запросом; ответ содержит итог по каждому id
+    @PatchMapping("/status")
+    @PreAuthorize("hasRole('MANAGER') or hasRole('ADMIN')")
+    public ResponseEntity<ScooterBulkStatusResultDto> updateScooterStatuses(
+            @Valid @RequestBody ScooterBulkStatusRequestDto request) {
+        ScooterBulkStatusResultDto result =
+                scooterService.updateScooterStatuses(request.getScooterIds(), request.getStatus());
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
 }
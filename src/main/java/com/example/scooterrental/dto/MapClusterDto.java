@@ -0,0 +1,25 @@
+package com.example.scooterrental.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// маркер карты: центр точек кластера и суммарные счётчики
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class MapClusterDto {
+    private Double latitude;
+    private Double longitude;
+    private Integer rentalPoints;
+    private Integer scooters;
+    private Integer availableScooters;
+
+    // только у кластера из одной точки
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long rentalPointId;
+}
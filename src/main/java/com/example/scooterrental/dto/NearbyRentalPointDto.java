@@ -0,0 +1,20 @@
+package com.example.scooterrental.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class NearbyRentalPointDto {
+    private Long rentalPointId;
+    private String name;
+    private String address;
+    private Double latitude;
+    private Double longitude;
+    private Double distanceMeters;
+    private Integer availableScooters;
+}
@@ -24,9 +24,13 @@ public class RentalPointDto {
     private String address;
 
     @NotNull(message = "Широта не может быть null")
+    @DecimalMin(value = "-90.0", message = "Широта не может быть меньше -90")
+    @DecimalMax(value = "90.0", message = "Широта не может превышать 90")
     private Double latitude;
 
     @NotNull(message = "Долгота не может быть null")
+    @DecimalMin(value = "-180.0", message = "Долгота не может быть меньше -180")
+    @DecimalMax(value = "180.0", message = "Долгота не может превышать 180")
     private Double longitude;
 
     private Long parentPointId;
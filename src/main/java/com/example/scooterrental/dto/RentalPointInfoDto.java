@@ -1,11 +1,15 @@
 package com.example.scooterrental.dto;
 
+import com.example.scooterrental.model.ScooterStatus;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 import java.util.List;
+import java.util.Map;
 
 @Getter
 @Setter
@@ -18,6 +22,15 @@ public class RentalPointInfoDto {
     private Double latitude;
     private Double longitude;
     private Long parentPointId;
+
+    // null — поле не запрошено (плоский список, предел глубины, include) и не сериализуется
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private List<RentalPointInfoDto> childPoints;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private List<ScooterInfoDto> scooters;
+
+    // число самокатов точки по статусам из живых счётчиков
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Map<ScooterStatus, Integer> scooterCounts;
 }
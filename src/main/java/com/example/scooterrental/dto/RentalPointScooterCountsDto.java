@@ -0,0 +1,19 @@
+package com.example.scooterrental.dto;
+
+import com.example.scooterrental.model.ScooterStatus;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Map;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class RentalPointScooterCountsDto {
+    private Long rentalPointId;
+    private Map<ScooterStatus, Integer> scooterCounts;
+}
@@ -0,0 +1,44 @@
+package com.example.scooterrental.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Locale;
+
+// форма ответа с точками проката: глубина вложенности, состав полей и плоский список
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class RentalPointViewDto {
+    // null — поддерево целиком, 0 — без дочерних точек
+    private Integer depth;
+    private Include include = Include.SCOOTERS;
+    // каждая точка один раз, без вложенных childPoints; дерево восстанавливается по parentPointId
+    private boolean flat;
+
+    public static RentalPointViewDto full() {
+        return new RentalPointViewDto(null, Include.SCOOTERS, false);
+    }
+
+    public enum Include {
+        // самокаты и счётчики по статусам
+        SCOOTERS,
+        // только счётчики по статусам из памяти
+        COUNTS,
+        NONE;
+
+        public static Include parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(
+                        "Некорректное значение include: "
+                                + value
+                                + ", ожидается scooters, counts или none");
+            }
+        }
+    }
+}
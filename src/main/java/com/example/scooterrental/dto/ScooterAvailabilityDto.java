@@ -0,0 +1,19 @@
+package com.example.scooterrental.dto;
+
+import com.example.scooterrental.model.ScooterStatus;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScooterAvailabilityDto {
+    private Long id;
+    private ScooterStatus status;
+    private Integer chargeLevel;
+    private Long rentalPointId;
+}
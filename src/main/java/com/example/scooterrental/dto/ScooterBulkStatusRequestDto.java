@@ -0,0 +1,26 @@
+package com.example.scooterrental.dto;
+
+import com.example.scooterrental.model.ScooterStatus;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScooterBulkStatusRequestDto {
+
+    @NotEmpty(message = "Список самокатов не может быть пустым")
+    private List<@NotNull(message = "ID самоката не может быть null") Long> scooterIds;
+
+    @NotNull(message = "Статус не может быть null")
+    private ScooterStatus status;
+}
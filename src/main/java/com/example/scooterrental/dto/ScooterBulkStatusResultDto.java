@@ -0,0 +1,22 @@
+package com.example.scooterrental.dto;
+
+import com.example.scooterrental.model.ScooterStatus;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScooterBulkStatusResultDto {
+    private ScooterStatus status;
+    private long requested;
+    private long updated;
+    // по одной записи на каждый переданный id, в порядке запроса
+    private List<ScooterStatusOutcomeDto> outcomes;
+}
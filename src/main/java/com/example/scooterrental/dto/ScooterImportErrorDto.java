@@ -0,0 +1,17 @@
+package com.example.scooterrental.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScooterImportErrorDto {
+    // порядковый номер записи в файле, начиная с 1 (строка заголовка CSV не считается)
+    private long row;
+    private String serialNumber;
+    private String message;
+}
@@ -0,0 +1,21 @@
+package com.example.scooterrental.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScooterImportResultDto {
+    private long total;
+    private long imported;
+    private long failed;
+    private List<ScooterImportErrorDto> errors;
+    // true — ошибок больше, чем попало в errors
+    private boolean errorsTruncated;
+}
@@ -22,4 +22,5 @@ public class ScooterInfoDto {
     private String rentalPointName;
     private Long tariffId;
     private String tariffName;
+    private ScooterStatsDto stats;
 }
@@ -0,0 +1,23 @@
+package com.example.scooterrental.dto;
+
+import com.example.scooterrental.model.ScooterStatus;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// null в любом поле — фильтр не применяется
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScooterSearchFilterDto {
+    private ScooterStatus status;
+    private Integer minChargeLevel;
+    private String model;
+    private Long rentalPointId;
+    private Long tariffId;
+    // точка и все её потомки
+    private Long underRentalPointId;
+}
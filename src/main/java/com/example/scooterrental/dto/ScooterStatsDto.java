@@ -0,0 +1,21 @@
+package com.example.scooterrental.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScooterStatsDto {
+    private Long scooterId;
+    private Long rides;
+    private Double revenue;
+    private Double distance;
+    private Long rideMinutes;
+    private LocalDateTime lastRideAt;
+}
@@ -0,0 +1,20 @@
+package com.example.scooterrental.dto;
+
+import com.example.scooterrental.model.ScooterStatus;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScooterStatusEventDto {
+    private Long scooterId;
+    // null — самокат удалён
+    private ScooterStatus status;
+    private Long rentalPointId;
+    private Integer chargeLevel;
+}
@@ -0,0 +1,30 @@
+package com.example.scooterrental.dto;
+
+import com.example.scooterrental.model.ScooterStatus;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScooterStatusOutcomeDto {
+    private Long scooterId;
+    private Outcome outcome;
+    // статус после операции; null, если самокат не найден
+    private ScooterStatus status;
+
+    public enum Outcome {
+        UPDATED,
+        // самокат уже был в запрошенном статусе
+        UNCHANGED,
+        NOT_FOUND,
+        // переход из текущего статуса запрещён таблицей ScooterStatus
+        INVALID_TRANSITION,
+        // у самоката незавершённая аренда, статус меняет только её завершение
+        RENTAL_OPEN
+    }
+}
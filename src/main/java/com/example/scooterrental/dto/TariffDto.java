@@ -33,4 +33,10 @@ public class TariffDto {
 
     @NotNull(message = "Поле 'isSubscription' не может быть null")
     private Boolean isSubscription;
+
+    @PositiveOrZero(message = "Минимальная стоимость не может быть отрицательной")
+    private Double minimumCharge;
+
+    @PositiveOrZero(message = "Максимальная стоимость не может быть отрицательной")
+    private Double maximumCharge;
 }
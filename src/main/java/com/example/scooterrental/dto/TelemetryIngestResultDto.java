@@ -0,0 +1,16 @@
+package com.example.scooterrental.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class TelemetryIngestResultDto {
+    private int accepted;
+    private int rejected;
+    private int dropped;
+}
@@ -0,0 +1,19 @@
+package com.example.scooterrental.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class TelemetrySampleDto {
+    private Long scooterId;
+    private Integer chargeLevel;
+    private Double mileage;
+    private LocalDateTime recordedAt;
+}
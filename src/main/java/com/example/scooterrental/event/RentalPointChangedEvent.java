@@ -0,0 +1,20 @@
+package com.example.scooterrental.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class RentalPointChangedEvent {
+    private final Long rentalPointId;
+    private final String name;
+    private final String address;
+    private final Double latitude;
+    private final Double longitude;
+    private final Long parentPointId;
+    private final boolean removed;
+
+    public static RentalPointChangedEvent removed(Long rentalPointId) {
+        return new RentalPointChangedEvent(rentalPointId, null, null, null, null, null, true);
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.scooterrental.event;
+
+import com.example.scooterrental.model.ScooterStatus;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class ScooterStateChangedEvent {
+    private final Long scooterId;
+    private final ScooterStatus status;
+    private final Integer chargeLevel;
+    private final Long rentalPointId;
+    private final boolean removed;
+
+    public static ScooterStateChangedEvent removed(Long scooterId) {
+        return new ScooterStateChangedEvent(scooterId, null, null, null, true);
+    }
+}
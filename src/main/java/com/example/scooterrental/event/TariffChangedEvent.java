@@ -0,0 +1,10 @@
+package com.example.scooterrental.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class TariffChangedEvent {
+    private final Long tariffId;
+}
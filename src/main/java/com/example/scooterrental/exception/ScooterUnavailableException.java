@@ -0,0 +1,11 @@
+package com.example.scooterrental.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class ScooterUnavailableException extends RuntimeException {
+    public ScooterUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.scooterrental.fleet;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// при minLongitude > maxLongitude прямоугольник пересекает 180-й меридиан
+@Getter
+@AllArgsConstructor
+public class BoundingBox {
+    private final double minLatitude;
+    private final double minLongitude;
+    private final double maxLatitude;
+    private final double maxLongitude;
+
+    public boolean contains(double latitude, double longitude) {
+        if (latitude < minLatitude || latitude > maxLatitude) {
+            return false;
+        }
+        return minLongitude <= maxLongitude
+                ? longitude >= minLongitude && longitude <= maxLongitude
+                : longitude >= minLongitude || longitude <= maxLongitude;
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.scooterrental.fleet;
+
+import com.example.scooterrental.model.ScooterStatus;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// previousStatus == null — самоката раньше не было, status == null — самокат удалён
+@Getter
+@AllArgsConstructor
+public class FleetStateChange {
+    private final long scooterId;
+    private final ScooterStatus previousStatus;
+    private final Long previousRentalPointId;
+    private final ScooterStatus status;
+    private final Long rentalPointId;
+    private final int chargeLevel;
+}
@@ -0,0 +1,8 @@
+package com.example.scooterrental.fleet;
+
+public interface FleetStateListener {
+
+    // вызывается под блокировкой записи FleetStateStore: обработка должна быть короткой
+    // и не должна обращаться к самому хранилищу
+    void onScooterChanged(FleetStateChange change);
+}
@@ -0,0 +1,425 @@
+package com.example.scooterrental.fleet;
+
+import com.example.scooterrental.dto.ScooterAvailabilityDto;
+import com.example.scooterrental.event.ScooterStateChangedEvent;
+import com.example.scooterrental.model.ScooterStatus;
+import com.example.scooterrental.repository.ScooterRepository;
+import com.example.scooterrental.repository.ScooterStateRow;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.StampedLock;
+
+// Состояние парка в памяти: столбцы-массивы, индексированные идентификатором самоката.
+// Пополняется событиями после фиксации транзакций и целиком перечитывается при старте.
+// Рядом ведутся счётчики самокатов по точкам и статусам: они меняются вместе со столбцами,
+// а при каждой сверке с БД пересчитываются заново
+@Component
+public class FleetStateStore implements SmartInitializingSingleton {
+
+    private static final Logger logger = LoggerFactory.getLogger(FleetStateStore.class);
+
+    private static final byte ABSENT = -1;
+    private static final long NO_RENTAL_POINT = 0L;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+    private static final ScooterStatus[] STATUSES = ScooterStatus.values();
+
+    private final ScooterRepository scooterRepository;
+    private final List<FleetStateListener> listeners;
+    private final StampedLock lock = new StampedLock();
+
+    private Columns columns = new Columns(INITIAL_CAPACITY);
+    // пишутся под блокировкой записи, читаются без блокировки; индекс массива — ordinal статуса
+    private volatile Map<Long, AtomicIntegerArray> pointCounts = new ConcurrentHashMap<>();
+    // пока идёт перестроение, изменения копятся здесь и накатываются поверх загруженного
+    private List<ScooterStateChangedEvent> journal;
+
+    @Autowired
+    public FleetStateStore(
+            ScooterRepository scooterRepository, List<FleetStateListener> listeners) {
+        this.scooterRepository = scooterRepository;
+        this.listeners = listeners;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        rebuild();
+    }
+
+    // страховка от событий, применённых не в порядке фиксации, и от удалений в обход сервиса
+    @Scheduled(
+            fixedDelayString = "${fleet.state.resync-interval-ms:300000}",
+            initialDelayString = "${fleet.state.resync-interval-ms:300000}")
+    public void resync() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            logger.error("Ошибка при сверке состояния парка: {}", e.getMessage(), e);
+        }
+    }
+
+    public void rebuild() {
+        long stamp = lock.writeLock();
+        try {
+            journal = new ArrayList<>();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        Columns loaded;
+        try {
+            List<ScooterStateRow> rows = scooterRepository.findAllStateRows();
+            loaded = new Columns(INITIAL_CAPACITY);
+            for (ScooterStateRow row : rows) {
+                loaded.put(
+                        row.getId(),
+                        row.getStatus(),
+                        row.getChargeLevel(),
+                        row.getRentalPointId());
+            }
+        } catch (RuntimeException e) {
+            stamp = lock.writeLock();
+            try {
+                journal = null;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            throw e;
+        }
+        stamp = lock.writeLock();
+        try {
+            for (ScooterStateChangedEvent event : journal) {
+                loaded.apply(event);
+            }
+            // счётчики публикуются до уведомлений: слушатели читают их уже обновлёнными
+            Map<Long, AtomicIntegerArray> loadedCounts = loaded.countByRentalPoint();
+            int drifted = countDrift(pointCounts, loadedCounts);
+            if (drifted > 0) {
+                logger.warn("Счётчики самокатов расходились с БД на {} точках проката.", drifted);
+            }
+            pointCounts = loadedCounts;
+            // слушатели получают только расхождения между прежним и загруженным состоянием
+            int bound = Math.max(columns.upperBound, loaded.upperBound);
+            for (int slot = 0; slot < bound; slot++) {
+                notifyIfChanged(
+                        slot,
+                        columns.statusAt(slot),
+                        columns.rentalPointAt(slot),
+                        columns.chargeAt(slot),
+                        loaded);
+            }
+            columns = loaded;
+            journal = null;
+            logger.info("Состояние парка загружено: {} самокатов.", loaded.size);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onScooterStateChanged(ScooterStateChangedEvent event) {
+        long stamp = lock.writeLock();
+        try {
+            applyLocked(event);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // телеметрия меняет только заряд: статус и точка берутся из текущего состояния
+    public void updateChargeLevel(Long scooterId, int chargeLevel) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = slotOf(scooterId);
+            byte status = columns.statusAt(slot);
+            if (status == ABSENT) {
+                return;
+            }
+            long point = columns.rentalPointAt(slot);
+            applyLocked(
+                    new ScooterStateChangedEvent(
+                            scooterId,
+                            STATUSES[status],
+                            chargeLevel,
+                            point == NO_RENTAL_POINT ? null : point,
+                            false));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void applyLocked(ScooterStateChangedEvent event) {
+        int slot = slotOf(event.getScooterId());
+        byte previousStatus = columns.statusAt(slot);
+        long previousPoint = columns.rentalPointAt(slot);
+        byte previousCharge = columns.chargeAt(slot);
+        columns.apply(event);
+        byte status = columns.statusAt(slot);
+        long point = columns.rentalPointAt(slot);
+        if (status != previousStatus || point != previousPoint) {
+            adjustCount(previousPoint, previousStatus, -1);
+            adjustCount(point, status, 1);
+        }
+        notifyIfChanged(slot, previousStatus, previousPoint, previousCharge, columns);
+        if (journal != null) {
+            journal.add(event);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.tryOptimisticRead();
+        int size = columns.size;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                size = columns.size;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    // status == null — любой статус, rentalPointId == null — любая точка
+    public List<ScooterAvailabilityDto> query(
+            ScooterStatus status, Long rentalPointId, int minChargeLevel) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            List<ScooterAvailabilityDto> result =
+                    columns.scan(status, rentalPointId, minChargeLevel);
+            if (lock.validate(stamp)) {
+                return result;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return columns.scan(status, rentalPointId, minChargeLevel);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // самокаты точки по статусам, включая нулевые; точка без самокатов даёт одни нули
+    public Map<ScooterStatus, Integer> countsAt(Long rentalPointId) {
+        return toStatusMap(pointCounts.get(rentalPointId));
+    }
+
+    // только точки, на которых числится хотя бы один самокат
+    public Map<Long, Map<ScooterStatus, Integer>> countsByRentalPoint() {
+        Map<Long, Map<ScooterStatus, Integer>> result = new HashMap<>();
+        pointCounts.forEach(
+                (pointId, counts) -> {
+                    Map<ScooterStatus, Integer> byStatus = toStatusMap(counts);
+                    if (byStatus.values().stream().anyMatch(count -> count > 0)) {
+                        result.put(pointId, byStatus);
+                    }
+                });
+        return result;
+    }
+
+    private void adjustCount(long point, byte status, int delta) {
+        if (point == NO_RENTAL_POINT || status == ABSENT) {
+            return;
+        }
+        pointCounts
+                .computeIfAbsent(point, key -> new AtomicIntegerArray(STATUSES.length))
+                .addAndGet(status, delta);
+    }
+
+    private static Map<ScooterStatus, Integer> toStatusMap(AtomicIntegerArray counts) {
+        Map<ScooterStatus, Integer> byStatus = new EnumMap<>(ScooterStatus.class);
+        for (ScooterStatus status : STATUSES) {
+            byStatus.put(status, counts == null ? 0 : counts.get(status.ordinal()));
+        }
+        return byStatus;
+    }
+
+    private static int countDrift(
+            Map<Long, AtomicIntegerArray> current, Map<Long, AtomicIntegerArray> loaded) {
+        int drifted = 0;
+        for (Long pointId : current.keySet()) {
+            if (!toStatusMap(current.get(pointId)).equals(toStatusMap(loaded.get(pointId)))) {
+                drifted++;
+            }
+        }
+        for (Long pointId : loaded.keySet()) {
+            if (!current.containsKey(pointId)) {
+                drifted++;
+            }
+        }
+        return drifted;
+    }
+
+    private void notifyIfChanged(
+            int slot, byte previousStatus, long previousPoint, byte previousCharge, Columns after) {
+        byte status = after.statusAt(slot);
+        long point = after.rentalPointAt(slot);
+        byte chargeLevel = after.chargeAt(slot);
+        if (previousStatus == status && previousPoint == point && previousCharge == chargeLevel) {
+            return;
+        }
+        FleetStateChange change =
+                new FleetStateChange(
+                        slot,
+                        previousStatus == ABSENT ? null : STATUSES[previousStatus],
+                        previousPoint == NO_RENTAL_POINT ? null : previousPoint,
+                        status == ABSENT ? null : STATUSES[status],
+                        point == NO_RENTAL_POINT ? null : point,
+                        chargeLevel);
+        for (FleetStateListener listener : listeners) {
+            try {
+                listener.onScooterChanged(change);
+            } catch (RuntimeException e) {
+                logger.error(
+                        "Ошибка в обработчике состояния парка для самоката {}: {}",
+                        slot,
+                        e.getMessage(),
+                        e);
+            }
+        }
+    }
+
+    private static int slotOf(Long id) {
+        if (id == null || id < 0 || id >= MAX_CAPACITY) {
+            throw new IllegalArgumentException("Некорректный ID самоката: " + id);
+        }
+        return id.intValue();
+    }
+
+    private static final class Columns {
+        private byte[] statuses;
+        private byte[] chargeLevels;
+        private long[] rentalPointIds;
+        private int upperBound;
+        private int size;
+
+        private Columns(int capacity) {
+            statuses = new byte[capacity];
+            Arrays.fill(statuses, ABSENT);
+            chargeLevels = new byte[capacity];
+            rentalPointIds = new long[capacity];
+        }
+
+        private void apply(ScooterStateChangedEvent event) {
+            if (event.isRemoved()) {
+                remove(event.getScooterId());
+            } else {
+                put(
+                        event.getScooterId(),
+                        event.getStatus(),
+                        event.getChargeLevel(),
+                        event.getRentalPointId());
+            }
+        }
+
+        private void put(Long id, ScooterStatus status, Integer chargeLevel, Long rentalPointId) {
+            int slot = slotOf(id);
+            ensureCapacity(slot + 1);
+            if (statuses[slot] == ABSENT) {
+                size++;
+            }
+            statuses[slot] = (byte) status.ordinal();
+            chargeLevels[slot] = (byte) (chargeLevel == null ? 0 : chargeLevel);
+            rentalPointIds[slot] = rentalPointId == null ? NO_RENTAL_POINT : rentalPointId;
+            upperBound = Math.max(upperBound, slot + 1);
+        }
+
+        private void remove(Long id) {
+            int slot = slotOf(id);
+            if (slot < upperBound && statuses[slot] != ABSENT) {
+                statuses[slot] = ABSENT;
+                size--;
+            }
+        }
+
+        // при оптимистичном чтении массивы могут быть заменены на лету, поэтому ссылки
+        // и граница снимаются один раз, а результат отбрасывается, если validate не прошёл
+        private List<ScooterAvailabilityDto> scan(
+                ScooterStatus status, Long rentalPointId, int minChargeLevel) {
+            byte[] statusColumn = statuses;
+            byte[] chargeColumn = chargeLevels;
+            long[] pointColumn = rentalPointIds;
+            int bound =
+                    Math.min(
+                            upperBound,
+                            Math.min(
+                                    statusColumn.length,
+                                    Math.min(chargeColumn.length, pointColumn.length)));
+            byte wantedStatus = status == null ? ABSENT : (byte) status.ordinal();
+            List<ScooterAvailabilityDto> result = new ArrayList<>();
+            for (int slot = 0; slot < bound; slot++) {
+                byte current = statusColumn[slot];
+                if (current == ABSENT || (status != null && current != wantedStatus)) {
+                    continue;
+                }
+                if (chargeColumn[slot] < minChargeLevel) {
+                    continue;
+                }
+                long point = pointColumn[slot];
+                if (rentalPointId != null && point != rentalPointId) {
+                    continue;
+                }
+                result.add(
+                        new ScooterAvailabilityDto(
+                                (long) slot,
+                                STATUSES[current],
+                                (int) chargeColumn[slot],
+                                point == NO_RENTAL_POINT ? null : point));
+            }
+            return result;
+        }
+
+        private Map<Long, AtomicIntegerArray> countByRentalPoint() {
+            Map<Long, AtomicIntegerArray> counts = new ConcurrentHashMap<>();
+            for (int slot = 0; slot < upperBound; slot++) {
+                if (statuses[slot] != ABSENT && rentalPointIds[slot] != NO_RENTAL_POINT) {
+                    counts.computeIfAbsent(
+                                    rentalPointIds[slot],
+                                    key -> new AtomicIntegerArray(STATUSES.length))
+                            .incrementAndGet(statuses[slot]);
+                }
+            }
+            return counts;
+        }
+
+        private void ensureCapacity(int required) {
+            if (required <= statuses.length) {
+                return;
+            }
+            int capacity = (int) Math.min(MAX_CAPACITY, Math.max(required, 2L * statuses.length));
+            int oldLength = statuses.length;
+            statuses = Arrays.copyOf(statuses, capacity);
+            Arrays.fill(statuses, oldLength, capacity, ABSENT);
+            chargeLevels = Arrays.copyOf(chargeLevels, capacity);
+            rentalPointIds = Arrays.copyOf(rentalPointIds, capacity);
+        }
+
+        private byte statusAt(int slot) {
+            return slot < upperBound ? statuses[slot] : ABSENT;
+        }
+
+        private byte chargeAt(int slot) {
+            return slot < upperBound && statuses[slot] != ABSENT ? chargeLevels[slot] : 0;
+        }
+
+        private long rentalPointAt(int slot) {
+            return slot < upperBound && statuses[slot] != ABSENT
+                    ? rentalPointIds[slot]
+                    : NO_RENTAL_POINT;
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package com.example.scooterrental.fleet;
+
+import com.example.scooterrental.dto.MapClusterDto;
+import com.example.scooterrental.event.RentalPointChangedEvent;
+import com.example.scooterrental.model.ScooterStatus;
+import com.example.scooterrental.repository.RentalPointLocation;
+import com.example.scooterrental.repository.RentalPointRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.StampedLock;
+
+// Кластеры точек проката для карты. Мир делится на тайлы веб-Меркатора, тайл — на сетку
+// CLUSTER_CELLS × CLUSTER_CELLS, и все точки одной ячейки становятся одним маркером.
+// Готовые тайлы кэшируются; изменение точки или самоката сбрасывает только тайлы,
+// в которые эта точка попадает, по одному на каждый масштаб
+@Component
+public class MapClusterIndex implements FleetStateListener, SmartInitializingSingleton {
+
+    private static final Logger logger = LoggerFactory.getLogger(MapClusterIndex.class);
+
+    public static final int MAX_ZOOM = 20;
+    public static final int MAX_TILES_PER_REQUEST = 64;
+    static final int CLUSTER_CELLS = 4;
+    // точки раскладываются по тайлам этого масштаба (около 10 км), чтобы тайл крупнее
+    // собирался из готовых групп, а мельче — из одной группы
+    static final int GRID_ZOOM = 12;
+    private static final double MAX_LATITUDE = 85.05112878;
+
+    private final RentalPointRepository rentalPointRepository;
+    private final FleetStateStore fleetStateStore;
+    private final StampedLock lock = new StampedLock();
+
+    private Map<Long, PointEntry> points = new HashMap<>();
+    private Map<Long, List<PointEntry>> grid = new HashMap<>();
+    // тайлы кладутся под блокировкой чтения, а сбрасываются под блокировкой записи,
+    // поэтому устаревший тайл не может попасть в кэш после сброса. Число самокатов
+    // берётся из состояния парка: оно обновляет счётчики до того, как известит индекс
+    private final Map<Long, List<MapClusterDto>> tiles;
+
+    @Autowired
+    public MapClusterIndex(
+            RentalPointRepository rentalPointRepository,
+            @Lazy FleetStateStore fleetStateStore,
+            @Value("${fleet.map.tile-cache-size:4096}") int tileCacheSize) {
+        this.rentalPointRepository = rentalPointRepository;
+        this.fleetStateStore = fleetStateStore;
+        this.tiles =
+                Collections.synchronizedMap(
+                        new LinkedHashMap<>(16, 0.75f, true) {
+                            @Override
+                            protected boolean removeEldestEntry(
+                                    Map.Entry<Long, List<MapClusterDto>> eldest) {
+                                return size() > tileCacheSize;
+                            }
+                        });
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        reload();
+    }
+
+    public void reload() {
+        List<RentalPointLocation> locations = rentalPointRepository.findAllLocations();
+        Map<Long, PointEntry> loadedPoints = new HashMap<>();
+        Map<Long, List<PointEntry>> loadedGrid = new HashMap<>();
+        for (RentalPointLocation location : locations) {
+            PointEntry entry =
+                    new PointEntry(
+                            location.getId(), location.getLatitude(), location.getLongitude());
+            loadedPoints.put(entry.id, entry);
+            loadedGrid.computeIfAbsent(entry.gridKey, key -> new ArrayList<>()).add(entry);
+        }
+        long stamp = lock.writeLock();
+        try {
+            points = loadedPoints;
+            grid = loadedGrid;
+            tiles.clear();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        logger.info("Индекс кластеров карты загружен: {} точек проката.", loadedPoints.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRentalPointChanged(RentalPointChangedEvent event) {
+        long stamp = lock.writeLock();
+        try {
+            PointEntry previous = points.remove(event.getRentalPointId());
+            if (previous != null) {
+                List<PointEntry> cell = grid.get(previous.gridKey);
+                cell.remove(previous);
+                if (cell.isEmpty()) {
+                    grid.remove(previous.gridKey);
+                }
+                evictTilesOf(previous);
+            }
+            if (event.isRemoved()) {
+                return;
+            }
+            PointEntry entry =
+                    new PointEntry(
+                            event.getRentalPointId(), event.getLatitude(), event.getLongitude());
+            points.put(entry.id, entry);
+            grid.computeIfAbsent(entry.gridKey, key -> new ArrayList<>()).add(entry);
+            evictTilesOf(entry);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // изменение одного заряда на маркеры не влияет
+    @Override
+    public void onScooterChanged(FleetStateChange change) {
+        boolean moved =
+                change.getPreviousStatus() != change.getStatus()
+                        || !Objects.equals(
+                                change.getPreviousRentalPointId(), change.getRentalPointId());
+        if (!moved) {
+            return;
+        }
+        long stamp = lock.writeLock();
+        try {
+            evictTilesOf(change.getPreviousRentalPointId());
+            evictTilesOf(change.getRentalPointId());
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // кластеры всех тайлов масштаба zoom, задетых областью
+    public List<MapClusterDto> clusters(BoundingBox box, int zoom) {
+        int tilesPerSide = 1 << zoom;
+        int minY = row(box.getMaxLatitude(), zoom);
+        int maxY = row(box.getMinLatitude(), zoom);
+        int minX = column(box.getMinLongitude(), zoom);
+        int maxX = column(box.getMaxLongitude(), zoom);
+        // область через 180-й меридиан продолжается с нулевого столбца
+        int columns =
+                box.getMinLongitude() <= box.getMaxLongitude()
+                        ? maxX - minX + 1
+                        : tilesPerSide - minX + maxX + 1;
+        columns = Math.min(columns, tilesPerSide);
+        long tileCount = (long) columns * (maxY - minY + 1);
+        if (tileCount > MAX_TILES_PER_REQUEST) {
+            throw new IllegalArgumentException(
+                    "Область слишком велика для масштаба "
+                            + zoom
+                            + ": "
+                            + tileCount
+                            + " тайлов, допускается не больше "
+                            + MAX_TILES_PER_REQUEST);
+        }
+        List<MapClusterDto> result = new ArrayList<>();
+        long stamp = lock.readLock();
+        try {
+            for (int column = 0; column < columns; column++) {
+                int x = (minX + column) % tilesPerSide;
+                for (int y = minY; y <= maxY; y++) {
+                    result.addAll(tile(zoom, x, y));
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return result;
+    }
+
+    int cachedTiles() {
+        return tiles.size();
+    }
+
+    private List<MapClusterDto> tile(int zoom, int x, int y) {
+        long key = tileKey(zoom, x, y);
+        List<MapClusterDto> cached = tiles.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        Map<Integer, ClusterBuilder> builders = new HashMap<>();
+        for (PointEntry entry : pointsInTile(zoom, x, y)) {
+            int cellX = cell(entry.worldX, zoom, x);
+            int cellY = cell(entry.worldY, zoom, y);
+            builders.computeIfAbsent(cellY * CLUSTER_CELLS + cellX, cell -> new ClusterBuilder())
+                    .add(entry, fleetStateStore.countsAt(entry.id));
+        }
+        List<MapClusterDto> clusters = new ArrayList<>(builders.size());
+        for (ClusterBuilder builder : builders.values()) {
+            clusters.add(builder.build());
+        }
+        clusters = List.copyOf(clusters);
+        tiles.put(key, clusters);
+        return clusters;
+    }
+
+    // мелкий тайл лежит в одной группе сетки; крупный собирается из групп, и если групп
+    // в нём больше, чем непустых, дешевле перебрать непустые
+    private List<PointEntry> pointsInTile(int zoom, int x, int y) {
+        List<PointEntry> found = new ArrayList<>();
+        if (zoom >= GRID_ZOOM) {
+            int shift = zoom - GRID_ZOOM;
+            List<PointEntry> cell = grid.get(gridKey(x >> shift, y >> shift));
+            if (cell != null) {
+                for (PointEntry entry : cell) {
+                    if (tileX(entry.worldX, zoom) == x && tileY(entry.worldY, zoom) == y) {
+                        found.add(entry);
+                    }
+                }
+            }
+            return found;
+        }
+        int shift = GRID_ZOOM - zoom;
+        long span = 1L << shift;
+        if (span * span > grid.size()) {
+            for (List<PointEntry> cell : grid.values()) {
+                PointEntry first = cell.get(0);
+                if (first.gridX >> shift == x && first.gridY >> shift == y) {
+                    found.addAll(cell);
+                }
+            }
+            return found;
+        }
+        for (int gridY = y << shift; gridY < (y + 1) << shift; gridY++) {
+            for (int gridX = x << shift; gridX < (x + 1) << shift; gridX++) {
+                List<PointEntry> cell = grid.get(gridKey(gridX, gridY));
+                if (cell != null) {
+                    found.addAll(cell);
+                }
+            }
+        }
+        return found;
+    }
+
+    private void evictTilesOf(Long rentalPointId) {
+        PointEntry entry = rentalPointId != null ? points.get(rentalPointId) : null;
+        if (entry != null) {
+            evictTilesOf(entry);
+        }
+    }
+
+    private void evictTilesOf(PointEntry entry) {
+        for (int zoom = 0; zoom <= MAX_ZOOM; zoom++) {
+            tiles.remove(tileKey(zoom, tileX(entry.worldX, zoom), tileY(entry.worldY, zoom)));
+        }
+    }
+
+    // доля ширины мира от -180° до 180°, в [0, 1); 180° остаётся в последнем столбце
+    static double worldX(double longitude) {
+        double x = (longitude + 180) / 360;
+        return Math.max(0, Math.min(x, Math.nextDown(1.0)));
+    }
+
+    // доля высоты мира от севера к югу; за пределами проекции широта прижимается к краю
+    static double worldY(double latitude) {
+        double clamped = Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude));
+        double radians = Math.toRadians(clamped);
+        double y = (1 - Math.log(Math.tan(radians) + 1 / Math.cos(radians)) / Math.PI) / 2;
+        return Math.max(0, Math.min(y, Math.nextDown(1.0)));
+    }
+
+    private static int column(double longitude, int zoom) {
+        return tileX(worldX(longitude), zoom);
+    }
+
+    private static int row(double latitude, int zoom) {
+        return tileY(worldY(latitude), zoom);
+    }
+
+    private static int tileX(double worldX, int zoom) {
+        return Math.min((int) (worldX * (1 << zoom)), (1 << zoom) - 1);
+    }
+
+    private static int tileY(double worldY, int zoom) {
+        return Math.min((int) (worldY * (1 << zoom)), (1 << zoom) - 1);
+    }
+
+    private static int cell(double world, int zoom, int tile) {
+        int cell = (int) (world * (1L << zoom) * CLUSTER_CELLS) - tile * CLUSTER_CELLS;
+        return Math.max(0, Math.min(cell, CLUSTER_CELLS - 1));
+    }
+
+    private static long tileKey(int zoom, int x, int y) {
+        return ((long) zoom << 58) | ((long) x << 29) | y;
+    }
+
+    private static long gridKey(int gridX, int gridY) {
+        return ((long) gridX << 32) | gridY;
+    }
+
+    private static final class PointEntry {
+        private final Long id;
+        private final double latitude;
+        private final double longitude;
+        private final double worldX;
+        private final double worldY;
+        private final int gridX;
+        private final int gridY;
+        private final long gridKey;
+
+        private PointEntry(Long id, double latitude, double longitude) {
+            this.id = id;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.worldX = worldX(longitude);
+            this.worldY = worldY(latitude);
+            this.gridX = tileX(worldX, GRID_ZOOM);
+            this.gridY = tileY(worldY, GRID_ZOOM);
+            this.gridKey = gridKey(gridX, gridY);
+        }
+    }
+
+    private static final class ClusterBuilder {
+        private PointEntry single;
+        private int rentalPoints;
+        private int scooters;
+        private int available;
+        private double latitudeSum;
+        private double longitudeSum;
+
+        private void add(PointEntry entry, Map<ScooterStatus, Integer> counts) {
+            single = rentalPoints == 0 ? entry : null;
+            rentalPoints++;
+            latitudeSum += entry.latitude;
+            longitudeSum += entry.longitude;
+            for (Map.Entry<ScooterStatus, Integer> count : counts.entrySet()) {
+                scooters += count.getValue();
+                if (count.getKey() == ScooterStatus.AVAILABLE) {
+                    available += count.getValue();
+                }
+            }
+        }
+
+        private MapClusterDto build() {
+            return new MapClusterDto(
+                    latitudeSum / rentalPoints,
+                    longitudeSum / rentalPoints,
+                    rentalPoints,
+                    scooters,
+                    available,
+                    single != null ? single.id : null);
+        }
+    }
+}
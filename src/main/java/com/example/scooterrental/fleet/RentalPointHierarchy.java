@@ -0,0 +1,211 @@
+package com.example.scooterrental.fleet;
+
+import com.example.scooterrental.event.RentalPointChangedEvent;
+import com.example.scooterrental.repository.RentalPointTreeRow;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+// Неизменяемый снимок иерархии точек проката. Изменение не трогает снимок, а порождает
+// новый со следующей версией, поэтому читатели работают с ним без блокировок
+public final class RentalPointHierarchy {
+
+    private final long version;
+    private final List<Point> points;
+    private final Map<Long, Point> byId;
+    private final Map<Long, List<Point>> children;
+
+    private RentalPointHierarchy(long version, TreeMap<Long, Point> sorted) {
+        this.version = version;
+        this.points = List.copyOf(sorted.values());
+        this.byId = Map.copyOf(sorted);
+        Map<Long, List<Point>> grouped = new HashMap<>();
+        for (Point point : points) {
+            if (point.parentPointId != null) {
+                grouped.computeIfAbsent(point.parentPointId, id -> new ArrayList<>()).add(point);
+            }
+        }
+        Map<Long, List<Point>> frozen = new HashMap<>();
+        grouped.forEach((id, list) -> frozen.put(id, List.copyOf(list)));
+        this.children = Map.copyOf(frozen);
+    }
+
+    public static RentalPointHierarchy of(
+            long version, Collection<? extends RentalPointTreeRow> rows) {
+        TreeMap<Long, Point> sorted = new TreeMap<>();
+        for (RentalPointTreeRow row : rows) {
+            sorted.put(row.getId(), Point.of(row));
+        }
+        return new RentalPointHierarchy(version, sorted);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return points.size();
+    }
+
+    public boolean contains(Long id) {
+        return byId.containsKey(id);
+    }
+
+    // все точки по возрастанию id; список неизменяемый и отдаётся без копирования
+    public List<RentalPointTreeRow> all() {
+        return List.copyOf(points);
+    }
+
+    // точка и её потомки не глубже depth (null — всё поддерево) по возрастанию id;
+    // пустой список, если точки нет. Каждая точка попадает один раз, так что цикл
+    // в иерархии обход не зациклит
+    public List<RentalPointTreeRow> subtree(Long id, Integer depth) {
+        Point root = byId.get(id);
+        if (root == null) {
+            return List.of();
+        }
+        Map<Long, Integer> levels = new HashMap<>();
+        levels.put(id, 0);
+        Deque<Point> queue = new ArrayDeque<>();
+        queue.add(root);
+        List<Point> found = new ArrayList<>();
+        while (!queue.isEmpty()) {
+            Point point = queue.poll();
+            found.add(point);
+            int level = levels.get(point.id);
+            if (depth != null && level >= depth) {
+                continue;
+            }
+            for (Point child : children.getOrDefault(point.id, List.of())) {
+                if (levels.putIfAbsent(child.id, level + 1) == null) {
+                    queue.add(child);
+                }
+            }
+        }
+        found.sort(Comparator.comparing(Point::getId));
+        return List.copyOf(found);
+    }
+
+    // копия с добавленной или заменённой точкой
+    public RentalPointHierarchy withPoint(RentalPointChangedEvent event) {
+        TreeMap<Long, Point> sorted = new TreeMap<>(byId);
+        sorted.put(
+                event.getRentalPointId(),
+                new Point(
+                        event.getRentalPointId(),
+                        event.getName(),
+                        event.getAddress(),
+                        event.getLatitude(),
+                        event.getLongitude(),
+                        event.getParentPointId()));
+        return new RentalPointHierarchy(version + 1, sorted);
+    }
+
+    // копия без точки; снимок возвращается как есть, если точки в нём не было
+    public RentalPointHierarchy without(Long id) {
+        if (!byId.containsKey(id)) {
+            return this;
+        }
+        TreeMap<Long, Point> sorted = new TreeMap<>(byId);
+        sorted.remove(id);
+        return new RentalPointHierarchy(version + 1, sorted);
+    }
+
+    boolean samePoints(RentalPointHierarchy other) {
+        return byId.equals(other.byId);
+    }
+
+    private static final class Point implements RentalPointTreeRow {
+        private final Long id;
+        private final String name;
+        private final String address;
+        private final Double latitude;
+        private final Double longitude;
+        private final Long parentPointId;
+
+        private Point(
+                Long id,
+                String name,
+                String address,
+                Double latitude,
+                Double longitude,
+                Long parentPointId) {
+            this.id = id;
+            this.name = name;
+            this.address = address;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.parentPointId = parentPointId;
+        }
+
+        private static Point of(RentalPointTreeRow row) {
+            return new Point(
+                    row.getId(),
+                    row.getName(),
+                    row.getAddress(),
+                    row.getLatitude(),
+                    row.getLongitude(),
+                    row.getParentPointId());
+        }
+
+        @Override
+        public Long getId() {
+            return id;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getAddress() {
+            return address;
+        }
+
+        @Override
+        public Double getLatitude() {
+            return latitude;
+        }
+
+        @Override
+        public Double getLongitude() {
+            return longitude;
+        }
+
+        @Override
+        public Long getParentPointId() {
+            return parentPointId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Point)) {
+                return false;
+            }
+            Point other = (Point) o;
+            return id.equals(other.id)
+                    && Objects.equals(name, other.name)
+                    && Objects.equals(address, other.address)
+                    && Objects.equals(latitude, other.latitude)
+                    && Objects.equals(longitude, other.longitude)
+                    && Objects.equals(parentPointId, other.parentPointId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(id, name, address, latitude, longitude, parentPointId);
+        }
+    }
+}
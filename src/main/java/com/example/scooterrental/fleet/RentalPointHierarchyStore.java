@@ -0,0 +1,81 @@
+package com.example.scooterrental.fleet;
+
+import com.example.scooterrental.event.RentalPointChangedEvent;
+import com.example.scooterrental.repository.RentalPointRepository;
+import com.example.scooterrental.repository.RentalPointTreeRow;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+
+// Текущий снимок иерархии точек проката. Читатели берут его из volatile-поля без блокировок,
+// писатели по одному заменяют его копией с применённым изменением
+@Component
+public class RentalPointHierarchyStore implements SmartInitializingSingleton {
+
+    private static final Logger logger = LoggerFactory.getLogger(RentalPointHierarchyStore.class);
+
+    private final RentalPointRepository rentalPointRepository;
+
+    // версия начинается со времени загрузки, чтобы после перезапуска не совпасть с выданной ранее
+    private volatile RentalPointHierarchy current =
+            RentalPointHierarchy.of(System.currentTimeMillis(), List.of());
+
+    @Autowired
+    public RentalPointHierarchyStore(RentalPointRepository rentalPointRepository) {
+        this.rentalPointRepository = rentalPointRepository;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        reload();
+    }
+
+    public RentalPointHierarchy current() {
+        return current;
+    }
+
+    // страховка от событий, применённых не в порядке фиксации, и от изменений в обход сервиса
+    @Scheduled(
+            fixedDelayString = "${fleet.hierarchy.resync-interval-ms:600000}",
+            initialDelayString = "${fleet.hierarchy.resync-interval-ms:600000}")
+    public void resync() {
+        try {
+            reload();
+        } catch (Exception e) {
+            logger.error("Ошибка при сверке иерархии точек проката: {}", e.getMessage(), e);
+        }
+    }
+
+    // версия меняется, только если загруженные точки отличаются от текущего снимка
+    public synchronized void reload() {
+        List<RentalPointTreeRow> rows = rentalPointRepository.findAllTreeRows();
+        RentalPointHierarchy previous = current;
+        RentalPointHierarchy loaded =
+                RentalPointHierarchy.of(
+                        Math.max(previous.getVersion() + 1, System.currentTimeMillis()), rows);
+        if (loaded.samePoints(previous)) {
+            return;
+        }
+        current = loaded;
+        logger.info(
+                "Иерархия точек проката загружена: {} точек, версия {}.",
+                loaded.size(),
+                loaded.getVersion());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onRentalPointChanged(RentalPointChangedEvent event) {
+        if (event.isRemoved()) {
+            current = current.without(event.getRentalPointId());
+            return;
+        }
+        current = current.withPoint(event);
+    }
+}
@@ -0,0 +1,284 @@
+package com.example.scooterrental.fleet;
+
+import com.example.scooterrental.dto.NearbyRentalPointDto;
+import com.example.scooterrental.event.RentalPointChangedEvent;
+import com.example.scooterrental.model.ScooterStatus;
+import com.example.scooterrental.repository.RentalPointLocation;
+import com.example.scooterrental.repository.RentalPointRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.StampedLock;
+
+// Равномерная сетка по широте/долготе с точками проката и живыми счётчиками свободных
+// самокатов. Поиск ближайших обходит кольца ячеек вокруг запроса и останавливается,
+// как только следующие кольца заведомо дальше уже найденных точек
+@Component
+public class RentalPointIndex implements FleetStateListener, SmartInitializingSingleton {
+
+    private static final Logger logger = LoggerFactory.getLogger(RentalPointIndex.class);
+
+    static final double CELL_DEGREES = 0.01;
+    private static final int LAT_CELLS = (int) Math.round(180 / CELL_DEGREES);
+    private static final int LON_CELLS = (int) Math.round(360 / CELL_DEGREES);
+    private static final double EARTH_RADIUS_METERS = 6_371_008.8;
+    private static final double CELL_HEIGHT_METERS =
+            Math.toRadians(CELL_DEGREES) * EARTH_RADIUS_METERS;
+
+    private final RentalPointRepository rentalPointRepository;
+    private final StampedLock lock = new StampedLock();
+
+    private Map<Long, PointEntry> points = new HashMap<>();
+    private Map<Long, List<PointEntry>> cells = new HashMap<>();
+    // счётчики ведутся отдельно от точек: состояние парка может загрузиться раньше
+    private final Map<Long, Integer> availableCounts = new HashMap<>();
+
+    @Autowired
+    public RentalPointIndex(RentalPointRepository rentalPointRepository) {
+        this.rentalPointRepository = rentalPointRepository;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        reload();
+    }
+
+    public void reload() {
+        List<RentalPointLocation> locations = rentalPointRepository.findAllLocations();
+        Map<Long, PointEntry> loadedPoints = new HashMap<>();
+        Map<Long, List<PointEntry>> loadedCells = new HashMap<>();
+        for (RentalPointLocation location : locations) {
+            PointEntry entry =
+                    new PointEntry(
+                            location.getId(),
+                            location.getName(),
+                            location.getAddress(),
+                            location.getLatitude(),
+                            location.getLongitude());
+            loadedPoints.put(entry.id, entry);
+            loadedCells.computeIfAbsent(entry.cellKey, key -> new ArrayList<>()).add(entry);
+        }
+        long stamp = lock.writeLock();
+        try {
+            points = loadedPoints;
+            cells = loadedCells;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        logger.info("Пространственный индекс загружен: {} точек проката.", loadedPoints.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRentalPointChanged(RentalPointChangedEvent event) {
+        long stamp = lock.writeLock();
+        try {
+            PointEntry previous = points.remove(event.getRentalPointId());
+            if (previous != null) {
+                List<PointEntry> cell = cells.get(previous.cellKey);
+                cell.remove(previous);
+                if (cell.isEmpty()) {
+                    cells.remove(previous.cellKey);
+                }
+            }
+            if (event.isRemoved()) {
+                availableCounts.remove(event.getRentalPointId());
+                return;
+            }
+            PointEntry entry =
+                    new PointEntry(
+                            event.getRentalPointId(),
+                            event.getName(),
+                            event.getAddress(),
+                            event.getLatitude(),
+                            event.getLongitude());
+            points.put(entry.id, entry);
+            cells.computeIfAbsent(entry.cellKey, key -> new ArrayList<>()).add(entry);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void onScooterChanged(FleetStateChange change) {
+        boolean wasAvailable =
+                change.getPreviousStatus() == ScooterStatus.AVAILABLE
+                        && change.getPreviousRentalPointId() != null;
+        boolean isAvailable =
+                change.getStatus() == ScooterStatus.AVAILABLE && change.getRentalPointId() != null;
+        if (!wasAvailable && !isAvailable) {
+            return;
+        }
+        long stamp = lock.writeLock();
+        try {
+            if (wasAvailable) {
+                availableCounts.computeIfPresent(
+                        change.getPreviousRentalPointId(),
+                        (id, count) -> count > 1 ? count - 1 : null);
+            }
+            if (isAvailable) {
+                availableCounts.merge(change.getRentalPointId(), 1, Integer::sum);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int availableAt(Long rentalPointId) {
+        long stamp = lock.readLock();
+        try {
+            return availableCounts.getOrDefault(rentalPointId, 0);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public boolean isWithin(Long rentalPointId, BoundingBox box) {
+        long stamp = lock.readLock();
+        try {
+            PointEntry entry = points.get(rentalPointId);
+            return entry != null && box.contains(entry.latitude, entry.longitude);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // ближайшие точки с хотя бы одним свободным самокатом, по возрастанию расстояния
+    public List<NearbyRentalPointDto> findNearest(
+            double latitude, double longitude, double radiusMeters, int limit) {
+        int centerLat = latCell(latitude);
+        int centerLon = lonCell(longitude);
+        // ширина ячейки берётся на самой близкой к полюсу широте в пределах радиуса,
+        // чтобы оценка расстояния до непросмотренных колец не оказалась завышенной
+        double radiusDegrees = Math.toDegrees(radiusMeters / EARTH_RADIUS_METERS);
+        double polewardLatitude = Math.min(90, Math.abs(latitude) + radiusDegrees);
+        double cellWidthMeters =
+                CELL_HEIGHT_METERS * Math.max(Math.cos(Math.toRadians(polewardLatitude)), 0.01);
+        double ringStepMeters = Math.min(CELL_HEIGHT_METERS, cellWidthMeters);
+        int maxRing = (int) Math.min(Math.ceil(radiusMeters / ringStepMeters) + 1, LON_CELLS / 2);
+
+        // куча с наибольшим расстоянием на вершине хранит limit лучших кандидатов
+        PriorityQueue<NearbyRentalPointDto> best =
+                new PriorityQueue<>(
+                        Comparator.comparingDouble(NearbyRentalPointDto::getDistanceMeters)
+                                .reversed());
+        long stamp = lock.readLock();
+        try {
+            for (int ring = 0; ring <= maxRing; ring++) {
+                for (int dLat = -ring; dLat <= ring; dLat++) {
+                    int cellLat = centerLat + dLat;
+                    if (cellLat < 0 || cellLat >= LAT_CELLS) {
+                        continue;
+                    }
+                    // внутренние строки кольца содержат только две крайние ячейки
+                    int step = Math.abs(dLat) == ring ? 1 : Math.max(2 * ring, 1);
+                    for (int dLon = -ring; dLon <= ring; dLon += step) {
+                        int cellLon = Math.floorMod(centerLon + dLon, LON_CELLS);
+                        List<PointEntry> cell = cells.get(cellKey(cellLat, cellLon));
+                        if (cell != null) {
+                            collect(cell, latitude, longitude, radiusMeters, limit, best);
+                        }
+                    }
+                }
+                // всё, что лежит за кольцом ring, дальше ring * ringStepMeters
+                double unexploredMeters = ring * ringStepMeters;
+                if (unexploredMeters > radiusMeters
+                        || (best.size() == limit
+                                && best.peek().getDistanceMeters() <= unexploredMeters)) {
+                    break;
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        List<NearbyRentalPointDto> result = new ArrayList<>(best);
+        result.sort(Comparator.comparingDouble(NearbyRentalPointDto::getDistanceMeters));
+        return result;
+    }
+
+    private void collect(
+            List<PointEntry> cell,
+            double latitude,
+            double longitude,
+            double radiusMeters,
+            int limit,
+            PriorityQueue<NearbyRentalPointDto> best) {
+        for (PointEntry entry : cell) {
+            Integer available = availableCounts.get(entry.id);
+            if (available == null) {
+                continue;
+            }
+            double distance = distanceMeters(latitude, longitude, entry.latitude, entry.longitude);
+            if (distance > radiusMeters) {
+                continue;
+            }
+            if (best.size() < limit) {
+                best.add(entry.toDto(distance, available));
+            } else if (distance < best.peek().getDistanceMeters()) {
+                best.poll();
+                best.add(entry.toDto(distance, available));
+            }
+        }
+    }
+
+    static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a =
+                Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                        + Math.cos(Math.toRadians(lat1))
+                                * Math.cos(Math.toRadians(lat2))
+                                * Math.sin(dLon / 2)
+                                * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    // широта вне [-90, 90] (строки, сохранённые до проверки в DTO) прижимается к полюсу,
+    // иначе точка попала бы в ячейку, которую поиск никогда не просматривает
+    private static int latCell(double latitude) {
+        int cell = (int) Math.floor((latitude + 90) / CELL_DEGREES);
+        return Math.max(0, Math.min(cell, LAT_CELLS - 1));
+    }
+
+    private static int lonCell(double longitude) {
+        return Math.floorMod((int) Math.floor((longitude + 180) / CELL_DEGREES), LON_CELLS);
+    }
+
+    private static long cellKey(int latCell, int lonCell) {
+        return (long) latCell * LON_CELLS + lonCell;
+    }
+
+    private static final class PointEntry {
+        private final Long id;
+        private final String name;
+        private final String address;
+        private final double latitude;
+        private final double longitude;
+        private final long cellKey;
+
+        private PointEntry(
+                Long id, String name, String address, double latitude, double longitude) {
+            this.id = id;
+            this.name = name;
+            this.address = address;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.cellKey = cellKey(latCell(latitude), lonCell(longitude));
+        }
+
+        private NearbyRentalPointDto toDto(double distance, int available) {
+            return new NearbyRentalPointDto(
+                    id, name, address, latitude, longitude, distance, available);
+        }
+    }
+}
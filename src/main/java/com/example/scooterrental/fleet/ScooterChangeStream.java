@@ -0,0 +1,288 @@
+package com.example.scooterrental.fleet;
+
+import com.example.scooterrental.dto.ScooterStatusEventDto;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import jakarta.annotation.PreDestroy;
+
+// Лента смен статуса и точки проката для SSE-подписчиков. Изменения нумеруются по порядку
+// и хранятся в кольцевом буфере: переподключившийся клиент дочитывает пропущенное по
+// Last-Event-ID, а если оно уже вытеснено, получает reset и перечитывает состояние целиком.
+// Номер события предваряется эпохой — временем запуска ленты, поэтому номер из прошлого
+// запуска сервера или с другого экземпляра тоже ведёт к reset, а не к пропуску событий.
+// Все отправки идут из одного потока, поэтому запись в эмиттер никогда не бывает параллельной
+@Component
+public class ScooterChangeStream implements FleetStateListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScooterChangeStream.class);
+
+    static final String CHANGE_EVENT = "scooter";
+    static final String RESET_EVENT = "reset";
+    static final String HEARTBEAT_EVENT = "heartbeat";
+    // курсор подписчика, чья позиция в ленте неизвестна: первая же рассылка отправит reset
+    private static final long UNKNOWN_POSITION = -1;
+
+    private final RentalPointIndex rentalPointIndex;
+    private final long epoch;
+    private final Executor dispatcher;
+    private final long timeoutMs;
+    private final FleetStateChange[] ring;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean dispatchScheduled = new AtomicBoolean();
+
+    // номер последнего изменения; ring и head защищены монитором this
+    private long head;
+
+    @Autowired
+    public ScooterChangeStream(
+            RentalPointIndex rentalPointIndex,
+            @Value("${fleet.stream.buffer-size:10000}") int bufferSize,
+            @Value("${fleet.stream.timeout-ms:1800000}") long timeoutMs) {
+        this(
+                rentalPointIndex,
+                bufferSize,
+                timeoutMs,
+                System.currentTimeMillis(),
+                Executors.newSingleThreadExecutor(
+                        runnable -> {
+                            Thread thread = new Thread(runnable, "scooter-change-stream");
+                            thread.setDaemon(true);
+                            return thread;
+                        }));
+    }
+
+    ScooterChangeStream(
+            RentalPointIndex rentalPointIndex,
+            int bufferSize,
+            long timeoutMs,
+            long epoch,
+            Executor dispatcher) {
+        this.rentalPointIndex = rentalPointIndex;
+        this.epoch = epoch;
+        this.ring = new FleetStateChange[bufferSize];
+        this.timeoutMs = timeoutMs;
+        this.dispatcher = dispatcher;
+    }
+
+    @Override
+    public void onScooterChanged(FleetStateChange change) {
+        // изменения одного только заряда (телеметрия) в ленту не попадают
+        if (change.getPreviousStatus() == change.getStatus()
+                && Objects.equals(change.getPreviousRentalPointId(), change.getRentalPointId())) {
+            return;
+        }
+        synchronized (this) {
+            head++;
+            ring[(int) (head % ring.length)] = change;
+        }
+        scheduleDispatch();
+    }
+
+    // lastEventId == null — только новые изменения, без повтора истории
+    public SseEmitter subscribe(Long rentalPointId, BoundingBox box, String lastEventId) {
+        return subscribe(new SseEmitter(timeoutMs), rentalPointId, box, lastEventId);
+    }
+
+    SseEmitter subscribe(
+            SseEmitter emitter, Long rentalPointId, BoundingBox box, String lastEventId) {
+        long position = lastEventId != null ? positionOf(lastEventId) : UNKNOWN_POSITION;
+        Subscriber subscriber = new Subscriber(emitter, rentalPointId, box);
+        synchronized (this) {
+            subscriber.cursor = lastEventId != null ? position : head;
+        }
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(error -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        logger.debug("Новый подписчик ленты самокатов, всего {}", subscribers.size());
+        scheduleDispatch();
+        return emitter;
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    // держит соединения открытыми и сдвигает Last-Event-ID клиентов, которым давно нечего
+    // было отправить, чтобы после переподключения им не пришлось начинать с reset
+    @Scheduled(fixedDelayString = "${fleet.stream.heartbeat-ms:15000}")
+    public void heartbeat() {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        execute(
+                () -> {
+                    for (Subscriber subscriber : subscribers) {
+                        if (deliver(subscriber)) {
+                            send(
+                                    subscriber,
+                                    SseEmitter.event()
+                                            .name(HEARTBEAT_EVENT)
+                                            .id(eventId(subscriber.cursor))
+                                            .data(""));
+                        }
+                    }
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+        subscribers.clear();
+        if (dispatcher instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        }
+    }
+
+    private void scheduleDispatch() {
+        if (dispatchScheduled.compareAndSet(false, true)) {
+            execute(
+                    () -> {
+                        dispatchScheduled.set(false);
+                        for (Subscriber subscriber : subscribers) {
+                            deliver(subscriber);
+                        }
+                    });
+        }
+    }
+
+    private void execute(Runnable task) {
+        try {
+            dispatcher.execute(task);
+        } catch (RejectedExecutionException e) {
+            logger.debug("Лента самокатов остановлена, задача отброшена");
+        }
+    }
+
+    // false — подписчик отвалился и удалён
+    private boolean deliver(Subscriber subscriber) {
+        boolean reset = false;
+        long from;
+        List<FleetStateChange> pending = new ArrayList<>();
+        synchronized (this) {
+            long oldest = Math.max(1, head - ring.length + 1);
+            // курсор из будущего — номер, который эта лента ещё не выдавала
+            if (subscriber.cursor > head || subscriber.cursor + 1 < oldest) {
+                reset = true;
+                subscriber.cursor = head;
+            }
+            from = subscriber.cursor + 1;
+            for (long sequence = from; sequence <= head; sequence++) {
+                pending.add(ring[(int) (sequence % ring.length)]);
+            }
+            subscriber.cursor = head;
+        }
+        if (reset
+                && !send(
+                        subscriber,
+                        SseEmitter.event()
+                                .name(RESET_EVENT)
+                                .id(eventId(from - 1))
+                                .data(eventId(from - 1)))) {
+            return false;
+        }
+        for (int i = 0; i < pending.size(); i++) {
+            FleetStateChange change = pending.get(i);
+            if (!subscriber.matches(change)) {
+                continue;
+            }
+            ScooterStatusEventDto event =
+                    new ScooterStatusEventDto(
+                            change.getScooterId(),
+                            change.getStatus(),
+                            change.getRentalPointId(),
+                            change.getStatus() == null ? null : change.getChargeLevel());
+            if (!send(
+                    subscriber,
+                    SseEmitter.event()
+                            .name(CHANGE_EVENT)
+                            .id(eventId(from + i))
+                            .data(event, MediaType.APPLICATION_JSON))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String eventId(long sequence) {
+        return epoch + "-" + sequence;
+    }
+
+    // номер события этой ленты; номер другой эпохи или старого формата без эпохи даёт
+    // неизвестную позицию
+    private long positionOf(String lastEventId) {
+        int separator = lastEventId.indexOf('-');
+        try {
+            if (separator < 0) {
+                Long.parseLong(lastEventId);
+                return UNKNOWN_POSITION;
+            }
+            long eventEpoch = Long.parseLong(lastEventId.substring(0, separator));
+            long sequence = Long.parseLong(lastEventId.substring(separator + 1));
+            if (eventEpoch < 0 || sequence < 0) {
+                throw new IllegalArgumentException("Некорректный номер события: " + lastEventId);
+            }
+            return eventEpoch == epoch ? sequence : UNKNOWN_POSITION;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Некорректный номер события: " + lastEventId, e);
+        }
+    }
+
+    private boolean send(Subscriber subscriber, SseEmitter.SseEventBuilder event) {
+        try {
+            subscriber.emitter.send(event);
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            logger.debug("Подписчик ленты самокатов отключился: {}", e.getMessage());
+            subscribers.remove(subscriber);
+            return false;
+        }
+    }
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final Long rentalPointId;
+        private final BoundingBox box;
+        // номер последнего изменения, которое подписчик уже получил или пропустил по фильтру
+        private long cursor;
+
+        private Subscriber(SseEmitter emitter, Long rentalPointId, BoundingBox box) {
+            this.emitter = emitter;
+            this.rentalPointId = rentalPointId;
+            this.box = box;
+        }
+
+        // прежняя точка тоже учитывается, чтобы клиент узнал об уходе самоката из области
+        private boolean matches(FleetStateChange change) {
+            return matches(change.getRentalPointId()) || matches(change.getPreviousRentalPointId());
+        }
+
+        private boolean matches(Long pointId) {
+            if (rentalPointId != null && !rentalPointId.equals(pointId)) {
+                return false;
+            }
+            return box == null || (pointId != null && rentalPointIndex.isWithin(pointId, box));
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.scooterrental.model;
+
+public enum OutboxEventStatus {
+    PENDING,
+    PROCESSED,
+    // попытки исчерпаны, событие ждёт ручного разбора
+    DEAD
+}
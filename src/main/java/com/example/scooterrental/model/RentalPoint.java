@@ -18,7 +18,11 @@ import java.util.List;
 public class RentalPoint {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "rental_points_id_seq")
+    @SequenceGenerator(
+            name = "rental_points_id_seq",
+            sequenceName = "rental_points_id_seq",
+            allocationSize = 50)
     private Long id;
 
     @Column(name = "name", nullable = false, length = 100)
@@ -46,4 +50,8 @@ public class RentalPoint {
 
     @OneToMany(mappedBy = "parentPoint", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<RentalPoint> childPoints;
+
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
 }
@@ -16,7 +16,11 @@ import lombok.Setter;
 public class Scooter {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "scooters_id_seq")
+    @SequenceGenerator(
+            name = "scooters_id_seq",
+            sequenceName = "scooters_id_seq",
+            allocationSize = 50)
     private Long id;
 
     @Column(name = "model", nullable = false, length = 100)
@@ -42,4 +46,8 @@ public class Scooter {
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "tariff_id")
     private Tariff tariff;
+
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
 }
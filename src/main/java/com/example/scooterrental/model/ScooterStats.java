@@ -0,0 +1,41 @@
+package com.example.scooterrental.model;
+
+import jakarta.persistence.*;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "scooter_stats")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScooterStats {
+
+    @Id
+    @Column(name = "scooter_id")
+    private Long scooterId;
+
+    @Column(name = "rides", nullable = false)
+    private Long rides;
+
+    @Column(name = "revenue_minor", nullable = false)
+    private Long revenueMinor;
+
+    @Column(name = "distance", nullable = false)
+    private Double distance;
+
+    @Column(name = "ride_minutes", nullable = false)
+    private Long rideMinutes;
+
+    @Column(name = "last_ride_at")
+    private LocalDateTime lastRideAt;
+
+    @Column(name = "updated_at", nullable = false, insertable = false, updatable = false)
+    private LocalDateTime updatedAt;
+}
@@ -1,8 +1,37 @@
 package com.example.scooterrental.model;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 public enum ScooterStatus {
     AVAILABLE,
     IN_USE,
     UNAVAILABLE,
-    MAINTENANCE
+    MAINTENANCE;
+
+    // IN_USE выставляется только резервированием при начале аренды, поэтому ни один ручной
+    // переход в него не ведёт; из IN_USE в обслуживание — только через AVAILABLE/UNAVAILABLE
+    public boolean canTransitionTo(ScooterStatus target) {
+        return switch (this) {
+            case AVAILABLE -> target == UNAVAILABLE || target == MAINTENANCE;
+            case IN_USE -> target == AVAILABLE || target == UNAVAILABLE;
+            case UNAVAILABLE -> target == AVAILABLE || target == MAINTENANCE;
+            case MAINTENANCE -> target == AVAILABLE || target == UNAVAILABLE;
+        };
+    }
+
+    // по той же причине новый самокат не может появиться сразу в аренде
+    public boolean isInitial() {
+        return this != IN_USE;
+    }
+
+    public static Set<ScooterStatus> sourcesOf(ScooterStatus target) {
+        Set<ScooterStatus> sources = EnumSet.noneOf(ScooterStatus.class);
+        for (ScooterStatus status : values()) {
+            if (status.canTransitionTo(target)) {
+                sources.add(status);
+            }
+        }
+        return sources;
+    }
 }
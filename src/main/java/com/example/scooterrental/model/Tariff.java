@@ -16,7 +16,11 @@ import lombok.Setter;
 public class Tariff {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "tariffs_id_seq")
+    @SequenceGenerator(
+            name = "tariffs_id_seq",
+            sequenceName = "tariffs_id_seq",
+            allocationSize = 50)
     private Long id;
 
     @Column(name = "name", nullable = false, length = 50)
@@ -36,4 +40,14 @@ public class Tariff {
 
     @Column(name = "is_subscription", nullable = false)
     private Boolean isSubscription;
+
+    @Column(name = "minimum_charge")
+    private Double minimumCharge;
+
+    @Column(name = "maximum_charge")
+    private Double maximumCharge;
+
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
 }
@@ -0,0 +1,177 @@
+package com.example.scooterrental.outbox;
+
+import com.example.scooterrental.model.OutboxEvent;
+import com.example.scooterrental.model.OutboxEventStatus;
+import com.example.scooterrental.repository.OutboxEventRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+public class OutboxDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxDispatcher.class);
+
+    private static final long MAX_RETRY_DELAY_SECONDS = 900;
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<String, List<OutboxHandler>> handlersByType = new HashMap<>();
+    private final int batchSize;
+    private final int leaseSeconds;
+    private final int maxAttempts;
+    private final int retentionDays;
+    private final AtomicLong backlog = new AtomicLong();
+    private final Counter processedCounter;
+    private final Counter failedCounter;
+    private final Counter deadCounter;
+
+    @Autowired
+    public OutboxDispatcher(
+            OutboxEventRepository outboxEventRepository,
+            PlatformTransactionManager transactionManager,
+            List<OutboxHandler> handlers,
+            MeterRegistry meterRegistry,
+            @Value("${outbox.batch-size:100}") int batchSize,
+            @Value("${outbox.lease-seconds:60}") int leaseSeconds,
+            @Value("${outbox.max-attempts:10}") int maxAttempts,
+            @Value("${outbox.retention-days:7}") int retentionDays) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        for (OutboxHandler handler : handlers) {
+            handlersByType
+                    .computeIfAbsent(handler.getEventType(), type -> new ArrayList<>())
+                    .add(handler);
+        }
+        this.batchSize = batchSize;
+        this.leaseSeconds = leaseSeconds;
+        this.maxAttempts = maxAttempts;
+        this.retentionDays = retentionDays;
+        Gauge.builder("outbox.backlog", backlog, AtomicLong::get)
+                .description("Необработанные события outbox")
+                .register(meterRegistry);
+        this.processedCounter = meterRegistry.counter("outbox.events.processed");
+        this.failedCounter = meterRegistry.counter("outbox.events.failed");
+        this.deadCounter = meterRegistry.counter("outbox.events.dead");
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.poll-interval-ms:1000}")
+    public void poll() {
+        try {
+            // полная пачка означает, что в очереди, скорее всего, есть ещё события
+            while (drainBatch() == batchSize) {
+                logger.debug("Outbox: пачка заполнена, продолжаем разбор");
+            }
+            backlog.set(outboxEventRepository.countByStatus(OutboxEventStatus.PENDING));
+        } catch (Exception e) {
+            logger.error("Ошибка при разборе outbox: {}", e.getMessage(), e);
+        }
+    }
+
+    public int drainBatch() {
+        List<OutboxEvent> batch =
+                transactionTemplate.execute(
+                        status -> outboxEventRepository.claimBatch(batchSize, leaseSeconds));
+        if (batch == null || batch.isEmpty()) {
+            return 0;
+        }
+        // RETURNING не гарантирует порядок строк
+        List<OutboxEvent> ordered = new ArrayList<>(batch);
+        ordered.sort(Comparator.comparing(OutboxEvent::getId));
+        for (OutboxEvent event : ordered) {
+            dispatch(event);
+        }
+        return batch.size();
+    }
+
+    private void dispatch(OutboxEvent event) {
+        List<OutboxHandler> handlers = handlersByType.getOrDefault(event.getEventType(), List.of());
+        try {
+            // обработчики и отметка об обработке фиксируются одной транзакцией
+            transactionTemplate.executeWithoutResult(
+                    status -> {
+                        for (OutboxHandler handler : handlers) {
+                            handler.handle(event);
+                        }
+                        outboxEventRepository.markProcessed(event.getId());
+                    });
+            processedCounter.increment();
+        } catch (Exception e) {
+            failedCounter.increment();
+            String error = String.valueOf(e.getMessage());
+            String truncated =
+                    error.length() > MAX_ERROR_LENGTH
+                            ? error.substring(0, MAX_ERROR_LENGTH)
+                            : error;
+            // attempts уже увеличен при захвате и учитывает текущую попытку
+            if (event.getAttempts() != null && event.getAttempts() >= maxAttempts) {
+                deadCounter.increment();
+                logger.error(
+                        "Событие outbox {} ({}) не обработано за {} попыток и помечено DEAD: {}",
+                        event.getId(),
+                        event.getEventType(),
+                        event.getAttempts(),
+                        e.getMessage());
+                transactionTemplate.executeWithoutResult(
+                        status -> outboxEventRepository.markDead(event.getId(), truncated));
+                return;
+            }
+            long delay = retryDelaySeconds(event.getAttempts());
+            logger.warn(
+                    "Событие outbox {} ({}) не обработано, попытка {}, повтор через {} с: {}",
+                    event.getId(),
+                    event.getEventType(),
+                    event.getAttempts(),
+                    delay,
+                    e.getMessage());
+            transactionTemplate.executeWithoutResult(
+                    status -> outboxEventRepository.markFailed(event.getId(), delay, truncated));
+        }
+    }
+
+    @Scheduled(cron = "${outbox.retention-cron:0 30 3 * * *}")
+    public void purgeProcessed() {
+        LocalDateTime before = LocalDateTime.now().minusDays(retentionDays);
+        logger.info("Попытка удалить обработанные события outbox старше {}.", before);
+        try {
+            long removed = 0;
+            int deleted;
+            do {
+                deleted =
+                        transactionTemplate.execute(
+                                status ->
+                                        outboxEventRepository.deleteProcessedBefore(
+                                                before, batchSize));
+                removed += deleted;
+            } while (deleted == batchSize);
+            logger.info("Удалено {} обработанных событий outbox.", removed);
+        } catch (Exception e) {
+            logger.error("Ошибка при удалении обработанных событий outbox: {}", e.getMessage(), e);
+        }
+    }
+
+    // экспоненциальная задержка: 2, 4, 8 ... секунд, но не более 15 минут
+    static long retryDelaySeconds(Integer attempts) {
+        int exponent = Math.max(1, Math.min(attempts == null ? 1 : attempts, 10));
+        return Math.min(1L << exponent, MAX_RETRY_DELAY_SECONDS);
+    }
+}
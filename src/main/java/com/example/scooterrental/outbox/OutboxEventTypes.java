@@ -0,0 +1,8 @@
+package com.example.scooterrental.outbox;
+
+public final class OutboxEventTypes {
+
+    public static final String RENTAL_ENDED = "RENTAL_ENDED";
+
+    private OutboxEventTypes() {}
+}
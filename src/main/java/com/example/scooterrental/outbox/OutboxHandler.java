@@ -0,0 +1,13 @@
+package com.example.scooterrental.outbox;
+
+import com.example.scooterrental.model.OutboxEvent;
+
+/**
+ * Обработчик событий outbox. Доставка «как минимум один раз»: обработчик должен быть
+ * идемпотентным, так как после сбоя событие может прийти повторно.
+ */
+public interface OutboxHandler {
+    String getEventType();
+
+    void handle(OutboxEvent event);
+}
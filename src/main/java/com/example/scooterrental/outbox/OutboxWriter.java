@@ -0,0 +1,42 @@
+package com.example.scooterrental.outbox;
+
+import com.example.scooterrental.model.OutboxEvent;
+import com.example.scooterrental.model.OutboxEventStatus;
+import com.example.scooterrental.repository.OutboxEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+@Component
+public class OutboxWriter {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public OutboxWriter(OutboxEventRepository outboxEventRepository, ObjectMapper objectMapper) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    // событие фиксируется только вместе с транзакцией, которая его породила
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(String eventType, Long aggregateId, Object payload) {
+        OutboxEvent event = new OutboxEvent();
+        event.setEventType(eventType);
+        event.setAggregateId(aggregateId);
+        event.setAttempts(0);
+        event.setStatus(OutboxEventStatus.PENDING);
+        try {
+            event.setPayload(objectMapper.writeValueAsString(payload));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(
+                    "Не удалось сериализовать событие " + eventType + ": " + e.getMessage(), e);
+        }
+        outboxEventRepository.save(event);
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.scooterrental.outbox;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class RentalEndedPayload {
+    private Long rentalId;
+    private Long userId;
+    private Long scooterId;
+    private Long tariffId;
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    private Double startMileage;
+    private Double endMileage;
+    private Double totalCost;
+}
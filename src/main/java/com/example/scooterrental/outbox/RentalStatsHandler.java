@@ -0,0 +1,75 @@
+package com.example.scooterrental.outbox;
+
+import com.example.scooterrental.model.OutboxEvent;
+import com.example.scooterrental.pricing.TariffPricing;
+import com.example.scooterrental.repository.ScooterStatsRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+// Пополняет статистику самоката по завершённой аренде вне запроса на её завершение.
+// Повторная доставка события отсекается в самом запросе по отметке поездки
+@Component
+public class RentalStatsHandler implements OutboxHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(RentalStatsHandler.class);
+
+    private final ScooterStatsRepository scooterStatsRepository;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public RentalStatsHandler(
+            ScooterStatsRepository scooterStatsRepository, ObjectMapper objectMapper) {
+        this.scooterStatsRepository = scooterStatsRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public String getEventType() {
+        return OutboxEventTypes.RENTAL_ENDED;
+    }
+
+    @Override
+    public void handle(OutboxEvent event) {
+        RentalEndedPayload payload = read(event);
+        int applied =
+                scooterStatsRepository.applyRide(
+                        payload.getRentalId(),
+                        payload.getScooterId(),
+                        payload.getTotalCost() != null
+                                ? TariffPricing.toMinorUnits(payload.getTotalCost())
+                                : 0L,
+                        rideDistance(payload),
+                        Duration.between(payload.getStartTime(), payload.getEndTime())
+                                .toMinutes(),
+                        payload.getEndTime());
+        if (applied == 0) {
+            logger.info(
+                    "Поездка по аренде {} уже учтена в статистике самоката {}.",
+                    payload.getRentalId(),
+                    payload.getScooterId());
+        }
+    }
+
+    private RentalEndedPayload read(OutboxEvent event) {
+        try {
+            return objectMapper.readValue(event.getPayload(), RentalEndedPayload.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(
+                    "Не удалось прочитать событие " + event.getId() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static double rideDistance(RentalEndedPayload payload) {
+        if (payload.getStartMileage() == null || payload.getEndMileage() == null) {
+            return 0.0;
+        }
+        return Math.max(payload.getEndMileage() - payload.getStartMileage(), 0.0);
+    }
+}
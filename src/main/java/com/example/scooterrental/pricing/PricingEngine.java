@@ -0,0 +1,54 @@
+package com.example.scooterrental.pricing;
+
+import com.example.scooterrental.event.TariffChangedEvent;
+import com.example.scooterrental.model.Tariff;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// Скомпилированные тарифы хранятся вместе с версией, из которой собраны. Вызов с другой
+// версией компилирует тариф заново, а в кэш попадает только более новая версия: сущность,
+// прочитанная до изменения тарифа, не может вернуть туда старую цену
+@Component
+public class PricingEngine {
+
+    private final ConcurrentMap<Long, CompiledTariff> compiledTariffs = new ConcurrentHashMap<>();
+
+    public TariffPricing pricingFor(Tariff tariff) {
+        if (tariff == null) {
+            throw new IllegalStateException("Тариф для расчёта стоимости не указан");
+        }
+        if (tariff.getId() == null || tariff.getVersion() == null) {
+            return TariffPricing.compile(tariff);
+        }
+        long version = tariff.getVersion();
+        CompiledTariff cached = compiledTariffs.get(tariff.getId());
+        if (cached != null && cached.version == version) {
+            return cached.pricing;
+        }
+        CompiledTariff compiled = new CompiledTariff(version, TariffPricing.compile(tariff));
+        compiledTariffs.merge(
+                tariff.getId(),
+                compiled,
+                (current, candidate) -> candidate.version > current.version ? candidate : current);
+        return compiled.pricing;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTariffChanged(TariffChangedEvent event) {
+        compiledTariffs.remove(event.getTariffId());
+    }
+
+    private static final class CompiledTariff {
+        private final long version;
+        private final TariffPricing pricing;
+
+        private CompiledTariff(long version, TariffPricing pricing) {
+            this.version = version;
+            this.pricing = pricing;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.scooterrental.pricing;
+
+import com.example.scooterrental.dto.TariffDto;
+import com.example.scooterrental.event.TariffChangedEvent;
+import com.example.scooterrental.model.Tariff;
+import com.example.scooterrental.repository.TariffRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// Тарифы в памяти: промах читает из БД и кладёт результат в кэш, изменение тарифа
+// после фиксации сбрасывает только его запись и общий список. Наружу отдаются копии,
+// чтобы вызывающий код не мог испортить закэшированное значение
+@Component
+public class TariffCache {
+
+    private final TariffRepository tariffRepository;
+    private final Map<Long, TariffDto> tariffs;
+    private volatile List<TariffDto> allTariffs;
+    // растёт при каждом сбросе: значение, прочитанное из БД до сброса, в кэш уже не попадёт
+    private long generation;
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter invalidationCounter;
+
+    @Autowired
+    public TariffCache(
+            TariffRepository tariffRepository,
+            MeterRegistry meterRegistry,
+            @Value("${tariffs.cache-size:1000}") int cacheSize) {
+        this.tariffRepository = tariffRepository;
+        this.tariffs =
+                Collections.synchronizedMap(
+                        new LinkedHashMap<>(16, 0.75f, true) {
+                            @Override
+                            protected boolean removeEldestEntry(
+                                    Map.Entry<Long, TariffDto> eldest) {
+                                return size() > cacheSize;
+                            }
+                        });
+        Gauge.builder("tariffs.cache.size", tariffs, Map::size)
+                .description("Тарифы в кэше")
+                .register(meterRegistry);
+        this.hitCounter = meterRegistry.counter("tariffs.cache.hits");
+        this.missCounter = meterRegistry.counter("tariffs.cache.misses");
+        this.invalidationCounter = meterRegistry.counter("tariffs.cache.invalidations");
+    }
+
+    public Optional<TariffDto> find(Long id) {
+        TariffDto cached = tariffs.get(id);
+        if (cached != null) {
+            hitCounter.increment();
+            return Optional.of(copy(cached));
+        }
+        missCounter.increment();
+        long observed = generation();
+        Optional<TariffDto> loaded = tariffRepository.findById(id).map(TariffCache::toDto);
+        loaded.ifPresent(
+                tariff -> {
+                    synchronized (this) {
+                        if (generation == observed) {
+                            tariffs.put(id, tariff);
+                        }
+                    }
+                });
+        return loaded.map(TariffCache::copy);
+    }
+
+    public List<TariffDto> findAll() {
+        List<TariffDto> cached = allTariffs;
+        if (cached != null) {
+            hitCounter.increment();
+            return cached.stream().map(TariffCache::copy).toList();
+        }
+        missCounter.increment();
+        long observed = generation();
+        List<TariffDto> loaded =
+                tariffRepository.findAll().stream().map(TariffCache::toDto).toList();
+        synchronized (this) {
+            if (generation == observed) {
+                allTariffs = loaded;
+                for (TariffDto tariff : loaded) {
+                    tariffs.put(tariff.getId(), tariff);
+                }
+            }
+        }
+        return loaded.stream().map(TariffCache::copy).toList();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onTariffChanged(TariffChangedEvent event) {
+        generation++;
+        tariffs.remove(event.getTariffId());
+        allTariffs = null;
+        invalidationCounter.increment();
+    }
+
+    private synchronized long generation() {
+        return generation;
+    }
+
+    private static TariffDto toDto(Tariff tariff) {
+        return new TariffDto(
+                tariff.getId(),
+                tariff.getName(),
+                tariff.getDescription(),
+                tariff.getPricePerHour(),
+                tariff.getSubscriptionPrice(),
+                tariff.getDiscount(),
+                tariff.getIsSubscription(),
+                tariff.getMinimumCharge(),
+                tariff.getMaximumCharge());
+    }
+
+    private static TariffDto copy(TariffDto tariff) {
+        return new TariffDto(
+                tariff.getId(),
+                tariff.getName(),
+                tariff.getDescription(),
+                tariff.getPricePerHour(),
+                tariff.getSubscriptionPrice(),
+                tariff.getDiscount(),
+                tariff.getIsSubscription(),
+                tariff.getMinimumCharge(),
+                tariff.getMaximumCharge());
+    }
+}
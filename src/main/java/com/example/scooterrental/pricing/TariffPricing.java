@@ -0,0 +1,122 @@
+package com.example.scooterrental.pricing;
+
+import com.example.scooterrental.model.Tariff;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Скомпилированная функция стоимости тарифа. Все суммы хранятся в копейках (минорных единицах
+ * валюты), расчёт выполняется только целочисленной арифметикой и не создаёт объектов.
+ */
+public final class TariffPricing {
+
+    private static final long BASIS_POINTS = 10_000L;
+    private static final long MINUTES_PER_HOUR = 60L;
+
+    private final long tariffId;
+    private final boolean subscription;
+    private final long subscriptionChargeMinor;
+    private final long hourlyNetMinorBasisPoints;
+    private final long minimumChargeMinor;
+    private final long maximumChargeMinor;
+
+    private TariffPricing(
+            long tariffId,
+            boolean subscription,
+            long subscriptionChargeMinor,
+            long hourlyNetMinorBasisPoints,
+            long minimumChargeMinor,
+            long maximumChargeMinor) {
+        this.tariffId = tariffId;
+        this.subscription = subscription;
+        this.subscriptionChargeMinor = subscriptionChargeMinor;
+        this.hourlyNetMinorBasisPoints = hourlyNetMinorBasisPoints;
+        this.minimumChargeMinor = minimumChargeMinor;
+        this.maximumChargeMinor = maximumChargeMinor;
+    }
+
+    public static TariffPricing compile(Tariff tariff) {
+        long discount = 0;
+        if (tariff.getDiscount() != null && tariff.getDiscount() > 0) {
+            discount = Math.min(Math.round(tariff.getDiscount() * BASIS_POINTS), BASIS_POINTS);
+        }
+        long netBasisPoints = BASIS_POINTS - discount;
+
+        boolean subscription = Boolean.TRUE.equals(tariff.getIsSubscription());
+        long subscriptionCharge = 0;
+        long hourlyNet = 0;
+        if (subscription) {
+            if (tariff.getSubscriptionPrice() == null) {
+                throw new IllegalStateException(
+                        "Для тарифа с ID " + tariff.getId() + " не задана цена абонемента");
+            }
+            subscriptionCharge =
+                    divideHalfUp(
+                            toMinorUnits(tariff.getSubscriptionPrice()) * netBasisPoints,
+                            BASIS_POINTS);
+        } else {
+            if (tariff.getPricePerHour() == null) {
+                throw new IllegalStateException(
+                        "Для тарифа с ID " + tariff.getId() + " не задана цена за час");
+            }
+            hourlyNet = toMinorUnits(tariff.getPricePerHour()) * netBasisPoints;
+        }
+
+        long minimumCharge =
+                tariff.getMinimumCharge() != null ? toMinorUnits(tariff.getMinimumCharge()) : 0;
+        long maximumCharge =
+                tariff.getMaximumCharge() != null
+                        ? toMinorUnits(tariff.getMaximumCharge())
+                        : Long.MAX_VALUE;
+
+        return new TariffPricing(
+                tariff.getId() != null ? tariff.getId() : 0L,
+                subscription,
+                subscriptionCharge,
+                hourlyNet,
+                minimumCharge,
+                maximumCharge);
+    }
+
+    public long priceMinor(LocalDateTime startTime, LocalDateTime endTime) {
+        return priceMinor(ChronoUnit.MINUTES.between(startTime, endTime));
+    }
+
+    // поминутная тарификация: неполная минута не оплачивается
+    public long priceMinor(long billableMinutes) {
+        long charge;
+        if (subscription) {
+            charge = subscriptionChargeMinor;
+        } else {
+            long minutes = Math.max(billableMinutes, 0);
+            charge =
+                    divideHalfUp(
+                            Math.multiplyExact(minutes, hourlyNetMinorBasisPoints),
+                            MINUTES_PER_HOUR * BASIS_POINTS);
+        }
+        if (charge < minimumChargeMinor) {
+            charge = minimumChargeMinor;
+        }
+        if (charge > maximumChargeMinor) {
+            charge = maximumChargeMinor;
+        }
+        return charge;
+    }
+
+    public long getTariffId() {
+        return tariffId;
+    }
+
+    public static long toMinorUnits(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    public static double toMajorUnits(long amountMinor) {
+        return amountMinor / 100.0;
+    }
+
+    private static long divideHalfUp(long dividend, long divisor) {
+        return (dividend + divisor / 2) / divisor;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.scooterrental.repository;
+
+import com.example.scooterrental.model.IdempotencyKey;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, String> {
+
+    // 1 — ключ захвачен этим запросом, 0 — ключ занят. Перезахватить можно просроченный ключ
+    // или зависший без ответа дольше staleBefore (например, после падения экземпляра)
+    @Modifying
+    @Query(
+            value =
+                    "INSERT INTO idempotency_keys (id, request_hash, created_at, expires_at) "
+                            + "VALUES (:id, :requestHash, :now, :expiresAt) "
+                            + "ON CONFLICT (id) DO UPDATE "
+                            + "SET request_hash = EXCLUDED.request_hash, "
+                            + "response_status = NULL, response_body = NULL, "
+                            + "created_at = EXCLUDED.created_at, "
+                            + "expires_at = EXCLUDED.expires_at "
+                            + "WHERE idempotency_keys.expires_at < :now "
+                            + "OR (idempotency_keys.response_status IS NULL "
+                            + "AND idempotency_keys.created_at < :staleBefore)",
+            nativeQuery = true)
+    int tryClaim(
+            @Param("id") String id,
+            @Param("requestHash") String requestHash,
+            @Param("now") LocalDateTime now,
+            @Param("expiresAt") LocalDateTime expiresAt,
+            @Param("staleBefore") LocalDateTime staleBefore);
+
+    @Modifying
+    @Query(
+            "UPDATE IdempotencyKey k SET k.responseStatus = :status, k.responseBody = :body "
+                    + "WHERE k.id = :id")
+    int complete(
+            @Param("id") String id, @Param("status") int status, @Param("body") String body);
+
+    @Modifying
+    @Query("DELETE FROM IdempotencyKey k WHERE k.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -0,0 +1,71 @@
+package com.example.scooterrental.repository;
+
+import com.example.scooterrental.model.OutboxEvent;
+import com.example.scooterrental.model.OutboxEventStatus;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    // захват пачки: параллельные воркеры пропускают чужие строки, а продлённая аренда
+    // не даёт выдать событие повторно, пока его обрабатывают
+    @Query(
+            value =
+                    "UPDATE outbox_events SET attempts = attempts + 1, "
+                            + "next_attempt_at = now() + make_interval(secs => :leaseSeconds) "
+                            + "WHERE id IN (SELECT id FROM outbox_events "
+                            + "WHERE status = 'PENDING' AND next_attempt_at <= now() "
+                            + "ORDER BY id LIMIT :batchSize FOR UPDATE SKIP LOCKED) "
+                            + "RETURNING *",
+            nativeQuery = true)
+    List<OutboxEvent> claimBatch(
+            @Param("batchSize") int batchSize, @Param("leaseSeconds") int leaseSeconds);
+
+    @Modifying
+    @Query(
+            value =
+                    "UPDATE outbox_events SET status = 'PROCESSED', processed_at = now() "
+                            + "WHERE id = :id",
+            nativeQuery = true)
+    int markProcessed(@Param("id") Long id);
+
+    @Modifying
+    @Query(
+            value =
+                    "UPDATE outbox_events "
+                            + "SET next_attempt_at = now() + make_interval(secs => :delaySeconds), "
+                            + "last_error = :error WHERE id = :id",
+            nativeQuery = true)
+    int markFailed(
+            @Param("id") Long id,
+            @Param("delaySeconds") long delaySeconds,
+            @Param("error") String error);
+
+    // попытки исчерпаны: событие больше не выдаётся воркеру, но остаётся для разбора
+    @Modifying
+    @Query(
+            value = "UPDATE outbox_events SET status = 'DEAD', last_error = :error WHERE id = :id",
+            nativeQuery = true)
+    int markDead(@Param("id") Long id, @Param("error") String error);
+
+    // удаление пачками, чтобы не держать долгую блокировку на большом хвосте
+    @Modifying
+    @Query(
+            value =
+                    "DELETE FROM outbox_events WHERE id IN (SELECT id FROM outbox_events "
+                            + "WHERE status = 'PROCESSED' AND processed_at < :before "
+                            + "LIMIT :batchSize)",
+            nativeQuery = true)
+    int deleteProcessedBefore(
+            @Param("before") LocalDateTime before, @Param("batchSize") int batchSize);
+
+    long countByStatus(OutboxEventStatus status);
+}
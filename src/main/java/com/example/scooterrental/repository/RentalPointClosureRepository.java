@@ -0,0 +1,70 @@
+package com.example.scooterrental.repository;
+
+import com.example.scooterrental.model.RentalPointClosure;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface RentalPointClosureRepository
+        extends JpaRepository<RentalPointClosure, RentalPointClosure.Key> {
+
+    boolean existsByAncestorIdAndDescendantId(Long ancestorId, Long descendantId);
+
+    // предки точки от корня к родителю, по индексу (descendant_id, depth)
+    @Query(
+            "SELECT rp.id AS id, rp.name AS name, rp.address AS address, "
+                    + "rp.latitude AS latitude, rp.longitude AS longitude, "
+                    + "rp.parentPoint.id AS parentPointId "
+                    + "FROM RentalPointClosure c, RentalPoint rp "
+                    + "WHERE rp.id = c.ancestorId AND c.descendantId = :id AND c.depth > 0 "
+                    + "ORDER BY c.depth DESC")
+    List<RentalPointTreeRow> findAncestorRows(@Param("id") Long id);
+
+    // новая точка сначала становится собственным предком, затем привязывается к родителю
+    @Modifying(flushAutomatically = true)
+    @Query(
+            value =
+                    "INSERT INTO rental_point_closure (ancestor_id, descendant_id, depth) "
+                            + "VALUES (:id, :id, 0)",
+            nativeQuery = true)
+    int insertSelf(@Param("id") Long id);
+
+    // пары между поддеревом точки и её прежними предками; пары внутри поддерева остаются
+    @Modifying(flushAutomatically = true)
+    @Query(
+            value =
+                    "DELETE FROM rental_point_closure "
+                            + "WHERE descendant_id IN (SELECT descendant_id "
+                            + "FROM rental_point_closure WHERE ancestor_id = :id) "
+                            + "AND ancestor_id NOT IN (SELECT descendant_id "
+                            + "FROM rental_point_closure WHERE ancestor_id = :id)",
+            nativeQuery = true)
+    int detachSubtree(@Param("id") Long id);
+
+    // каждый предок нового родителя становится предком каждой точки поддерева
+    @Modifying(flushAutomatically = true)
+    @Query(
+            value =
+                    "INSERT INTO rental_point_closure (ancestor_id, descendant_id, depth) "
+                            + "SELECT a.ancestor_id, d.descendant_id, a.depth + d.depth + 1 "
+                            + "FROM rental_point_closure a "
+                            + "JOIN rental_point_closure d ON d.ancestor_id = :id "
+                            + "WHERE a.descendant_id = :parentId",
+            nativeQuery = true)
+    int attachSubtree(@Param("id") Long id, @Param("parentId") Long parentId);
+
+    // изменения иерархии выполняются по одному до конца транзакции: две одновременные
+    // проверки на цикл иначе пропустили бы кольцо из встречных переносов
+    @Query(
+            value =
+                    "SELECT 1 FROM (SELECT pg_advisory_xact_lock("
+                            + "hashtext('rental_point_closure'))) AS l",
+            nativeQuery = true)
+    Integer lockHierarchy();
+}
@@ -0,0 +1,13 @@
+package com.example.scooterrental.repository;
+
+public interface RentalPointLocation {
+    Long getId();
+
+    String getName();
+
+    String getAddress();
+
+    Double getLatitude();
+
+    Double getLongitude();
+}
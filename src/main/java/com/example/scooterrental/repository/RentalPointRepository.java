@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,4 +20,43 @@ public interface RentalPointRepository extends JpaRepository<RentalPoint, Long>
     List<RentalPoint> findByParentPointId(@Param("parentId") Long parentId);
 
     Optional<RentalPoint> findByIdAndParentPointIsNull(Long id);
+
+    @Query("SELECT rp.version FROM RentalPoint rp WHERE rp.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    @Query(
+            "SELECT rp.id AS id, rp.name AS name, rp.address AS address, "
+                    + "rp.latitude AS latitude, rp.longitude AS longitude FROM RentalPoint rp")
+    List<RentalPointLocation> findAllLocations();
+
+    @Query("SELECT rp.id FROM RentalPoint rp WHERE rp.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    @Query(
+            "SELECT rp.id AS id, rp.name AS name, rp.address AS address, "
+                    + "rp.latitude AS latitude, rp.longitude AS longitude, "
+                    + "rp.parentPoint.id AS parentPointId FROM RentalPoint rp ORDER BY rp.id")
+    List<RentalPointTreeRow> findAllTreeRows();
+
+    // самокатная часть ETag точки: хэш самокатов поддерева по порядку id. Кроме версии в него
+    // входят заряд, пробег, тариф и статистика: их меняют телеметрия и обработчик outbox, не
+    // трогая версию, а в ответ с include=scooters они попадают. Суммы версий здесь не годятся:
+    // самокат, ушедший из поддерева, и пришедший на его место с той же версией их не меняют.
+    // Поддерево берётся из таблицы замыкания
+    @Query(
+            value =
+                    "SELECT md5(COALESCE(string_agg(concat_ws(':', s.id, s.version, "
+                            + "s.charge_level, COALESCE(s.mileage::text, ''), "
+                            + "COALESCE(t.name, ''), COALESCE(st.rides::text, ''), "
+                            + "COALESCE(st.revenue_minor::text, ''), "
+                            + "COALESCE(st.distance::text, ''), "
+                            + "COALESCE(st.ride_minutes::text, ''), "
+                            + "COALESCE(st.last_ride_at::text, '')), ',' "
+                            + "ORDER BY s.id), '')) FROM scooters s "
+                            + "JOIN rental_point_closure c ON c.descendant_id = s.rental_point_id "
+                            + "LEFT JOIN tariffs t ON t.id = s.tariff_id "
+                            + "LEFT JOIN scooter_stats st ON st.scooter_id = s.id "
+                            + "WHERE c.ancestor_id = :id",
+            nativeQuery = true)
+    String findSubtreeScooterDigest(@Param("id") Long id);
 }
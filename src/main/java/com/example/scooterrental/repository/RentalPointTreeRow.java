@@ -0,0 +1,15 @@
+package com.example.scooterrental.repository;
+
+public interface RentalPointTreeRow {
+    Long getId();
+
+    String getName();
+
+    String getAddress();
+
+    Double getLatitude();
+
+    Double getLongitude();
+
+    Long getParentPointId();
+}
@@ -1,15 +1,81 @@
 package com.example.scooterrental.repository;
 
+import com.example.scooterrental.dto.RentalInfoDto;
 import com.example.scooterrental.model.Rental;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
+
+import jakarta.persistence.QueryHint;
 
 @Repository
 public interface RentalRepository extends JpaRepository<Rental, Long> {
-    List<Rental> findByUserId(Long userId);
+    String RENTAL_INFO_SELECT =
+            "SELECT new com.example.scooterrental.dto.RentalInfoDto("
+                    + "r.id, u.id, u.username, s.id, s.model, r.startTime, r.endTime, "
+                    + "r.startMileage, r.endMileage, r.totalCost, t.id, t.name) "
+                    + "FROM Rental r JOIN r.user u JOIN r.scooter s LEFT JOIN r.tariff t ";
+
+    @Query(RENTAL_INFO_SELECT + "WHERE u.id = :userId ORDER BY r.startTime, r.id")
+    List<RentalInfoDto> findRentalInfoByUserId(@Param("userId") Long userId);
+
+    @Query(RENTAL_INFO_SELECT + "WHERE s.id = :scooterId ORDER BY r.startTime, r.id")
+    List<RentalInfoDto> findRentalInfoByScooterId(@Param("scooterId") Long scooterId);
+
+    // границы окна передаются отдельными параметрами, чтобы планировщик отсёк лишние секции
+    @Query(
+            RENTAL_INFO_SELECT
+                    + "WHERE u.id = :userId AND r.startTime >= :from AND r.startTime < :to "
+                    + "ORDER BY r.startTime, r.id")
+    List<RentalInfoDto> findRentalInfoByUserIdInWindow(
+            @Param("userId") Long userId,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to);
+
+    @Query(
+            RENTAL_INFO_SELECT
+                    + "WHERE s.id = :scooterId AND r.startTime >= :from AND r.startTime < :to "
+                    + "ORDER BY r.startTime, r.id")
+    List<RentalInfoDto> findRentalInfoByScooterIdInWindow(
+            @Param("scooterId") Long scooterId,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to);
+
+    @Query(
+            RENTAL_INFO_SELECT
+                    + "WHERE r.endTime IS NULL "
+                    + "AND (:userId IS NULL OR u.id = :userId) "
+                    + "AND (:scooterId IS NULL OR s.id = :scooterId) "
+                    + "AND (:rentalPointId IS NULL OR s.rentalPoint.id = :rentalPointId) "
+                    + "ORDER BY r.startTime")
+    List<RentalInfoDto> findActiveRentalInfo(
+            @Param("userId") Long userId,
+            @Param("scooterId") Long scooterId,
+            @Param("rentalPointId") Long rentalPointId);
+
+    @Query(RENTAL_INFO_SELECT + "ORDER BY r.startTime, r.id")
+    List<RentalInfoDto> findRentalInfoPage(Pageable pageable);
+
+    @Query(
+            RENTAL_INFO_SELECT
+                    + "WHERE (r.startTime, r.id) > (:startTime, :id) "
+                    + "ORDER BY r.startTime, r.id")
+    List<RentalInfoDto> findRentalInfoPageAfter(
+            @Param("startTime") LocalDateTime startTime,
+            @Param("id") Long id,
+            Pageable pageable);
 
-    List<Rental> findByScooterId(Long scooterId);
+    // серверный курсор: строки читаются порциями, а не целиком в память
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(RENTAL_INFO_SELECT + "ORDER BY r.startTime, r.id")
+    Stream<RentalInfoDto> streamAllRentalInfo();
 }
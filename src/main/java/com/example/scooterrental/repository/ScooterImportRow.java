@@ -0,0 +1,7 @@
+package com.example.scooterrental.repository;
+
+public interface ScooterImportRow {
+    Long getId();
+
+    String getSerialNumber();
+}
@@ -2,14 +2,144 @@ package com.example.scooterrental.repository;
 
 import com.example.scooterrental.model.Scooter;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface ScooterRepository extends JpaRepository<Scooter, Long> {
+public interface ScooterRepository
+        extends JpaRepository<Scooter, Long>, JpaSpecificationExecutor<Scooter> {
     List<Scooter> findByRentalPointId(Long rentalPointId);
 
+    @EntityGraph(attributePaths = {"rentalPoint", "tariff"})
+    @Query("SELECT s FROM Scooter s WHERE s.rentalPoint.id IN :rentalPointIds ORDER BY s.id")
+    List<Scooter> findWithRelationsByRentalPointIdIn(
+            @Param("rentalPointIds") Collection<Long> rentalPointIds);
+
     boolean existsBySerialNumber(String serialNumber);
+
+    // атомарный compare-and-set: строка возвращается только если самокат был свободен
+    @Query(
+            value =
+                    "UPDATE scooters SET status = 'IN_USE', version = version + 1 "
+                            + "WHERE id = :id AND status = 'AVAILABLE' "
+                            + "RETURNING id AS \"id\", mileage AS \"mileage\", "
+                            + "charge_level AS \"chargeLevel\", "
+                            + "rental_point_id AS \"rentalPointId\"",
+            nativeQuery = true)
+    Optional<ScooterReservation> reserveIfAvailable(@Param("id") Long id);
+
+    // обратный переход при завершении аренды: строка возвращается, только если самокат был занят
+    @Query(
+            value =
+                    "UPDATE scooters SET status = 'AVAILABLE', version = version + 1 "
+                            + "WHERE id = :id AND status = 'IN_USE' "
+                            + "RETURNING id AS \"id\", mileage AS \"mileage\", "
+                            + "charge_level AS \"chargeLevel\", "
+                            + "rental_point_id AS \"rentalPointId\"",
+            nativeQuery = true)
+    Optional<ScooterReservation> releaseIfInUse(@Param("id") Long id);
+
+    // переход применяется одним запросом ко всем самокатам, чей текущий статус допускает его;
+    // самокаты с незавершённой арендой пропускаются
+    @Query(
+            value =
+                    "UPDATE scooters s SET status = :status, version = s.version + 1 "
+                            + "WHERE s.id = ANY(CAST(:ids AS bigint[])) "
+                            + "AND s.status = ANY(CAST(:sources AS varchar[])) "
+                            + "AND NOT EXISTS (SELECT 1 FROM open_rentals o "
+                            + "WHERE o.scooter_id = s.id) "
+                            + "RETURNING s.id AS \"id\", s.status AS \"status\", "
+                            + "s.charge_level AS \"chargeLevel\", "
+                            + "s.rental_point_id AS \"rentalPointId\"",
+            nativeQuery = true)
+    List<ScooterStateRow> updateStatusWhereAllowed(
+            @Param("ids") Long[] ids,
+            @Param("status") String status,
+            @Param("sources") String[] sources);
+
+    @Query(
+            value =
+                    "SELECT scooter_id FROM open_rentals "
+                            + "WHERE scooter_id = ANY(CAST(:ids AS bigint[]))",
+            nativeQuery = true)
+    List<Long> findIdsWithOpenRental(@Param("ids") Long[] ids);
+
+    @Query(
+            "SELECT COUNT(r) > 0 FROM Rental r "
+                    + "WHERE r.scooter.id = :scooterId AND r.endTime IS NULL")
+    boolean hasOpenRental(@Param("scooterId") Long scooterId);
+
+    // заряд и пробег пишет телеметрия, статистику — обработчик outbox, и ни то, ни другое
+    // не меняет version, поэтому ETag ответа строится и из этих полей
+    @Query(
+            "SELECT s.version AS version, s.chargeLevel AS chargeLevel, s.mileage AS mileage, "
+                    + "rp.name AS rentalPointName, t.name AS tariffName, "
+                    + "st.rides AS rides, st.revenueMinor AS revenueMinor, "
+                    + "st.distance AS distance, st.rideMinutes AS rideMinutes, "
+                    + "st.lastRideAt AS lastRideAt FROM Scooter s "
+                    + "LEFT JOIN s.rentalPoint rp LEFT JOIN s.tariff t "
+                    + "LEFT JOIN ScooterStats st ON st.scooterId = s.id WHERE s.id = :id")
+    Optional<ScooterTagRow> findTagRowById(@Param("id") Long id);
+
+    @Query(
+            "SELECT s.id AS id, s.status AS status, s.chargeLevel AS chargeLevel, "
+                    + "s.rentalPoint.id AS rentalPointId FROM Scooter s")
+    List<ScooterStateRow> findAllStateRows();
+
+    @Query(
+            "SELECT s.id AS id, s.status AS status, s.chargeLevel AS chargeLevel, "
+                    + "s.rentalPoint.id AS rentalPointId FROM Scooter s WHERE s.id IN :ids")
+    List<ScooterStateRow> findStateRowsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // потомки точки берутся из таблицы замыкания, без обхода иерархии
+    @Query(
+            "SELECT s.status AS status, COUNT(s) AS scooters FROM Scooter s "
+                    + "WHERE s.rentalPoint.id IN (SELECT c.descendantId FROM RentalPointClosure c "
+                    + "WHERE c.ancestorId = :rentalPointId) GROUP BY s.status")
+    List<ScooterStatusCount> countByStatusUnderRentalPoint(
+            @Param("rentalPointId") Long rentalPointId);
+
+    @Query("SELECT s.serialNumber FROM Scooter s WHERE s.serialNumber IN :serialNumbers")
+    List<String> findExistingSerialNumbers(
+            @Param("serialNumbers") Collection<String> serialNumbers);
+
+    // блоки идентификаторов по схеме pooled-оптимизатора: каждое значение — верхняя граница
+    // блока из 50 номеров, как у генератора сущности Scooter
+    @Query(
+            value = "SELECT nextval('scooters_id_seq') FROM generate_series(1, :blocks)",
+            nativeQuery = true)
+    List<Long> allocateIdBlocks(@Param("blocks") int blocks);
+
+    // вся пачка вставляется одним запросом с заранее выделенными id; строки с занятым
+    // серийным номером пропускаются и не попадают в RETURNING
+    @Query(
+            value =
+                    "INSERT INTO scooters (id, model, serial_number, status, charge_level, "
+                            + "mileage, rental_point_id, tariff_id) "
+                            + "SELECT * FROM unnest(CAST(:ids AS bigint[]), "
+                            + "CAST(:models AS varchar[]), "
+                            + "CAST(:serialNumbers AS varchar[]), CAST(:statuses AS varchar[]), "
+                            + "CAST(:chargeLevels AS integer[]), "
+                            + "CAST(:mileages AS double precision[]), "
+                            + "CAST(:rentalPointIds AS bigint[]), CAST(:tariffIds AS bigint[])) "
+                            + "ON CONFLICT (serial_number) DO NOTHING "
+                            + "RETURNING id AS \"id\", serial_number AS \"serialNumber\"",
+            nativeQuery = true)
+    List<ScooterImportRow> insertIgnoringDuplicates(
+            @Param("ids") Long[] ids,
+            @Param("models") String[] models,
+            @Param("serialNumbers") String[] serialNumbers,
+            @Param("statuses") String[] statuses,
+            @Param("chargeLevels") Integer[] chargeLevels,
+            @Param("mileages") Double[] mileages,
+            @Param("rentalPointIds") Long[] rentalPointIds,
+            @Param("tariffIds") Long[] tariffIds);
 }
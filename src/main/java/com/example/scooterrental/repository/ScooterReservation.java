@@ -0,0 +1,11 @@
+package com.example.scooterrental.repository;
+
+public interface ScooterReservation {
+    Long getId();
+
+    Double getMileage();
+
+    Integer getChargeLevel();
+
+    Long getRentalPointId();
+}
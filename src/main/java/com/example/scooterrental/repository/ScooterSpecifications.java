@@ -0,0 +1,94 @@
+package com.example.scooterrental.repository;
+
+import com.example.scooterrental.model.RentalPointClosure;
+import com.example.scooterrental.model.Scooter;
+import com.example.scooterrental.model.ScooterStatus;
+
+import org.hibernate.query.sqm.NodeBuilder;
+import org.hibernate.query.sqm.tree.expression.SqmExpression;
+import org.hibernate.query.sqm.tree.expression.SqmTuple;
+import org.springframework.data.jpa.domain.Specification;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+
+// Условия поиска самокатов. Внешние ключи сравниваются по столбцу, без join на справочники,
+// чтобы запрос оставался в пределах индексов таблицы scooters
+public final class ScooterSpecifications {
+
+    private ScooterSpecifications() {}
+
+    public static Specification<Scooter> hasStatus(ScooterStatus status) {
+        return (root, query, cb) -> cb.equal(root.get("status"), status);
+    }
+
+    public static Specification<Scooter> chargeAtLeast(int minChargeLevel) {
+        return (root, query, cb) ->
+                cb.greaterThanOrEqualTo(root.get("chargeLevel"), minChargeLevel);
+    }
+
+    public static Specification<Scooter> hasModel(String model) {
+        return (root, query, cb) -> cb.equal(root.get("model"), model);
+    }
+
+    public static Specification<Scooter> atRentalPoint(Long rentalPointId) {
+        return (root, query, cb) -> cb.equal(root.get("rentalPoint").get("id"), rentalPointId);
+    }
+
+    // самокаты точки и всех её потомков: потомки выбираются из таблицы замыкания подзапросом
+    public static Specification<Scooter> underRentalPoint(Long rentalPointId) {
+        return (root, query, cb) -> {
+            Subquery<Long> descendants = query.subquery(Long.class);
+            Root<RentalPointClosure> closure = descendants.from(RentalPointClosure.class);
+            descendants
+                    .select(closure.get("descendantId"))
+                    .where(cb.equal(closure.get("ancestorId"), rentalPointId));
+            return root.get("rentalPoint").get("id").in(descendants);
+        };
+    }
+
+    public static Specification<Scooter> withTariff(Long tariffId) {
+        return (root, query, cb) -> cb.equal(root.get("tariff").get("id"), tariffId);
+    }
+
+    // строки строго после (value, id) в порядке сортировки (property, id). Условие строится
+    // сравнением строк (property, id) > (value, id): в таком виде Postgres берёт границу
+    // прямо из составного индекса, а не перебирает ветки OR
+    public static <T extends Comparable<? super T>> Specification<Scooter> after(
+            String property, T value, Long id, boolean descending) {
+        return (root, query, cb) -> {
+            Path<Long> idPath = root.get("id");
+            if ("id".equals(property)) {
+                return descending ? cb.lessThan(idPath, id) : cb.greaterThan(idPath, id);
+            }
+            NodeBuilder nodeBuilder = (NodeBuilder) cb;
+            SqmTuple<Object> row =
+                    new SqmTuple<>(
+                            nodeBuilder,
+                            (SqmExpression<T>) root.<T>get(property),
+                            (SqmExpression<Long>) idPath);
+            SqmTuple<Object> bound =
+                    new SqmTuple<>(
+                            nodeBuilder,
+                            (SqmExpression<T>) nodeBuilder.value(value),
+                            (SqmExpression<Long>) nodeBuilder.value(id));
+            return descending ? rowLessThan(cb, row, bound) : rowGreaterThan(cb, row, bound);
+        };
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static Predicate rowGreaterThan(
+            CriteriaBuilder cb, Expression<?> row, Expression<?> bound) {
+        return cb.greaterThan((Expression) row, (Expression) bound);
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static Predicate rowLessThan(
+            CriteriaBuilder cb, Expression<?> row, Expression<?> bound) {
+        return cb.lessThan((Expression) row, (Expression) bound);
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.scooterrental.repository;
+
+import com.example.scooterrental.model.ScooterStatus;
+
+public interface ScooterStateRow {
+    Long getId();
+
+    ScooterStatus getStatus();
+
+    Integer getChargeLevel();
+
+    Long getRentalPointId();
+}
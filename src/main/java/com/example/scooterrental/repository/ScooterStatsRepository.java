@@ -0,0 +1,46 @@
+package com.example.scooterrental.repository;
+
+import com.example.scooterrental.model.ScooterStats;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface ScooterStatsRepository extends JpaRepository<ScooterStats, Long> {
+
+    // прибавляет одну завершённую поездку; первая поездка самоката создаёт строку. Поездка
+    // сначала отмечается в scooter_stats_rides: повторная доставка того же события ничего
+    // не вставит в отметки и потому не изменит статистику
+    @Modifying
+    @Query(
+            value =
+                    "WITH applied AS (INSERT INTO scooter_stats_rides (rental_id) "
+                            + "VALUES (:rentalId) ON CONFLICT (rental_id) DO NOTHING "
+                            + "RETURNING rental_id) "
+                            + "INSERT INTO scooter_stats (scooter_id, rides, revenue_minor, "
+                            + "distance, ride_minutes, last_ride_at, updated_at) "
+                            + "SELECT :scooterId, 1, :revenueMinor, :distance, :minutes, "
+                            + ":endTime, now() FROM applied "
+                            + "ON CONFLICT (scooter_id) DO UPDATE "
+                            + "SET rides = scooter_stats.rides + 1, "
+                            + "revenue_minor = scooter_stats.revenue_minor "
+                            + "+ EXCLUDED.revenue_minor, "
+                            + "distance = scooter_stats.distance + EXCLUDED.distance, "
+                            + "ride_minutes = scooter_stats.ride_minutes + EXCLUDED.ride_minutes, "
+                            + "last_ride_at = GREATEST(scooter_stats.last_ride_at, "
+                            + "EXCLUDED.last_ride_at), "
+                            + "updated_at = now()",
+            nativeQuery = true)
+    int applyRide(
+            @Param("rentalId") Long rentalId,
+            @Param("scooterId") Long scooterId,
+            @Param("revenueMinor") long revenueMinor,
+            @Param("distance") double distance,
+            @Param("minutes") long minutes,
+            @Param("endTime") LocalDateTime endTime);
+}
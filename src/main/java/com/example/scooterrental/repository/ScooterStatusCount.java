@@ -0,0 +1,9 @@
+package com.example.scooterrental.repository;
+
+import com.example.scooterrental.model.ScooterStatus;
+
+public interface ScooterStatusCount {
+    ScooterStatus getStatus();
+
+    long getScooters();
+}
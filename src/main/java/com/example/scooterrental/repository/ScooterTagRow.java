@@ -0,0 +1,26 @@
+package com.example.scooterrental.repository;
+
+import java.time.LocalDateTime;
+
+// всё, что попадает в ScooterInfoDto помимо полей, которые меняют version
+public interface ScooterTagRow {
+    Long getVersion();
+
+    Integer getChargeLevel();
+
+    Double getMileage();
+
+    String getRentalPointName();
+
+    String getTariffName();
+
+    Long getRides();
+
+    Long getRevenueMinor();
+
+    Double getDistance();
+
+    Long getRideMinutes();
+
+    LocalDateTime getLastRideAt();
+}
@@ -3,7 +3,15 @@ package com.example.scooterrental.repository;
 import com.example.scooterrental.model.Tariff;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
-public interface TariffRepository extends JpaRepository<Tariff, Long> {}
+public interface TariffRepository extends JpaRepository<Tariff, Long> {
+    @Query("SELECT t.id FROM Tariff t WHERE t.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+}
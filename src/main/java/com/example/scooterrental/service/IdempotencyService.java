@@ -0,0 +1,14 @@
+package com.example.scooterrental.service;
+
+import org.springframework.http.ResponseEntity;
+
+import java.util.function.Supplier;
+
+public interface IdempotencyService {
+    <T> ResponseEntity<T> execute(
+            String idempotencyKey,
+            String scope,
+            Object request,
+            Class<T> responseType,
+            Supplier<ResponseEntity<T>> action);
+}
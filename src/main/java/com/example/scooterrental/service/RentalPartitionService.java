@@ -0,0 +1,10 @@
+package com.example.scooterrental.service;
+
+import java.time.YearMonth;
+import java.util.List;
+
+public interface RentalPartitionService {
+    List<String> ensureFuturePartitions();
+
+    List<String> archivePartitionsBefore(YearMonth month);
+}
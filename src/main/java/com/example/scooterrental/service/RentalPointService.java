@@ -1,7 +1,13 @@
 package com.example.scooterrental.service;
 
+import com.example.scooterrental.dto.CursorPageDto;
+import com.example.scooterrental.dto.MapClusterDto;
 import com.example.scooterrental.dto.RentalPointDto;
 import com.example.scooterrental.dto.RentalPointInfoDto;
+import com.example.scooterrental.dto.RentalPointScooterCountsDto;
+import com.example.scooterrental.dto.RentalPointViewDto;
+import com.example.scooterrental.dto.ScooterInfoDto;
+import com.example.scooterrental.dto.ScooterSearchFilterDto;
 import com.example.scooterrental.exception.RentalPointNotFoundException;
 
 import java.util.List;
@@ -10,17 +16,47 @@ public interface RentalPointService {
     RentalPointDto createRentalPoint(RentalPointDto rentalPointDto)
             throws RentalPointNotFoundException;
 
-    RentalPointInfoDto getRentalPointById(Long id) throws RentalPointNotFoundException;
+    RentalPointInfoDto getRentalPointById(Long id, RentalPointViewDto view)
+            throws RentalPointNotFoundException;
+
+    // ETag ответа getRentalPointById: <версия точки>-<хэш поддерева и его самокатов>;
+    // для If-Match значима только версия
+    String getRentalPointEntityTag(Long id) throws RentalPointNotFoundException;
 
-    RentalPointDto updateRentalPoint(Long id, RentalPointDto rentalPointDto)
+    // expectedVersion == null — обновление без проверки версии
+    RentalPointDto updateRentalPoint(Long id, RentalPointDto rentalPointDto, String expectedVersion)
             throws RentalPointNotFoundException;
 
     void deleteRentalPoint(Long id) throws RentalPointNotFoundException;
 
-    List<RentalPointInfoDto> getAllRentalPoints();
+    // версия снимка иерархии: меняется при любом изменении точек, но не самокатов
+    String getHierarchyVersion();
+
+    List<RentalPointInfoDto> getAllRentalPoints(RentalPointViewDto view);
+
+    List<RentalPointInfoDto> getRootRentalPoints(RentalPointViewDto view);
+
+    List<RentalPointInfoDto> getChildRentalPoints(Long parentId, RentalPointViewDto view)
+            throws RentalPointNotFoundException;
+
+    List<RentalPointScooterCountsDto> getScooterCounts();
 
-    List<RentalPointInfoDto> getRootRentalPoints();
+    // маркеры карты для области; minLongitude > maxLongitude — область через 180-й меридиан
+    List<MapClusterDto> getMapClusters(
+            double minLatitude,
+            double minLongitude,
+            double maxLatitude,
+            double maxLongitude,
+            int zoom);
 
-    List<RentalPointInfoDto> getChildRentalPoints(Long parentId)
+    // самокаты точки и всех её потомков; фильтр, сортировка и курсор — как в поиске самокатов
+    CursorPageDto<ScooterInfoDto> getSubtreeScooters(
+            Long id, ScooterSearchFilterDto filter, String sort, String cursor, int limit)
             throws RentalPointNotFoundException;
+
+    RentalPointScooterCountsDto getSubtreeScooterCounts(Long id)
+            throws RentalPointNotFoundException;
+
+    // цепочка предков точки от корня к непосредственному родителю
+    List<RentalPointDto> getAncestors(Long id) throws RentalPointNotFoundException;
 }
@@ -1,28 +1,38 @@
 package com.example.scooterrental.service;
 
+import com.example.scooterrental.dto.CursorPageDto;
 import com.example.scooterrental.dto.RentalDto;
 import com.example.scooterrental.dto.RentalInfoDto;
 import com.example.scooterrental.exception.RentalNotFoundException;
 import com.example.scooterrental.exception.ScooterNotFoundException;
+import com.example.scooterrental.exception.ScooterUnavailableException;
 import com.example.scooterrental.exception.TariffNotFoundException;
 import com.example.scooterrental.exception.UserNotFoundException;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface RentalService {
     RentalDto createRental(RentalDto rentalDto)
-            throws UserNotFoundException, ScooterNotFoundException;
+            throws UserNotFoundException, ScooterNotFoundException, ScooterUnavailableException;
 
     RentalInfoDto getRentalById(Long id) throws RentalNotFoundException;
 
     RentalDto endRental(Long id)
             throws RentalNotFoundException, ScooterNotFoundException, TariffNotFoundException;
 
-    List<RentalInfoDto> getAllRentals();
+    CursorPageDto<RentalInfoDto> getRentalsPage(String cursor, int limit);
 
-    List<RentalInfoDto> getRentalsByUser(Long userId);
+    void streamAllRentals(Consumer<RentalInfoDto> consumer);
 
-    List<RentalInfoDto> getRentalsByScooter(Long scooterId);
+    List<RentalInfoDto> getRentalsByUser(Long userId, LocalDateTime from, LocalDateTime to);
 
-    List<RentalInfoDto> getRentalHistoryByScooter(Long scooterId);
+    List<RentalInfoDto> getRentalsByScooter(
+            Long scooterId, LocalDateTime from, LocalDateTime to);
+
+    List<RentalInfoDto> getRentalHistoryByScooter(
+            Long scooterId, LocalDateTime from, LocalDateTime to);
+
+    List<RentalInfoDto> getActiveRentals(Long userId, Long scooterId, Long rentalPointId);
 }
@@ -0,0 +1,12 @@
+package com.example.scooterrental.service;
+
+import com.example.scooterrental.dto.ScooterImportResultDto;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface ScooterImportService {
+    ScooterImportResultDto importCsv(InputStream csv) throws IOException;
+
+    ScooterImportResultDto importJson(InputStream json) throws IOException;
+}
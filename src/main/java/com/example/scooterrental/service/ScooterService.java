@@ -1,13 +1,25 @@
 package com.example.scooterrental.service;
 
+import com.example.scooterrental.dto.CursorPageDto;
+import com.example.scooterrental.dto.NearbyRentalPointDto;
+import com.example.scooterrental.dto.ScooterAvailabilityDto;
+import com.example.scooterrental.dto.ScooterBulkStatusResultDto;
 import com.example.scooterrental.dto.ScooterDto;
 import com.example.scooterrental.dto.ScooterInfoDto;
+import com.example.scooterrental.dto.ScooterSearchFilterDto;
+import com.example.scooterrental.dto.ScooterStatsDto;
 import com.example.scooterrental.exception.RentalPointNotFoundException;
 import com.example.scooterrental.exception.ScooterNotFoundException;
+import com.example.scooterrental.exception.ScooterUnavailableException;
 import com.example.scooterrental.exception.TariffNotFoundException;
+import com.example.scooterrental.fleet.BoundingBox;
 import com.example.scooterrental.model.ScooterStatus;
+import com.example.scooterrental.repository.ScooterReservation;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 public interface ScooterService {
     ScooterDto createScooter(ScooterDto scooterDto)
@@ -15,16 +27,50 @@ public interface ScooterService {
 
     ScooterInfoDto getScooterById(Long id) throws ScooterNotFoundException;
 
-    ScooterDto updateScooter(Long id, ScooterDto scooterDto)
+    // ETag ответа getScooterById: <version>-<хэш заряда, пробега, названий и статистики>;
+    // для If-Match значима только версия
+    String getScooterEntityTag(Long id) throws ScooterNotFoundException;
+
+    // expectedVersion == null — обновление без проверки версии
+    ScooterDto updateScooter(Long id, ScooterDto scooterDto, String expectedVersion)
             throws ScooterNotFoundException, RentalPointNotFoundException, TariffNotFoundException;
 
     void deleteScooter(Long id) throws ScooterNotFoundException;
 
     List<ScooterInfoDto> getAllScooters();
 
+    CursorPageDto<ScooterInfoDto> searchScooters(
+            ScooterSearchFilterDto filter, String sort, String cursor, int limit);
+
     List<ScooterInfoDto> getScootersByRentalPoint(Long rentalPointId)
             throws RentalPointNotFoundException;
 
+    Map<Long, List<ScooterInfoDto>> getScootersByRentalPoints(Collection<Long> rentalPointIds);
+
     void updateScooterStatus(Long scooterId, ScooterStatus newStatus)
             throws ScooterNotFoundException;
+
+    void updateScooterStatus(Long scooterId, ScooterStatus newStatus, String expectedVersion)
+            throws ScooterNotFoundException;
+
+    ScooterBulkStatusResultDto updateScooterStatuses(
+            List<Long> scooterIds, ScooterStatus newStatus);
+
+    ScooterReservation reserveScooter(Long scooterId)
+            throws ScooterNotFoundException, ScooterUnavailableException;
+
+    // пусто, если самокат уже не был занят
+    Optional<ScooterReservation> releaseScooter(Long scooterId);
+
+    ScooterStatsDto getScooterStats(Long scooterId) throws ScooterNotFoundException;
+
+    List<ScooterAvailabilityDto> getAvailability(
+            ScooterStatus status, Long rentalPointId, Integer minChargeLevel);
+
+    List<NearbyRentalPointDto> findNearby(
+            double latitude, double longitude, double radiusMeters, int limit);
+
+    // null, если не задана ни одна граница
+    BoundingBox resolveBoundingBox(
+            Double minLatitude, Double minLongitude, Double maxLatitude, Double maxLongitude);
 }
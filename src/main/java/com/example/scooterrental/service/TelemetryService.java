@@ -0,0 +1,12 @@
+package com.example.scooterrental.service;
+
+import com.example.scooterrental.dto.TelemetryIngestResultDto;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface TelemetryService {
+    TelemetryIngestResultDto ingest(InputStream ndjson) throws IOException;
+
+    int flush();
+}
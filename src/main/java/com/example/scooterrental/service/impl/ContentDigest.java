@@ -0,0 +1,33 @@
+package com.example.scooterrental.service.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+// Хэш содержимого ответа для ETag. Значения разделяются символом, которого нет в данных,
+// null пишется явно, поэтому разные наборы полей не склеиваются в одну строку
+final class ContentDigest {
+
+    private static final byte SEPARATOR = 0x1F;
+
+    private final MessageDigest digest;
+
+    ContentDigest() {
+        try {
+            this.digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 недоступен", e);
+        }
+    }
+
+    ContentDigest add(Object value) {
+        digest.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+        digest.update(SEPARATOR);
+        return this;
+    }
+
+    String hex() {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.scooterrental.service.impl;
+
+import com.example.scooterrental.exception.IdempotencyConflictException;
+import com.example.scooterrental.model.IdempotencyKey;
+import com.example.scooterrental.repository.IdempotencyKeyRepository;
+import com.example.scooterrental.service.IdempotencyService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+@Service
+public class IdempotencyServiceImpl implements IdempotencyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyServiceImpl.class);
+
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 128;
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration ttl;
+    private final Duration pendingTimeout;
+    // завершённые ответы; неизменяемы до истечения срока, поэтому их можно отдавать без БД
+    private final Map<String, IdempotencyKey> recentResponses;
+
+    @Autowired
+    public IdempotencyServiceImpl(
+            IdempotencyKeyRepository idempotencyKeyRepository,
+            ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager,
+            @Value("${idempotency.ttl-hours:24}") long ttlHours,
+            @Value("${idempotency.pending-timeout-seconds:300}") long pendingTimeoutSeconds,
+            @Value("${idempotency.cache-size:10000}") int cacheSize) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ttl = Duration.ofHours(ttlHours);
+        this.pendingTimeout = Duration.ofSeconds(pendingTimeoutSeconds);
+        this.recentResponses =
+                Collections.synchronizedMap(
+                        new LinkedHashMap<>(16, 0.75f, true) {
+                            @Override
+                            protected boolean removeEldestEntry(
+                                    Map.Entry<String, IdempotencyKey> eldest) {
+                                return size() > cacheSize;
+                            }
+                        });
+    }
+
+    @Override
+    public <T> ResponseEntity<T> execute(
+            String idempotencyKey,
+            String scope,
+            Object request,
+            Class<T> responseType,
+            Supplier<ResponseEntity<T>> action) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return action.get();
+        }
+        logger.info("Запрос с ключом идемпотентности {} ({})", idempotencyKey, scope);
+        try {
+            if (idempotencyKey.length() > MAX_KEY_LENGTH) {
+                throw new IllegalArgumentException(
+                        "Ключ идемпотентности длиннее " + MAX_KEY_LENGTH + " символов");
+            }
+            String id = scope + " " + idempotencyKey;
+            String requestHash = hash(request);
+            LocalDateTime now = LocalDateTime.now();
+
+            IdempotencyKey cached = recentResponses.get(id);
+            if (cached != null && cached.getExpiresAt().isAfter(now)) {
+                return replay(cached, requestHash, responseType);
+            }
+
+            Integer claimed =
+                    transactionTemplate.execute(
+                            status ->
+                                    idempotencyKeyRepository.tryClaim(
+                                            id,
+                                            requestHash,
+                                            now,
+                                            now.plus(ttl),
+                                            now.minus(pendingTimeout)));
+            if (claimed == null || claimed == 0) {
+                IdempotencyKey stored =
+                        idempotencyKeyRepository
+                                .findById(id)
+                                .orElseThrow(this::inProgress);
+                return replay(stored, requestHash, responseType);
+            }
+
+            ResponseEntity<T> response;
+            try {
+                response = action.get();
+            } catch (RuntimeException e) {
+                // ошибки не запоминаем: повтор с тем же ключом выполнит запрос заново
+                transactionTemplate.executeWithoutResult(
+                        status -> idempotencyKeyRepository.deleteById(id));
+                throw e;
+            }
+
+            int responseStatus = response.getStatusCode().value();
+            String responseBody = write(response.getBody());
+            transactionTemplate.executeWithoutResult(
+                    status -> idempotencyKeyRepository.complete(id, responseStatus, responseBody));
+            recentResponses.put(
+                    id,
+                    new IdempotencyKey(
+                            id, requestHash, responseStatus, responseBody, now, now.plus(ttl)));
+            logger.info("Ответ для ключа идемпотентности {} сохранён.", idempotencyKey);
+            return response;
+        } catch (Exception e) {
+            logger.error(
+                    "Ошибка при обработке запроса с ключом идемпотентности {}: {}",
+                    idempotencyKey,
+                    e.getMessage(),
+                    e);
+            throw e;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${idempotency.sweep-interval-ms:600000}")
+    public void sweepExpired() {
+        logger.info("Попытка удалить просроченные ключи идемпотентности.");
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            Integer removed =
+                    transactionTemplate.execute(
+                            status -> idempotencyKeyRepository.deleteExpired(now));
+            synchronized (recentResponses) {
+                recentResponses.values().removeIf(key -> !key.getExpiresAt().isAfter(now));
+            }
+            logger.info("Удалено {} просроченных ключей идемпотентности.", removed);
+        } catch (Exception e) {
+            logger.error(
+                    "Ошибка при удалении просроченных ключей идемпотентности: {}",
+                    e.getMessage(),
+                    e);
+        }
+    }
+
+    private <T> ResponseEntity<T> replay(
+            IdempotencyKey stored, String requestHash, Class<T> responseType) {
+        if (!stored.getRequestHash().equals(requestHash)) {
+            throw new IdempotencyConflictException(
+                    "Ключ идемпотентности уже использован для другого запроса");
+        }
+        if (stored.getResponseStatus() == null) {
+            throw inProgress();
+        }
+        recentResponses.put(stored.getId(), stored);
+        logger.info("Повтор запроса {}: возвращаем сохранённый ответ.", stored.getId());
+        T body = read(stored.getResponseBody(), responseType);
+        return ResponseEntity.status(stored.getResponseStatus())
+                .header(REPLAYED_HEADER, "true")
+                .body(body);
+    }
+
+    private IdempotencyConflictException inProgress() {
+        return new IdempotencyConflictException(
+                "Запрос с этим ключом идемпотентности ещё выполняется");
+    }
+
+    private String hash(Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(objectMapper.writeValueAsBytes(request)));
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось вычислить отпечаток запроса", e);
+        }
+    }
+
+    private String write(Object body) {
+        try {
+            return body == null ? null : objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось сохранить ответ", e);
+        }
+    }
+
+    private <T> T read(String body, Class<T> responseType) {
+        try {
+            return body == null ? null : objectMapper.readValue(body, responseType);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось прочитать сохранённый ответ", e);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.scooterrental.service.impl;
+
+import com.example.scooterrental.service.RentalPartitionService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+@Service
+public class RentalPartitionServiceImpl implements RentalPartitionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RentalPartitionServiceImpl.class);
+
+    private static final Pattern MONTHLY_PARTITION = Pattern.compile("rentals_p(\\d{4})_(\\d{2})");
+    private static final String ARCHIVE_SCHEMA = "rentals_archive";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int monthsAhead;
+    private final int retentionMonths;
+
+    @Autowired
+    public RentalPartitionServiceImpl(
+            JdbcTemplate jdbcTemplate,
+            @Value("${rentals.partitions.months-ahead:3}") int monthsAhead,
+            @Value("${rentals.partitions.retention-months:0}") int retentionMonths) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+    }
+
+    @Scheduled(cron = "${rentals.partitions.cron:0 0 3 * * *}")
+    public void managePartitions() {
+        ensureFuturePartitions();
+        // 0 — старые секции не архивируются
+        if (retentionMonths > 0) {
+            archivePartitionsBefore(YearMonth.now().minusMonths(retentionMonths));
+        }
+    }
+
+    @Override
+    @Transactional
+    public List<String> ensureFuturePartitions() {
+        logger.info("Попытка создать секции аренд на {} мес. вперёд", monthsAhead);
+        try {
+            List<String> partitions = new ArrayList<>();
+            YearMonth current = YearMonth.now();
+            for (int i = 0; i <= monthsAhead; i++) {
+                partitions.add(
+                        jdbcTemplate.queryForObject(
+                                "SELECT ensure_rentals_partition(?)",
+                                String.class,
+                                current.plusMonths(i).atDay(1)));
+            }
+            logger.info("Секции аренд готовы: {}", partitions);
+            return partitions;
+        } catch (Exception e) {
+            logger.error("Ошибка при создании секций аренд: {}", e.getMessage(), e);
+            throw e;
+        }
+    }
+
+    @Override
+    @Transactional
+    public List<String> archivePartitionsBefore(YearMonth month) {
+        logger.info("Попытка архивировать секции аренд ранее {}", month);
+        try {
+            // текущий месяц и будущие секции не трогаем ни при каких настройках
+            YearMonth cutoff = month.isAfter(YearMonth.now()) ? YearMonth.now() : month;
+            List<String> archived = new ArrayList<>();
+            List<String> partitions =
+                    jdbcTemplate.queryForList(
+                            "SELECT c.relname FROM pg_inherits i "
+                                    + "JOIN pg_class c ON c.oid = i.inhrelid "
+                                    + "WHERE i.inhparent = 'public.rentals'::regclass",
+                            String.class);
+            for (String partition : partitions) {
+                Matcher matcher = MONTHLY_PARTITION.matcher(partition);
+                if (!matcher.matches()) {
+                    continue;
+                }
+                YearMonth partitionMonth =
+                        YearMonth.of(
+                                Integer.parseInt(matcher.group(1)),
+                                Integer.parseInt(matcher.group(2)));
+                if (!partitionMonth.isBefore(cutoff)) {
+                    continue;
+                }
+                // незавершённая аренда в архиве осталась бы в open_rentals и навсегда
+                // заняла бы самокат, поэтому такая секция ждёт её завершения
+                Boolean hasOpenRentals =
+                        jdbcTemplate.queryForObject(
+                                "SELECT EXISTS (SELECT 1 FROM public."
+                                        + partition
+                                        + " WHERE end_time IS NULL)",
+                                Boolean.class);
+                if (Boolean.TRUE.equals(hasOpenRentals)) {
+                    logger.warn(
+                            "Секция {} не архивирована: в ней есть незавершённые аренды.",
+                            partition);
+                    continue;
+                }
+                jdbcTemplate.execute("ALTER TABLE rentals DETACH PARTITION public." + partition);
+                jdbcTemplate.execute(
+                        "ALTER TABLE public." + partition + " SET SCHEMA " + ARCHIVE_SCHEMA);
+                archived.add(partition);
+            }
+            logger.info("Архивировано {} секций аренд: {}", archived.size(), archived);
+            return archived;
+        } catch (Exception e) {
+            logger.error("Ошибка при архивировании секций аренд: {}", e.getMessage(), e);
+            throw e;
+        }
+    }
+}
@@ -1,21 +1,50 @@
 package com.example.scooterrental.service.impl;
 
+import com.example.scooterrental.dto.CursorPageDto;
+import com.example.scooterrental.dto.MapClusterDto;
 import com.example.scooterrental.dto.RentalPointDto;
 import com.example.scooterrental.dto.RentalPointInfoDto;
+import com.example.scooterrental.dto.RentalPointScooterCountsDto;
+import com.example.scooterrental.dto.RentalPointViewDto;
 import com.example.scooterrental.dto.ScooterInfoDto;
+import com.example.scooterrental.dto.ScooterSearchFilterDto;
+import com.example.scooterrental.event.RentalPointChangedEvent;
+import com.example.scooterrental.event.ScooterStateChangedEvent;
+import com.example.scooterrental.exception.PreconditionFailedException;
 import com.example.scooterrental.exception.RentalPointNotFoundException;
+import com.example.scooterrental.fleet.BoundingBox;
+import com.example.scooterrental.fleet.FleetStateStore;
+import com.example.scooterrental.fleet.MapClusterIndex;
+import com.example.scooterrental.fleet.RentalPointHierarchy;
+import com.example.scooterrental.fleet.RentalPointHierarchyStore;
 import com.example.scooterrental.model.RentalPoint;
+import com.example.scooterrental.model.Scooter;
+import com.example.scooterrental.model.ScooterStatus;
+import com.example.scooterrental.repository.RentalPointClosureRepository;
 import com.example.scooterrental.repository.RentalPointRepository;
+import com.example.scooterrental.repository.RentalPointTreeRow;
+import com.example.scooterrental.repository.ScooterRepository;
+import com.example.scooterrental.repository.ScooterStatusCount;
 import com.example.scooterrental.service.RentalPointService;
 import com.example.scooterrental.service.ScooterService;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -24,13 +53,32 @@ public class RentalPointServiceImpl implements RentalPointService {
     private static final Logger logger = LoggerFactory.getLogger(RentalPointServiceImpl.class);
 
     private final RentalPointRepository rentalPointRepository;
+    private final RentalPointClosureRepository closureRepository;
+    private final ScooterRepository scooterRepository;
     private final ScooterService scooterService;
+    private final FleetStateStore fleetStateStore;
+    private final RentalPointHierarchyStore hierarchyStore;
+    private final MapClusterIndex mapClusterIndex;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
     public RentalPointServiceImpl(
-            RentalPointRepository rentalPointRepository, ScooterService scooterService) {
+            RentalPointRepository rentalPointRepository,
+            RentalPointClosureRepository closureRepository,
+            ScooterRepository scooterRepository,
+            ScooterService scooterService,
+            FleetStateStore fleetStateStore,
+            RentalPointHierarchyStore hierarchyStore,
+            MapClusterIndex mapClusterIndex,
+            ApplicationEventPublisher eventPublisher) {
         this.rentalPointRepository = rentalPointRepository;
+        this.closureRepository = closureRepository;
+        this.scooterRepository = scooterRepository;
         this.scooterService = scooterService;
+        this.fleetStateStore = fleetStateStore;
+        this.hierarchyStore = hierarchyStore;
+        this.mapClusterIndex = mapClusterIndex;
+        this.eventPublisher = eventPublisher;
     }
 
     @Override
@@ -63,7 +111,14 @@ public class RentalPointServiceImpl implements RentalPointService {
             }
 
             rentalPoint = rentalPointRepository.save(rentalPoint);
+            closureRepository.insertSelf(rentalPoint.getId());
+            if (rentalPoint.getParentPoint() != null) {
+                closureRepository.lockHierarchy();
+                closureRepository.attachSubtree(
+                        rentalPoint.getId(), rentalPoint.getParentPoint().getId());
+            }
             rentalPointDto.setId(rentalPoint.getId());
+            publishLocation(rentalPoint);
             logger.info("Точка проката успешно создана с ID: {}", rentalPoint.getId());
             return rentalPointDto;
         } catch (Exception e) {
@@ -72,21 +127,22 @@ public class RentalPointServiceImpl implements RentalPointService {
         }
     }
 
+    // иерархия берётся из снимка в памяти, к БД обращается только загрузка самокатов
     @Override
-    @Transactional(readOnly = true)
-    public RentalPointInfoDto getRentalPointById(Long id) throws RentalPointNotFoundException {
+    public RentalPointInfoDto getRentalPointById(Long id, RentalPointViewDto view)
+            throws RentalPointNotFoundException {
         logger.info("Попытка получить точку проката с ID: {}", id);
         try {
-            RentalPoint rentalPoint =
-                    rentalPointRepository
-                            .findById(id)
-                            .orElseThrow(
-                                    () -> {
-                                        logger.warn("Точка проката с ID {} не найдена.", id);
-                                        return new RentalPointNotFoundException(
-                                                "Точка проката с ID " + id + " не найдена");
-                                    });
-            RentalPointInfoDto rentalPointInfoDto = convertToRentalPointInfoDto(rentalPoint);
+            checkView(view);
+            List<RentalPointTreeRow> rows = hierarchyStore.current().subtree(id, view.getDepth());
+            if (rows.isEmpty()) {
+                logger.warn("Точка проката с ID {} не найдена.", id);
+                throw new RentalPointNotFoundException("Точка проката с ID " + id + " не найдена");
+            }
+            // одна точка в ответе, плоский режим к ней не применяется
+            RentalPointViewDto tree =
+                    new RentalPointViewDto(view.getDepth(), view.getInclude(), false);
+            RentalPointInfoDto rentalPointInfoDto = assemble(rows, id, List.of(id), tree).get(0);
             logger.info("Точка проката с ID {} успешно получена.", id);
             return rentalPointInfoDto;
         } catch (Exception e) {
@@ -95,9 +151,26 @@ public class RentalPointServiceImpl implements RentalPointService {
         }
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public String getRentalPointEntityTag(Long id) throws RentalPointNotFoundException {
+        logger.debug("Попытка получить ETag точки проката с ID: {}", id);
+        try {
+            return entityTag(id);
+        } catch (Exception e) {
+            logger.error(
+                    "Ошибка при получении ETag точки проката с ID {}: {}",
+                    id,
+                    e.getMessage(),
+                    e);
+            throw e;
+        }
+    }
+
     @Override
     @Transactional
-    public RentalPointDto updateRentalPoint(Long id, RentalPointDto rentalPointDto)
+    public RentalPointDto updateRentalPoint(
+            Long id, RentalPointDto rentalPointDto, String expectedVersion)
             throws RentalPointNotFoundException {
         logger.info("Попытка обновить точку проката с ID: {}, данные: {}", id, rentalPointDto);
         try {
@@ -110,6 +183,8 @@ public class RentalPointServiceImpl implements RentalPointService {
                                         return new RentalPointNotFoundException(
                                                 "Точка проката с id" + id + " не найдена");
                                     });
+            // одновременную запись самой точки после проверки отсекает @Version
+            checkVersion(rentalPoint, expectedVersion);
 
             if (rentalPointDto.getName() != null) {
                 rentalPoint.setName(rentalPointDto.getName());
@@ -137,9 +212,14 @@ public class RentalPointServiceImpl implements RentalPointService {
                                                             + rentalPointDto.getParentPointId()
                                                             + " не найдена");
                                         });
+                if (rentalPoint.getParentPoint() == null
+                        || !rentalPoint.getParentPoint().getId().equals(parentPoint.getId())) {
+                    moveSubtree(id, parentPoint.getId());
+                }
                 rentalPoint.setParentPoint(parentPoint);
             }
             rentalPointRepository.save(rentalPoint);
+            publishLocation(rentalPoint);
             logger.info("Точка проката с ID {} успешно обновлена.", id);
             return rentalPointDto;
         } catch (Exception e) {
@@ -162,6 +242,8 @@ public class RentalPointServiceImpl implements RentalPointService {
                                         return new RentalPointNotFoundException(
                                                 "Точка проката с ID " + id + " не найдена");
                                     });
+            // каскад удаляет дочерние точки и их самокаты, индексы в памяти должны узнать обо всех
+            publishRemoval(rentalPoint);
             rentalPointRepository.delete(rentalPoint);
             logger.info("Точка проката с ID {} успешно удалена.", id);
         } catch (Exception e) {
@@ -171,14 +253,22 @@ public class RentalPointServiceImpl implements RentalPointService {
     }
 
     @Override
-    @Transactional(readOnly = true)
-    public List<RentalPointInfoDto> getAllRentalPoints() {
+    public String getHierarchyVersion() {
+        return String.valueOf(hierarchyStore.current().getVersion());
+    }
+
+    @Override
+    public List<RentalPointInfoDto> getAllRentalPoints(RentalPointViewDto view) {
         logger.info("Попытка получить все точки проката.");
         try {
+            checkView(view);
+            List<RentalPointTreeRow> rows = hierarchyStore.current().all();
             List<RentalPointInfoDto> rentalPointInfoDtos =
-                    rentalPointRepository.findAll().stream()
-                            .map(this::convertToRentalPointInfoDto)
-                            .collect(Collectors.toList());
+                    assemble(
+                            rows,
+                            null,
+                            rows.stream().map(RentalPointTreeRow::getId).toList(),
+                            view);
             logger.info("Получено {} точек проката.", rentalPointInfoDtos.size());
             return rentalPointInfoDtos;
         } catch (Exception e) {
@@ -188,14 +278,20 @@ public class RentalPointServiceImpl implements RentalPointService {
     }
 
     @Override
-    @Transactional(readOnly = true)
-    public List<RentalPointInfoDto> getRootRentalPoints() {
+    public List<RentalPointInfoDto> getRootRentalPoints(RentalPointViewDto view) {
         logger.info("Попытка получить корневые точки проката.");
         try {
+            checkView(view);
+            List<RentalPointTreeRow> rows = hierarchyStore.current().all();
             List<RentalPointInfoDto> rootRentalPoints =
-                    rentalPointRepository.findRootRentalPoints().stream()
-                            .map(this::convertToRentalPointInfoDto)
-                            .collect(Collectors.toList());
+                    assemble(
+                            rows,
+                            null,
+                            rows.stream()
+                                    .filter(row -> row.getParentPointId() == null)
+                                    .map(RentalPointTreeRow::getId)
+                                    .toList(),
+                            view);
             logger.info("Получено {} корневых точек проката.", rootRentalPoints.size());
             return rootRentalPoints;
         } catch (Exception e) {
@@ -205,22 +301,35 @@ public class RentalPointServiceImpl implements RentalPointService {
     }
 
     @Override
-    @Transactional(readOnly = true)
-    public List<RentalPointInfoDto> getChildRentalPoints(Long parentId)
+    public List<RentalPointInfoDto> getChildRentalPoints(Long parentId, RentalPointViewDto view)
             throws RentalPointNotFoundException {
         logger.info(
                 "Попытка получить дочерние точки проката для родительской точки с ID: {}",
                 parentId);
         try {
-            if (!rentalPointRepository.existsById(parentId)) {
+            checkView(view);
+            // глубина отсчитывается от дочерних точек, родитель лежит уровнем выше
+            List<RentalPointTreeRow> rows =
+                    hierarchyStore
+                            .current()
+                            .subtree(
+                                    parentId,
+                                    view.getDepth() == null ? null : view.getDepth() + 1);
+            if (rows.isEmpty()) {
                 logger.warn("Точки проката с ID {} не существует.", parentId);
                 throw new RentalPointNotFoundException(
                         "Точки проката с ID" + parentId + " не существует");
             }
             List<RentalPointInfoDto> childRentalPoints =
-                    rentalPointRepository.findByParentPointId(parentId).stream()
-                            .map(this::convertToRentalPointInfoDto)
-                            .collect(Collectors.toList());
+                    assemble(
+                            rows,
+                            parentId,
+                            rows.stream()
+                                    .filter(row -> parentId.equals(row.getParentPointId()))
+                                    .map(RentalPointTreeRow::getId)
+                                    .filter(id -> !id.equals(parentId))
+                                    .toList(),
+                            view);
             logger.info(
                     "Получено {} дочерних точек проката для родительской точки с ID: {}",
                     childRentalPoints.size(),
@@ -236,37 +345,371 @@ public class RentalPointServiceImpl implements RentalPointService {
         }
     }
 
-    private RentalPointInfoDto convertToRentalPointInfoDto(RentalPoint rentalPoint) {
-        RentalPointInfoDto dto = new RentalPointInfoDto();
-        dto.setId(rentalPoint.getId());
-        dto.setName(rentalPoint.getName());
-        dto.setAddress(rentalPoint.getAddress());
-        dto.setLatitude(rentalPoint.getLatitude());
-        dto.setLongitude(rentalPoint.getLongitude());
-        if (rentalPoint.getParentPoint() != null) {
-            dto.setParentPointId(rentalPoint.getParentPoint().getId());
+    @Override
+    public List<RentalPointScooterCountsDto> getScooterCounts() {
+        logger.info("Попытка получить сводку самокатов по точкам проката.");
+        try {
+            // сводка строится по счётчикам в памяти, без обращения к БД
+            List<RentalPointScooterCountsDto> counts =
+                    fleetStateStore.countsByRentalPoint().entrySet().stream()
+                            .map(
+                                    entry ->
+                                            new RentalPointScooterCountsDto(
+                                                    entry.getKey(), entry.getValue()))
+                            .sorted(
+                                    Comparator.comparing(
+                                            RentalPointScooterCountsDto::getRentalPointId))
+                            .collect(Collectors.toList());
+            logger.info("Получена сводка по {} точкам проката.", counts.size());
+            return counts;
+        } catch (Exception e) {
+            logger.error(
+                    "Ошибка при получении сводки самокатов по точкам проката: {}",
+                    e.getMessage(),
+                    e);
+            throw e;
         }
+    }
 
-        // добавление точек рекурсия
-        if (rentalPoint.getChildPoints() != null) {
-            dto.setChildPoints(
-                    rentalPoint.getChildPoints().stream()
-                            .map(this::convertToRentalPointInfoDto)
-                            .collect(Collectors.toList()));
+    @Override
+    public List<MapClusterDto> getMapClusters(
+            double minLatitude,
+            double minLongitude,
+            double maxLatitude,
+            double maxLongitude,
+            int zoom) {
+        logger.info(
+                "Попытка получить кластеры карты: область [{}, {}, {}, {}], масштаб {}",
+                minLatitude,
+                minLongitude,
+                maxLatitude,
+                maxLongitude,
+                zoom);
+        try {
+            if (minLatitude < -90
+                    || maxLatitude > 90
+                    || minLatitude > maxLatitude
+                    || minLongitude < -180
+                    || minLongitude > 180
+                    || maxLongitude < -180
+                    || maxLongitude > 180) {
+                throw new IllegalArgumentException("Некорректные границы области");
+            }
+            if (zoom < 0 || zoom > MapClusterIndex.MAX_ZOOM) {
+                throw new IllegalArgumentException(
+                        "Масштаб должен быть от 0 до " + MapClusterIndex.MAX_ZOOM);
+            }
+            List<MapClusterDto> clusters =
+                    mapClusterIndex.clusters(
+                            new BoundingBox(minLatitude, minLongitude, maxLatitude, maxLongitude),
+                            zoom);
+            logger.info("Получено {} кластеров карты.", clusters.size());
+            return clusters;
+        } catch (Exception e) {
+            logger.error("Ошибка при получении кластеров карты: {}", e.getMessage(), e);
+            throw e;
         }
+    }
 
+    @Override
+    public CursorPageDto<ScooterInfoDto> getSubtreeScooters(
+            Long id, ScooterSearchFilterDto filter, String sort, String cursor, int limit)
+            throws RentalPointNotFoundException {
+        logger.info("Попытка получить самокаты поддерева точки проката с ID: {}", id);
         try {
-            List<ScooterInfoDto> scooterDtos =
-                    scooterService.getScootersByRentalPoint(rentalPoint.getId());
-            dto.setScooters(scooterDtos);
-        } catch (RentalPointNotFoundException e) {
+            requireExists(id);
+            filter.setUnderRentalPointId(id);
+            CursorPageDto<ScooterInfoDto> page =
+                    scooterService.searchScooters(filter, sort, cursor, limit);
+            logger.info(
+                    "Получено {} самокатов поддерева точки проката с ID {}.",
+                    page.getItems().size(),
+                    id);
+            return page;
+        } catch (Exception e) {
             logger.error(
-                    "Точка проката с ID {} не найдена при получении самокатов: {}",
+                    "Ошибка при получении самокатов поддерева точки проката с ID {}: {}",
+                    id,
+                    e.getMessage(),
+                    e);
+            throw e;
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public RentalPointScooterCountsDto getSubtreeScooterCounts(Long id)
+            throws RentalPointNotFoundException {
+        logger.info("Попытка получить сводку самокатов поддерева точки проката с ID: {}", id);
+        try {
+            requireExists(id);
+            Map<ScooterStatus, Integer> counts = new EnumMap<>(ScooterStatus.class);
+            for (ScooterStatus status : ScooterStatus.values()) {
+                counts.put(status, 0);
+            }
+            for (ScooterStatusCount count : scooterRepository.countByStatusUnderRentalPoint(id)) {
+                counts.put(count.getStatus(), (int) count.getScooters());
+            }
+            logger.info("Получена сводка самокатов поддерева точки проката с ID {}.", id);
+            return new RentalPointScooterCountsDto(id, counts);
+        } catch (Exception e) {
+            logger.error(
+                    "Ошибка при получении сводки самокатов поддерева точки проката с ID {}: {}",
+                    id,
+                    e.getMessage(),
+                    e);
+            throw e;
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<RentalPointDto> getAncestors(Long id) throws RentalPointNotFoundException {
+        logger.info("Попытка получить предков точки проката с ID: {}", id);
+        try {
+            requireExists(id);
+            List<RentalPointDto> ancestors =
+                    closureRepository.findAncestorRows(id).stream()
+                            .map(
+                                    row ->
+                                            new RentalPointDto(
+                                                    row.getId(),
+                                                    row.getName(),
+                                                    row.getAddress(),
+                                                    row.getLatitude(),
+                                                    row.getLongitude(),
+                                                    row.getParentPointId()))
+                            .collect(Collectors.toList());
+            logger.info("Получено {} предков точки проката с ID {}.", ancestors.size(), id);
+            return ancestors;
+        } catch (Exception e) {
+            logger.error(
+                    "Ошибка при получении предков точки проката с ID {}: {}",
+                    id,
+                    e.getMessage(),
+                    e);
+            throw e;
+        }
+    }
+
+    private void requireExists(Long id) throws RentalPointNotFoundException {
+        if (!rentalPointRepository.existsById(id)) {
+            logger.warn("Точка проката с ID {} не найдена.", id);
+            throw new RentalPointNotFoundException("Точка проката с ID " + id + " не найдена");
+        }
+    }
+
+    // точка переносится вместе с поддеревом; новый родитель не может лежать внутри него
+    private void moveSubtree(Long id, Long parentId) {
+        closureRepository.lockHierarchy();
+        if (closureRepository.existsByAncestorIdAndDescendantId(id, parentId)) {
+            logger.warn(
+                    "Точку проката с ID {} нельзя перенести в её поддерево (точка {}).",
+                    id,
+                    parentId);
+            throw new IllegalArgumentException(
+                    "Точку проката с ID " + id + " нельзя перенести в её собственное поддерево");
+        }
+        closureRepository.detachSubtree(id);
+        closureRepository.attachSubtree(id, parentId);
+    }
+
+    // точки в ответ попадают из снимка иерархии, поэтому хэшируется содержимое поддерева
+    // из него: версия из БД опередила бы снимок между фиксацией и обработкой события, и
+    // клиент закэшировал бы старое тело под новым ETag. Номер версии самого снимка сюда не
+    // входит: он свой у каждого экземпляра и меняется от правки любой точки
+    private String entityTag(Long id) throws RentalPointNotFoundException {
+        RentalPointHierarchy hierarchy = hierarchyStore.current();
+        if (!hierarchy.contains(id)) {
+            logger.warn("Точка проката с ID {} не найдена.", id);
+            throw new RentalPointNotFoundException("Точка проката с ID " + id + " не найдена");
+        }
+        Long version =
+                rentalPointRepository
+                        .findVersionById(id)
+                        .orElseThrow(
+                                () ->
+                                        new RentalPointNotFoundException(
+                                                "Точка проката с ID " + id + " не найдена"));
+        ContentDigest digest = new ContentDigest();
+        for (RentalPointTreeRow row : hierarchy.subtree(id, null)) {
+            digest.add(row.getId())
+                    .add(row.getName())
+                    .add(row.getAddress())
+                    .add(row.getLatitude())
+                    .add(row.getLongitude())
+                    .add(row.getParentPointId());
+        }
+        digest.add(rentalPointRepository.findSubtreeScooterDigest(id));
+        return version + "-" + digest.hex();
+    }
+
+    private static void checkVersion(RentalPoint rentalPoint, String expectedVersion) {
+        String current = String.valueOf(rentalPoint.getVersion());
+        if (expectedVersion != null && !expectedVersion.equals(current)) {
+            logger.warn(
+                    "Версия точки проката с ID {} не совпала: ожидалась {}, текущая {}.",
                     rentalPoint.getId(),
-                    e.getMessage());
-            dto.setScooters(java.util.Collections.emptyList());
+                    expectedVersion,
+                    current);
+            throw new PreconditionFailedException(
+                    "Точка проката с ID "
+                            + rentalPoint.getId()
+                            + " изменена, текущая версия "
+                            + current);
+        }
+    }
+
+    private static void checkView(RentalPointViewDto view) {
+        if (view.getDepth() != null && view.getDepth() < 0) {
+            throw new IllegalArgumentException("Глубина не может быть отрицательной");
+        }
+    }
+
+    // дерево связывается по parentPointId за один проход по заранее загруженным строкам;
+    // корень поддерева не привязывается к родителю, даже если тот попал в выборку из-за цикла
+    private List<RentalPointInfoDto> assemble(
+            List<RentalPointTreeRow> rows,
+            Long rootId,
+            List<Long> topIds,
+            RentalPointViewDto view) {
+        Map<Long, RentalPointInfoDto> nodes = new LinkedHashMap<>();
+        for (RentalPointTreeRow row : rows) {
+            nodes.put(row.getId(), convertToRentalPointInfoDto(row));
+        }
+        Map<Long, List<RentalPointInfoDto>> children = new HashMap<>();
+        for (RentalPointInfoDto node : nodes.values()) {
+            if (nodes.containsKey(node.getParentPointId()) && !node.getId().equals(rootId)) {
+                children.computeIfAbsent(node.getParentPointId(), id -> new ArrayList<>())
+                        .add(node);
+            }
+        }
+
+        Set<Long> included = reachable(topIds, children, view.getDepth());
+        fillDetails(nodes, included, view.getInclude());
+        if (view.isFlat()) {
+            return nodes.values().stream()
+                    .filter(node -> included.contains(node.getId()))
+                    .collect(Collectors.toList());
+        }
+        if (view.getDepth() == null) {
+            for (RentalPointInfoDto node : nodes.values()) {
+                node.setChildPoints(children.getOrDefault(node.getId(), new ArrayList<>()));
+            }
+            return topIds.stream().map(nodes::get).collect(Collectors.toList());
+        }
+        return topIds.stream()
+                .map(id -> limitDepth(nodes.get(id), children, view.getDepth()))
+                .collect(Collectors.toList());
+    }
+
+    // точки, которые попадут в ответ: верхние и их потомки не глубже depth
+    private static Set<Long> reachable(
+            List<Long> topIds, Map<Long, List<RentalPointInfoDto>> children, Integer depth) {
+        Map<Long, Integer> remaining = new HashMap<>();
+        Deque<Long> queue = new ArrayDeque<>();
+        for (Long id : topIds) {
+            remaining.put(id, depth == null ? Integer.MAX_VALUE : depth);
+            queue.add(id);
+        }
+        while (!queue.isEmpty()) {
+            Long id = queue.poll();
+            int left = remaining.get(id);
+            if (left == 0) {
+                continue;
+            }
+            for (RentalPointInfoDto child : children.getOrDefault(id, List.of())) {
+                // без ограничения глубины каждая точка обходится один раз
+                Integer known = remaining.get(child.getId());
+                if (known == null || (depth != null && known < left - 1)) {
+                    remaining.put(child.getId(), left - 1);
+                    queue.add(child.getId());
+                }
+            }
+        }
+        return remaining.keySet();
+    }
+
+    // самокаты и счётчики загружаются только для точек, которые попадут в ответ
+    private void fillDetails(
+            Map<Long, RentalPointInfoDto> nodes,
+            Set<Long> included,
+            RentalPointViewDto.Include include) {
+        if (include == RentalPointViewDto.Include.NONE || included.isEmpty()) {
+            return;
         }
+        Map<Long, List<ScooterInfoDto>> scooters =
+                include == RentalPointViewDto.Include.SCOOTERS
+                        ? scooterService.getScootersByRentalPoints(included)
+                        : Map.of();
+        for (Long id : included) {
+            RentalPointInfoDto node = nodes.get(id);
+            node.setScooterCounts(fleetStateStore.countsAt(id));
+            if (include == RentalPointViewDto.Include.SCOOTERS) {
+                node.setScooters(scooters.getOrDefault(id, List.of()));
+            }
+        }
+    }
 
+    // при ограниченной глубине точка может оказаться на разных уровнях разных ветвей,
+    // поэтому узлы копируются; у последнего уровня childPoints остаётся null
+    private static RentalPointInfoDto limitDepth(
+            RentalPointInfoDto node, Map<Long, List<RentalPointInfoDto>> children, int depth) {
+        List<RentalPointInfoDto> childPoints = null;
+        if (depth > 0) {
+            childPoints =
+                    children.getOrDefault(node.getId(), List.of()).stream()
+                            .map(child -> limitDepth(child, children, depth - 1))
+                            .collect(Collectors.toList());
+        }
+        return new RentalPointInfoDto(
+                node.getId(),
+                node.getName(),
+                node.getAddress(),
+                node.getLatitude(),
+                node.getLongitude(),
+                node.getParentPointId(),
+                childPoints,
+                node.getScooters(),
+                node.getScooterCounts());
+    }
+
+    private static RentalPointInfoDto convertToRentalPointInfoDto(RentalPointTreeRow row) {
+        RentalPointInfoDto dto = new RentalPointInfoDto();
+        dto.setId(row.getId());
+        dto.setName(row.getName());
+        dto.setAddress(row.getAddress());
+        dto.setLatitude(row.getLatitude());
+        dto.setLongitude(row.getLongitude());
+        dto.setParentPointId(row.getParentPointId());
         return dto;
     }
+
+    private void publishLocation(RentalPoint rentalPoint) {
+        eventPublisher.publishEvent(
+                new RentalPointChangedEvent(
+                        rentalPoint.getId(),
+                        rentalPoint.getName(),
+                        rentalPoint.getAddress(),
+                        rentalPoint.getLatitude(),
+                        rentalPoint.getLongitude(),
+                        rentalPoint.getParentPoint() == null
+                                ? null
+                                : rentalPoint.getParentPoint().getId(),
+                        false));
+    }
+
+    private void publishRemoval(RentalPoint rentalPoint) {
+        if (rentalPoint.getScooters() != null) {
+            for (Scooter scooter : rentalPoint.getScooters()) {
+                eventPublisher.publishEvent(ScooterStateChangedEvent.removed(scooter.getId()));
+            }
+        }
+        if (rentalPoint.getChildPoints() != null) {
+            for (RentalPoint child : rentalPoint.getChildPoints()) {
+                publishRemoval(child);
+            }
+        }
+        eventPublisher.publishEvent(RentalPointChangedEvent.removed(rentalPoint.getId()));
+    }
 }
@@ -1,17 +1,24 @@
 package com.example.scooterrental.service.impl;
 
+import com.example.scooterrental.dto.CursorPageDto;
 import com.example.scooterrental.dto.RentalDto;
 import com.example.scooterrental.dto.RentalInfoDto;
 import com.example.scooterrental.exception.RentalNotFoundException;
 import com.example.scooterrental.exception.ScooterNotFoundException;
+import com.example.scooterrental.exception.ScooterUnavailableException;
 import com.example.scooterrental.exception.UserNotFoundException;
 import com.example.scooterrental.model.Rental;
 import com.example.scooterrental.model.Scooter;
-import com.example.scooterrental.model.ScooterStatus;
-import com.example.scooterrental.model.Tariff;
 import com.example.scooterrental.model.User;
+import com.example.scooterrental.outbox.OutboxEventTypes;
+import com.example.scooterrental.outbox.OutboxWriter;
+import com.example.scooterrental.outbox.RentalEndedPayload;
+import com.example.scooterrental.pricing.PricingEngine;
+import com.example.scooterrental.pricing.TariffCache;
+import com.example.scooterrental.pricing.TariffPricing;
 import com.example.scooterrental.repository.RentalRepository;
 import com.example.scooterrental.repository.ScooterRepository;
+import com.example.scooterrental.repository.ScooterReservation;
 import com.example.scooterrental.repository.TariffRepository;
 import com.example.scooterrental.repository.UserRepository;
 import com.example.scooterrental.service.RentalService;
@@ -19,24 +26,33 @@ import com.example.scooterrental.service.ScooterService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class RentalServiceImpl implements RentalService {
 
     private static final Logger logger = LoggerFactory.getLogger(RentalServiceImpl.class);
+    private static final int MAX_PAGE_SIZE = 500;
+    // аренда начинается сейчас; время клиента допускается с этим расхождением часов, иначе
+    // строка попадает в давно закрытую или страховочную секцию rentals
+    private static final Duration MAX_START_TIME_SKEW = Duration.ofMinutes(5);
 
     private final RentalRepository rentalRepository;
     private final UserRepository userRepository;
     private final ScooterRepository scooterRepository;
     private final ScooterService scooterService;
     private final TariffRepository tariffRepository;
+    private final TariffCache tariffCache;
+    private final PricingEngine pricingEngine;
+    private final OutboxWriter outboxWriter;
 
     @Autowired
     public RentalServiceImpl(
@@ -44,20 +60,27 @@ public class RentalServiceImpl implements RentalService {
             UserRepository userRepository,
             ScooterRepository scooterRepository,
             ScooterService scooterService,
-            TariffRepository tariffRepository) {
+            TariffRepository tariffRepository,
+            TariffCache tariffCache,
+            PricingEngine pricingEngine,
+            OutboxWriter outboxWriter) {
         this.rentalRepository = rentalRepository;
         this.userRepository = userRepository;
         this.scooterRepository = scooterRepository;
         this.scooterService = scooterService;
         this.tariffRepository = tariffRepository;
+        this.tariffCache = tariffCache;
+        this.pricingEngine = pricingEngine;
+        this.outboxWriter = outboxWriter;
     }
 
     @Override
     @Transactional
     public RentalDto createRental(RentalDto rentalDto)
-            throws UserNotFoundException, ScooterNotFoundException {
+            throws UserNotFoundException, ScooterNotFoundException, ScooterUnavailableException {
         logger.info("Попытка создать запись аренды: {}", rentalDto);
         try {
+            checkStartTime(rentalDto.getStartTime());
             User user =
                     userRepository
                             .findById(rentalDto.getUserId())
@@ -71,38 +94,20 @@ public class RentalServiceImpl implements RentalService {
                                                         + rentalDto.getUserId()
                                                         + " не найден");
                                     });
-            Scooter scooter =
-                    scooterRepository
-                            .findById(rentalDto.getScooterId())
-                            .orElseThrow(
-                                    () -> {
-                                        logger.warn(
-                                                "Самокат с ID {} не найден.",
-                                                rentalDto.getScooterId());
-                                        return new ScooterNotFoundException(
-                                                "Самокат с ID "
-                                                        + rentalDto.getScooterId()
-                                                        + " не найден");
-                                    });
+            ScooterReservation reservation =
+                    scooterService.reserveScooter(rentalDto.getScooterId());
 
-            if (scooter.getStatus() != ScooterStatus.AVAILABLE) {
-                logger.error("Самокат с ID {} недоступен для аренды.", scooter.getId());
-                throw new IllegalArgumentException("Самокат недоступен для аренды");
+            // существование тарифа проверяется по кэшу, а в аренду ставится ссылка без SELECT
+            if (tariffCache.find(rentalDto.getTariffId()).isEmpty()) {
+                throw new IllegalArgumentException("Тариф не найден");
             }
 
-            Tariff tariff =
-                    tariffRepository
-                            .findById(rentalDto.getTariffId())
-                            .orElseThrow(() -> new IllegalArgumentException("Тариф не найден"));
-
             Rental rental = new Rental();
             rental.setUser(user);
-            rental.setScooter(scooter);
+            rental.setScooter(scooterRepository.getReferenceById(reservation.getId()));
             rental.setStartTime(rentalDto.getStartTime());
-            rental.setStartMileage(scooter.getMileage());
-            rental.setTariff(tariff);
-
-            scooterService.updateScooterStatus(scooter.getId(), ScooterStatus.IN_USE);
+            rental.setStartMileage(reservation.getMileage());
+            rental.setTariff(tariffRepository.getReferenceById(rentalDto.getTariffId()));
 
             rental = rentalRepository.save(rental);
             rentalDto.setId(rental.getId());
@@ -159,13 +164,35 @@ public class RentalServiceImpl implements RentalService {
 
             rental.setEndTime(LocalDateTime.now());
             Scooter scooter = rental.getScooter();
-            rental.setEndMileage(scooter.getMileage());
+            // самокат освобождается условным UPDATE, как и резервируется: версионное сохранение
+            // сущности столкнулось бы с параллельной записью и вернуло бы пользователю 409
+            rental.setEndMileage(
+                    scooterService
+                            .releaseScooter(scooter.getId())
+                            .map(ScooterReservation::getMileage)
+                            .orElseGet(scooter::getMileage));
 
-            double cost = calculateCost(rental);
-            rental.setTotalCost(cost);
+            long costMinor =
+                    pricingEngine
+                            .pricingFor(rental.getTariff())
+                            .priceMinor(rental.getStartTime(), rental.getEndTime());
+            rental.setTotalCost(TariffPricing.toMajorUnits(costMinor));
 
-            scooterService.updateScooterStatus(scooter.getId(), ScooterStatus.AVAILABLE);
             rentalRepository.save(rental);
+            // статистику самоката пополняет обработчик этого события, вне запроса
+            outboxWriter.append(
+                    OutboxEventTypes.RENTAL_ENDED,
+                    rental.getId(),
+                    new RentalEndedPayload(
+                            rental.getId(),
+                            rental.getUser().getId(),
+                            scooter.getId(),
+                            rental.getTariff().getId(),
+                            rental.getStartTime(),
+                            rental.getEndTime(),
+                            rental.getStartMileage(),
+                            rental.getEndMileage(),
+                            rental.getTotalCost()));
 
             RentalDto rentalDto = new RentalDto();
             rentalDto.setId(rental.getId());
@@ -186,49 +213,70 @@ public class RentalServiceImpl implements RentalService {
         }
     }
 
-    private double calculateCost(Rental rental) {
-        Duration duration = Duration.between(rental.getStartTime(), rental.getEndTime());
-        double hours = duration.toMinutes() / 60.0;
-        double cost = 0;
-        Tariff tariff = rental.getTariff();
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPageDto<RentalInfoDto> getRentalsPage(String cursor, int limit) {
+        logger.info("Попытка получить страницу аренд (курсор: {}, размер: {})", cursor, limit);
+        try {
+            int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+            // запрашиваем на одну строку больше, чтобы узнать, есть ли следующая страница
+            PageRequest pageRequest = PageRequest.of(0, pageSize + 1);
+            List<RentalInfoDto> rows;
+            if (cursor == null || cursor.isBlank()) {
+                rows = rentalRepository.findRentalInfoPage(pageRequest);
+            } else {
+                KeysetCursor after = KeysetCursor.decode(cursor);
+                rows =
+                        rentalRepository.findRentalInfoPageAfter(
+                                after.getStartTime(), after.getId(), pageRequest);
+            }
 
-        if (tariff.getIsSubscription()) {
-            cost = tariff.getSubscriptionPrice();
-        } else {
-            cost = hours * tariff.getPricePerHour();
-        }
-        //скидка
-        if (tariff.getDiscount() != null && tariff.getDiscount() > 0) {
-            cost = cost * (1 - tariff.getDiscount());
+            String nextCursor = null;
+            if (rows.size() > pageSize) {
+                rows = rows.subList(0, pageSize);
+                RentalInfoDto last = rows.get(pageSize - 1);
+                nextCursor = new KeysetCursor(last.getStartTime(), last.getId()).encode();
+            }
+            logger.info("Получено {} записей аренды.", rows.size());
+            return new CursorPageDto<>(rows, nextCursor);
+        } catch (Exception e) {
+            logger.error("Ошибка при получении страницы аренд: {}", e.getMessage(), e);
+            throw e;
         }
-        return cost;
     }
 
     @Override
-    public List<RentalInfoDto> getAllRentals() {
-        logger.info("Попытка получить все записи аренды.");
-        try {
-            List<RentalInfoDto> rentals =
-                    rentalRepository.findAll().stream()
-                            .map(this::convertToRentalInfoDto)
-                            .collect(Collectors.toList());
-            logger.info("Получено {} записей аренды.", rentals.size());
-            return rentals;
+    @Transactional(readOnly = true)
+    public void streamAllRentals(Consumer<RentalInfoDto> consumer) {
+        logger.info("Попытка выгрузить все записи аренды потоком.");
+        try (Stream<RentalInfoDto> rentals = rentalRepository.streamAllRentalInfo()) {
+            long[] count = {0};
+            rentals.forEachOrdered(
+                    rental -> {
+                        consumer.accept(rental);
+                        count[0]++;
+                    });
+            logger.info("Выгружено {} записей аренды.", count[0]);
         } catch (Exception e) {
-            logger.error("Ошибка при получении всех записей аренды: {}", e.getMessage(), e);
+            logger.error("Ошибка при потоковой выгрузке аренд: {}", e.getMessage(), e);
             throw e;
         }
     }
 
     @Override
     @Transactional(readOnly = true)
-    public List<RentalInfoDto> getRentalsByUser(Long userId) {
-        logger.info("Попытка получить записи аренды для пользователя с ID: {}", userId);
+    public List<RentalInfoDto> getRentalsByUser(
+            Long userId, LocalDateTime from, LocalDateTime to) {
+        logger.info(
+                "Попытка получить записи аренды для пользователя с ID: {} (с {} по {})",
+                userId,
+                from,
+                to);
         try {
             List<RentalInfoDto> rentals =
-                    rentalRepository.findByUserId(userId).stream()
-                            .map(this::convertToRentalInfoDto)
-                            .collect(Collectors.toList());
+                    isWindowRequested(from, to)
+                            ? rentalRepository.findRentalInfoByUserIdInWindow(userId, from, to)
+                            : rentalRepository.findRentalInfoByUserId(userId);
             logger.info(
                     "Получено {} записей аренды для пользователя с ID {}.", rentals.size(), userId);
             return rentals;
@@ -244,13 +292,15 @@ public class RentalServiceImpl implements RentalService {
 
     @Override
     @Transactional(readOnly = true)
-    public List<RentalInfoDto> getRentalsByScooter(Long scooterId) {
-        logger.info("Попытка получить записи аренды для самоката с ID: {}", scooterId);
+    public List<RentalInfoDto> getRentalsByScooter(
+            Long scooterId, LocalDateTime from, LocalDateTime to) {
+        logger.info(
+                "Попытка получить записи аренды для самоката с ID: {} (с {} по {})",
+                scooterId,
+                from,
+                to);
         try {
-            List<RentalInfoDto> rentals =
-                    rentalRepository.findByScooterId(scooterId).stream()
-                            .map(this::convertToRentalInfoDto)
-                            .collect(Collectors.toList());
+            List<RentalInfoDto> rentals = findRentalInfoByScooter(scooterId, from, to);
             logger.info(
                     "Получено {} записей аренды для самоката с ID {}.", rentals.size(), scooterId);
             return rentals;
@@ -266,13 +316,15 @@ public class RentalServiceImpl implements RentalService {
 
     @Override
     @Transactional(readOnly = true)
-    public List<RentalInfoDto> getRentalHistoryByScooter(Long scooterId) {
-        logger.info("Попытка получить историю аренды для самоката с ID: {}", scooterId);
+    public List<RentalInfoDto> getRentalHistoryByScooter(
+            Long scooterId, LocalDateTime from, LocalDateTime to) {
+        logger.info(
+                "Попытка получить историю аренды для самоката с ID: {} (с {} по {})",
+                scooterId,
+                from,
+                to);
         try {
-            List<RentalInfoDto> rentals =
-                    rentalRepository.findByScooterId(scooterId).stream()
-                            .map(this::convertToRentalInfoDto)
-                            .collect(Collectors.toList());
+            List<RentalInfoDto> rentals = findRentalInfoByScooter(scooterId, from, to);
             logger.info(
                     "Получено {} записей истории аренды для самоката с ID {}.",
                     rentals.size(),
@@ -288,6 +340,46 @@ public class RentalServiceImpl implements RentalService {
         }
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<RentalInfoDto> getActiveRentals(Long userId, Long scooterId, Long rentalPointId) {
+        logger.info(
+                "Попытка получить активные аренды (пользователь: {}, самокат: {}, точка проката: {})",
+                userId,
+                scooterId,
+                rentalPointId);
+        try {
+            List<RentalInfoDto> rentals =
+                    rentalRepository.findActiveRentalInfo(userId, scooterId, rentalPointId);
+            logger.info("Получено {} активных аренд.", rentals.size());
+            return rentals;
+        } catch (Exception e) {
+            logger.error("Ошибка при получении активных аренд: {}", e.getMessage(), e);
+            throw e;
+        }
+    }
+
+    private List<RentalInfoDto> findRentalInfoByScooter(
+            Long scooterId, LocalDateTime from, LocalDateTime to) {
+        if (isWindowRequested(from, to)) {
+            return rentalRepository.findRentalInfoByScooterIdInWindow(scooterId, from, to);
+        }
+        return rentalRepository.findRentalInfoByScooterId(scooterId);
+    }
+
+    private boolean isWindowRequested(LocalDateTime from, LocalDateTime to) {
+        if (from == null && to == null) {
+            return false;
+        }
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Параметры from и to передаются только вместе");
+        }
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("Начало периода должно быть раньше его конца");
+        }
+        return true;
+    }
+
     private RentalInfoDto convertToRentalInfoDto(Rental rental) {
         RentalInfoDto dto = new RentalInfoDto();
         dto.setId(rental.getId());
@@ -306,4 +398,17 @@ public class RentalServiceImpl implements RentalService {
         }
         return dto;
     }
+
+    private static void checkStartTime(LocalDateTime startTime) {
+        LocalDateTime now = LocalDateTime.now();
+        if (startTime == null
+                || startTime.isBefore(now.minus(MAX_START_TIME_SKEW))
+                || startTime.isAfter(now.plus(MAX_START_TIME_SKEW))) {
+            logger.warn("Время начала аренды {} слишком далеко от текущего.", startTime);
+            throw new IllegalArgumentException(
+                    "Время начала аренды может отличаться от текущего не больше чем на "
+                            + MAX_START_TIME_SKEW.toMinutes()
+                            + " мин.");
+        }
+    }
 }
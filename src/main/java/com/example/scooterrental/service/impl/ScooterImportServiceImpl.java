@@ -0,0 +1,542 @@
+package com.example.scooterrental.service.impl;
+
+import com.example.scooterrental.dto.ScooterDto;
+import com.example.scooterrental.dto.ScooterImportErrorDto;
+import com.example.scooterrental.dto.ScooterImportResultDto;
+import com.example.scooterrental.event.ScooterStateChangedEvent;
+import com.example.scooterrental.model.ScooterStatus;
+import com.example.scooterrental.repository.RentalPointRepository;
+import com.example.scooterrental.repository.ScooterImportRow;
+import com.example.scooterrental.repository.ScooterRepository;
+import com.example.scooterrental.repository.TariffRepository;
+import com.example.scooterrental.service.ScooterImportService;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+
+// Файл читается потоком и обрабатывается пачками по batch-size записей: проверки серийных
+// номеров и ссылок выполняются одним запросом на пачку, вставка — одним INSERT ... unnest.
+// В памяти держится только текущая пачка и не более max-reported-errors ошибок
+@Service
+public class ScooterImportServiceImpl implements ScooterImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScooterImportServiceImpl.class);
+
+    private static final List<String> CSV_COLUMNS =
+            List.of(
+                    "model",
+                    "serialNumber",
+                    "status",
+                    "chargeLevel",
+                    "mileage",
+                    "rentalPointId",
+                    "tariffId");
+    private static final List<String> REQUIRED_CSV_COLUMNS =
+            List.of("model", "serialNumber", "status", "chargeLevel");
+    // совпадает с INCREMENT BY последовательности scooters_id_seq и allocationSize сущности
+    private static final int ID_BLOCK_SIZE = 50;
+
+    private final ScooterRepository scooterRepository;
+    private final RentalPointRepository rentalPointRepository;
+    private final TariffRepository tariffRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int batchSize;
+    private final int maxReportedErrors;
+
+    @Autowired
+    public ScooterImportServiceImpl(
+            ScooterRepository scooterRepository,
+            RentalPointRepository rentalPointRepository,
+            TariffRepository tariffRepository,
+            PlatformTransactionManager transactionManager,
+            ObjectMapper objectMapper,
+            Validator validator,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${scooters.import.batch-size:1000}") int batchSize,
+            @Value("${scooters.import.max-reported-errors:1000}") int maxReportedErrors) {
+        this.scooterRepository = scooterRepository;
+        this.rentalPointRepository = rentalPointRepository;
+        this.tariffRepository = tariffRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.eventPublisher = eventPublisher;
+        this.batchSize = batchSize;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    @Override
+    public ScooterImportResultDto importCsv(InputStream csv) throws IOException {
+        logger.info("Попытка импортировать самокаты из CSV");
+        try {
+            BufferedReader reader =
+                    new BufferedReader(new InputStreamReader(csv, StandardCharsets.UTF_8));
+            String header = reader.readLine();
+            if (header == null || header.isBlank()) {
+                throw new IllegalArgumentException("CSV-файл пуст: нет строки заголовка");
+            }
+            Map<String, Integer> columns = parseHeader(splitCsvLine(stripBom(header)));
+            ImportBatch batch = new ImportBatch();
+            long row = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                row++;
+                ScooterDto scooterDto = new ScooterDto();
+                String error = fillFromCsv(scooterDto, splitCsvLine(line), columns);
+                batch.add(row, scooterDto, error);
+            }
+            ScooterImportResultDto result = batch.finish();
+            logResult(result);
+            return result;
+        } catch (Exception e) {
+            logger.error("Ошибка при импорте самокатов из CSV: {}", e.getMessage(), e);
+            throw e;
+        }
+    }
+
+    @Override
+    public ScooterImportResultDto importJson(InputStream json) throws IOException {
+        logger.info("Попытка импортировать самокаты из JSON");
+        try (JsonParser parser = objectMapper.getFactory().createParser(json)) {
+            JsonToken first;
+            try {
+                first = parser.nextToken();
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("Некорректный JSON: " + e.getOriginalMessage());
+            }
+            if (first != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("Ожидается JSON-массив самокатов");
+            }
+            ImportBatch batch = new ImportBatch();
+            long row = 0;
+            try {
+                JsonToken token;
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    if (token == null) {
+                        throw new IllegalArgumentException("JSON-массив не закрыт");
+                    }
+                    // элемент читается в дерево отдельно, чтобы ошибка в нём не ломала разбор
+                    JsonNode node = objectMapper.readTree(parser);
+                    row++;
+                    try {
+                        batch.add(row, objectMapper.treeToValue(node, ScooterDto.class), null);
+                    } catch (JsonProcessingException e) {
+                        ScooterDto scooterDto = new ScooterDto();
+                        scooterDto.setSerialNumber(node.path("serialNumber").asText(null));
+                        batch.add(
+                                row, scooterDto, "Некорректная запись: " + e.getOriginalMessage());
+                    }
+                }
+            } catch (JsonProcessingException | IllegalArgumentException e) {
+                // уже прочитанные записи сохраняются, остаток файла не разбирается
+                batch.stop(
+                        row + 1,
+                        "Некорректный JSON, разбор остановлен: "
+                                + (e instanceof JsonProcessingException jsonError
+                                        ? jsonError.getOriginalMessage()
+                                        : e.getMessage()));
+            }
+            ScooterImportResultDto result = batch.finish();
+            logResult(result);
+            return result;
+        } catch (Exception e) {
+            logger.error("Ошибка при импорте самокатов из JSON: {}", e.getMessage(), e);
+            throw e;
+        }
+    }
+
+    private void logResult(ScooterImportResultDto result) {
+        logger.info(
+                "Импорт самокатов завершён: записей {}, импортировано {}, с ошибками {}",
+                result.getTotal(),
+                result.getImported(),
+                result.getFailed());
+    }
+
+    private static String stripBom(String header) {
+        return header.startsWith("\uFEFF") ? header.substring(1) : header;
+    }
+
+    private static Map<String, Integer> parseHeader(List<String> header) {
+        Map<String, String> known = new HashMap<>();
+        for (String column : CSV_COLUMNS) {
+            known.put(column.toLowerCase(Locale.ROOT), column);
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            String name = header.get(i) == null ? "" : header.get(i);
+            String column = known.get(name.replace("_", "").toLowerCase(Locale.ROOT));
+            if (column == null) {
+                throw new IllegalArgumentException("Неизвестный столбец CSV: " + name);
+            }
+            if (columns.put(column, i) != null) {
+                throw new IllegalArgumentException("Столбец CSV повторяется: " + name);
+            }
+        }
+        for (String column : REQUIRED_CSV_COLUMNS) {
+            if (!columns.containsKey(column)) {
+                throw new IllegalArgumentException("В CSV нет обязательного столбца " + column);
+            }
+        }
+        return columns;
+    }
+
+    // возвращает текст ошибки или null
+    private static String fillFromCsv(
+            ScooterDto scooterDto, List<String> values, Map<String, Integer> columns) {
+        if (values.size() != columns.size()) {
+            return "Ожидалось столбцов: " + columns.size() + ", получено: " + values.size();
+        }
+        String column = null;
+        String value = null;
+        try {
+            column = "model";
+            scooterDto.setModel(values.get(columns.get(column)));
+            column = "serialNumber";
+            scooterDto.setSerialNumber(values.get(columns.get(column)));
+            column = "status";
+            value = values.get(columns.get(column));
+            scooterDto.setStatus(
+                    value == null ? null : ScooterStatus.valueOf(value.toUpperCase(Locale.ROOT)));
+            column = "chargeLevel";
+            value = values.get(columns.get(column));
+            scooterDto.setChargeLevel(value == null ? null : Integer.valueOf(value));
+            column = "mileage";
+            value = columns.containsKey(column) ? values.get(columns.get(column)) : null;
+            scooterDto.setMileage(value == null ? null : Double.valueOf(value));
+            column = "rentalPointId";
+            value = columns.containsKey(column) ? values.get(columns.get(column)) : null;
+            scooterDto.setRentalPointId(value == null ? null : Long.valueOf(value));
+            column = "tariffId";
+            value = columns.containsKey(column) ? values.get(columns.get(column)) : null;
+            scooterDto.setTariffId(value == null ? null : Long.valueOf(value));
+            return null;
+        } catch (IllegalArgumentException e) {
+            return "Некорректное значение в столбце " + column + ": " + value;
+        }
+    }
+
+    // RFC 4180 без переводов строк внутри полей; пустое поле — null
+    static List<String> splitCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        boolean wasQuoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+                wasQuoted = true;
+            } else if (c == ',') {
+                values.add(csvValue(current, wasQuoted));
+                current.setLength(0);
+                wasQuoted = false;
+            } else {
+                current.append(c);
+            }
+        }
+        values.add(csvValue(current, wasQuoted));
+        return values;
+    }
+
+    private static String csvValue(StringBuilder raw, boolean quoted) {
+        String value = quoted ? raw.toString() : raw.toString().trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    // накапливает пачку записей и итог импорта
+    private final class ImportBatch {
+        private final List<ImportRow> pending = new ArrayList<>(batchSize);
+        // существующие точки и тарифы запоминаются на время импорта: их число ограничено
+        // размером справочников, а не размером файла
+        private final Set<Long> knownRentalPoints = new HashSet<>();
+        private final Set<Long> knownTariffs = new HashSet<>();
+        private final List<ScooterImportErrorDto> errors = new ArrayList<>();
+        private long errorCount;
+        private long total;
+        private long imported;
+        private long failed;
+
+        private void add(long row, ScooterDto scooterDto, String error) {
+            total++;
+            ImportRow importRow = new ImportRow(row, scooterDto);
+            if (error != null) {
+                fail(importRow, error);
+                return;
+            }
+            pending.add(importRow);
+            if (pending.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        private void stop(long row, String error) {
+            flush();
+            report(new ScooterImportErrorDto(row, null, error));
+        }
+
+        private ScooterImportResultDto finish() {
+            flush();
+            return new ScooterImportResultDto(
+                    total, imported, failed, errors, errorCount > errors.size());
+        }
+
+        private void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            List<ImportRow> candidates = new ArrayList<>(pending.size());
+            Set<String> serialNumbers = new HashSet<>();
+            for (ImportRow row : pending) {
+                String violation = validate(row.scooterDto);
+                if (violation != null) {
+                    fail(row, violation);
+                } else if (!row.scooterDto.getStatus().isInitial()) {
+                    fail(row, "Самокат нельзя создать в статусе " + row.scooterDto.getStatus());
+                } else if (!serialNumbers.add(row.scooterDto.getSerialNumber())) {
+                    fail(row, "Серийный номер повторяется в файле");
+                } else {
+                    candidates.add(row);
+                }
+            }
+            pending.clear();
+            if (candidates.isEmpty()) {
+                return;
+            }
+            Map<ImportRow, String> rejected;
+            try {
+                rejected = transactionTemplate.execute(status -> insert(candidates));
+            } catch (Exception e) {
+                logger.error(
+                        "Ошибка при сохранении пачки из {} самокатов: {}",
+                        candidates.size(),
+                        e.getMessage(),
+                        e);
+                for (ImportRow row : candidates) {
+                    fail(row, "Ошибка при сохранении: " + e.getMessage());
+                }
+                return;
+            }
+            for (ImportRow row : candidates) {
+                String error = rejected.get(row);
+                if (error != null) {
+                    fail(row, error);
+                } else {
+                    imported++;
+                }
+            }
+        }
+
+        // возвращает отклонённые записи с причинами; ошибки применяются к итогу только
+        // после фиксации транзакции
+        private Map<ImportRow, String> insert(List<ImportRow> candidates) {
+            resolveMissing(
+                    candidates,
+                    ScooterDto::getRentalPointId,
+                    knownRentalPoints,
+                    rentalPointRepository::findExistingIds);
+            resolveMissing(
+                    candidates,
+                    ScooterDto::getTariffId,
+                    knownTariffs,
+                    tariffRepository::findExistingIds);
+            Set<String> existingSerials =
+                    new HashSet<>(
+                            scooterRepository.findExistingSerialNumbers(
+                                    candidates.stream()
+                                            .map(row -> row.scooterDto.getSerialNumber())
+                                            .toList()));
+            Map<ImportRow, String> rejected = new HashMap<>();
+            List<ImportRow> rows = new ArrayList<>(candidates.size());
+            for (ImportRow row : candidates) {
+                ScooterDto scooterDto = row.scooterDto;
+                if (scooterDto.getRentalPointId() != null
+                        && !knownRentalPoints.contains(scooterDto.getRentalPointId())) {
+                    rejected.put(
+                            row,
+                            "Точка проката с ID " + scooterDto.getRentalPointId() + " не найдена");
+                } else if (scooterDto.getTariffId() != null
+                        && !knownTariffs.contains(scooterDto.getTariffId())) {
+                    rejected.put(row, "Тариф с ID " + scooterDto.getTariffId() + " не найден");
+                } else if (existingSerials.contains(scooterDto.getSerialNumber())) {
+                    rejected.put(row, "Самокат с таким серийным номером уже существует");
+                } else {
+                    rows.add(row);
+                }
+            }
+            if (rows.isEmpty()) {
+                return rejected;
+            }
+            int size = rows.size();
+            Long[] ids = allocateIds(size);
+            String[] models = new String[size];
+            String[] serialNumbers = new String[size];
+            String[] statuses = new String[size];
+            Integer[] chargeLevels = new Integer[size];
+            Double[] mileages = new Double[size];
+            Long[] rentalPointIds = new Long[size];
+            Long[] tariffIds = new Long[size];
+            for (int i = 0; i < size; i++) {
+                ScooterDto scooterDto = rows.get(i).scooterDto;
+                models[i] = scooterDto.getModel();
+                serialNumbers[i] = scooterDto.getSerialNumber();
+                statuses[i] = scooterDto.getStatus().name();
+                chargeLevels[i] = scooterDto.getChargeLevel();
+                mileages[i] = scooterDto.getMileage();
+                rentalPointIds[i] = scooterDto.getRentalPointId();
+                tariffIds[i] = scooterDto.getTariffId();
+            }
+            Map<String, Long> insertedIds =
+                    scooterRepository
+                            .insertIgnoringDuplicates(
+                                    ids,
+                                    models,
+                                    serialNumbers,
+                                    statuses,
+                                    chargeLevels,
+                                    mileages,
+                                    rentalPointIds,
+                                    tariffIds)
+                            .stream()
+                            .collect(
+                                    Collectors.toMap(
+                                            ScooterImportRow::getSerialNumber,
+                                            ScooterImportRow::getId));
+            for (ImportRow row : rows) {
+                ScooterDto scooterDto = row.scooterDto;
+                Long id = insertedIds.get(scooterDto.getSerialNumber());
+                if (id == null) {
+                    // номер заняли параллельно между проверкой и вставкой
+                    rejected.put(row, "Самокат с таким серийным номером уже существует");
+                    continue;
+                }
+                eventPublisher.publishEvent(
+                        new ScooterStateChangedEvent(
+                                id,
+                                scooterDto.getStatus(),
+                                scooterDto.getChargeLevel(),
+                                scooterDto.getRentalPointId(),
+                                false));
+            }
+            return rejected;
+        }
+
+        // одно обращение к последовательности на ID_BLOCK_SIZE строк; номера неудачных
+        // вставок просто пропадают, как и у генератора JPA
+        private Long[] allocateIds(int count) {
+            Long[] ids = new Long[count];
+            int filled = 0;
+            while (filled < count) {
+                int blocks = (count - filled + ID_BLOCK_SIZE - 1) / ID_BLOCK_SIZE;
+                List<Long> upperBounds = scooterRepository.allocateIdBlocks(blocks);
+                if (upperBounds.isEmpty()) {
+                    throw new IllegalStateException("Последовательность не выдала id самокатов");
+                }
+                for (Long upper : upperBounds) {
+                    // первый блок новой последовательности начинается с единицы
+                    long id = Math.max(1, upper - ID_BLOCK_SIZE + 1);
+                    for (; id <= upper && filled < count; id++) {
+                        ids[filled++] = id;
+                    }
+                }
+            }
+            return ids;
+        }
+
+        private void resolveMissing(
+                List<ImportRow> candidates,
+                Function<ScooterDto, Long> reference,
+                Set<Long> known,
+                Function<Collection<Long>, List<Long>> loader) {
+            Set<Long> unknown =
+                    candidates.stream()
+                            .map(row -> reference.apply(row.scooterDto))
+                            .filter(Objects::nonNull)
+                            .filter(id -> !known.contains(id))
+                            .collect(Collectors.toSet());
+            if (unknown.isEmpty()) {
+                return;
+            }
+            known.addAll(loader.apply(unknown));
+        }
+
+        private String validate(ScooterDto scooterDto) {
+            Set<ConstraintViolation<ScooterDto>> violations = validator.validate(scooterDto);
+            if (violations.isEmpty()) {
+                return null;
+            }
+            return violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; "));
+        }
+
+        private void fail(ImportRow row, String message) {
+            failed++;
+            report(new ScooterImportErrorDto(row.row, row.scooterDto.getSerialNumber(), message));
+        }
+
+        private void report(ScooterImportErrorDto error) {
+            errorCount++;
+            if (errors.size() < maxReportedErrors) {
+                errors.add(error);
+            }
+        }
+    }
+
+    private static final class ImportRow {
+        private final long row;
+        private final ScooterDto scooterDto;
+
+        private ImportRow(long row, ScooterDto scooterDto) {
+            this.row = row;
+            this.scooterDto = scooterDto;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.scooterrental.service.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Непрозрачный курсор поиска самокатов: сортировка, значение ключа сортировки и id последней
+ * строки страницы. Сортировка хранится в курсоре, чтобы его нельзя было применить к другому
+ * порядку строк.
+ */
+final class ScooterSearchCursor {
+
+    private static final char SEPARATOR = '_';
+
+    private final String sort;
+    private final String value;
+    private final Long id;
+
+    ScooterSearchCursor(String sort, String value, Long id) {
+        this.sort = sort;
+        this.value = value;
+        this.id = id;
+    }
+
+    String getSort() {
+        return sort;
+    }
+
+    String getValue() {
+        return value;
+    }
+
+    Long getId() {
+        return id;
+    }
+
+    String encode() {
+        String raw = sort + SEPARATOR + value + SEPARATOR + id;
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // значение (модель, серийный номер) может содержать разделитель, поэтому сортировка
+    // отделяется по первому вхождению, а id — по последнему
+    static ScooterSearchCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int first = raw.indexOf(SEPARATOR);
+            int last = raw.lastIndexOf(SEPARATOR);
+            if (first < 0 || first == last) {
+                throw new IllegalArgumentException("Некорректный курсор: " + cursor);
+            }
+            return new ScooterSearchCursor(
+                    raw.substring(0, first),
+                    raw.substring(first + 1, last),
+                    Long.parseLong(raw.substring(last + 1)));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Некорректный курсор: " + cursor, e);
+        }
+    }
+}
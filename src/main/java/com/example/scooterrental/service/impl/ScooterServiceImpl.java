@@ -1,45 +1,100 @@
 package com.example.scooterrental.service.impl;
 
+import com.example.scooterrental.dto.CursorPageDto;
+import com.example.scooterrental.dto.NearbyRentalPointDto;
+import com.example.scooterrental.dto.ScooterAvailabilityDto;
+import com.example.scooterrental.dto.ScooterBulkStatusResultDto;
 import com.example.scooterrental.dto.ScooterDto;
 import com.example.scooterrental.dto.ScooterInfoDto;
+import com.example.scooterrental.dto.ScooterSearchFilterDto;
+import com.example.scooterrental.dto.ScooterStatsDto;
+import com.example.scooterrental.dto.ScooterStatusOutcomeDto;
+import com.example.scooterrental.event.ScooterStateChangedEvent;
+import com.example.scooterrental.exception.InvalidStatusTransitionException;
+import com.example.scooterrental.exception.PreconditionFailedException;
 import com.example.scooterrental.exception.RentalPointNotFoundException;
 import com.example.scooterrental.exception.ScooterNotFoundException;
+import com.example.scooterrental.exception.ScooterUnavailableException;
 import com.example.scooterrental.exception.TariffNotFoundException;
+import com.example.scooterrental.fleet.BoundingBox;
+import com.example.scooterrental.fleet.FleetStateStore;
+import com.example.scooterrental.fleet.RentalPointIndex;
 import com.example.scooterrental.model.RentalPoint;
 import com.example.scooterrental.model.Scooter;
+import com.example.scooterrental.model.ScooterStats;
 import com.example.scooterrental.model.ScooterStatus;
 import com.example.scooterrental.model.Tariff;
+import com.example.scooterrental.pricing.TariffPricing;
 import com.example.scooterrental.repository.RentalPointRepository;
 import com.example.scooterrental.repository.ScooterRepository;
+import com.example.scooterrental.repository.ScooterReservation;
+import com.example.scooterrental.repository.ScooterSpecifications;
+import com.example.scooterrental.repository.ScooterStateRow;
+import com.example.scooterrental.repository.ScooterStatsRepository;
+import com.example.scooterrental.repository.ScooterTagRow;
 import com.example.scooterrental.repository.TariffRepository;
 import com.example.scooterrental.service.ScooterService;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class ScooterServiceImpl implements ScooterService {
 
     private static final Logger logger = LoggerFactory.getLogger(ScooterServiceImpl.class);
+    private static final int STATS_BATCH_SIZE = 1000;
+    private static final double MAX_NEARBY_RADIUS_METERS = 50_000;
+    private static final int MAX_NEARBY_LIMIT = 100;
+    private static final int MAX_SEARCH_PAGE_SIZE = 500;
+    // остаток после UPDATE разбирается запросом с IN-списком, а PostgreSQL ограничивает число
+    // параметров запроса
+    private static final int MAX_BULK_STATUS_IDS = 10_000;
+    private static final Set<String> SEARCH_SORT_PROPERTIES =
+            Set.of("id", "chargeLevel", "model", "serialNumber");
 
     private final ScooterRepository scooterRepository;
     private final RentalPointRepository rentalPointRepository;
     private final TariffRepository tariffRepository;
+    private final ScooterStatsRepository scooterStatsRepository;
+    private final FleetStateStore fleetStateStore;
+    private final RentalPointIndex rentalPointIndex;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
     public ScooterServiceImpl(
             ScooterRepository scooterRepository,
             RentalPointRepository rentalPointRepository,
-            TariffRepository tariffRepository) {
+            TariffRepository tariffRepository,
+            ScooterStatsRepository scooterStatsRepository,
+            FleetStateStore fleetStateStore,
+            RentalPointIndex rentalPointIndex,
+            ApplicationEventPublisher eventPublisher) {
         this.scooterRepository = scooterRepository;
         this.rentalPointRepository = rentalPointRepository;
         this.tariffRepository = tariffRepository;
+        this.scooterStatsRepository = scooterStatsRepository;
+        this.fleetStateStore = fleetStateStore;
+        this.rentalPointIndex = rentalPointIndex;
+        this.eventPublisher = eventPublisher;
     }
 
     @Override
@@ -48,6 +103,11 @@ public class ScooterServiceImpl implements ScooterService {
             throws RentalPointNotFoundException, TariffNotFoundException {
         logger.info("Попытка создать новый самокат с данными: {}", scooterDto);
         try {
+            if (scooterDto.getStatus() != null && !scooterDto.getStatus().isInitial()) {
+                logger.warn("Самокат нельзя создать в статусе {}.", scooterDto.getStatus());
+                throw new InvalidStatusTransitionException(
+                        "Самокат нельзя создать в статусе " + scooterDto.getStatus());
+            }
             if (scooterRepository.existsBySerialNumber(scooterDto.getSerialNumber())) {
                 logger.error(
                         "Самокат с серийным номером {} уже существует.",
@@ -97,6 +157,7 @@ public class ScooterServiceImpl implements ScooterService {
 
             scooter = scooterRepository.save(scooter);
             scooterDto.setId(scooter.getId());
+            publishState(scooter);
 
             logger.info("Самокат успешно создан с ID: {}", scooter.getId());
             return scooterDto;
@@ -120,7 +181,9 @@ public class ScooterServiceImpl implements ScooterService {
                                         return new ScooterNotFoundException(
                                                 "Самокат с ID " + id + " не найден");
                                     });
-            ScooterInfoDto scooterInfoDto = convertToScooterInfoDto(scooter);
+            ScooterInfoDto scooterInfoDto =
+                    convertToScooterInfoDto(
+                            scooter, scooterStatsRepository.findById(id).orElse(null));
             logger.info("Самокат с ID {} успешно получен.", id);
             return scooterInfoDto;
 
@@ -130,9 +193,42 @@ public class ScooterServiceImpl implements ScooterService {
         }
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public String getScooterEntityTag(Long id) throws ScooterNotFoundException {
+        logger.debug("Попытка получить ETag самоката с ID: {}", id);
+        try {
+            ScooterTagRow row =
+                    scooterRepository
+                            .findTagRowById(id)
+                            .orElseThrow(
+                                    () -> {
+                                        logger.warn("Самокат с ID {} не найден.", id);
+                                        return new ScooterNotFoundException(
+                                                "Самокат с ID " + id + " не найден");
+                                    });
+            String content =
+                    new ContentDigest()
+                            .add(row.getChargeLevel())
+                            .add(row.getMileage())
+                            .add(row.getRentalPointName())
+                            .add(row.getTariffName())
+                            .add(row.getRides())
+                            .add(row.getRevenueMinor())
+                            .add(row.getDistance())
+                            .add(row.getRideMinutes())
+                            .add(row.getLastRideAt())
+                            .hex();
+            return row.getVersion() + "-" + content;
+        } catch (Exception e) {
+            logger.error("Ошибка при получении ETag самоката с ID {}: {}", id, e.getMessage(), e);
+            throw e;
+        }
+    }
+
     @Override
     @Transactional
-    public ScooterDto updateScooter(Long id, ScooterDto scooterDto)
+    public ScooterDto updateScooter(Long id, ScooterDto scooterDto, String expectedVersion)
             throws ScooterNotFoundException, RentalPointNotFoundException, TariffNotFoundException {
         logger.info("Попытка обновить самокат с ID: {}, данные: {}", id, scooterDto);
         try {
@@ -145,6 +241,7 @@ public class ScooterServiceImpl implements ScooterService {
                                         return new ScooterNotFoundException(
                                                 "Самокат с ID " + id + " не найден");
                                     });
+            checkVersion(scooter, expectedVersion);
 
             if (scooterDto.getModel() != null) {
                 scooter.setModel(scooterDto.getModel());
@@ -159,6 +256,7 @@ public class ScooterServiceImpl implements ScooterService {
                 scooter.setSerialNumber(scooterDto.getSerialNumber());
             }
             if (scooterDto.getStatus() != null) {
+                checkTransition(scooter, scooterDto.getStatus());
                 scooter.setStatus(scooterDto.getStatus());
             }
             if (scooterDto.getChargeLevel() != null) {
@@ -203,6 +301,7 @@ public class ScooterServiceImpl implements ScooterService {
             }
 
             scooterRepository.save(scooter);
+            publishState(scooter);
             logger.info("Самокат с ID {} успешно обновлен.", id);
             return scooterDto;
         } catch (Exception e) {
@@ -226,6 +325,7 @@ public class ScooterServiceImpl implements ScooterService {
                                                 "Самокат с ID " + id + " не найден");
                                     });
             scooterRepository.delete(scooter);
+            eventPublisher.publishEvent(ScooterStateChangedEvent.removed(id));
             logger.info("Самокат с ID {} успешно удален.", id);
         } catch (Exception e) {
             logger.error("Ошибка при удалении самоката с ID {}: {}", id, e.getMessage(), e);
@@ -238,10 +338,7 @@ public class ScooterServiceImpl implements ScooterService {
     public List<ScooterInfoDto> getAllScooters() {
         logger.info("Попытка получить все самокаты.");
         try {
-            List<ScooterInfoDto> scooters =
-                    scooterRepository.findAll().stream()
-                            .map(this::convertToScooterInfoDto)
-                            .collect(Collectors.toList());
+            List<ScooterInfoDto> scooters = convertToScooterInfoDtos(scooterRepository.findAll());
             logger.info("Получено {} самокатов.", scooters.size());
             return scooters;
         } catch (Exception e) {
@@ -250,6 +347,91 @@ public class ScooterServiceImpl implements ScooterService {
         }
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPageDto<ScooterInfoDto> searchScooters(
+            ScooterSearchFilterDto filter, String sort, String cursor, int limit) {
+        logger.info(
+                "Попытка найти самокаты (сортировка: {}, курсор: {}, размер: {})",
+                sort,
+                cursor,
+                limit);
+        try {
+            String sortKey = sort == null || sort.isBlank() ? "id" : sort.trim();
+            boolean descending = sortKey.startsWith("-");
+            String property = descending ? sortKey.substring(1) : sortKey;
+            if (!SEARCH_SORT_PROPERTIES.contains(property)) {
+                throw new IllegalArgumentException("Недопустимое поле сортировки: " + sort);
+            }
+            Integer minChargeLevel = filter.getMinChargeLevel();
+            if (minChargeLevel != null && (minChargeLevel < 0 || minChargeLevel > 100)) {
+                throw new IllegalArgumentException(
+                        "Минимальный заряд должен быть от 0 до 100: " + minChargeLevel);
+            }
+            int pageSize = Math.max(1, Math.min(limit, MAX_SEARCH_PAGE_SIZE));
+
+            List<Specification<Scooter>> conditions = new ArrayList<>();
+            if (filter.getStatus() != null) {
+                conditions.add(ScooterSpecifications.hasStatus(filter.getStatus()));
+            }
+            if (minChargeLevel != null) {
+                conditions.add(ScooterSpecifications.chargeAtLeast(minChargeLevel));
+            }
+            if (filter.getModel() != null && !filter.getModel().isBlank()) {
+                conditions.add(ScooterSpecifications.hasModel(filter.getModel().trim()));
+            }
+            if (filter.getRentalPointId() != null) {
+                conditions.add(ScooterSpecifications.atRentalPoint(filter.getRentalPointId()));
+            }
+            if (filter.getTariffId() != null) {
+                conditions.add(ScooterSpecifications.withTariff(filter.getTariffId()));
+            }
+            if (filter.getUnderRentalPointId() != null) {
+                conditions.add(
+                        ScooterSpecifications.underRentalPoint(filter.getUnderRentalPointId()));
+            }
+            if (cursor != null && !cursor.isBlank()) {
+                ScooterSearchCursor after = ScooterSearchCursor.decode(cursor);
+                if (!after.getSort().equals(sortKey)) {
+                    throw new IllegalArgumentException(
+                            "Курсор получен для другой сортировки: " + cursor);
+                }
+                conditions.add(afterCursor(property, after, descending));
+            }
+
+            Sort.Direction direction = descending ? Sort.Direction.DESC : Sort.Direction.ASC;
+            Sort order =
+                    "id".equals(property)
+                            ? Sort.by(direction, "id")
+                            : Sort.by(direction, property, "id");
+            // запрашиваем на одну строку больше, чтобы узнать, есть ли следующая страница;
+            // точка и тариф подгружаются тем же запросом
+            List<Scooter> rows =
+                    scooterRepository.findBy(
+                            Specification.allOf(conditions),
+                            query ->
+                                    query.sortBy(order)
+                                            .limit(pageSize + 1)
+                                            .project("rentalPoint", "tariff")
+                                            .all());
+
+            String nextCursor = null;
+            if (rows.size() > pageSize) {
+                rows = rows.subList(0, pageSize);
+                Scooter last = rows.get(pageSize - 1);
+                nextCursor =
+                        new ScooterSearchCursor(sortKey, sortValue(property, last), last.getId())
+                                .encode();
+            }
+            List<ScooterInfoDto> items = convertToScooterInfoDtos(rows);
+            logger.info("Найдено {} самокатов.", items.size());
+            return new CursorPageDto<>(items, nextCursor);
+        } catch (Exception e) {
+            logger.error("Ошибка при поиске самокатов: {}", e.getMessage(), e);
+            throw e;
+        }
+    }
+
     @Override
     @Transactional(readOnly = true)
     public List<ScooterInfoDto> getScootersByRentalPoint(Long rentalPointId)
@@ -262,9 +444,7 @@ public class ScooterServiceImpl implements ScooterService {
                         "Точка проката с ID " + rentalPointId + " не найдена");
             }
             List<ScooterInfoDto> scooters =
-                    scooterRepository.findByRentalPointId(rentalPointId).stream()
-                            .map(this::convertToScooterInfoDto)
-                            .collect(Collectors.toList());
+                    convertToScooterInfoDtos(scooterRepository.findByRentalPointId(rentalPointId));
             logger.info(
                     "Получено {} самокатов для точки проката с ID {}.",
                     scooters.size(),
@@ -280,10 +460,48 @@ public class ScooterServiceImpl implements ScooterService {
         }
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public Map<Long, List<ScooterInfoDto>> getScootersByRentalPoints(
+            Collection<Long> rentalPointIds) {
+        logger.info("Попытка получить самокаты для {} точек проката.", rentalPointIds.size());
+        try {
+            List<Long> ids = new ArrayList<>(rentalPointIds);
+            List<Scooter> scooters = new ArrayList<>();
+            for (int from = 0; from < ids.size(); from += STATS_BATCH_SIZE) {
+                scooters.addAll(
+                        scooterRepository.findWithRelationsByRentalPointIdIn(
+                                ids.subList(from, Math.min(from + STATS_BATCH_SIZE, ids.size()))));
+            }
+            Map<Long, List<ScooterInfoDto>> byRentalPoint = new HashMap<>();
+            for (ScooterInfoDto scooter : convertToScooterInfoDtos(scooters)) {
+                byRentalPoint
+                        .computeIfAbsent(scooter.getRentalPointId(), id -> new ArrayList<>())
+                        .add(scooter);
+            }
+            logger.info(
+                    "Получено {} самокатов для {} точек проката.",
+                    scooters.size(),
+                    rentalPointIds.size());
+            return byRentalPoint;
+        } catch (Exception e) {
+            logger.error(
+                    "Ошибка при получении самокатов для точек проката: {}", e.getMessage(), e);
+            throw e;
+        }
+    }
+
     @Override
     @Transactional
     public void updateScooterStatus(Long scooterId, ScooterStatus newStatus)
             throws ScooterNotFoundException {
+        updateScooterStatus(scooterId, newStatus, null);
+    }
+
+    @Override
+    @Transactional
+    public void updateScooterStatus(Long scooterId, ScooterStatus newStatus, String expectedVersion)
+            throws ScooterNotFoundException {
         logger.info("Попытка обновить статус самоката с ID: {} на {}", scooterId, newStatus);
         try {
             Scooter scooter =
@@ -295,8 +513,11 @@ public class ScooterServiceImpl implements ScooterService {
                                         return new ScooterNotFoundException(
                                                 "Самокат с ID " + scooterId + " не найден");
                                     });
+            checkVersion(scooter, expectedVersion);
+            checkTransition(scooter, newStatus);
             scooter.setStatus(newStatus);
             scooterRepository.save(scooter);
+            publishState(scooter);
             logger.info("Статус самоката с ID {} успешно обновлен на {}", scooterId, newStatus);
         } catch (Exception e) {
             logger.error(
@@ -308,7 +529,398 @@ public class ScooterServiceImpl implements ScooterService {
         }
     }
 
-    private ScooterInfoDto convertToScooterInfoDto(Scooter scooter) {
+    @Override
+    @Transactional
+    public ScooterBulkStatusResultDto updateScooterStatuses(
+            List<Long> scooterIds, ScooterStatus newStatus) {
+        logger.info(
+                "Попытка перевести самокаты в статус {}, количество: {}",
+                newStatus,
+                scooterIds == null ? 0 : scooterIds.size());
+        try {
+            if (scooterIds == null || scooterIds.isEmpty()) {
+                throw new IllegalArgumentException("Список самокатов не может быть пустым");
+            }
+            if (scooterIds.size() > MAX_BULK_STATUS_IDS) {
+                throw new IllegalArgumentException(
+                        "За один запрос можно изменить не более "
+                                + MAX_BULK_STATUS_IDS
+                                + " самокатов");
+            }
+            if (newStatus == null || scooterIds.stream().anyMatch(Objects::isNull)) {
+                throw new IllegalArgumentException("Статус и ID самокатов не могут быть null");
+            }
+            Set<Long> ids = new LinkedHashSet<>(scooterIds);
+            String[] sources =
+                    ScooterStatus.sourcesOf(newStatus).stream()
+                            .map(ScooterStatus::name)
+                            .toArray(String[]::new);
+
+            Map<Long, ScooterStatusOutcomeDto> outcomes = new HashMap<>();
+            for (ScooterStateRow row :
+                    scooterRepository.updateStatusWhereAllowed(
+                            ids.toArray(Long[]::new), newStatus.name(), sources)) {
+                outcomes.put(
+                        row.getId(),
+                        new ScooterStatusOutcomeDto(
+                                row.getId(), ScooterStatusOutcomeDto.Outcome.UPDATED, newStatus));
+                eventPublisher.publishEvent(
+                        new ScooterStateChangedEvent(
+                                row.getId(),
+                                newStatus,
+                                row.getChargeLevel(),
+                                row.getRentalPointId(),
+                                false));
+            }
+            int updated = outcomes.size();
+            if (updated < ids.size()) {
+                classifyRejected(ids, newStatus, outcomes);
+            }
+
+            logger.info(
+                    "В статус {} переведено {} из {} самокатов.", newStatus, updated, ids.size());
+            return new ScooterBulkStatusResultDto(
+                    newStatus, ids.size(), updated, ids.stream().map(outcomes::get).toList());
+        } catch (Exception e) {
+            logger.error(
+                    "Ошибка при массовом изменении статуса самокатов на {}: {}",
+                    newStatus,
+                    e.getMessage(),
+                    e);
+            throw e;
+        }
+    }
+
+    @Override
+    @Transactional
+    public ScooterReservation reserveScooter(Long scooterId)
+            throws ScooterNotFoundException, ScooterUnavailableException {
+        logger.info("Попытка зарезервировать самокат с ID: {}", scooterId);
+        try {
+            ScooterReservation reservation =
+                    scooterRepository
+                            .reserveIfAvailable(scooterId)
+                            .orElseThrow(
+                                    () -> {
+                                        if (!scooterRepository.existsById(scooterId)) {
+                                            logger.warn("Самокат с ID {} не найден.", scooterId);
+                                            return new ScooterNotFoundException(
+                                                    "Самокат с ID " + scooterId + " не найден");
+                                        }
+                                        logger.warn("Самокат с ID {} уже занят.", scooterId);
+                                        return new ScooterUnavailableException(
+                                                "Самокат с ID "
+                                                        + scooterId
+                                                        + " недоступен для аренды");
+                                    });
+            eventPublisher.publishEvent(
+                    new ScooterStateChangedEvent(
+                            scooterId,
+                            ScooterStatus.IN_USE,
+                            reservation.getChargeLevel(),
+                            reservation.getRentalPointId(),
+                            false));
+            logger.info("Самокат с ID {} успешно зарезервирован.", scooterId);
+            return reservation;
+        } catch (Exception e) {
+            logger.error(
+                    "Ошибка при резервировании самоката с ID {}: {}",
+                    scooterId,
+                    e.getMessage(),
+                    e);
+            throw e;
+        }
+    }
+
+    @Override
+    @Transactional
+    public Optional<ScooterReservation> releaseScooter(Long scooterId) {
+        logger.info("Попытка освободить самокат с ID: {}", scooterId);
+        try {
+            Optional<ScooterReservation> release = scooterRepository.releaseIfInUse(scooterId);
+            if (release.isEmpty()) {
+                logger.warn("Самокат с ID {} не был занят.", scooterId);
+                return release;
+            }
+            eventPublisher.publishEvent(
+                    new ScooterStateChangedEvent(
+                            scooterId,
+                            ScooterStatus.AVAILABLE,
+                            release.get().getChargeLevel(),
+                            release.get().getRentalPointId(),
+                            false));
+            logger.info("Самокат с ID {} успешно освобождён.", scooterId);
+            return release;
+        } catch (Exception e) {
+            logger.error(
+                    "Ошибка при освобождении самоката с ID {}: {}",
+                    scooterId,
+                    e.getMessage(),
+                    e);
+            throw e;
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ScooterStatsDto getScooterStats(Long scooterId) throws ScooterNotFoundException {
+        logger.info("Попытка получить статистику самоката с ID: {}", scooterId);
+        try {
+            ScooterStats stats = scooterStatsRepository.findById(scooterId).orElse(null);
+            // строки статистики нет, пока самокат ни разу не сдавали
+            if (stats == null && !scooterRepository.existsById(scooterId)) {
+                logger.warn("Самокат с ID {} не найден.", scooterId);
+                throw new ScooterNotFoundException("Самокат с ID " + scooterId + " не найден");
+            }
+            ScooterStatsDto statsDto = convertToScooterStatsDto(scooterId, stats);
+            logger.info("Статистика самоката с ID {} успешно получена.", scooterId);
+            return statsDto;
+        } catch (Exception e) {
+            logger.error(
+                    "Ошибка при получении статистики самоката с ID {}: {}",
+                    scooterId,
+                    e.getMessage(),
+                    e);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<ScooterAvailabilityDto> getAvailability(
+            ScooterStatus status, Long rentalPointId, Integer minChargeLevel) {
+        logger.info(
+                "Попытка получить доступность самокатов (статус: {}, точка: {}, заряд от: {})",
+                status,
+                rentalPointId,
+                minChargeLevel);
+        try {
+            // ответ собирается из состояния в памяти, без обращения к базе
+            List<ScooterAvailabilityDto> scooters =
+                    fleetStateStore.query(
+                            status, rentalPointId, minChargeLevel == null ? 0 : minChargeLevel);
+            logger.info("Найдено {} самокатов.", scooters.size());
+            return scooters;
+        } catch (Exception e) {
+            logger.error("Ошибка при получении доступности самокатов: {}", e.getMessage(), e);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<NearbyRentalPointDto> findNearby(
+            double latitude, double longitude, double radiusMeters, int limit) {
+        logger.info(
+                "Попытка найти точки со свободными самокатами рядом с ({}, {}), радиус {} м",
+                latitude,
+                longitude,
+                radiusMeters);
+        try {
+            if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+                throw new IllegalArgumentException("Некорректные координаты");
+            }
+            if (radiusMeters <= 0 || radiusMeters > MAX_NEARBY_RADIUS_METERS) {
+                throw new IllegalArgumentException(
+                        "Радиус должен быть от 0 до " + (long) MAX_NEARBY_RADIUS_METERS + " м");
+            }
+            if (limit < 1 || limit > MAX_NEARBY_LIMIT) {
+                throw new IllegalArgumentException(
+                        "Параметр limit должен быть от 1 до " + MAX_NEARBY_LIMIT);
+            }
+            List<NearbyRentalPointDto> points =
+                    rentalPointIndex.findNearest(latitude, longitude, radiusMeters, limit);
+            logger.info("Найдено {} точек проката со свободными самокатами.", points.size());
+            return points;
+        } catch (Exception e) {
+            logger.error("Ошибка при поиске ближайших самокатов: {}", e.getMessage(), e);
+            throw e;
+        }
+    }
+
+    @Override
+    public BoundingBox resolveBoundingBox(
+            Double minLatitude, Double minLongitude, Double maxLatitude, Double maxLongitude) {
+        logger.debug(
+                "Проверка области [{}, {}, {}, {}]",
+                minLatitude,
+                minLongitude,
+                maxLatitude,
+                maxLongitude);
+        try {
+            long boundsGiven =
+                    Stream.of(minLatitude, minLongitude, maxLatitude, maxLongitude)
+                            .filter(Objects::nonNull)
+                            .count();
+            BoundingBox box = null;
+            if (boundsGiven == 4) {
+                if (minLatitude < -90
+                        || maxLatitude > 90
+                        || minLatitude > maxLatitude
+                        || minLongitude < -180
+                        || minLongitude > 180
+                        || maxLongitude < -180
+                        || maxLongitude > 180) {
+                    throw new IllegalArgumentException("Некорректные границы области");
+                }
+                box = new BoundingBox(minLatitude, minLongitude, maxLatitude, maxLongitude);
+            } else if (boundsGiven != 0) {
+                throw new IllegalArgumentException(
+                        "Область задаётся всеми четырьмя границами:"
+                                + " minLat, minLon, maxLat, maxLon");
+            }
+            return box;
+        } catch (Exception e) {
+            logger.error("Ошибка при проверке области: {}", e.getMessage(), e);
+            throw e;
+        }
+    }
+
+    private static Specification<Scooter> afterCursor(
+            String property, ScooterSearchCursor after, boolean descending) {
+        return switch (property) {
+            case "chargeLevel" -> {
+                int chargeLevel;
+                try {
+                    chargeLevel = Integer.parseInt(after.getValue());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Некорректный курсор: " + after.encode(), e);
+                }
+                yield ScooterSpecifications.after(
+                        property, chargeLevel, after.getId(), descending);
+            }
+            case "model", "serialNumber" ->
+                    ScooterSpecifications.after(
+                            property, after.getValue(), after.getId(), descending);
+            default -> ScooterSpecifications.after("id", after.getId(), after.getId(), descending);
+        };
+    }
+
+    private static String sortValue(String property, Scooter scooter) {
+        return switch (property) {
+            case "chargeLevel" -> String.valueOf(scooter.getChargeLevel());
+            case "model" -> scooter.getModel();
+            case "serialNumber" -> scooter.getSerialNumber();
+            default -> "";
+        };
+    }
+
+    // проверка If-Match; одновременную запись после проверки отсекает @Version при фиксации
+    private static void checkVersion(Scooter scooter, String expectedVersion) {
+        String current = String.valueOf(scooter.getVersion());
+        if (expectedVersion != null && !expectedVersion.equals(current)) {
+            logger.warn(
+                    "Версия самоката с ID {} не совпала: ожидалась {}, текущая {}.",
+                    scooter.getId(),
+                    expectedVersion,
+                    current);
+            throw new PreconditionFailedException(
+                    "Самокат с ID "
+                            + scooter.getId()
+                            + " изменён, текущая версия "
+                            + current);
+        }
+    }
+
+    private void checkTransition(Scooter scooter, ScooterStatus newStatus) {
+        ScooterStatus current = scooter.getStatus();
+        if (current == null || current == newStatus) {
+            return;
+        }
+        if (!current.canTransitionTo(newStatus)) {
+            logger.warn(
+                    "Переход самоката с ID {} из статуса {} в {} недопустим.",
+                    scooter.getId(),
+                    current,
+                    newStatus);
+            throw new InvalidStatusTransitionException(
+                    "Переход самоката с ID "
+                            + scooter.getId()
+                            + " из статуса "
+                            + current
+                            + " в "
+                            + newStatus
+                            + " недопустим");
+        }
+        // при завершении аренды она уже закрыта в этой транзакции и запрос её не находит
+        if (current == ScooterStatus.IN_USE && scooterRepository.hasOpenRental(scooter.getId())) {
+            logger.warn("У самоката с ID {} есть незавершённая аренда.", scooter.getId());
+            throw new InvalidStatusTransitionException(
+                    "У самоката с ID " + scooter.getId() + " есть незавершённая аренда");
+        }
+    }
+
+    // строки, не попавшие под UPDATE, разбираются по их текущему состоянию
+    private void classifyRejected(
+            Set<Long> ids, ScooterStatus newStatus, Map<Long, ScooterStatusOutcomeDto> outcomes) {
+        List<Long> rejected = ids.stream().filter(id -> !outcomes.containsKey(id)).toList();
+        Set<Long> withOpenRental =
+                new HashSet<>(
+                        scooterRepository.findIdsWithOpenRental(rejected.toArray(Long[]::new)));
+        for (ScooterStateRow row : scooterRepository.findStateRowsByIdIn(rejected)) {
+            ScooterStatus current = row.getStatus();
+            ScooterStatusOutcomeDto.Outcome outcome;
+            if (current == newStatus) {
+                outcome = ScooterStatusOutcomeDto.Outcome.UNCHANGED;
+            } else if (current != null
+                    && current.canTransitionTo(newStatus)
+                    && withOpenRental.contains(row.getId())) {
+                outcome = ScooterStatusOutcomeDto.Outcome.RENTAL_OPEN;
+            } else {
+                // сюда же попадает статус, сменившийся параллельно между UPDATE и этой выборкой
+                outcome = ScooterStatusOutcomeDto.Outcome.INVALID_TRANSITION;
+            }
+            outcomes.put(row.getId(), new ScooterStatusOutcomeDto(row.getId(), outcome, current));
+        }
+        for (Long id : rejected) {
+            outcomes.putIfAbsent(
+                    id,
+                    new ScooterStatusOutcomeDto(
+                            id, ScooterStatusOutcomeDto.Outcome.NOT_FOUND, null));
+        }
+    }
+
+    private void publishState(Scooter scooter) {
+        eventPublisher.publishEvent(
+                new ScooterStateChangedEvent(
+                        scooter.getId(),
+                        scooter.getStatus(),
+                        scooter.getChargeLevel(),
+                        scooter.getRentalPoint() == null ? null : scooter.getRentalPoint().getId(),
+                        false));
+    }
+
+    // статистика всего списка загружается одним запросом, а не по запросу на самокат
+    private List<ScooterInfoDto> convertToScooterInfoDtos(List<Scooter> scooters) {
+        if (scooters.isEmpty()) {
+            return List.of();
+        }
+        List<Long> ids = scooters.stream().map(Scooter::getId).collect(Collectors.toList());
+        Map<Long, ScooterStats> statsById = new HashMap<>();
+        // PostgreSQL ограничивает число параметров запроса, поэтому IN-список режется на части
+        for (int from = 0; from < ids.size(); from += STATS_BATCH_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + STATS_BATCH_SIZE, ids.size()));
+            for (ScooterStats stats : scooterStatsRepository.findAllById(chunk)) {
+                statsById.put(stats.getScooterId(), stats);
+            }
+        }
+        return scooters.stream()
+                .map(scooter -> convertToScooterInfoDto(scooter, statsById.get(scooter.getId())))
+                .collect(Collectors.toList());
+    }
+
+    private ScooterStatsDto convertToScooterStatsDto(Long scooterId, ScooterStats stats) {
+        if (stats == null) {
+            return new ScooterStatsDto(scooterId, 0L, 0.0, 0.0, 0L, null);
+        }
+        return new ScooterStatsDto(
+                scooterId,
+                stats.getRides(),
+                TariffPricing.toMajorUnits(stats.getRevenueMinor()),
+                stats.getDistance(),
+                stats.getRideMinutes(),
+                stats.getLastRideAt());
+    }
+
+    private ScooterInfoDto convertToScooterInfoDto(Scooter scooter, ScooterStats stats) {
         ScooterInfoDto dto = new ScooterInfoDto();
         dto.setId(scooter.getId());
         dto.setModel(scooter.getModel());
@@ -324,6 +936,7 @@ public class ScooterServiceImpl implements ScooterService {
             dto.setTariffId(scooter.getTariff().getId());
             dto.setTariffName(scooter.getTariff().getName());
         }
+        dto.setStats(convertToScooterStatsDto(scooter.getId(), stats));
         return dto;
     }
 }
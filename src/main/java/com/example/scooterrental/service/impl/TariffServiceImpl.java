@@ -1,19 +1,21 @@
 package com.example.scooterrental.service.impl;
 
 import com.example.scooterrental.dto.TariffDto;
+import com.example.scooterrental.event.TariffChangedEvent;
 import com.example.scooterrental.exception.TariffNotFoundException;
 import com.example.scooterrental.model.Tariff;
+import com.example.scooterrental.pricing.TariffCache;
 import com.example.scooterrental.repository.TariffRepository;
 import com.example.scooterrental.service.TariffService;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 public class TariffServiceImpl implements TariffService {
@@ -21,10 +23,17 @@ public class TariffServiceImpl implements TariffService {
     private static final Logger logger = LoggerFactory.getLogger(TariffServiceImpl.class);
 
     private final TariffRepository tariffRepository;
+    private final TariffCache tariffCache;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
-    public TariffServiceImpl(TariffRepository tariffRepository) {
+    public TariffServiceImpl(
+            TariffRepository tariffRepository,
+            TariffCache tariffCache,
+            ApplicationEventPublisher eventPublisher) {
         this.tariffRepository = tariffRepository;
+        this.tariffCache = tariffCache;
+        this.eventPublisher = eventPublisher;
     }
 
     @Override
@@ -39,9 +48,13 @@ public class TariffServiceImpl implements TariffService {
             tariff.setSubscriptionPrice(tariffDto.getSubscriptionPrice());
             tariff.setDiscount(tariffDto.getDiscount());
             tariff.setIsSubscription(tariffDto.getIsSubscription());
+            tariff.setMinimumCharge(tariffDto.getMinimumCharge());
+            tariff.setMaximumCharge(tariffDto.getMaximumCharge());
+            checkChargeLimits(tariff);
 
             tariff = tariffRepository.save(tariff);
             tariffDto.setId(tariff.getId());
+            eventPublisher.publishEvent(new TariffChangedEvent(tariff.getId()));
 
             logger.info("Тариф успешно создан с ID: {}", tariff.getId());
             return tariffDto;
@@ -51,21 +64,20 @@ public class TariffServiceImpl implements TariffService {
         }
     }
 
+    // чтения идут через кэш без транзакции, чтобы попадание не занимало соединение с БД
     @Override
-    @Transactional(readOnly = true)
     public TariffDto getTariffById(Long id) throws TariffNotFoundException {
         logger.info("Попытка получить тариф с ID: {}", id);
         try {
-            Tariff tariff =
-                    tariffRepository
-                            .findById(id)
+            TariffDto tariffDto =
+                    tariffCache
+                            .find(id)
                             .orElseThrow(
                                     () -> {
                                         logger.warn("Тариф с ID {} не найден.", id);
                                         return new TariffNotFoundException(
                                                 "Тариф с ID " + id + " не найден");
                                     });
-            TariffDto tariffDto = convertToTariffDto(tariff);
             logger.info("Тариф с ID {} успешно получен.", id);
             return tariffDto;
         } catch (Exception e) {
@@ -107,8 +119,17 @@ public class TariffServiceImpl implements TariffService {
             if (tariffDto.getIsSubscription() != null) {
                 tariff.setIsSubscription(tariffDto.getIsSubscription());
             }
+            if (tariffDto.getMinimumCharge() != null) {
+                tariff.setMinimumCharge(tariffDto.getMinimumCharge());
+            }
+            if (tariffDto.getMaximumCharge() != null) {
+                tariff.setMaximumCharge(tariffDto.getMaximumCharge());
+            }
+            // границы проверяются после слияния: запрос может менять только одну из них
+            checkChargeLimits(tariff);
 
             tariffRepository.save(tariff);
+            eventPublisher.publishEvent(new TariffChangedEvent(id));
             TariffDto updatedTariffDto = convertToTariffDto(tariff);
 
             logger.info("Тариф с ID {} успешно обновлен.", id);
@@ -134,6 +155,7 @@ public class TariffServiceImpl implements TariffService {
                                                 "Тариф с ID " + id + " не найден");
                                     });
             tariffRepository.delete(tariff);
+            eventPublisher.publishEvent(new TariffChangedEvent(id));
             logger.info("Тариф с ID {} успешно удален.", id);
         } catch (Exception e) {
             logger.error("Ошибка при удалении тарифа с ID {}: {}", id, e.getMessage(), e);
@@ -142,13 +164,10 @@ public class TariffServiceImpl implements TariffService {
     }
 
     @Override
-    @Transactional(readOnly = true)
     public List<TariffDto> getAllTariffs() {
         logger.info("Попытка получить все тарифы.");
         try {
-            List<Tariff> tariffs = tariffRepository.findAll();
-            List<TariffDto> tariffDtos =
-                    tariffs.stream().map(this::convertToTariffDto).collect(Collectors.toList());
+            List<TariffDto> tariffDtos = tariffCache.findAll();
             logger.info("Получено {} тарифов.", tariffDtos.size());
             return tariffDtos;
         } catch (Exception e) {
@@ -157,6 +176,19 @@ public class TariffServiceImpl implements TariffService {
         }
     }
 
+    private void checkChargeLimits(Tariff tariff) {
+        if (tariff.getMinimumCharge() != null
+                && tariff.getMaximumCharge() != null
+                && tariff.getMinimumCharge() > tariff.getMaximumCharge()) {
+            logger.warn(
+                    "Минимальная стоимость поездки {} больше максимальной {}.",
+                    tariff.getMinimumCharge(),
+                    tariff.getMaximumCharge());
+            throw new IllegalArgumentException(
+                    "Минимальная стоимость поездки не может превышать максимальную");
+        }
+    }
+
     private TariffDto convertToTariffDto(Tariff tariff) {
         TariffDto dto = new TariffDto();
         dto.setId(tariff.getId());
@@ -166,6 +198,8 @@ public class TariffServiceImpl implements TariffService {
         dto.setSubscriptionPrice(tariff.getSubscriptionPrice());
         dto.setDiscount(tariff.getDiscount());
         dto.setIsSubscription(tariff.getIsSubscription());
+        dto.setMinimumCharge(tariff.getMinimumCharge());
+        dto.setMaximumCharge(tariff.getMaximumCharge());
         return dto;
     }
 }
@@ -0,0 +1,330 @@
+package com.example.scooterrental.service.impl;
+
+import com.example.scooterrental.dto.TelemetryIngestResultDto;
+import com.example.scooterrental.dto.TelemetrySampleDto;
+import com.example.scooterrental.fleet.FleetStateStore;
+import com.example.scooterrental.service.TelemetryService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jakarta.annotation.PreDestroy;
+
+// Телеметрия не пишется в базу по каждому сообщению: в буфере остаётся только последнее
+// значение по каждому самокату, а периодический сброс обновляет их пачками
+@Service
+public class TelemetryServiceImpl implements TelemetryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TelemetryServiceImpl.class);
+
+    // заряд и пробег принадлежат устройству, поэтому версия не меняется: иначе каждый сброс
+    // ломал бы версионные сохранения и If-Match у самокатов, которые сейчас в аренде.
+    // Пробег только растёт: опоздавший пакет со старым значением его не откатывает
+    private static final String UPDATE_SQL =
+            "UPDATE scooters SET charge_level = COALESCE(?, charge_level),"
+                    + " mileage = GREATEST(mileage, COALESCE(?, mileage)) WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final FleetStateStore fleetStateStore;
+    private final int maxPending;
+    private final int batchSize;
+    private final Map<Long, PendingSample> pending = new ConcurrentHashMap<>();
+    private final Counter receivedCounter;
+    private final Counter coalescedCounter;
+    private final Counter backpressureCounter;
+    private final Counter invalidCounter;
+    private final Counter unknownScooterCounter;
+    private final Counter flushedRowsCounter;
+    private final Counter flushFailuresCounter;
+    private final Timer flushTimer;
+
+    @Autowired
+    public TelemetryServiceImpl(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            ObjectMapper objectMapper,
+            FleetStateStore fleetStateStore,
+            MeterRegistry meterRegistry,
+            @Value("${telemetry.max-pending:100000}") int maxPending,
+            @Value("${telemetry.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.fleetStateStore = fleetStateStore;
+        this.maxPending = maxPending;
+        this.batchSize = batchSize;
+        Gauge.builder("telemetry.buffer.size", pending, Map::size)
+                .description("Самокаты с несохранённой телеметрией")
+                .register(meterRegistry);
+        this.receivedCounter = meterRegistry.counter("telemetry.samples.received");
+        this.coalescedCounter = meterRegistry.counter("telemetry.samples.coalesced");
+        this.backpressureCounter =
+                meterRegistry.counter("telemetry.samples.dropped", "reason", "backpressure");
+        this.invalidCounter =
+                meterRegistry.counter("telemetry.samples.dropped", "reason", "invalid");
+        this.unknownScooterCounter =
+                meterRegistry.counter("telemetry.samples.dropped", "reason", "unknown_scooter");
+        this.flushedRowsCounter = meterRegistry.counter("telemetry.flush.rows");
+        this.flushFailuresCounter = meterRegistry.counter("telemetry.flush.failures");
+        this.flushTimer = meterRegistry.timer("telemetry.flush");
+    }
+
+    @Override
+    public TelemetryIngestResultDto ingest(InputStream ndjson) throws IOException {
+        int accepted = 0;
+        int rejected = 0;
+        int dropped = 0;
+        BufferedReader reader =
+                new BufferedReader(new InputStreamReader(ndjson, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            receivedCounter.increment();
+            TelemetrySampleDto sample = parse(line);
+            if (sample == null) {
+                invalidCounter.increment();
+                rejected++;
+                continue;
+            }
+            if (offer(sample)) {
+                accepted++;
+            } else {
+                backpressureCounter.increment();
+                dropped++;
+            }
+        }
+        if (rejected > 0 || dropped > 0) {
+            logger.warn(
+                    "Телеметрия: принято {}, отклонено {}, сброшено из-за переполнения {}",
+                    accepted,
+                    rejected,
+                    dropped);
+        }
+        return new TelemetryIngestResultDto(accepted, rejected, dropped);
+    }
+
+    private TelemetrySampleDto parse(String line) {
+        TelemetrySampleDto sample;
+        try {
+            sample = objectMapper.readValue(line, TelemetrySampleDto.class);
+        } catch (JsonProcessingException e) {
+            logger.debug("Некорректная строка телеметрии: {}", e.getOriginalMessage());
+            return null;
+        }
+        if (sample == null || sample.getScooterId() == null || sample.getScooterId() <= 0) {
+            return null;
+        }
+        Integer chargeLevel = sample.getChargeLevel();
+        Double mileage = sample.getMileage();
+        if (chargeLevel == null && mileage == null) {
+            return null;
+        }
+        if (chargeLevel != null && (chargeLevel < 0 || chargeLevel > 100)) {
+            return null;
+        }
+        if (mileage != null && (mileage < 0 || !Double.isFinite(mileage))) {
+            return null;
+        }
+        return sample;
+    }
+
+    // новый самокат в переполненный буфер не попадает, уже ожидающий — обновляется всегда
+    private boolean offer(TelemetrySampleDto sample) {
+        LocalDateTime recordedAt =
+                sample.getRecordedAt() != null ? sample.getRecordedAt() : LocalDateTime.now();
+        PendingSample incoming =
+                new PendingSample(sample.getChargeLevel(), sample.getMileage(), recordedAt);
+        boolean[] accepted = {true};
+        pending.compute(
+                sample.getScooterId(),
+                (id, current) -> {
+                    if (current != null) {
+                        coalescedCounter.increment();
+                        return incoming.merge(current);
+                    }
+                    if (pending.size() >= maxPending) {
+                        accepted[0] = false;
+                        return null;
+                    }
+                    return incoming;
+                });
+        return accepted[0];
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${telemetry.flush-interval-ms:1000}")
+    public int flush() {
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        Timer.Sample sample = Timer.start();
+        try {
+            return drain();
+        } finally {
+            sample.stop(flushTimer);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        int flushed = flush();
+        logger.info("Телеметрия перед остановкой сохранена: {} самокатов", flushed);
+    }
+
+    private int drain() {
+        int flushed = 0;
+        List<Long> ids = new ArrayList<>(batchSize);
+        List<PendingSample> samples = new ArrayList<>(batchSize);
+        Iterator<Long> keys = pending.keySet().iterator();
+        while (keys.hasNext()) {
+            Long id = keys.next();
+            PendingSample sample = pending.remove(id);
+            if (sample == null) {
+                continue;
+            }
+            ids.add(id);
+            samples.add(sample);
+            if (ids.size() == batchSize) {
+                flushed += writeBatch(ids, samples);
+                ids.clear();
+                samples.clear();
+            }
+        }
+        if (!ids.isEmpty()) {
+            flushed += writeBatch(ids, samples);
+        }
+        return flushed;
+    }
+
+    private int writeBatch(List<Long> ids, List<PendingSample> samples) {
+        int[] counts;
+        try {
+            counts =
+                    transactionTemplate.execute(
+                            status ->
+                                    jdbcTemplate.batchUpdate(
+                                            UPDATE_SQL, new SampleBatchSetter(ids, samples)));
+        } catch (Exception e) {
+            flushFailuresCounter.increment();
+            logger.error(
+                    "Ошибка при сохранении телеметрии ({} самокатов), значения возвращены в"
+                            + " буфер: {}",
+                    ids.size(),
+                    e.getMessage(),
+                    e);
+            // за время записи могли прийти более свежие значения — они приоритетнее
+            for (int i = 0; i < ids.size(); i++) {
+                pending.merge(ids.get(i), samples.get(i), PendingSample::merge);
+            }
+            return 0;
+        }
+        int flushed = 0;
+        for (int i = 0; i < ids.size(); i++) {
+            // драйвер может вернуть SUCCESS_NO_INFO (-2) вместо числа строк
+            if (counts != null && i < counts.length && counts[i] == 0) {
+                unknownScooterCounter.increment();
+                continue;
+            }
+            flushed++;
+            Integer chargeLevel = samples.get(i).chargeLevel;
+            if (chargeLevel != null) {
+                fleetStateStore.updateChargeLevel(ids.get(i), chargeLevel);
+            }
+        }
+        flushedRowsCounter.increment(flushed);
+        logger.debug("Телеметрия сохранена: {} самокатов", flushed);
+        return flushed;
+    }
+
+    private static final class SampleBatchSetter implements BatchPreparedStatementSetter {
+        private final List<Long> ids;
+        private final List<PendingSample> samples;
+
+        private SampleBatchSetter(List<Long> ids, List<PendingSample> samples) {
+            this.ids = ids;
+            this.samples = samples;
+        }
+
+        @Override
+        public void setValues(PreparedStatement ps, int i) throws SQLException {
+            PendingSample sample = samples.get(i);
+            if (sample.chargeLevel != null) {
+                ps.setInt(1, sample.chargeLevel);
+            } else {
+                ps.setNull(1, Types.INTEGER);
+            }
+            if (sample.mileage != null) {
+                ps.setDouble(2, sample.mileage);
+            } else {
+                ps.setNull(2, Types.DOUBLE);
+            }
+            ps.setLong(3, ids.get(i));
+        }
+
+        @Override
+        public int getBatchSize() {
+            return ids.size();
+        }
+    }
+
+    private static final class PendingSample {
+        private final Integer chargeLevel;
+        private final Double mileage;
+        private final LocalDateTime recordedAt;
+
+        private PendingSample(Integer chargeLevel, Double mileage, LocalDateTime recordedAt) {
+            this.chargeLevel = chargeLevel;
+            this.mileage = mileage;
+            this.recordedAt = recordedAt;
+        }
+
+        // заряд берётся из более позднего измерения, пробег — наибольший из двух;
+        // пропущенные поля берутся из другого измерения
+        private PendingSample merge(PendingSample other) {
+            PendingSample newer = recordedAt.isBefore(other.recordedAt) ? other : this;
+            PendingSample older = newer == this ? other : this;
+            Double mileage = newer.mileage != null ? newer.mileage : older.mileage;
+            if (newer.mileage != null && older.mileage != null) {
+                mileage = Math.max(newer.mileage, older.mileage);
+            }
+            return new PendingSample(
+                    newer.chargeLevel != null ? newer.chargeLevel : older.chargeLevel,
+                    mileage,
+                    newer.recordedAt);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+-- накопительная статистика поездок по самокату; пополняется в транзакции завершения аренды,
+-- поэтому чтение не требует сканировать историю аренд
+CREATE TABLE scooter_stats
+(
+    scooter_id    BIGINT PRIMARY KEY REFERENCES scooters (id) ON DELETE CASCADE,
+    rides         BIGINT           NOT NULL DEFAULT 0,
+    revenue_minor BIGINT           NOT NULL DEFAULT 0,
+    distance      DOUBLE PRECISION NOT NULL DEFAULT 0,
+    ride_minutes  BIGINT           NOT NULL DEFAULT 0,
+    last_ride_at  TIMESTAMP,
+    updated_at    TIMESTAMP        NOT NULL DEFAULT now()
+);
+
+INSERT INTO scooter_stats (scooter_id, rides, revenue_minor, distance, ride_minutes, last_ride_at)
+SELECT scooter_id,
+       COUNT(*),
+       COALESCE(SUM(ROUND(total_cost * 100)), 0),
+       COALESCE(SUM(GREATEST(end_mileage - start_mileage, 0)), 0),
+       COALESCE(SUM(FLOOR(EXTRACT(EPOCH FROM (end_time - start_time)) / 60)), 0),
+       MAX(end_time)
+FROM rentals
+WHERE end_time IS NOT NULL
+GROUP BY scooter_id;
@@ -0,0 +1,6 @@
+-- индексы поиска самокатов: равенство по ведущим столбцам, id в конце обслуживает
+-- keyset-пагинацию и сортировку по умолчанию без отдельной сортировки
+CREATE INDEX idx_scooters_rental_point_status ON scooters (rental_point_id, status, id);
+CREATE INDEX idx_scooters_status_charge ON scooters (status, charge_level, id);
+CREATE INDEX idx_scooters_model ON scooters (model, id);
+CREATE INDEX idx_scooters_tariff ON scooters (tariff_id, id);
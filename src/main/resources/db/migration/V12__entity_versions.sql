@@ -0,0 +1,5 @@
+-- номера версий для оптимистической блокировки (If-Match); растут при сохранении через JPA
+-- и при смене статуса нативным UPDATE. Заряд и пробег из телеметрии версию не меняют,
+-- поэтому ETag ответа дополняется хэшем этих полей
+ALTER TABLE scooters ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE rental_points ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
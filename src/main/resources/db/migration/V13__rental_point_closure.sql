@@ -0,0 +1,27 @@
+-- таблица замыкания иерархии точек проката: строка на каждую пару (предок, потомок),
+-- включая пару точки с самой собой на глубине 0. Поддерживается сервисом точек проката,
+-- удаление точки убирает её пары каскадом
+CREATE TABLE rental_point_closure
+(
+    ancestor_id   BIGINT  NOT NULL REFERENCES rental_points (id) ON DELETE CASCADE,
+    descendant_id BIGINT  NOT NULL REFERENCES rental_points (id) ON DELETE CASCADE,
+    depth         INTEGER NOT NULL,
+    PRIMARY KEY (ancestor_id, descendant_id)
+);
+
+-- предки точки; первичный ключ обслуживает выборку потомков
+CREATE INDEX idx_rental_point_closure_descendant ON rental_point_closure (descendant_id, depth);
+
+-- глубина ограничена числом точек, чтобы цикл в существующих данных не зациклил рекурсию
+INSERT INTO rental_point_closure (ancestor_id, descendant_id, depth)
+WITH RECURSIVE paths (ancestor_id, descendant_id, depth) AS (
+    SELECT id, id, 0
+    FROM rental_points
+    UNION ALL
+    SELECT p.ancestor_id, c.id, p.depth + 1
+    FROM paths p
+             JOIN rental_points c ON c.parent_point_id = p.descendant_id
+    WHERE p.depth < (SELECT COUNT(*) FROM rental_points))
+SELECT ancestor_id, descendant_id, MIN(depth)
+FROM paths
+GROUP BY ancestor_id, descendant_id;
@@ -0,0 +1,2 @@
+-- версия тарифа: по ней движок цен отличает свежую скомпилированную цену от устаревшей
+ALTER TABLE tariffs ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,33 @@
+-- секцию нельзя создать, пока в rentals_default лежат строки её месяца, поэтому они
+-- сначала переносятся во временную таблицу и возвращаются уже в новую секцию;
+-- триггер open_rentals срабатывает на удаление и вставку и сохраняет учёт открытых аренд
+CREATE OR REPLACE FUNCTION ensure_rentals_partition(p_month DATE) RETURNS TEXT
+    LANGUAGE plpgsql AS
+$$
+DECLARE
+    v_from  DATE := date_trunc('month', p_month)::DATE;
+    v_to    DATE := (date_trunc('month', p_month) + INTERVAL '1 month')::DATE;
+    v_name  TEXT := 'rentals_p' || to_char(p_month, 'YYYY_MM');
+    v_stray BOOLEAN;
+BEGIN
+    IF to_regclass('public.' || v_name) IS NOT NULL THEN
+        RETURN v_name;
+    END IF;
+    SELECT EXISTS (SELECT 1 FROM rentals_default WHERE start_time >= v_from AND start_time < v_to)
+    INTO v_stray;
+    IF v_stray THEN
+        EXECUTE format('CREATE TEMP TABLE rentals_moved ON COMMIT DROP AS '
+                           || 'SELECT * FROM rentals_default WHERE start_time >= %L AND start_time < %L',
+                       v_from, v_to);
+        DELETE FROM rentals_default WHERE start_time >= v_from AND start_time < v_to;
+    END IF;
+    EXECUTE format('CREATE TABLE public.%I PARTITION OF rentals FOR VALUES FROM (%L) TO (%L)',
+                   v_name, v_from, v_to);
+    IF v_stray THEN
+        EXECUTE 'INSERT INTO rentals SELECT * FROM rentals_moved';
+        EXECUTE 'DROP TABLE rentals_moved';
+        RAISE NOTICE 'Строки месяца % перенесены из rentals_default в %', v_from, v_name;
+    END IF;
+    RETURN v_name;
+END;
+$$;
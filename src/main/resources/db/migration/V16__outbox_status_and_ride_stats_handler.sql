@@ -0,0 +1,32 @@
+-- событие outbox либо ждёт обработки, либо обработано, либо исчерпало попытки и отложено
+-- в DEAD до ручного разбора; воркер выбирает только PENDING
+ALTER TABLE outbox_events
+    ADD COLUMN status VARCHAR(16) NOT NULL DEFAULT 'PENDING';
+
+UPDATE outbox_events
+SET status = 'PROCESSED'
+WHERE processed_at IS NOT NULL;
+
+DROP INDEX idx_outbox_events_pending;
+
+CREATE INDEX idx_outbox_events_pending ON outbox_events (next_attempt_at, id)
+    WHERE status = 'PENDING';
+
+-- под удаление обработанных событий старше срока хранения
+CREATE INDEX idx_outbox_events_processed ON outbox_events (processed_at)
+    WHERE status = 'PROCESSED';
+
+-- поездки, уже учтённые в scooter_stats: обработчик RENTAL_ENDED получает событие
+-- «как минимум один раз» и по этой таблице не прибавляет одну поездку дважды
+CREATE TABLE scooter_stats_rides
+(
+    rental_id  BIGINT PRIMARY KEY,
+    applied_at TIMESTAMP NOT NULL DEFAULT now()
+);
+
+-- до этой миграции статистика пополнялась при закрытии аренды, так что все завершённые
+-- аренды уже учтены, даже если их событие ещё не разобрано
+INSERT INTO scooter_stats_rides (rental_id)
+SELECT id
+FROM rentals
+WHERE end_time IS NOT NULL;
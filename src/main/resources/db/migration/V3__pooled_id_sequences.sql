@@ -0,0 +1,7 @@
+-- pooled-оптимизатор Hibernate: один nextval резервирует блок из 50 идентификаторов,
+-- поэтому вставки больше не требуют обращения к БД на каждую строку и идут JDBC-пакетами
+ALTER SEQUENCE users_id_seq INCREMENT BY 50;
+ALTER SEQUENCE rental_points_id_seq INCREMENT BY 50;
+ALTER SEQUENCE tariffs_id_seq INCREMENT BY 50;
+ALTER SEQUENCE scooters_id_seq INCREMENT BY 50;
+ALTER SEQUENCE rentals_id_seq INCREMENT BY 50;
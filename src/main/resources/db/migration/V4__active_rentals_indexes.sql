@@ -0,0 +1,4 @@
+-- не более одной открытой аренды на самокат; индекс также обслуживает выборку активных аренд
+CREATE UNIQUE INDEX ux_rentals_open_scooter ON rentals (scooter_id) WHERE end_time IS NULL;
+
+CREATE INDEX idx_rentals_open_user ON rentals (user_id) WHERE end_time IS NULL;
@@ -0,0 +1,3 @@
+ALTER TABLE tariffs
+    ADD COLUMN minimum_charge DOUBLE PRECISION,
+    ADD COLUMN maximum_charge DOUBLE PRECISION;
@@ -0,0 +1,2 @@
+-- индекс для keyset-пагинации и потоковой выгрузки аренд в порядке (start_time, id)
+CREATE INDEX idx_rentals_start_time_id ON rentals (start_time, id);
@@ -0,0 +1,111 @@
+-- перевод rentals на помесячное секционирование по start_time
+
+ALTER SEQUENCE rentals_id_seq OWNED BY NONE;
+
+DROP INDEX ux_rentals_open_scooter;
+DROP INDEX idx_rentals_open_user;
+DROP INDEX idx_rentals_start_time_id;
+ALTER TABLE rentals RENAME TO rentals_legacy;
+ALTER INDEX rentals_pkey RENAME TO rentals_legacy_pkey;
+
+-- первичный ключ секционированной таблицы обязан включать ключ секционирования
+CREATE TABLE rentals
+(
+    id            BIGINT                          NOT NULL DEFAULT nextval('rentals_id_seq'),
+    user_id       BIGINT REFERENCES users (id)    NOT NULL,
+    scooter_id    BIGINT REFERENCES scooters (id) NOT NULL,
+    start_time    TIMESTAMP                       NOT NULL,
+    end_time      TIMESTAMP,
+    start_mileage DOUBLE PRECISION,
+    end_mileage   DOUBLE PRECISION,
+    total_cost    DOUBLE PRECISION,
+    tariff_id     BIGINT REFERENCES tariffs (id),
+    PRIMARY KEY (id, start_time)
+) PARTITION BY RANGE (start_time);
+
+ALTER SEQUENCE rentals_id_seq OWNED BY rentals.id;
+
+-- страховочная секция для строк вне заранее созданных месяцев
+CREATE TABLE rentals_default PARTITION OF rentals DEFAULT;
+
+-- сюда переносятся отсоединённые старые секции
+CREATE SCHEMA IF NOT EXISTS rentals_archive;
+
+CREATE OR REPLACE FUNCTION ensure_rentals_partition(p_month DATE) RETURNS TEXT
+    LANGUAGE plpgsql AS
+$$
+DECLARE
+    v_from DATE := date_trunc('month', p_month)::DATE;
+    v_to   DATE := (date_trunc('month', p_month) + INTERVAL '1 month')::DATE;
+    v_name TEXT := 'rentals_p' || to_char(p_month, 'YYYY_MM');
+BEGIN
+    IF to_regclass('public.' || v_name) IS NULL THEN
+        EXECUTE format('CREATE TABLE public.%I PARTITION OF rentals FOR VALUES FROM (%L) TO (%L)',
+                       v_name, v_from, v_to);
+    END IF;
+    RETURN v_name;
+END;
+$$;
+
+DO
+$$
+DECLARE
+    v_month DATE;
+BEGIN
+    SELECT date_trunc('month', COALESCE(MIN(start_time), now()))::DATE INTO v_month FROM rentals_legacy;
+    WHILE v_month <= (date_trunc('month', now()) + INTERVAL '3 months')::DATE
+        LOOP
+            PERFORM ensure_rentals_partition(v_month);
+            v_month := (v_month + INTERVAL '1 month')::DATE;
+        END LOOP;
+END;
+$$;
+
+-- уникальный индекс секционированной таблицы тоже должен включать start_time,
+-- поэтому инвариант «не более одной открытой аренды на самокат» держит отдельная таблица
+CREATE TABLE open_rentals
+(
+    scooter_id BIGINT PRIMARY KEY REFERENCES scooters (id),
+    rental_id  BIGINT NOT NULL
+);
+
+CREATE OR REPLACE FUNCTION track_open_rentals() RETURNS TRIGGER
+    LANGUAGE plpgsql AS
+$$
+BEGIN
+    IF TG_OP = 'UPDATE' AND OLD.end_time IS NOT DISTINCT FROM NEW.end_time
+        AND OLD.scooter_id = NEW.scooter_id THEN
+        RETURN NULL;
+    END IF;
+    IF TG_OP IN ('UPDATE', 'DELETE') THEN
+        IF OLD.end_time IS NULL THEN
+            DELETE FROM open_rentals WHERE scooter_id = OLD.scooter_id AND rental_id = OLD.id;
+        END IF;
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        IF NEW.end_time IS NULL THEN
+            INSERT INTO open_rentals (scooter_id, rental_id) VALUES (NEW.scooter_id, NEW.id);
+        END IF;
+    END IF;
+    RETURN NULL;
+END;
+$$;
+
+CREATE TRIGGER trg_rentals_open
+    AFTER INSERT OR UPDATE OR DELETE
+    ON rentals
+    FOR EACH ROW
+EXECUTE FUNCTION track_open_rentals();
+
+INSERT INTO rentals (id, user_id, scooter_id, start_time, end_time, start_mileage, end_mileage,
+                     total_cost, tariff_id)
+SELECT id, user_id, scooter_id, start_time, end_time, start_mileage, end_mileage, total_cost, tariff_id
+FROM rentals_legacy;
+
+DROP TABLE rentals_legacy;
+
+CREATE INDEX idx_rentals_start_time_id ON rentals (start_time, id);
+CREATE INDEX idx_rentals_user_start_time ON rentals (user_id, start_time);
+CREATE INDEX idx_rentals_scooter_start_time ON rentals (scooter_id, start_time);
+CREATE INDEX idx_rentals_open_user ON rentals (user_id) WHERE end_time IS NULL;
+CREATE INDEX idx_rentals_open_scooter ON rentals (scooter_id) WHERE end_time IS NULL;
@@ -0,0 +1,20 @@
+-- исходящие события пишутся в одной транзакции с изменением данных и разбираются воркером;
+-- next_attempt_at одновременно служит арендой: захваченное событие не выдаётся повторно,
+-- пока она не истечёт
+CREATE TABLE outbox_events
+(
+    id              BIGSERIAL PRIMARY KEY,
+    event_type      VARCHAR(64) NOT NULL,
+    aggregate_id    BIGINT      NOT NULL,
+    payload         TEXT        NOT NULL,
+    created_at      TIMESTAMP   NOT NULL DEFAULT now(),
+    attempts        INTEGER     NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP   NOT NULL DEFAULT now(),
+    processed_at    TIMESTAMP,
+    last_error      TEXT
+);
+
+ALTER SEQUENCE outbox_events_id_seq INCREMENT BY 50;
+
+CREATE INDEX idx_outbox_events_pending ON outbox_events (next_attempt_at, id)
+    WHERE processed_at IS NULL;
@@ -0,0 +1,13 @@
+-- ответы на запросы с заголовком Idempotency-Key; строка без response_status означает,
+-- что запрос с этим ключом ещё выполняется
+CREATE TABLE idempotency_keys
+(
+    id              VARCHAR(255) PRIMARY KEY,
+    request_hash    VARCHAR(64)  NOT NULL,
+    response_status INTEGER,
+    response_body   TEXT,
+    created_at      TIMESTAMP    NOT NULL DEFAULT now(),
+    expires_at      TIMESTAMP    NOT NULL
+);
+
+CREATE INDEX idx_idempotency_keys_expires_at ON idempotency_keys (expires_at);
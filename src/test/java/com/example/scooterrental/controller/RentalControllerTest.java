@@ -1,15 +1,26 @@
 package com.example.scooterrental.controller;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+import com.example.scooterrental.dto.CursorPageDto;
 import com.example.scooterrental.dto.RentalDto;
 import com.example.scooterrental.dto.RentalInfoDto;
 import com.example.scooterrental.exception.RentalNotFoundException;
+import com.example.scooterrental.exception.ScooterUnavailableException;
+import com.example.scooterrental.exception.IdempotencyConflictException;
+import com.example.scooterrental.service.IdempotencyService;
 import com.example.scooterrental.service.RentalService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -21,10 +32,13 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @WebMvcTest(RentalController.class)
 public class RentalControllerTest {
@@ -35,12 +49,16 @@ public class RentalControllerTest {
 
     @MockBean private RentalService rentalService;
 
+    @MockBean private IdempotencyService idempotencyService;
+
     private RentalDto rentalDto;
     private RentalInfoDto rentalInfoDto1;
     private RentalInfoDto rentalInfoDto2;
 
     @BeforeEach
     void setUp() {
+        when(idempotencyService.execute(any(), any(), any(), any(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(4).get());
         rentalDto = new RentalDto(null, 1L, 1L, LocalDateTime.now(), null, null, null, null, null);
         rentalInfoDto1 =
                 new RentalInfoDto(
@@ -88,6 +106,44 @@ public class RentalControllerTest {
                 .andExpect(jsonPath("$.scooterId").value(rentalDto.getScooterId()));
     }
 
+    @Test
+    @WithMockUser(username = "user1", roles = {"USER"})
+    void createRental_ShouldScopeIdempotencyKeyToUserAndEndpoint() throws Exception {
+        when(rentalService.createRental(any(RentalDto.class))).thenReturn(rentalDto);
+
+        mockMvc.perform(
+                        post("/api/rentals")
+                                .header(RentalController.IDEMPOTENCY_KEY_HEADER, "key-1")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(rentalDto))
+                                .with(csrf()))
+                .andExpect(status().isCreated());
+
+        verify(idempotencyService)
+                .execute(
+                        eq("key-1"),
+                        eq("POST /api/rentals user1"),
+                        any(RentalDto.class),
+                        eq(RentalDto.class),
+                        any());
+    }
+
+    @Test
+    @WithMockUser(username = "user1", roles = {"USER"})
+    void endRental_ShouldReturnConflict_WhenSameKeyIsStillInProgress() throws Exception {
+        doThrow(new IdempotencyConflictException("Запрос ещё выполняется"))
+                .when(idempotencyService)
+                .execute(eq("key-2"), eq("PUT /api/rentals/1/end user1"), eq(1L), any(), any());
+
+        mockMvc.perform(
+                        put("/api/rentals/1/end")
+                                .header(RentalController.IDEMPOTENCY_KEY_HEADER, "key-2")
+                                .with(csrf()))
+                .andExpect(status().isConflict());
+
+        verify(rentalService, never()).endRental(any());
+    }
+
     @Test
     @WithMockUser(roles = {"USER"})
     void createRental_ShouldReturnBadRequest_WhenRentalIsInvalid() throws Exception {
@@ -101,6 +157,20 @@ public class RentalControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    @WithMockUser(roles = {"USER"})
+    void createRental_ShouldReturnConflict_WhenScooterIsAlreadyTaken() throws Exception {
+        when(rentalService.createRental(any(RentalDto.class)))
+                .thenThrow(new ScooterUnavailableException("Самокат недоступен для аренды"));
+
+        mockMvc.perform(
+                        post("/api/rentals")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(rentalDto))
+                                .with(csrf()))
+                .andExpect(status().isConflict());
+    }
+
     @Test
     @WithMockUser(roles = {"USER"})
     void getRentalById_ShouldReturnRental_WhenRentalExists() throws Exception {
@@ -124,22 +194,70 @@ public class RentalControllerTest {
 
     @Test
     @WithMockUser(roles = {"MANAGER", "ADMIN"})
-    void getAllRentals_ShouldReturnListOfRentals() throws Exception {
-        List<RentalInfoDto> rentals = Arrays.asList(rentalInfoDto1, rentalInfoDto2);
-        when(rentalService.getAllRentals()).thenReturn(rentals);
+    void getAllRentals_ShouldReturnCursorPage() throws Exception {
+        CursorPageDto<RentalInfoDto> page =
+                new CursorPageDto<>(Arrays.asList(rentalInfoDto1, rentalInfoDto2), "next");
+        when(rentalService.getRentalsPage("abc", 2)).thenReturn(page);
 
-        mockMvc.perform(get("/api/rentals").with(csrf()))
+        mockMvc.perform(get("/api/rentals?cursor=abc&limit=2").with(csrf()))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
-                .andExpect(jsonPath("$[0].userId").value(rentalInfoDto1.getUserId()))
-                .andExpect(jsonPath("$[1].userId").value(rentalInfoDto2.getUserId()));
+                .andExpect(jsonPath("$.items[0].userId").value(rentalInfoDto1.getUserId()))
+                .andExpect(jsonPath("$.items[1].userId").value(rentalInfoDto2.getUserId()))
+                .andExpect(jsonPath("$.nextCursor").value("next"));
+    }
+
+    @Test
+    @WithMockUser(roles = {"MANAGER"})
+    void getAllRentals_ShouldReturnBadRequest_WhenCursorIsMalformed() throws Exception {
+        when(rentalService.getRentalsPage("bad", 50))
+                .thenThrow(new IllegalArgumentException("Некорректный курсор: bad"));
+
+        mockMvc.perform(get("/api/rentals?cursor=bad").with(csrf()))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser(roles = {"ADMIN"})
+    void streamAllRentals_ShouldWriteJsonArray() throws Exception {
+        doAnswer(
+                        invocation -> {
+                            Consumer<RentalInfoDto> consumer = invocation.getArgument(0);
+                            consumer.accept(rentalInfoDto1);
+                            consumer.accept(rentalInfoDto2);
+                            return null;
+                        })
+                .when(rentalService)
+                .streamAllRentals(any());
+
+        MvcResult result =
+                mockMvc.perform(get("/api/rentals/stream").with(csrf()))
+                        .andExpect(request().asyncStarted())
+                        .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[1].id").value(rentalInfoDto2.getId()));
+    }
+
+    @Test
+    @WithMockUser(roles = {"MANAGER"})
+    void getActiveRentals_ShouldPassFiltersToService() throws Exception {
+        when(rentalService.getActiveRentals(null, 2L, 1L)).thenReturn(List.of(rentalInfoDto1));
+
+        mockMvc.perform(get("/api/rentals/active?scooterId=2&rentalPointId=1").with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$[0].id").value(rentalInfoDto1.getId()));
     }
 
     @Test
     @WithMockUser(roles = {"USER"})
     void getRentalsByUser_ShouldReturnListOfRentals_WhenUserExists() throws Exception {
         List<RentalInfoDto> rentals = Arrays.asList(rentalInfoDto1, rentalInfoDto2);
-        when(rentalService.getRentalsByUser(1L)).thenReturn(rentals);
+        when(rentalService.getRentalsByUser(1L, null, null)).thenReturn(rentals);
 
         mockMvc.perform(get("/api/rentals/user/1").with(csrf()))
                 .andExpect(status().isOk())
@@ -152,7 +270,7 @@ public class RentalControllerTest {
     @WithMockUser(roles = {"MANAGER", "ADMIN"})
     void getRentalsByScooter_ShouldReturnListOfRentals_WhenScooterExists() throws Exception {
         List<RentalInfoDto> rentals = Arrays.asList(rentalInfoDto1, rentalInfoDto2);
-        when(rentalService.getRentalsByScooter(1L)).thenReturn(rentals);
+        when(rentalService.getRentalsByScooter(1L, null, null)).thenReturn(rentals);
 
         mockMvc.perform(get("/api/rentals/scooter/1").with(csrf()))
                 .andExpect(status().isOk())
@@ -160,4 +278,21 @@ public class RentalControllerTest {
                 .andExpect(jsonPath("$[0].userId").value(rentalInfoDto1.getUserId()))
                 .andExpect(jsonPath("$[1].userId").value(rentalInfoDto2.getUserId()));
     }
+
+    @Test
+    @WithMockUser(roles = {"ADMIN"})
+    void getRentalHistoryByScooter_ShouldPassTimeWindowToService() throws Exception {
+        LocalDateTime from = LocalDateTime.of(2024, 5, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2024, 6, 1, 0, 0);
+        when(rentalService.getRentalHistoryByScooter(1L, from, to))
+                .thenReturn(List.of(rentalInfoDto1));
+
+        mockMvc.perform(
+                        get("/api/rentals/scooter/1/history")
+                                .param("from", "2024-05-01T00:00:00")
+                                .param("to", "2024-06-01T00:00:00")
+                                .with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(rentalInfoDto1.getId()));
+    }
 }
@@ -1,8 +1,14 @@
 package com.example.scooterrental.controller;
 
+import com.example.scooterrental.dto.CursorPageDto;
+import com.example.scooterrental.dto.MapClusterDto;
 import com.example.scooterrental.dto.RentalPointDto;
 import com.example.scooterrental.dto.RentalPointInfoDto;
+import com.example.scooterrental.dto.RentalPointScooterCountsDto;
+import com.example.scooterrental.dto.RentalPointViewDto;
+import com.example.scooterrental.dto.ScooterInfoDto;
 import com.example.scooterrental.exception.RentalPointNotFoundException;
+import com.example.scooterrental.model.ScooterStatus;
 import com.example.scooterrental.service.RentalPointService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
@@ -16,10 +22,18 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
 import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -41,7 +55,8 @@ public class RentalPointControllerTest {
     void setUp() {
         rentalPointDto1 = new RentalPointDto(1L, "Точка DTO", "Адрес DTO", 55.77, 37.64, null);
         rentalPointInfoDto1 =
-                new RentalPointInfoDto(1L, "Точка 1", "Адрес 1", 55.75, 37.62, null, null, null);
+                new RentalPointInfoDto(
+                        1L, "Точка 1", "Адрес 1", 55.75, 37.62, null, null, null, null);
     }
 
     @Test
@@ -75,10 +90,65 @@ public class RentalPointControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    @WithMockUser(roles = {"MANAGER", "ADMIN"})
+    void createRentalPoint_ShouldReturnBadRequest_WhenLatitudeIsOutOfRange() throws Exception {
+        RentalPointDto invalidRentalPointDto =
+                new RentalPointDto(null, "Точка", "Адрес", -91.0, 37.64, null);
+
+        mockMvc.perform(
+                        post("/api/rental-points")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(invalidRentalPointDto))
+                                .with(csrf()))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(rentalPointService);
+    }
+
+    @Test
+    @WithMockUser
+    void getScooterCounts_ShouldReturnCountsPerRentalPoint() throws Exception {
+        Map<ScooterStatus, Integer> counts = new EnumMap<>(ScooterStatus.class);
+        counts.put(ScooterStatus.AVAILABLE, 4);
+        counts.put(ScooterStatus.IN_USE, 1);
+        when(rentalPointService.getScooterCounts())
+                .thenReturn(List.of(new RentalPointScooterCountsDto(1L, counts)));
+
+        mockMvc.perform(get("/api/rental-points/scooter-counts"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].rentalPointId").value(1))
+                .andExpect(jsonPath("$[0].scooterCounts.AVAILABLE").value(4))
+                .andExpect(jsonPath("$[0].scooterCounts.IN_USE").value(1));
+    }
+
+    @Test
+    @WithMockUser
+    void getMapClusters_ShouldReturnClustersWithSinglePointIdOnly() throws Exception {
+        when(rentalPointService.getMapClusters(51, 23, 56, 33, 5))
+                .thenReturn(
+                        List.of(
+                                new MapClusterDto(53.9, 27.56, 2, 3, 2, null),
+                                new MapClusterDto(52.43, 31.0, 1, 1, 1, 3L)));
+
+        mockMvc.perform(
+                        get("/api/rental-points/map-clusters")
+                                .param("minLat", "51")
+                                .param("minLon", "23")
+                                .param("maxLat", "56")
+                                .param("maxLon", "33")
+                                .param("zoom", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].rentalPoints").value(2))
+                .andExpect(jsonPath("$[0].availableScooters").value(2))
+                .andExpect(jsonPath("$[0].rentalPointId").doesNotExist())
+                .andExpect(jsonPath("$[1].rentalPointId").value(3));
+    }
+
     @Test
     @WithMockUser(roles = {"MANAGER", "ADMIN"})
     void getRentalPointById_ShouldReturnRentalPoint_WhenRentalPointExists() throws Exception {
-        when(rentalPointService.getRentalPointById(anyLong())).thenReturn(rentalPointInfoDto1);
+        when(rentalPointService.getRentalPointById(anyLong(), any()))
+                .thenReturn(rentalPointInfoDto1);
 
         mockMvc.perform(get("/api/rental-points/1").with(csrf()))
                 .andExpect(status().isOk())
@@ -90,7 +160,7 @@ public class RentalPointControllerTest {
     @Test
     @WithMockUser(roles = {"MANAGER", "ADMIN"})
     void getRentalPointById_ShouldReturnNotFound_WhenRentalPointDoesNotExist() throws Exception {
-        when(rentalPointService.getRentalPointById(anyLong()))
+        when(rentalPointService.getRentalPointById(anyLong(), any()))
                 .thenThrow(new RentalPointNotFoundException("Точка не найдена"));
 
         mockMvc.perform(get("/api/rental-points/1").with(csrf())).andExpect(status().isNotFound());
@@ -100,7 +170,7 @@ public class RentalPointControllerTest {
     @WithMockUser(roles = {"MANAGER", "ADMIN"})
     void updateRentalPoint_ShouldReturnUpdatedRentalPoint_WhenRentalPointIsValid()
             throws Exception {
-        when(rentalPointService.updateRentalPoint(anyLong(), any(RentalPointDto.class)))
+        when(rentalPointService.updateRentalPoint(anyLong(), any(RentalPointDto.class), any()))
                 .thenReturn(rentalPointDto1);
 
         mockMvc.perform(
@@ -114,6 +184,23 @@ public class RentalPointControllerTest {
                 .andExpect(jsonPath("$.name").value(rentalPointDto1.getName()));
     }
 
+    @Test
+    @WithMockUser(roles = {"MANAGER", "ADMIN"})
+    void updateRentalPoint_ShouldPassOnlyVersionFromETagInIfMatch() throws Exception {
+        when(rentalPointService.updateRentalPoint(eq(1L), any(RentalPointDto.class), eq("3")))
+                .thenReturn(rentalPointDto1);
+
+        mockMvc.perform(
+                        put("/api/rental-points/1")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(rentalPointDto1))
+                                .header("If-Match", "\"3-a1b2\"")
+                                .with(csrf()))
+                .andExpect(status().isOk());
+        verify(rentalPointService, times(1))
+                .updateRentalPoint(eq(1L), any(RentalPointDto.class), eq("3"));
+    }
+
     @Test
     @WithMockUser(roles = {"MANAGER", "ADMIN"})
     void deleteRentalPoint_ShouldReturnNoContent_WhenRentalPointExists() throws Exception {
@@ -126,7 +213,7 @@ public class RentalPointControllerTest {
     void getAllRentalPoints_ShouldReturnListOfRentalPoints() throws Exception {
         List<RentalPointInfoDto> rentalPointDtos =
                 Arrays.asList(rentalPointInfoDto1, rentalPointInfoDto1);
-        when(rentalPointService.getAllRentalPoints()).thenReturn(rentalPointDtos);
+        when(rentalPointService.getAllRentalPoints(any())).thenReturn(rentalPointDtos);
 
         mockMvc.perform(get("/api/rental-points").with(csrf()))
                 .andExpect(status().isOk())
@@ -142,7 +229,7 @@ public class RentalPointControllerTest {
     void getRootRentalPoints_ShouldReturnListOfRootRentalPoints() throws Exception {
         List<RentalPointInfoDto> rentalPointDtos =
                 Arrays.asList(rentalPointInfoDto1, rentalPointInfoDto1);
-        when(rentalPointService.getRootRentalPoints()).thenReturn(rentalPointDtos);
+        when(rentalPointService.getRootRentalPoints(any())).thenReturn(rentalPointDtos);
 
         mockMvc.perform(get("/api/rental-points/root").with(csrf()))
                 .andExpect(status().isOk())
@@ -158,7 +245,8 @@ public class RentalPointControllerTest {
     void getChildRentalPoints_ShouldReturnListOfChildRentalPoints() throws Exception {
         List<RentalPointInfoDto> rentalPointDtos =
                 Arrays.asList(rentalPointInfoDto1, rentalPointInfoDto1);
-        when(rentalPointService.getChildRentalPoints(anyLong())).thenReturn(rentalPointDtos);
+        when(rentalPointService.getChildRentalPoints(anyLong(), any()))
+                .thenReturn(rentalPointDtos);
 
         mockMvc.perform(get("/api/rental-points/1/children").with(csrf()))
                 .andExpect(status().isOk())
@@ -172,10 +260,91 @@ public class RentalPointControllerTest {
     @Test
     @WithMockUser(roles = {"MANAGER", "ADMIN"})
     void getChildRentalPoints_ShouldReturnNotFound_WhenParentDoesNotExist() throws Exception {
-        when(rentalPointService.getChildRentalPoints(anyLong()))
+        when(rentalPointService.getChildRentalPoints(anyLong(), any()))
                 .thenThrow(new RentalPointNotFoundException("Точка не найдена"));
 
         mockMvc.perform(get("/api/rental-points/1/children").with(csrf()))
                 .andExpect(status().isNotFound());
     }
+
+    @Test
+    @WithMockUser
+    void getAllRentalPoints_ShouldPassViewAndOmitUnrequestedFields() throws Exception {
+        RentalPointInfoDto flat =
+                new RentalPointInfoDto(
+                        2L, "Точка 2", "Адрес 2", 55.76, 37.63, 1L, null, null, null);
+        when(rentalPointService.getAllRentalPoints(
+                        argThat(
+                                view ->
+                                        view.isFlat()
+                                                && view.getDepth() == null
+                                                && view.getInclude()
+                                                        == RentalPointViewDto.Include.NONE)))
+                .thenReturn(List.of(flat));
+
+        mockMvc.perform(get("/api/rental-points").param("flat", "true").param("include", "None"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].parentPointId").value(1))
+                .andExpect(jsonPath("$[0].childPoints").doesNotExist())
+                .andExpect(jsonPath("$[0].scooters").doesNotExist())
+                .andExpect(jsonPath("$[0].scooterCounts").doesNotExist());
+    }
+
+    @Test
+    @WithMockUser
+    void getChildRentalPoints_ShouldReturnBadRequest_WhenIncludeIsUnknown() throws Exception {
+        mockMvc.perform(get("/api/rental-points/1/children").param("include", "everything"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser
+    void getRootRentalPoints_ShouldReturnNotModified_WhenHierarchyVersionMatches()
+            throws Exception {
+        when(rentalPointService.getHierarchyVersion()).thenReturn("42");
+        when(rentalPointService.getRootRentalPoints(any()))
+                .thenReturn(List.of(rentalPointInfoDto1));
+
+        mockMvc.perform(get("/api/rental-points/root").param("include", "none"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"42\""));
+        mockMvc.perform(
+                        get("/api/rental-points/root")
+                                .param("include", "none")
+                                .header("If-None-Match", "\"42\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"42\""));
+        // с самокатами ответ зависит не только от иерархии, поэтому версии у него нет
+        mockMvc.perform(get("/api/rental-points/root").header("If-None-Match", "\"42\""))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("ETag"));
+
+        verify(rentalPointService, times(2)).getRootRentalPoints(any());
+    }
+
+    @Test
+    @WithMockUser
+    void getSubtreeScooters_ShouldPassFilterAndPage() throws Exception {
+        ScooterInfoDto scooter = new ScooterInfoDto();
+        scooter.setId(7L);
+        when(rentalPointService.getSubtreeScooters(
+                        eq(1L),
+                        argThat(
+                                filter ->
+                                        filter.getStatus() == ScooterStatus.AVAILABLE
+                                                && filter.getRentalPointId() == null),
+                        eq("-chargeLevel"),
+                        isNull(),
+                        eq(20)))
+                .thenReturn(new CursorPageDto<>(List.of(scooter), "next"));
+
+        mockMvc.perform(
+                        get("/api/rental-points/1/subtree/scooters")
+                                .param("status", "AVAILABLE")
+                                .param("sort", "-chargeLevel")
+                                .param("limit", "20"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value(7))
+                .andExpect(jsonPath("$.nextCursor").value("next"));
+    }
 }
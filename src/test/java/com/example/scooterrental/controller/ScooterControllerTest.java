@@ -1,16 +1,33 @@
 package com.example.scooterrental.controller;
 
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+import com.example.scooterrental.dto.CursorPageDto;
+import com.example.scooterrental.dto.NearbyRentalPointDto;
+import com.example.scooterrental.dto.ScooterAvailabilityDto;
+import com.example.scooterrental.dto.ScooterBulkStatusRequestDto;
+import com.example.scooterrental.dto.ScooterBulkStatusResultDto;
 import com.example.scooterrental.dto.ScooterDto;
+import com.example.scooterrental.dto.ScooterImportErrorDto;
+import com.example.scooterrental.dto.ScooterImportResultDto;
 import com.example.scooterrental.dto.ScooterInfoDto;
+import com.example.scooterrental.dto.ScooterStatsDto;
+import com.example.scooterrental.dto.ScooterStatusOutcomeDto;
+import com.example.scooterrental.dto.TelemetryIngestResultDto;
+import com.example.scooterrental.exception.PreconditionFailedException;
 import com.example.scooterrental.exception.ScooterNotFoundException;
+import com.example.scooterrental.fleet.ScooterChangeStream;
 import com.example.scooterrental.model.ScooterStatus;
+import com.example.scooterrental.service.ScooterImportService;
 import com.example.scooterrental.service.ScooterService;
+import com.example.scooterrental.service.TelemetryService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -21,6 +38,7 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.Arrays;
 import java.util.List;
@@ -34,6 +52,12 @@ public class ScooterControllerTest {
 
     @MockBean private ScooterService scooterService;
 
+    @MockBean private TelemetryService telemetryService;
+
+    @MockBean private ScooterImportService scooterImportService;
+
+    @MockBean private ScooterChangeStream scooterChangeStream;
+
     private ScooterDto scooterDto1;
     private ScooterInfoDto scooterInfoDto1;
 
@@ -53,7 +77,82 @@ public class ScooterControllerTest {
                         1L,
                         "ТОЧКА123",
                         1L,
-                        "ТАРИФ1");
+                        "ТАРИФ1",
+                        new ScooterStatsDto(1L, 12L, 1530.5, 84.2, 310L, null));
+    }
+
+    @Test
+    @WithMockUser(roles = {"ADMIN"})
+    void importScootersCsv_ShouldReturnPerRowReport() throws Exception {
+        when(scooterImportService.importCsv(any()))
+                .thenReturn(
+                        new ScooterImportResultDto(
+                                2,
+                                1,
+                                1,
+                                List.of(
+                                        new ScooterImportErrorDto(
+                                                2, "SN2", "Тариф с ID 9 не найден")),
+                                false));
+
+        mockMvc.perform(
+                        post("/api/scooters/import")
+                                .contentType("text/csv")
+                                .content(
+                                        "model,serialNumber,status,chargeLevel,tariffId\n"
+                                                + "X,SN1,AVAILABLE,90,1\n"
+                                                + "X,SN2,AVAILABLE,90,9\n")
+                                .with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.errors[0].row").value(2))
+                .andExpect(jsonPath("$.errors[0].serialNumber").value("SN2"));
+    }
+
+    @Test
+    @WithMockUser
+    void streamStatusChanges_ShouldResumeFromLastEventIdHeader() throws Exception {
+        when(scooterChangeStream.subscribe(10L, null, "1000-42")).thenReturn(new SseEmitter());
+
+        mockMvc.perform(
+                        get("/api/scooters/stream")
+                                .param("rentalPointId", "10")
+                                .param("since", "1000-7")
+                                .header("Last-Event-ID", "1000-42"))
+                .andExpect(request().asyncStarted());
+    }
+
+    @Test
+    @WithMockUser(roles = {"MANAGER"})
+    void ingestTelemetry_ShouldReturnAccepted_WhenAllSamplesAreBuffered() throws Exception {
+        when(telemetryService.ingest(any())).thenReturn(new TelemetryIngestResultDto(2, 1, 0));
+
+        mockMvc.perform(
+                        post("/api/scooters/telemetry")
+                                .contentType(MediaType.APPLICATION_NDJSON)
+                                .content(
+                                        "{\"scooterId\":1,\"chargeLevel\":80}\n"
+                                                + "{\"scooterId\":2,\"mileage\":12.5}\n"
+                                                + "не json\n")
+                                .with(csrf()))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.accepted").value(2))
+                .andExpect(jsonPath("$.rejected").value(1));
+    }
+
+    @Test
+    @WithMockUser(roles = {"MANAGER"})
+    void ingestTelemetry_ShouldReturnTooManyRequests_WhenBufferIsFull() throws Exception {
+        when(telemetryService.ingest(any())).thenReturn(new TelemetryIngestResultDto(1, 0, 3));
+
+        mockMvc.perform(
+                        post("/api/scooters/telemetry")
+                                .contentType(MediaType.APPLICATION_NDJSON)
+                                .content("{\"scooterId\":1,\"chargeLevel\":80}\n")
+                                .with(csrf()))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "1"))
+                .andExpect(jsonPath("$.dropped").value(3));
     }
 
     @Test
@@ -97,6 +196,86 @@ public class ScooterControllerTest {
                 .andExpect(jsonPath("$.model").value(scooterInfoDto1.getModel()));
     }
 
+    @Test
+    @WithMockUser
+    void getScooterById_ShouldReturnETagAndNotModified_WhenTagMatches() throws Exception {
+        when(scooterService.getScooterEntityTag(1L)).thenReturn("3-a1b2");
+        when(scooterService.getScooterById(1L)).thenReturn(scooterInfoDto1);
+
+        mockMvc.perform(get("/api/scooters/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"3-a1b2\""));
+        mockMvc.perform(
+                        get("/api/scooters/1")
+                                .header("If-None-Match", "\"3-c3d4\", W/\"3-a1b2\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"3-a1b2\""));
+
+        verify(scooterService, times(1)).getScooterById(1L);
+    }
+
+    @Test
+    @WithMockUser(roles = "MANAGER")
+    void updateScooterStatus_ShouldPassVersionFromIfMatchAndReturnPreconditionFailed()
+            throws Exception {
+        doThrow(new PreconditionFailedException("Самокат с ID 1 изменён"))
+                .when(scooterService)
+                .updateScooterStatus(1L, ScooterStatus.MAINTENANCE, "2");
+
+        mockMvc.perform(
+                        patch("/api/scooters/1/status")
+                                .param("newStatus", "MAINTENANCE")
+                                .header("If-Match", "\"2-a1b2\"")
+                                .with(csrf()))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    @WithMockUser(roles = "MANAGER")
+    void updateScooterStatuses_ShouldReturnOutcomePerId() throws Exception {
+        ScooterBulkStatusResultDto result =
+                new ScooterBulkStatusResultDto(
+                        ScooterStatus.MAINTENANCE,
+                        2,
+                        1,
+                        List.of(
+                                new ScooterStatusOutcomeDto(
+                                        1L,
+                                        ScooterStatusOutcomeDto.Outcome.UPDATED,
+                                        ScooterStatus.MAINTENANCE),
+                                new ScooterStatusOutcomeDto(
+                                        2L,
+                                        ScooterStatusOutcomeDto.Outcome.INVALID_TRANSITION,
+                                        ScooterStatus.IN_USE)));
+        when(scooterService.updateScooterStatuses(List.of(1L, 2L), ScooterStatus.MAINTENANCE))
+                .thenReturn(result);
+
+        mockMvc.perform(
+                        patch("/api/scooters/status")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(
+                                        objectMapper.writeValueAsString(
+                                                new ScooterBulkStatusRequestDto(
+                                                        List.of(1L, 2L),
+                                                        ScooterStatus.MAINTENANCE)))
+                                .with(csrf()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.updated").value(1))
+                .andExpect(jsonPath("$.outcomes[1].outcome").value("INVALID_TRANSITION"))
+                .andExpect(jsonPath("$.outcomes[1].status").value("IN_USE"));
+    }
+
+    @Test
+    @WithMockUser(roles = "MANAGER")
+    void updateScooterStatuses_ShouldReturnBadRequest_WhenIdsAreEmpty() throws Exception {
+        mockMvc.perform(
+                        patch("/api/scooters/status")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"scooterIds\":[],\"status\":\"MAINTENANCE\"}")
+                                .with(csrf()))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     @WithMockUser
     void getScooterById_ShouldReturnNotFound_WhenScooterDoesNotExist() throws Exception {
@@ -106,10 +285,103 @@ public class ScooterControllerTest {
         mockMvc.perform(get("/api/scooters/1")).andExpect(status().isNotFound());
     }
 
+    @Test
+    @WithMockUser
+    void getAvailability_ShouldDefaultToAvailableStatus() throws Exception {
+        when(scooterService.getAvailability(ScooterStatus.AVAILABLE, 3L, 50))
+                .thenReturn(
+                        List.of(new ScooterAvailabilityDto(7L, ScooterStatus.AVAILABLE, 80, 3L)));
+
+        mockMvc.perform(
+                        get("/api/scooters/availability")
+                                .param("rentalPointId", "3")
+                                .param("minChargeLevel", "50"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(7))
+                .andExpect(jsonPath("$[0].chargeLevel").value(80))
+                .andExpect(jsonPath("$[0].rentalPointId").value(3));
+    }
+
+    @Test
+    @WithMockUser
+    void searchScooters_ShouldPassFiltersAndReturnPage() throws Exception {
+        ScooterInfoDto scooter = new ScooterInfoDto();
+        scooter.setId(7L);
+        when(scooterService.searchScooters(
+                        argThat(
+                                filter ->
+                                        filter.getStatus() == ScooterStatus.AVAILABLE
+                                                && filter.getMinChargeLevel() == 40
+                                                && filter.getRentalPointId() == 3L
+                                                && filter.getModel() == null),
+                        eq("-chargeLevel"),
+                        eq("abc"),
+                        eq(20)))
+                .thenReturn(new CursorPageDto<>(List.of(scooter), "next"));
+
+        mockMvc.perform(
+                        get("/api/scooters/search")
+                                .param("status", "AVAILABLE")
+                                .param("minChargeLevel", "40")
+                                .param("rentalPointId", "3")
+                                .param("sort", "-chargeLevel")
+                                .param("cursor", "abc")
+                                .param("limit", "20"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value(7))
+                .andExpect(jsonPath("$.nextCursor").value("next"));
+    }
+
+    @Test
+    @WithMockUser
+    void findNearby_ShouldReturnNearestRentalPoints() throws Exception {
+        when(scooterService.findNearby(53.9, 27.56, 1000.0, 10))
+                .thenReturn(
+                        List.of(
+                                new NearbyRentalPointDto(
+                                        3L, "Центр", "Адрес", 53.901, 27.561, 131.0, 4)));
+
+        mockMvc.perform(get("/api/scooters/nearby").param("lat", "53.9").param("lon", "27.56"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].rentalPointId").value(3))
+                .andExpect(jsonPath("$[0].availableScooters").value(4));
+    }
+
+    @Test
+    @WithMockUser
+    void findNearby_ShouldReturnBadRequest_WhenArgumentsAreInvalid() throws Exception {
+        when(scooterService.findNearby(anyDouble(), anyDouble(), anyDouble(), anyInt()))
+                .thenThrow(new IllegalArgumentException("Некорректные координаты"));
+
+        mockMvc.perform(get("/api/scooters/nearby").param("lat", "95").param("lon", "27.56"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser
+    void getScooterStats_ShouldReturnStats_WhenScooterExists() throws Exception {
+        when(scooterService.getScooterStats(1L)).thenReturn(scooterInfoDto1.getStats());
+
+        mockMvc.perform(get("/api/scooters/1/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.scooterId").value(1))
+                .andExpect(jsonPath("$.rides").value(12))
+                .andExpect(jsonPath("$.revenue").value(1530.5));
+    }
+
+    @Test
+    @WithMockUser
+    void getScooterStats_ShouldReturnNotFound_WhenScooterDoesNotExist() throws Exception {
+        when(scooterService.getScooterStats(anyLong()))
+                .thenThrow(new ScooterNotFoundException("Самокат не найден"));
+
+        mockMvc.perform(get("/api/scooters/1/stats")).andExpect(status().isNotFound());
+    }
+
     @Test
     @WithMockUser(roles = {"MANAGER", "ADMIN"})
     void updateScooter_ShouldReturnUpdatedScooter_WhenScooterIsValid() throws Exception {
-        when(scooterService.updateScooter(anyLong(), any(ScooterDto.class)))
+        when(scooterService.updateScooter(anyLong(), any(ScooterDto.class), any()))
                 .thenReturn(scooterDto1);
 
         mockMvc.perform(
@@ -38,8 +38,10 @@ public class TariffControllerTest {
 
     @BeforeEach
     void setUp() {
-        tariffDto1 = new TariffDto(1L, "Почасовой", "Описание 1", 100.0, null, null, false);
-        tariffDto2 = new TariffDto(2L, "Абонемент", "Описание 2", null, 500.0, 0.1, true);
+        tariffDto1 =
+                new TariffDto(1L, "Почасовой", "Описание 1", 100.0, null, null, false, null, null);
+        tariffDto2 =
+                new TariffDto(2L, "Абонемент", "Описание 2", null, 500.0, 0.1, true, null, null);
     }
 
     @Test
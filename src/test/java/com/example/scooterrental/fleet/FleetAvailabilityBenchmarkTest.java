@@ -0,0 +1,148 @@
+package com.example.scooterrental.fleet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.example.scooterrental.model.RentalPoint;
+import com.example.scooterrental.model.Scooter;
+import com.example.scooterrental.model.ScooterStatus;
+import com.example.scooterrental.model.Tariff;
+import com.example.scooterrental.service.ScooterService;
+import com.example.scooterrental.service.impl.ScooterServiceImpl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+// Сравнение GET /api/scooters и GET /api/scooters/availability на 50 000 самокатов.
+// Запуск: mvn test -Dtest=FleetAvailabilityBenchmarkTest -Dbenchmark=true
+@DataJpaTest(
+        properties = {
+            "spring.flyway.enabled=false",
+            "spring.jpa.hibernate.ddl-auto=create-drop",
+            "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+            "spring.jpa.show-sql=false"
+        })
+@Import({
+    ScooterServiceImpl.class,
+    FleetStateStore.class,
+    RentalPointIndex.class,
+    ScooterChangeStream.class
+})
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class FleetAvailabilityBenchmarkTest {
+
+    private static final Logger logger =
+            LoggerFactory.getLogger(FleetAvailabilityBenchmarkTest.class);
+
+    private static final int SCOOTERS = 50_000;
+    private static final int POINTS = 200;
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 10;
+
+    @Autowired private TestEntityManager entityManager;
+
+    @Autowired private ScooterService scooterService;
+
+    @Autowired private FleetStateStore fleetStateStore;
+
+    @Test
+    void availabilityFromFleetState_ShouldOutperformRepositoryScan() {
+        Long rentalPointId = seed();
+        fleetStateStore.rebuild();
+        assertEquals(SCOOTERS, fleetStateStore.size());
+
+        double repositoryMs =
+                medianMillis(
+                        () -> {
+                            // у каждого запроса свой контекст персистентности
+                            entityManager.clear();
+                            return scooterService.getAllScooters();
+                        });
+        double fleetStateMs =
+                medianMillis(() -> scooterService.getAvailability(null, null, null));
+        double filteredMs =
+                medianMillis(
+                        () ->
+                                scooterService.getAvailability(
+                                        ScooterStatus.AVAILABLE, rentalPointId, 50));
+
+        logger.info(
+                "{} самокатов: getAllScooters {} мс, availability {} мс, "
+                        + "availability с фильтрами {} мс",
+                SCOOTERS,
+                String.format("%.2f", repositoryMs),
+                String.format("%.3f", fleetStateMs),
+                String.format("%.3f", filteredMs));
+        assertTrue(fleetStateMs < repositoryMs);
+    }
+
+    private Long seed() {
+        Tariff tariff =
+                entityManager.persist(
+                        new Tariff(
+                                null, "Почасовой", null, 5.0, null, null, false, null, null, null));
+        List<RentalPoint> points = new ArrayList<>();
+        for (int i = 0; i < POINTS; i++) {
+            points.add(
+                    entityManager.persist(
+                            new RentalPoint(
+                                    null,
+                                    "Точка " + i,
+                                    "Адрес",
+                                    53.9,
+                                    27.5,
+                                    null,
+                                    null,
+                                    null,
+                                    null)));
+        }
+        ScooterStatus[] statuses = ScooterStatus.values();
+        for (int i = 0; i < SCOOTERS; i++) {
+            entityManager.persist(
+                    new Scooter(
+                            null,
+                            "Model",
+                            "SN" + i,
+                            statuses[i % statuses.length],
+                            i % 101,
+                            0.0,
+                            points.get(i % POINTS),
+                            tariff,
+                            null));
+            if (i % 1000 == 999) {
+                entityManager.flush();
+                entityManager.clear();
+                points.replaceAll(point -> entityManager.find(RentalPoint.class, point.getId()));
+                tariff = entityManager.find(Tariff.class, tariff.getId());
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        return points.get(0).getId();
+    }
+
+    private static double medianMillis(Supplier<List<?>> action) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            action.get();
+        }
+        long[] samples = new long[MEASURED_ROUNDS];
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long start = System.nanoTime();
+            List<?> result = action.get();
+            samples[i] = System.nanoTime() - start;
+            assertFalse(result.isEmpty());
+        }
+        Arrays.sort(samples);
+        return samples[MEASURED_ROUNDS / 2] / 1_000_000.0;
+    }
+}
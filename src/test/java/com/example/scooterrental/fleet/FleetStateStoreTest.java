@@ -0,0 +1,239 @@
+package com.example.scooterrental.fleet;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.example.scooterrental.dto.ScooterAvailabilityDto;
+import com.example.scooterrental.event.ScooterStateChangedEvent;
+import com.example.scooterrental.model.ScooterStatus;
+import com.example.scooterrental.repository.ScooterRepository;
+import com.example.scooterrental.repository.ScooterStateRow;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@ExtendWith(MockitoExtension.class)
+public class FleetStateStoreTest {
+
+    @Mock private ScooterRepository scooterRepository;
+
+    private final List<FleetStateChange> changes = new ArrayList<>();
+
+    private FleetStateStore fleetStateStore;
+
+    @BeforeEach
+    void setUp() {
+        fleetStateStore = new FleetStateStore(scooterRepository, List.of(changes::add));
+    }
+
+    @Test
+    void rebuild_ShouldLoadAllScootersFromRepository() {
+        when(scooterRepository.findAllStateRows())
+                .thenReturn(
+                        List.of(
+                                row(1L, ScooterStatus.AVAILABLE, 90, 10L),
+                                row(2L, ScooterStatus.IN_USE, 40, 10L),
+                                row(5000L, ScooterStatus.AVAILABLE, 15, null)));
+
+        fleetStateStore.rebuild();
+
+        assertEquals(3, fleetStateStore.size());
+        List<ScooterAvailabilityDto> available =
+                fleetStateStore.query(ScooterStatus.AVAILABLE, null, 0);
+        assertEquals(List.of(1L, 5000L), ids(available));
+        assertNull(available.get(1).getRentalPointId());
+        assertEquals(90, available.get(0).getChargeLevel());
+    }
+
+    @Test
+    void query_ShouldFilterByStatusRentalPointAndCharge() {
+        fleetStateStore.onScooterStateChanged(event(1L, ScooterStatus.AVAILABLE, 90, 10L));
+        fleetStateStore.onScooterStateChanged(event(2L, ScooterStatus.AVAILABLE, 20, 10L));
+        fleetStateStore.onScooterStateChanged(event(3L, ScooterStatus.AVAILABLE, 95, 11L));
+        fleetStateStore.onScooterStateChanged(event(4L, ScooterStatus.MAINTENANCE, 99, 10L));
+
+        assertEquals(List.of(1L), ids(fleetStateStore.query(ScooterStatus.AVAILABLE, 10L, 50)));
+        assertEquals(List.of(1L, 2L, 4L), ids(fleetStateStore.query(null, 10L, 0)));
+        assertEquals(List.of(1L, 3L, 4L), ids(fleetStateStore.query(null, null, 90)));
+    }
+
+    @Test
+    void onScooterStateChanged_ShouldOverwriteAndRemoveScooters() {
+        fleetStateStore.onScooterStateChanged(event(1L, ScooterStatus.AVAILABLE, 90, 10L));
+        fleetStateStore.onScooterStateChanged(event(1L, ScooterStatus.IN_USE, 90, 10L));
+        fleetStateStore.onScooterStateChanged(event(2L, ScooterStatus.AVAILABLE, 50, 10L));
+        fleetStateStore.onScooterStateChanged(ScooterStateChangedEvent.removed(2L));
+        fleetStateStore.onScooterStateChanged(ScooterStateChangedEvent.removed(999_999L));
+
+        assertEquals(1, fleetStateStore.size());
+        assertTrue(fleetStateStore.query(ScooterStatus.AVAILABLE, null, 0).isEmpty());
+        assertEquals(List.of(1L), ids(fleetStateStore.query(ScooterStatus.IN_USE, null, 0)));
+    }
+
+    @Test
+    void onScooterStateChanged_ShouldNotifyListenersWithPreviousState() {
+        fleetStateStore.onScooterStateChanged(event(1L, ScooterStatus.AVAILABLE, 90, 10L));
+        fleetStateStore.onScooterStateChanged(event(1L, ScooterStatus.AVAILABLE, 90, 10L));
+        fleetStateStore.onScooterStateChanged(event(1L, ScooterStatus.IN_USE, 90, 10L));
+        fleetStateStore.onScooterStateChanged(ScooterStateChangedEvent.removed(1L));
+
+        // повторное событие без изменений слушателям не передаётся
+        assertEquals(3, changes.size());
+        assertNull(changes.get(0).getPreviousStatus());
+        assertEquals(ScooterStatus.AVAILABLE, changes.get(0).getStatus());
+        assertEquals(ScooterStatus.AVAILABLE, changes.get(1).getPreviousStatus());
+        assertEquals(10L, changes.get(1).getPreviousRentalPointId());
+        assertEquals(ScooterStatus.IN_USE, changes.get(1).getStatus());
+        assertEquals(ScooterStatus.IN_USE, changes.get(2).getPreviousStatus());
+        assertNull(changes.get(2).getStatus());
+    }
+
+    @Test
+    void rebuild_ShouldNotifyListenersOnlyAboutDifferences() {
+        fleetStateStore.onScooterStateChanged(event(1L, ScooterStatus.AVAILABLE, 90, 10L));
+        fleetStateStore.onScooterStateChanged(event(2L, ScooterStatus.AVAILABLE, 50, 10L));
+        changes.clear();
+        when(scooterRepository.findAllStateRows())
+                .thenReturn(
+                        List.of(
+                                row(1L, ScooterStatus.AVAILABLE, 90, 10L),
+                                row(3L, ScooterStatus.MAINTENANCE, 5, null)));
+
+        fleetStateStore.rebuild();
+
+        assertEquals(2, changes.size());
+        assertEquals(2L, changes.get(0).getScooterId());
+        assertNull(changes.get(0).getStatus());
+        assertEquals(3L, changes.get(1).getScooterId());
+        assertNull(changes.get(1).getPreviousStatus());
+        assertEquals(ScooterStatus.MAINTENANCE, changes.get(1).getStatus());
+    }
+
+    @Test
+    void rebuild_ShouldReplayChangesMadeWhileLoading() {
+        when(scooterRepository.findAllStateRows())
+                .thenAnswer(
+                        invocation -> {
+                            // изменение, зафиксированное уже после чтения строк из базы
+                            fleetStateStore.onScooterStateChanged(
+                                    event(1L, ScooterStatus.IN_USE, 90, 10L));
+                            return List.of(row(1L, ScooterStatus.AVAILABLE, 90, 10L));
+                        });
+
+        fleetStateStore.rebuild();
+
+        assertTrue(fleetStateStore.query(ScooterStatus.AVAILABLE, null, 0).isEmpty());
+        assertEquals(List.of(1L), ids(fleetStateStore.query(ScooterStatus.IN_USE, null, 0)));
+    }
+
+    @Test
+    void rebuild_ShouldKeepPreviousStateAndRethrow_WhenLoadingFails() {
+        fleetStateStore.onScooterStateChanged(event(1L, ScooterStatus.AVAILABLE, 90, 10L));
+        when(scooterRepository.findAllStateRows()).thenThrow(new IllegalStateException("БД"));
+
+        assertThrows(IllegalStateException.class, () -> fleetStateStore.rebuild());
+
+        assertEquals(1, fleetStateStore.size());
+    }
+
+    @Test
+    void updateChargeLevel_ShouldKeepStatusAndRentalPoint() {
+        fleetStateStore.onScooterStateChanged(event(1L, ScooterStatus.IN_USE, 90, 10L));
+        changes.clear();
+
+        fleetStateStore.updateChargeLevel(1L, 35);
+        fleetStateStore.updateChargeLevel(2L, 50);
+
+        List<ScooterAvailabilityDto> scooters = fleetStateStore.query(null, null, 0);
+        assertEquals(List.of(1L), ids(scooters));
+        assertEquals(ScooterStatus.IN_USE, scooters.get(0).getStatus());
+        assertEquals(10L, scooters.get(0).getRentalPointId());
+        assertEquals(35, scooters.get(0).getChargeLevel());
+        assertEquals(1, changes.size());
+        assertEquals(35, changes.get(0).getChargeLevel());
+    }
+
+    @Test
+    void countsAt_ShouldFollowStatusAndRentalPointChanges() {
+        fleetStateStore.onScooterStateChanged(event(1L, ScooterStatus.AVAILABLE, 90, 10L));
+        fleetStateStore.onScooterStateChanged(event(2L, ScooterStatus.AVAILABLE, 50, 10L));
+        fleetStateStore.onScooterStateChanged(event(3L, ScooterStatus.MAINTENANCE, 5, 11L));
+        fleetStateStore.onScooterStateChanged(event(1L, ScooterStatus.IN_USE, 90, null));
+        fleetStateStore.onScooterStateChanged(event(2L, ScooterStatus.AVAILABLE, 40, 11L));
+        fleetStateStore.onScooterStateChanged(ScooterStateChangedEvent.removed(3L));
+        fleetStateStore.updateChargeLevel(2L, 30);
+
+        assertEquals(0, fleetStateStore.countsAt(10L).get(ScooterStatus.AVAILABLE));
+        assertEquals(1, fleetStateStore.countsAt(11L).get(ScooterStatus.AVAILABLE));
+        assertEquals(0, fleetStateStore.countsAt(11L).get(ScooterStatus.MAINTENANCE));
+        assertEquals(0, fleetStateStore.countsAt(99L).get(ScooterStatus.IN_USE));
+        assertEquals(List.of(11L), List.copyOf(fleetStateStore.countsByRentalPoint().keySet()));
+    }
+
+    @Test
+    void rebuild_ShouldReconcileCountsWithRepository() {
+        fleetStateStore.onScooterStateChanged(event(1L, ScooterStatus.AVAILABLE, 90, 10L));
+        fleetStateStore.onScooterStateChanged(event(2L, ScooterStatus.AVAILABLE, 50, 10L));
+        when(scooterRepository.findAllStateRows())
+                .thenReturn(
+                        List.of(
+                                row(1L, ScooterStatus.AVAILABLE, 90, 10L),
+                                row(2L, ScooterStatus.MAINTENANCE, 50, 10L),
+                                row(3L, ScooterStatus.AVAILABLE, 70, 12L)));
+
+        fleetStateStore.rebuild();
+
+        assertEquals(1, fleetStateStore.countsAt(10L).get(ScooterStatus.AVAILABLE));
+        assertEquals(1, fleetStateStore.countsAt(10L).get(ScooterStatus.MAINTENANCE));
+        assertEquals(1, fleetStateStore.countsAt(12L).get(ScooterStatus.AVAILABLE));
+    }
+
+    @Test
+    void onScooterStateChanged_ShouldRejectNegativeIds() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () ->
+                        fleetStateStore.onScooterStateChanged(
+                                event(-1L, ScooterStatus.AVAILABLE, 10, null)));
+    }
+
+    private static ScooterStateChangedEvent event(
+            Long id, ScooterStatus status, Integer chargeLevel, Long rentalPointId) {
+        return new ScooterStateChangedEvent(id, status, chargeLevel, rentalPointId, false);
+    }
+
+    private static List<Long> ids(List<ScooterAvailabilityDto> scooters) {
+        return scooters.stream().map(ScooterAvailabilityDto::getId).toList();
+    }
+
+    private static ScooterStateRow row(
+            Long id, ScooterStatus status, Integer chargeLevel, Long rentalPointId) {
+        return new ScooterStateRow() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public ScooterStatus getStatus() {
+                return status;
+            }
+
+            @Override
+            public Integer getChargeLevel() {
+                return chargeLevel;
+            }
+
+            @Override
+            public Long getRentalPointId() {
+                return rentalPointId;
+            }
+        };
+    }
+}
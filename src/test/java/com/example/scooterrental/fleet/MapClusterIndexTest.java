@@ -0,0 +1,188 @@
+package com.example.scooterrental.fleet;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.example.scooterrental.dto.MapClusterDto;
+import com.example.scooterrental.event.RentalPointChangedEvent;
+import com.example.scooterrental.model.ScooterStatus;
+import com.example.scooterrental.repository.RentalPointLocation;
+import com.example.scooterrental.repository.RentalPointRepository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@ExtendWith(MockitoExtension.class)
+public class MapClusterIndexTest {
+
+    private static final double LAT = 53.9;
+    private static final double LON = 27.56;
+    private static final BoundingBox BELARUS = new BoundingBox(51, 23, 56, 33);
+
+    @Mock private RentalPointRepository rentalPointRepository;
+    @Mock private FleetStateStore fleetStateStore;
+
+    private MapClusterIndex mapClusterIndex;
+    // счётчики, которые отдаёт состояние парка: id точки -> статус -> число самокатов
+    private final Map<Long, Map<ScooterStatus, Integer>> counts = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        mapClusterIndex = new MapClusterIndex(rentalPointRepository, fleetStateStore, 100);
+        when(fleetStateStore.countsAt(anyLong()))
+                .thenAnswer(
+                        invocation ->
+                                counts.getOrDefault(invocation.getArgument(0), Map.of()));
+        when(rentalPointRepository.findAllLocations())
+                .thenReturn(
+                        List.of(
+                                location(1L, LAT, LON),
+                                location(2L, LAT + 0.0005, LON + 0.001),
+                                location(3L, 52.43, 31.0)));
+        mapClusterIndex.reload();
+        scooter(10L, ScooterStatus.AVAILABLE, 1L);
+        scooter(11L, ScooterStatus.MAINTENANCE, 1L);
+        scooter(12L, ScooterStatus.AVAILABLE, 2L);
+        scooter(13L, ScooterStatus.AVAILABLE, 3L);
+    }
+
+    @Test
+    void clusters_ShouldMergeNearbyPointsOnlyAtLowZoom() {
+        List<MapClusterDto> country = sorted(mapClusterIndex.clusters(BELARUS, 5));
+
+        assertEquals(2, country.size());
+        MapClusterDto minsk = country.get(1);
+        assertEquals(2, minsk.getRentalPoints());
+        assertEquals(3, minsk.getScooters());
+        assertEquals(2, minsk.getAvailableScooters());
+        assertNull(minsk.getRentalPointId());
+        assertEquals(LAT + 0.00025, minsk.getLatitude(), 1e-9);
+        assertEquals(3L, country.get(0).getRentalPointId());
+
+        List<MapClusterDto> street =
+                mapClusterIndex.clusters(
+                        new BoundingBox(LAT - 0.001, LON - 0.001, LAT + 0.002, LON + 0.002), 18);
+        assertEquals(
+                List.of(1L, 2L),
+                street.stream().map(MapClusterDto::getRentalPointId).sorted().toList());
+    }
+
+    @Test
+    void onScooterChanged_ShouldEvictOnlyTilesOfAffectedPoint() {
+        mapClusterIndex.clusters(BELARUS, 5);
+        mapClusterIndex.clusters(new BoundingBox(52.4, 30.9, 52.5, 31.1), 12);
+        int cached = mapClusterIndex.cachedTiles();
+
+        // смена одного заряда маркеры не меняет
+        change(
+                new FleetStateChange(
+                        10L, ScooterStatus.AVAILABLE, 1L, ScooterStatus.AVAILABLE, 1L, 20));
+        assertEquals(cached, mapClusterIndex.cachedTiles());
+
+        change(
+                new FleetStateChange(
+                        10L, ScooterStatus.AVAILABLE, 1L, ScooterStatus.IN_USE, null, 20));
+        // тайл Гомеля на 12-м масштабе не задет
+        assertEquals(cached - 1, mapClusterIndex.cachedTiles());
+        MapClusterDto minsk = sorted(mapClusterIndex.clusters(BELARUS, 5)).get(1);
+        assertEquals(2, minsk.getScooters());
+        assertEquals(1, minsk.getAvailableScooters());
+    }
+
+    @Test
+    void onRentalPointChanged_ShouldMovePointBetweenClusters() {
+        mapClusterIndex.clusters(BELARUS, 5);
+
+        mapClusterIndex.onRentalPointChanged(
+                new RentalPointChangedEvent(3L, "Точка", "Адрес", LAT, LON + 0.002, null, false));
+
+        List<MapClusterDto> country = mapClusterIndex.clusters(BELARUS, 5);
+        assertEquals(1, country.size());
+        assertEquals(3, country.get(0).getRentalPoints());
+        assertEquals(3, country.get(0).getAvailableScooters());
+
+        mapClusterIndex.onRentalPointChanged(RentalPointChangedEvent.removed(3L));
+        assertEquals(2, mapClusterIndex.clusters(BELARUS, 5).get(0).getRentalPoints());
+    }
+
+    @Test
+    void clusters_ShouldCrossAntimeridianAndLimitTiles() {
+        mapClusterIndex.onRentalPointChanged(
+                new RentalPointChangedEvent(4L, "Точка", "Адрес", 65.0, 179.5, null, false));
+        mapClusterIndex.onRentalPointChanged(
+                new RentalPointChangedEvent(5L, "Точка", "Адрес", 65.0, -179.5, null, false));
+
+        List<MapClusterDto> chukotka =
+                mapClusterIndex.clusters(new BoundingBox(64, 179, 66, -179), 8);
+        assertEquals(
+                List.of(4L, 5L),
+                chukotka.stream().map(MapClusterDto::getRentalPointId).sorted().toList());
+
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> mapClusterIndex.clusters(BELARUS, MapClusterIndex.MAX_ZOOM));
+    }
+
+    private void scooter(Long scooterId, ScooterStatus status, Long rentalPointId) {
+        change(new FleetStateChange(scooterId, null, null, status, rentalPointId, 100));
+    }
+
+    // как и настоящее состояние парка, сначала обновляет счётчики, потом извещает индекс
+    private void change(FleetStateChange change) {
+        count(change.getPreviousRentalPointId(), change.getPreviousStatus(), -1);
+        count(change.getRentalPointId(), change.getStatus(), 1);
+        mapClusterIndex.onScooterChanged(change);
+    }
+
+    private void count(Long rentalPointId, ScooterStatus status, int delta) {
+        if (rentalPointId != null && status != null) {
+            counts.computeIfAbsent(rentalPointId, id -> new EnumMap<>(ScooterStatus.class))
+                    .merge(status, delta, Integer::sum);
+        }
+    }
+
+    // по долготе: Гомель восточнее Минска
+    private static List<MapClusterDto> sorted(List<MapClusterDto> clusters) {
+        return clusters.stream()
+                .sorted(Comparator.comparing(MapClusterDto::getLongitude).reversed())
+                .toList();
+    }
+
+    private static RentalPointLocation location(Long id, double latitude, double longitude) {
+        return new RentalPointLocation() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getName() {
+                return "Точка " + id;
+            }
+
+            @Override
+            public String getAddress() {
+                return "Адрес";
+            }
+
+            @Override
+            public Double getLatitude() {
+                return latitude;
+            }
+
+            @Override
+            public Double getLongitude() {
+                return longitude;
+            }
+        };
+    }
+}
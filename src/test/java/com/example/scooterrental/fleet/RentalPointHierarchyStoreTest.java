@@ -0,0 +1,118 @@
+package com.example.scooterrental.fleet;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.example.scooterrental.event.RentalPointChangedEvent;
+import com.example.scooterrental.repository.RentalPointRepository;
+import com.example.scooterrental.repository.RentalPointTreeRow;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+@ExtendWith(MockitoExtension.class)
+public class RentalPointHierarchyStoreTest {
+
+    @Mock private RentalPointRepository rentalPointRepository;
+
+    private RentalPointHierarchyStore hierarchyStore;
+
+    @BeforeEach
+    void setUp() {
+        hierarchyStore = new RentalPointHierarchyStore(rentalPointRepository);
+    }
+
+    @Test
+    void subtree_ShouldStopAtDepthAndSurviveCycles() {
+        when(rentalPointRepository.findAllTreeRows())
+                .thenReturn(List.of(row(1L, 3L), row(2L, 1L), row(3L, 2L), row(4L, null)));
+        hierarchyStore.reload();
+        RentalPointHierarchy hierarchy = hierarchyStore.current();
+
+        assertEquals(List.of(1L, 2L), ids(hierarchy.subtree(1L, 1)));
+        assertEquals(List.of(1L, 2L, 3L), ids(hierarchy.subtree(1L, null)));
+        assertEquals(List.of(4L), ids(hierarchy.subtree(4L, 0)));
+        assertTrue(hierarchy.subtree(9L, null).isEmpty());
+    }
+
+    @Test
+    void onRentalPointChanged_ShouldReplaceSnapshotAndKeepPreviousIntact() {
+        when(rentalPointRepository.findAllTreeRows())
+                .thenReturn(List.of(row(1L, null), row(2L, 1L)));
+        hierarchyStore.reload();
+        RentalPointHierarchy before = hierarchyStore.current();
+
+        hierarchyStore.onRentalPointChanged(
+                new RentalPointChangedEvent(3L, "Точка 3", "Адрес", 53.9, 27.5, 2L, false));
+        RentalPointHierarchy added = hierarchyStore.current();
+        hierarchyStore.onRentalPointChanged(RentalPointChangedEvent.removed(2L));
+        RentalPointHierarchy removed = hierarchyStore.current();
+
+        assertEquals(List.of(1L, 2L), ids(before.all()));
+        assertEquals(List.of(1L, 2L, 3L), ids(added.subtree(1L, null)));
+        assertEquals(before.getVersion() + 1, added.getVersion());
+        assertEquals(List.of(1L, 3L), ids(removed.all()));
+        assertEquals(List.of(1L), ids(removed.subtree(1L, null)));
+        assertEquals(added.getVersion() + 1, removed.getVersion());
+    }
+
+    @Test
+    void reload_ShouldKeepVersion_WhenPointsAreUnchanged() {
+        when(rentalPointRepository.findAllTreeRows())
+                .thenReturn(List.of(row(1L, null)))
+                .thenReturn(List.of(row(1L, null)))
+                .thenReturn(List.of(row(1L, null), row(2L, 1L)));
+        hierarchyStore.reload();
+        long version = hierarchyStore.current().getVersion();
+
+        hierarchyStore.reload();
+        assertEquals(version, hierarchyStore.current().getVersion());
+
+        hierarchyStore.reload();
+        assertTrue(hierarchyStore.current().getVersion() > version);
+        assertEquals(2, hierarchyStore.current().size());
+    }
+
+    private static List<Long> ids(List<RentalPointTreeRow> rows) {
+        return rows.stream().map(RentalPointTreeRow::getId).toList();
+    }
+
+    private static RentalPointTreeRow row(Long id, Long parentPointId) {
+        return new RentalPointTreeRow() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getName() {
+                return "Точка " + id;
+            }
+
+            @Override
+            public String getAddress() {
+                return "Адрес";
+            }
+
+            @Override
+            public Double getLatitude() {
+                return 53.9;
+            }
+
+            @Override
+            public Double getLongitude() {
+                return 27.5;
+            }
+
+            @Override
+            public Long getParentPointId() {
+                return parentPointId;
+            }
+        };
+    }
+}
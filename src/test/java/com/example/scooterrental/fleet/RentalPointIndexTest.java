@@ -0,0 +1,192 @@
+package com.example.scooterrental.fleet;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.example.scooterrental.dto.NearbyRentalPointDto;
+import com.example.scooterrental.event.RentalPointChangedEvent;
+import com.example.scooterrental.model.ScooterStatus;
+import com.example.scooterrental.repository.RentalPointLocation;
+import com.example.scooterrental.repository.RentalPointRepository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.LongStream;
+
+@ExtendWith(MockitoExtension.class)
+public class RentalPointIndexTest {
+
+    private static final double LAT = 53.9;
+    private static final double LON = 27.56;
+
+    @Mock private RentalPointRepository rentalPointRepository;
+
+    private RentalPointIndex rentalPointIndex;
+
+    @BeforeEach
+    void setUp() {
+        rentalPointIndex = new RentalPointIndex(rentalPointRepository);
+    }
+
+    @Test
+    void findNearest_ShouldReturnPointsWithAvailableScootersOrderedByDistance() {
+        when(rentalPointRepository.findAllLocations())
+                .thenReturn(
+                        List.of(
+                                location(1L, LAT + 0.009, LON),
+                                location(2L, LAT + 0.002, LON),
+                                location(3L, LAT + 0.001, LON),
+                                location(4L, LAT + 0.2, LON)));
+        rentalPointIndex.reload();
+        available(10L, 1L);
+        available(11L, 2L);
+        available(12L, 2L);
+        available(13L, 4L);
+
+        List<NearbyRentalPointDto> nearest = rentalPointIndex.findNearest(LAT, LON, 2000, 10);
+
+        // у точки 3 нет свободных самокатов, точка 4 дальше радиуса
+        assertEquals(List.of(2L, 1L), ids(nearest));
+        assertEquals(2, nearest.get(0).getAvailableScooters());
+        assertEquals(222.4, nearest.get(0).getDistanceMeters(), 1.0);
+    }
+
+    @Test
+    void findNearest_ShouldReturnLegacyPoint_WhenItsLatitudeIsBelowSouthPole() {
+        when(rentalPointRepository.findAllLocations())
+                .thenReturn(List.of(location(1L, -90.001, LON)));
+        rentalPointIndex.reload();
+        available(10L, 1L);
+
+        assertEquals(List.of(1L), ids(rentalPointIndex.findNearest(-89.999, LON, 1000, 10)));
+    }
+
+    @Test
+    void findNearest_ShouldTrackScooterMovesIncrementally() {
+        when(rentalPointRepository.findAllLocations())
+                .thenReturn(List.of(location(1L, LAT, LON), location(2L, LAT, LON + 0.01)));
+        rentalPointIndex.reload();
+        available(10L, 1L);
+
+        rentalPointIndex.onScooterChanged(
+                new FleetStateChange(
+                        10L, ScooterStatus.AVAILABLE, 1L, ScooterStatus.IN_USE, 1L, 80));
+        assertTrue(rentalPointIndex.findNearest(LAT, LON, 5000, 10).isEmpty());
+
+        rentalPointIndex.onScooterChanged(
+                new FleetStateChange(
+                        10L, ScooterStatus.IN_USE, 1L, ScooterStatus.AVAILABLE, 2L, 80));
+        assertEquals(List.of(2L), ids(rentalPointIndex.findNearest(LAT, LON, 5000, 10)));
+        assertEquals(0, rentalPointIndex.availableAt(1L));
+        assertEquals(1, rentalPointIndex.availableAt(2L));
+    }
+
+    @Test
+    void onRentalPointChanged_ShouldMoveAndRemovePoints() {
+        when(rentalPointRepository.findAllLocations()).thenReturn(List.of(location(1L, LAT, LON)));
+        rentalPointIndex.reload();
+        available(10L, 1L);
+
+        rentalPointIndex.onRentalPointChanged(
+                new RentalPointChangedEvent(1L, "Точка", "Адрес", LAT + 1, LON, null, false));
+        assertTrue(rentalPointIndex.findNearest(LAT, LON, 5000, 10).isEmpty());
+        assertEquals(List.of(1L), ids(rentalPointIndex.findNearest(LAT + 1, LON, 5000, 10)));
+
+        rentalPointIndex.onRentalPointChanged(RentalPointChangedEvent.removed(1L));
+        assertTrue(rentalPointIndex.findNearest(LAT + 1, LON, 5000, 10).isEmpty());
+    }
+
+    @Test
+    void findNearest_ShouldMatchBruteForceOnRandomPoints() {
+        Random random = new Random(42);
+        List<RentalPointLocation> locations =
+                LongStream.rangeClosed(1, 2000)
+                        .mapToObj(
+                                id ->
+                                        location(
+                                                id,
+                                                LAT + (random.nextDouble() - 0.5) * 0.5,
+                                                LON + (random.nextDouble() - 0.5) * 0.8))
+                        .toList();
+        when(rentalPointRepository.findAllLocations()).thenReturn(locations);
+        rentalPointIndex.reload();
+        long scooterId = 1;
+        for (RentalPointLocation location : locations) {
+            available(scooterId++, location.getId());
+        }
+
+        for (int query = 0; query < 50; query++) {
+            double lat = LAT + (random.nextDouble() - 0.5) * 0.5;
+            double lon = LON + (random.nextDouble() - 0.5) * 0.8;
+            List<Long> expected =
+                    locations.stream()
+                            .filter(
+                                    location ->
+                                            RentalPointIndex.distanceMeters(
+                                                            lat,
+                                                            lon,
+                                                            location.getLatitude(),
+                                                            location.getLongitude())
+                                                    <= 3000)
+                            .sorted(
+                                    Comparator.comparingDouble(
+                                            location ->
+                                                    RentalPointIndex.distanceMeters(
+                                                            lat,
+                                                            lon,
+                                                            location.getLatitude(),
+                                                            location.getLongitude())))
+                            .limit(5)
+                            .map(RentalPointLocation::getId)
+                            .toList();
+
+            assertEquals(expected, ids(rentalPointIndex.findNearest(lat, lon, 3000, 5)));
+        }
+    }
+
+    private void available(Long scooterId, Long rentalPointId) {
+        rentalPointIndex.onScooterChanged(
+                new FleetStateChange(
+                        scooterId, null, null, ScooterStatus.AVAILABLE, rentalPointId, 100));
+    }
+
+    private static List<Long> ids(List<NearbyRentalPointDto> points) {
+        return points.stream().map(NearbyRentalPointDto::getRentalPointId).toList();
+    }
+
+    private static RentalPointLocation location(Long id, double latitude, double longitude) {
+        return new RentalPointLocation() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getName() {
+                return "Точка " + id;
+            }
+
+            @Override
+            public String getAddress() {
+                return "Адрес " + id;
+            }
+
+            @Override
+            public Double getLatitude() {
+                return latitude;
+            }
+
+            @Override
+            public Double getLongitude() {
+                return longitude;
+            }
+        };
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.scooterrental.fleet;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import com.example.scooterrental.dto.ScooterStatusEventDto;
+import com.example.scooterrental.model.ScooterStatus;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+@ExtendWith(MockitoExtension.class)
+public class ScooterChangeStreamTest {
+
+    private static final long EPOCH = 1000L;
+
+    @Mock private RentalPointIndex rentalPointIndex;
+
+    private ScooterChangeStream stream;
+
+    @BeforeEach
+    void setUp() {
+        // рассылка выполняется сразу в вызывающем потоке
+        stream = new ScooterChangeStream(rentalPointIndex, 4, 60_000, EPOCH, Runnable::run);
+    }
+
+    @Test
+    void subscribe_ShouldReceiveOnlyNewStatusAndPointChanges() {
+        change(1L, null, null, ScooterStatus.AVAILABLE, 10L);
+        RecordingEmitter emitter = subscribe(null, null, null);
+
+        change(1L, ScooterStatus.AVAILABLE, 10L, ScooterStatus.IN_USE, null);
+        // изменился только заряд
+        stream.onScooterChanged(
+                new FleetStateChange(
+                        1L, ScooterStatus.IN_USE, null, ScooterStatus.IN_USE, null, 5));
+        change(2L, ScooterStatus.AVAILABLE, 10L, null, null);
+
+        assertEquals(List.of("scooter:1000-2", "scooter:1000-3"), emitter.names());
+        ScooterStatusEventDto first = (ScooterStatusEventDto) emitter.events.get(0).data;
+        assertEquals(1L, first.getScooterId());
+        assertEquals(ScooterStatus.IN_USE, first.getStatus());
+        assertNull(first.getRentalPointId());
+        assertNull(((ScooterStatusEventDto) emitter.events.get(1).data).getStatus());
+    }
+
+    @Test
+    void subscribe_ShouldReplayChangesAfterLastEventId() {
+        change(1L, null, null, ScooterStatus.AVAILABLE, 10L);
+        change(2L, null, null, ScooterStatus.AVAILABLE, 10L);
+        change(3L, null, null, ScooterStatus.AVAILABLE, 10L);
+
+        RecordingEmitter emitter = subscribe(null, null, "1000-1");
+
+        assertEquals(List.of("scooter:1000-2", "scooter:1000-3"), emitter.names());
+    }
+
+    @Test
+    void subscribe_ShouldSendReset_WhenLastEventIdWasEvictedOrIsFromTheFuture() {
+        for (long id = 1; id <= 6; id++) {
+            change(id, null, null, ScooterStatus.AVAILABLE, 10L);
+        }
+
+        RecordingEmitter evicted = subscribe(null, null, "1000-1");
+        RecordingEmitter future = subscribe(null, null, "1000-100");
+
+        assertEquals(List.of("reset:1000-6"), evicted.names());
+        assertEquals(List.of("reset:1000-6"), future.names());
+        change(7L, null, null, ScooterStatus.AVAILABLE, 10L);
+        assertEquals(List.of("reset:1000-6", "scooter:1000-7"), evicted.names());
+    }
+
+    @Test
+    void subscribe_ShouldSendReset_WhenLastEventIdIsFromAnotherEpoch() {
+        change(1L, null, null, ScooterStatus.AVAILABLE, 10L);
+        change(2L, null, null, ScooterStatus.AVAILABLE, 10L);
+
+        // номер 1 есть и в этой ленте, но выдан до перезапуска сервера
+        RecordingEmitter restarted = subscribe(null, null, "999-1");
+        RecordingEmitter legacy = subscribe(null, null, "1");
+
+        assertEquals(List.of("reset:1000-2"), restarted.names());
+        assertEquals(List.of("reset:1000-2"), legacy.names());
+        assertThrows(IllegalArgumentException.class, () -> subscribe(null, null, "-1"));
+        assertThrows(IllegalArgumentException.class, () -> subscribe(null, null, "1000-x"));
+        assertEquals(2, stream.subscriberCount());
+    }
+
+    @Test
+    void subscribe_ShouldFilterByRentalPointIncludingDepartures() {
+        RecordingEmitter emitter = subscribe(10L, null, null);
+
+        change(1L, null, null, ScooterStatus.AVAILABLE, 10L);
+        change(2L, null, null, ScooterStatus.AVAILABLE, 11L);
+        change(1L, ScooterStatus.AVAILABLE, 10L, ScooterStatus.AVAILABLE, 11L);
+
+        assertEquals(List.of("scooter:1000-1", "scooter:1000-3"), emitter.names());
+    }
+
+    @Test
+    void subscribe_ShouldFilterByBoundingBox() {
+        BoundingBox box = new BoundingBox(53.8, 27.4, 54.0, 27.7);
+        when(rentalPointIndex.isWithin(eq(10L), any())).thenReturn(true);
+        when(rentalPointIndex.isWithin(eq(11L), any())).thenReturn(false);
+        RecordingEmitter emitter = subscribe(null, box, null);
+
+        change(1L, null, null, ScooterStatus.AVAILABLE, 10L);
+        change(2L, null, null, ScooterStatus.AVAILABLE, 11L);
+        change(3L, null, null, ScooterStatus.IN_USE, null);
+
+        assertEquals(List.of("scooter:1000-1"), emitter.names());
+    }
+
+    @Test
+    void heartbeat_ShouldAdvanceLastEventIdAndDropBrokenSubscribers() {
+        RecordingEmitter filtered = subscribe(99L, null, null);
+        RecordingEmitter broken = subscribe(null, null, null);
+        broken.failing = true;
+
+        change(1L, null, null, ScooterStatus.AVAILABLE, 10L);
+        stream.heartbeat();
+
+        assertEquals(List.of("heartbeat:1000-1"), filtered.names());
+        assertEquals(1, stream.subscriberCount());
+    }
+
+    private RecordingEmitter subscribe(Long rentalPointId, BoundingBox box, String lastEventId) {
+        RecordingEmitter emitter = new RecordingEmitter();
+        stream.subscribe(emitter, rentalPointId, box, lastEventId);
+        return emitter;
+    }
+
+    private void change(
+            Long id,
+            ScooterStatus previousStatus,
+            Long previousPoint,
+            ScooterStatus status,
+            Long point) {
+        stream.onScooterChanged(
+                new FleetStateChange(id, previousStatus, previousPoint, status, point, 80));
+    }
+
+    private static final class SentEvent {
+        private final String name;
+        private final String id;
+        private final Object data;
+
+        private SentEvent(String name, String id, Object data) {
+            this.name = name;
+            this.id = id;
+            this.data = data;
+        }
+    }
+
+    // запоминает отправленные события вместо записи в HTTP-ответ
+    private static final class RecordingEmitter extends SseEmitter {
+        private final List<SentEvent> events = new ArrayList<>();
+        private boolean failing;
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (failing) {
+                throw new IOException("соединение закрыто");
+            }
+            Set<ResponseBodyEmitter.DataWithMediaType> parts = builder.build();
+            String name = null;
+            String id = null;
+            Object data = null;
+            for (ResponseBodyEmitter.DataWithMediaType part : parts) {
+                if (part.getData() instanceof String text) {
+                    for (String line : text.split("\n")) {
+                        if (line.startsWith("event:")) {
+                            name = line.substring("event:".length());
+                        } else if (line.startsWith("id:")) {
+                            id = line.substring("id:".length());
+                        }
+                    }
+                } else {
+                    data = part.getData();
+                }
+            }
+            events.add(new SentEvent(name, id, data));
+        }
+
+        private List<String> names() {
+            return events.stream().map(event -> event.name + ":" + event.id).toList();
+        }
+    }
+}
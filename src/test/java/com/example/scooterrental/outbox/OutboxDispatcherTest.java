@@ -0,0 +1,158 @@
+package com.example.scooterrental.outbox;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import com.example.scooterrental.model.OutboxEvent;
+import com.example.scooterrental.model.OutboxEventStatus;
+import com.example.scooterrental.repository.OutboxEventRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@ExtendWith(MockitoExtension.class)
+public class OutboxDispatcherTest {
+
+    @Mock private OutboxEventRepository outboxEventRepository;
+
+    @Mock private PlatformTransactionManager transactionManager;
+
+    @Mock private OutboxHandler rentalEndedHandler;
+
+    private SimpleMeterRegistry meterRegistry;
+    private OutboxDispatcher outboxDispatcher;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        when(rentalEndedHandler.getEventType()).thenReturn(OutboxEventTypes.RENTAL_ENDED);
+        outboxDispatcher =
+                new OutboxDispatcher(
+                        outboxEventRepository,
+                        transactionManager,
+                        List.of(rentalEndedHandler),
+                        meterRegistry,
+                        2,
+                        60,
+                        5,
+                        7);
+    }
+
+    @Test
+    void drainBatch_ShouldHandleEventsInIdOrderAndMarkThemProcessed() {
+        OutboxEvent second = event(2L, OutboxEventTypes.RENTAL_ENDED);
+        OutboxEvent first = event(1L, OutboxEventTypes.RENTAL_ENDED);
+        when(outboxEventRepository.claimBatch(2, 60)).thenReturn(List.of(second, first));
+
+        int drained = outboxDispatcher.drainBatch();
+
+        assertEquals(2, drained);
+        var inOrder = inOrder(rentalEndedHandler, outboxEventRepository);
+        inOrder.verify(rentalEndedHandler).handle(first);
+        inOrder.verify(outboxEventRepository).markProcessed(1L);
+        inOrder.verify(rentalEndedHandler).handle(second);
+        inOrder.verify(outboxEventRepository).markProcessed(2L);
+        assertEquals(2.0, meterRegistry.counter("outbox.events.processed").count());
+    }
+
+    @Test
+    void drainBatch_ShouldScheduleRetry_WhenHandlerFails() {
+        OutboxEvent event = event(1L, OutboxEventTypes.RENTAL_ENDED);
+        event.setAttempts(3);
+        when(outboxEventRepository.claimBatch(2, 60)).thenReturn(List.of(event));
+        doThrow(new IllegalStateException("сбой")).when(rentalEndedHandler).handle(event);
+
+        outboxDispatcher.drainBatch();
+
+        verify(outboxEventRepository, never()).markProcessed(1L);
+        verify(outboxEventRepository).markFailed(1L, 8L, "сбой");
+        assertEquals(1.0, meterRegistry.counter("outbox.events.failed").count());
+        verify(outboxEventRepository, never()).markDead(anyLong(), anyString());
+    }
+
+    @Test
+    void drainBatch_ShouldMarkDead_WhenLastAttemptFails() {
+        OutboxEvent event = event(1L, OutboxEventTypes.RENTAL_ENDED);
+        event.setAttempts(5);
+        when(outboxEventRepository.claimBatch(2, 60)).thenReturn(List.of(event));
+        doThrow(new IllegalStateException("сбой")).when(rentalEndedHandler).handle(event);
+
+        outboxDispatcher.drainBatch();
+
+        verify(outboxEventRepository).markDead(1L, "сбой");
+        verify(outboxEventRepository, never()).markFailed(anyLong(), anyLong(), anyString());
+        verify(outboxEventRepository, never()).markProcessed(1L);
+        assertEquals(1.0, meterRegistry.counter("outbox.events.dead").count());
+    }
+
+    @Test
+    void purgeProcessed_ShouldDeleteInBatchesUntilTailIsShort() {
+        when(outboxEventRepository.deleteProcessedBefore(any(LocalDateTime.class), eq(2)))
+                .thenReturn(2, 2, 1);
+
+        outboxDispatcher.purgeProcessed();
+
+        ArgumentCaptor<LocalDateTime> before = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(outboxEventRepository, times(3)).deleteProcessedBefore(before.capture(), eq(2));
+        LocalDateTime cutoff = before.getValue();
+        assertTrue(cutoff.isBefore(LocalDateTime.now().minusDays(7).plusMinutes(1)));
+        assertTrue(cutoff.isAfter(LocalDateTime.now().minusDays(7).minusMinutes(1)));
+    }
+
+    @Test
+    void drainBatch_ShouldMarkProcessed_WhenNoHandlerIsRegistered() {
+        OutboxEvent event = event(1L, "UNKNOWN");
+        when(outboxEventRepository.claimBatch(2, 60)).thenReturn(List.of(event));
+
+        outboxDispatcher.drainBatch();
+
+        verify(rentalEndedHandler, never()).handle(event);
+        verify(outboxEventRepository).markProcessed(1L);
+    }
+
+    @Test
+    void poll_ShouldKeepDrainingFullBatchesAndPublishBacklog() {
+        when(outboxEventRepository.claimBatch(2, 60))
+                .thenReturn(
+                        List.of(event(1L, "UNKNOWN"), event(2L, "UNKNOWN")),
+                        List.of(event(3L, "UNKNOWN")));
+        when(outboxEventRepository.countByStatus(OutboxEventStatus.PENDING)).thenReturn(5L);
+
+        outboxDispatcher.poll();
+
+        verify(outboxEventRepository, times(2)).claimBatch(2, 60);
+        verify(outboxEventRepository, never()).markFailed(anyLong(), anyLong(), anyString());
+        assertEquals(5.0, meterRegistry.get("outbox.backlog").gauge().value());
+    }
+
+    @Test
+    void retryDelaySeconds_ShouldGrowExponentiallyUpToLimit() {
+        assertEquals(2, OutboxDispatcher.retryDelaySeconds(1));
+        assertEquals(16, OutboxDispatcher.retryDelaySeconds(4));
+        assertEquals(900, OutboxDispatcher.retryDelaySeconds(40));
+    }
+
+    private OutboxEvent event(Long id, String type) {
+        OutboxEvent event = new OutboxEvent();
+        event.setId(id);
+        event.setEventType(type);
+        event.setAggregateId(id);
+        event.setPayload("{}");
+        event.setAttempts(1);
+        return event;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.scooterrental.outbox;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+import com.example.scooterrental.model.OutboxEvent;
+import com.example.scooterrental.repository.ScooterStatsRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+
+@ExtendWith(MockitoExtension.class)
+public class RentalStatsHandlerTest {
+
+    @Mock private ScooterStatsRepository scooterStatsRepository;
+
+    private ObjectMapper objectMapper;
+    private RentalStatsHandler rentalStatsHandler;
+
+    @BeforeEach
+    void setUp() {
+        objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        rentalStatsHandler = new RentalStatsHandler(scooterStatsRepository, objectMapper);
+    }
+
+    @Test
+    void handle_ShouldApplyRideFromPayload() throws Exception {
+        LocalDateTime start = LocalDateTime.of(2024, 5, 1, 10, 0);
+        LocalDateTime end = start.plusMinutes(30);
+        OutboxEvent event =
+                event(new RentalEndedPayload(3L, 2L, 1L, 4L, start, end, 0.0, 12.5, 90.0));
+        when(scooterStatsRepository.applyRide(3L, 1L, 9000L, 12.5, 30L, end)).thenReturn(1);
+
+        rentalStatsHandler.handle(event);
+
+        verify(scooterStatsRepository, times(1)).applyRide(3L, 1L, 9000L, 12.5, 30L, end);
+    }
+
+    @Test
+    void handle_ShouldCountNoDistance_WhenMileageIsMissingOrGoesBack() throws Exception {
+        LocalDateTime start = LocalDateTime.of(2024, 5, 1, 10, 0);
+        LocalDateTime end = start.plusMinutes(5);
+        OutboxEvent event =
+                event(new RentalEndedPayload(3L, 2L, 1L, 4L, start, end, 20.0, 15.0, 10.0));
+        when(scooterStatsRepository.applyRide(3L, 1L, 1000L, 0.0, 5L, end)).thenReturn(0);
+
+        // повторная доставка: запрос ничего не меняет, обработчик не падает
+        rentalStatsHandler.handle(event);
+
+        verify(scooterStatsRepository, times(1)).applyRide(3L, 1L, 1000L, 0.0, 5L, end);
+    }
+
+    @Test
+    void handle_ShouldThrowIllegalStateException_WhenPayloadIsMalformed() {
+        OutboxEvent event = new OutboxEvent();
+        event.setId(7L);
+        event.setEventType(OutboxEventTypes.RENTAL_ENDED);
+        event.setPayload("{не json");
+
+        assertThrows(IllegalStateException.class, () -> rentalStatsHandler.handle(event));
+        verify(scooterStatsRepository, never())
+                .applyRide(any(), any(), anyLong(), anyDouble(), anyLong(), any());
+    }
+
+    private OutboxEvent event(RentalEndedPayload payload) throws Exception {
+        OutboxEvent event = new OutboxEvent();
+        event.setId(1L);
+        event.setEventType(OutboxEventTypes.RENTAL_ENDED);
+        event.setAggregateId(payload.getRentalId());
+        event.setPayload(objectMapper.writeValueAsString(payload));
+        return event;
+    }
+}
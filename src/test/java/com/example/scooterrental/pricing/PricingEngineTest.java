@@ -0,0 +1,51 @@
+package com.example.scooterrental.pricing;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.example.scooterrental.event.TariffChangedEvent;
+import com.example.scooterrental.model.Tariff;
+
+import org.junit.jupiter.api.Test;
+
+public class PricingEngineTest {
+
+    private final PricingEngine pricingEngine = new PricingEngine();
+
+    @Test
+    void pricingFor_ShouldReuseCompiledTariff_UntilTariffChanges() {
+        Tariff tariff = new Tariff(1L, "Почасовой", null, 6.0, null, null, false, null, null, 0L);
+
+        TariffPricing first = pricingEngine.pricingFor(tariff);
+        assertSame(first, pricingEngine.pricingFor(tariff));
+
+        tariff.setPricePerHour(12.0);
+        tariff.setVersion(1L);
+        pricingEngine.onTariffChanged(new TariffChangedEvent(1L));
+
+        TariffPricing recompiled = pricingEngine.pricingFor(tariff);
+        assertNotSame(first, recompiled);
+        assertEquals(1200, recompiled.priceMinor(60));
+        assertSame(recompiled, pricingEngine.pricingFor(tariff));
+    }
+
+    @Test
+    void pricingFor_ShouldNotCacheStaleVersion_WhenReadBeforeTariffChanged() {
+        Tariff stale = new Tariff(1L, "Почасовой", null, 6.0, null, null, false, null, null, 0L);
+        Tariff fresh =
+                new Tariff(1L, "Почасовой", null, 12.0, null, null, false, null, null, 1L);
+
+        // аренда прочитала тариф до изменения, а цену считает уже после сброса кэша
+        pricingEngine.onTariffChanged(new TariffChangedEvent(1L));
+        assertEquals(600, pricingEngine.pricingFor(stale).priceMinor(60));
+        assertEquals(1200, pricingEngine.pricingFor(fresh).priceMinor(60));
+
+        TariffPricing cached = pricingEngine.pricingFor(fresh);
+        assertEquals(600, pricingEngine.pricingFor(stale).priceMinor(60));
+        assertSame(cached, pricingEngine.pricingFor(fresh));
+    }
+
+    @Test
+    void pricingFor_ShouldThrowIllegalStateException_WhenTariffIsMissing() {
+        assertThrows(IllegalStateException.class, () -> pricingEngine.pricingFor(null));
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.scooterrental.pricing;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.example.scooterrental.dto.TariffDto;
+import com.example.scooterrental.event.TariffChangedEvent;
+import com.example.scooterrental.model.Tariff;
+import com.example.scooterrental.repository.TariffRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Optional;
+
+@ExtendWith(MockitoExtension.class)
+public class TariffCacheTest {
+
+    @Mock private TariffRepository tariffRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private TariffCache tariffCache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        tariffCache = new TariffCache(tariffRepository, meterRegistry, 2);
+    }
+
+    @Test
+    void find_ShouldReadThroughOnceAndReturnIndependentCopies() {
+        when(tariffRepository.findById(1L)).thenReturn(Optional.of(tariff(1L, 6.0)));
+
+        TariffDto first = tariffCache.find(1L).orElseThrow();
+        first.setPricePerHour(100.0);
+        TariffDto second = tariffCache.find(1L).orElseThrow();
+
+        assertEquals(6.0, second.getPricePerHour());
+        verify(tariffRepository, times(1)).findById(1L);
+        assertEquals(1.0, meterRegistry.counter("tariffs.cache.hits").count());
+        assertEquals(1.0, meterRegistry.counter("tariffs.cache.misses").count());
+    }
+
+    @Test
+    void onTariffChanged_ShouldEvictOnlyChangedTariffAndList() {
+        when(tariffRepository.findAll())
+                .thenReturn(List.of(tariff(1L, 6.0), tariff(2L, 8.0)))
+                .thenReturn(List.of(tariff(1L, 6.0), tariff(2L, 9.0)));
+        when(tariffRepository.findById(2L)).thenReturn(Optional.of(tariff(2L, 9.0)));
+        tariffCache.findAll();
+
+        tariffCache.onTariffChanged(new TariffChangedEvent(2L));
+
+        assertEquals(6.0, tariffCache.find(1L).orElseThrow().getPricePerHour());
+        assertEquals(9.0, tariffCache.find(2L).orElseThrow().getPricePerHour());
+        assertEquals(9.0, tariffCache.findAll().get(1).getPricePerHour());
+        verify(tariffRepository, never()).findById(1L);
+        verify(tariffRepository, times(2)).findAll();
+        assertEquals(1.0, meterRegistry.counter("tariffs.cache.invalidations").count());
+    }
+
+    @Test
+    void find_ShouldNotCacheValueLoadedBeforeConcurrentInvalidation() {
+        // тариф меняется, пока читатель ещё держит прочитанное из БД старое значение
+        when(tariffRepository.findById(1L))
+                .thenAnswer(
+                        invocation -> {
+                            tariffCache.onTariffChanged(new TariffChangedEvent(1L));
+                            return Optional.of(tariff(1L, 6.0));
+                        })
+                .thenReturn(Optional.of(tariff(1L, 12.0)));
+
+        assertEquals(6.0, tariffCache.find(1L).orElseThrow().getPricePerHour());
+        assertEquals(12.0, tariffCache.find(1L).orElseThrow().getPricePerHour());
+        assertEquals(12.0, tariffCache.find(1L).orElseThrow().getPricePerHour());
+        verify(tariffRepository, times(2)).findById(1L);
+    }
+
+    @Test
+    void find_ShouldKeepCacheBounded() {
+        when(tariffRepository.findById(anyLong()))
+                .thenAnswer(invocation -> Optional.of(tariff(invocation.getArgument(0), 6.0)));
+
+        tariffCache.find(1L);
+        tariffCache.find(2L);
+        tariffCache.find(3L);
+        tariffCache.find(1L);
+
+        verify(tariffRepository, times(2)).findById(1L);
+        assertEquals(2.0, meterRegistry.get("tariffs.cache.size").gauge().value());
+    }
+
+    private static Tariff tariff(Long id, double pricePerHour) {
+        return new Tariff(
+                id, "Тариф " + id, null, pricePerHour, null, null, false, null, null, null);
+    }
+}
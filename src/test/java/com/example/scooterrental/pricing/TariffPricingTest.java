@@ -0,0 +1,96 @@
+package com.example.scooterrental.pricing;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.example.scooterrental.model.Tariff;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+public class TariffPricingTest {
+
+    @Test
+    void priceMinor_ShouldChargeHourlyRatePerMinute() {
+        Tariff tariff = new Tariff(1L, "Почасовой", null, 5.0, null, null, false, null, null, null);
+
+        TariffPricing pricing = TariffPricing.compile(tariff);
+
+        assertEquals(750, pricing.priceMinor(90));
+        assertEquals(0, pricing.priceMinor(0));
+        assertEquals(0, pricing.priceMinor(-5));
+    }
+
+    @Test
+    void priceMinor_ShouldApplyDiscount_ForHourlyTariff() {
+        Tariff tariff =
+                new Tariff(2L, "Студенческий", null, 4.0, null, 0.1, false, null, null, null);
+
+        TariffPricing pricing = TariffPricing.compile(tariff);
+
+        assertEquals(270, pricing.priceMinor(45));
+    }
+
+    @Test
+    void priceMinor_ShouldChargeFixedPrice_ForSubscription() {
+        Tariff tariff =
+                new Tariff(3L, "Дневной абонемент", null, null, 25.0, 0.2, true, null, null, null);
+
+        TariffPricing pricing = TariffPricing.compile(tariff);
+
+        assertEquals(2000, pricing.priceMinor(1));
+        assertEquals(2000, pricing.priceMinor(600));
+    }
+
+    @Test
+    void priceMinor_ShouldApplyMinimumAndMaximumCharge() {
+        Tariff tariff = new Tariff(4L, "С лимитами", null, 6.0, null, null, false, 1.5, 20.0, null);
+
+        TariffPricing pricing = TariffPricing.compile(tariff);
+
+        assertEquals(150, pricing.priceMinor(5));
+        assertEquals(300, pricing.priceMinor(30));
+        assertEquals(2000, pricing.priceMinor(600));
+    }
+
+    @Test
+    void priceMinor_ShouldIgnoreIncompleteMinute() {
+        Tariff tariff = new Tariff(5L, "Почасовой", null, 6.0, null, null, false, null, null, null);
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 10, 0, 0);
+
+        TariffPricing pricing = TariffPricing.compile(tariff);
+
+        assertEquals(100, pricing.priceMinor(start, start.plusMinutes(10).plusSeconds(59)));
+    }
+
+    @Test
+    void priceMinor_ShouldMatchLegacyFloatingPointCalculation() {
+        double[] prices = {0.5, 1.0, 3.75, 5.0, 9.99, 12.5, 100.0};
+        double[] discounts = {0.0, 0.05, 0.1, 0.15, 0.33, 0.5};
+        for (double price : prices) {
+            for (double discount : discounts) {
+                Tariff tariff =
+                        new Tariff(
+                                6L, "Сетка", null, price, null, discount, false, null, null, null);
+                TariffPricing pricing = TariffPricing.compile(tariff);
+                for (long minutes = 0; minutes <= 600; minutes += 7) {
+                    double legacy = minutes / 60.0 * price * (1 - discount);
+                    double actual = TariffPricing.toMajorUnits(pricing.priceMinor(minutes));
+                    // допускаем расхождение на полкопейки из-за округления
+                    assertEquals(
+                            legacy, actual, 0.005 + 1e-9, price + "/" + discount + "/" + minutes);
+                }
+            }
+        }
+    }
+
+    @Test
+    void compile_ShouldThrowIllegalStateException_WhenPriceIsMissing() {
+        Tariff hourly = new Tariff(7L, "Без цены", null, null, null, null, false, null, null, null);
+        Tariff subscription =
+                new Tariff(8L, "Без цены", null, null, null, null, true, null, null, null);
+
+        assertThrows(IllegalStateException.class, () -> TariffPricing.compile(hourly));
+        assertThrows(IllegalStateException.class, () -> TariffPricing.compile(subscription));
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.scooterrental.service.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import com.example.scooterrental.dto.RentalDto;
+import com.example.scooterrental.exception.IdempotencyConflictException;
+import com.example.scooterrental.model.IdempotencyKey;
+import com.example.scooterrental.repository.IdempotencyKeyRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+@ExtendWith(MockitoExtension.class)
+public class IdempotencyServiceImplTest {
+
+    private static final String SCOPE = "POST /api/rentals user1";
+
+    @Mock private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private ObjectMapper objectMapper;
+    private IdempotencyServiceImpl idempotencyService;
+    private RentalDto request;
+    private AtomicInteger executions;
+    private Supplier<ResponseEntity<RentalDto>> action;
+
+    @BeforeEach
+    void setUp() {
+        objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        idempotencyService =
+                new IdempotencyServiceImpl(
+                        idempotencyKeyRepository, objectMapper, transactionManager, 24, 300, 100);
+        request = new RentalDto(null, 1L, 1L, null, null, null, null, null, 1L);
+        executions = new AtomicInteger();
+        action =
+                () -> {
+                    executions.incrementAndGet();
+                    RentalDto created =
+                            new RentalDto(10L, 1L, 1L, null, null, null, null, null, 1L);
+                    return new ResponseEntity<>(created, HttpStatus.CREATED);
+                };
+    }
+
+    @Test
+    void execute_ShouldRunActionDirectly_WhenKeyIsAbsent() {
+        ResponseEntity<RentalDto> response =
+                idempotencyService.execute(null, SCOPE, request, RentalDto.class, action);
+
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        assertEquals(1, executions.get());
+        verifyNoInteractions(idempotencyKeyRepository);
+    }
+
+    @Test
+    void execute_ShouldReplayFromMemory_WhenKeyIsRepeated() {
+        when(idempotencyKeyRepository.tryClaim(
+                        eq(SCOPE + " key-1"), anyString(), any(), any(), any()))
+                .thenReturn(1);
+
+        ResponseEntity<RentalDto> first =
+                idempotencyService.execute("key-1", SCOPE, request, RentalDto.class, action);
+        ResponseEntity<RentalDto> second =
+                idempotencyService.execute("key-1", SCOPE, request, RentalDto.class, action);
+
+        assertEquals(1, executions.get());
+        assertEquals(HttpStatus.CREATED, second.getStatusCode());
+        assertEquals(first.getBody().getId(), second.getBody().getId());
+        assertEquals("true", second.getHeaders().getFirst(IdempotencyServiceImpl.REPLAYED_HEADER));
+        verify(idempotencyKeyRepository).complete(eq(SCOPE + " key-1"), eq(201), anyString());
+        verify(idempotencyKeyRepository, times(1))
+                .tryClaim(anyString(), anyString(), any(), any(), any());
+    }
+
+    @Test
+    void execute_ShouldReplayStoredResponse_WhenKeyWasCompletedElsewhere() throws Exception {
+        IdempotencyKey stored = storedKey("key-2", 201, "{\"id\":42,\"userId\":1}");
+        when(idempotencyKeyRepository.tryClaim(anyString(), anyString(), any(), any(), any()))
+                .thenReturn(0);
+        when(idempotencyKeyRepository.findById(SCOPE + " key-2")).thenReturn(Optional.of(stored));
+
+        ResponseEntity<RentalDto> response =
+                idempotencyService.execute("key-2", SCOPE, request, RentalDto.class, action);
+
+        assertEquals(0, executions.get());
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        assertEquals(42L, response.getBody().getId());
+    }
+
+    @Test
+    void execute_ShouldThrowConflict_WhenKeyIsStillInProgress() throws Exception {
+        IdempotencyKey pending = storedKey("key-3", null, null);
+        when(idempotencyKeyRepository.tryClaim(anyString(), anyString(), any(), any(), any()))
+                .thenReturn(0);
+        when(idempotencyKeyRepository.findById(SCOPE + " key-3")).thenReturn(Optional.of(pending));
+
+        assertThrows(
+                IdempotencyConflictException.class,
+                () -> idempotencyService.execute("key-3", SCOPE, request, RentalDto.class, action));
+        assertEquals(0, executions.get());
+    }
+
+    @Test
+    void execute_ShouldThrowConflict_WhenKeyIsReusedForDifferentRequest() throws Exception {
+        IdempotencyKey stored = storedKey("key-4", 201, "{}");
+        when(idempotencyKeyRepository.tryClaim(anyString(), anyString(), any(), any(), any()))
+                .thenReturn(0);
+        when(idempotencyKeyRepository.findById(SCOPE + " key-4")).thenReturn(Optional.of(stored));
+        RentalDto otherRequest = new RentalDto(null, 2L, 2L, null, null, null, null, null, 1L);
+
+        assertThrows(
+                IdempotencyConflictException.class,
+                () ->
+                        idempotencyService.execute(
+                                "key-4", SCOPE, otherRequest, RentalDto.class, action));
+    }
+
+    @Test
+    void execute_ShouldReleaseKey_WhenActionFails() {
+        when(idempotencyKeyRepository.tryClaim(anyString(), anyString(), any(), any(), any()))
+                .thenReturn(1);
+        Supplier<ResponseEntity<RentalDto>> failing =
+                () -> {
+                    throw new IllegalArgumentException("Тариф не найден");
+                };
+
+        assertThrows(
+                IllegalArgumentException.class,
+                () ->
+                        idempotencyService.execute(
+                                "key-5", SCOPE, request, RentalDto.class, failing));
+        verify(idempotencyKeyRepository).deleteById(SCOPE + " key-5");
+        verify(idempotencyKeyRepository, never()).complete(anyString(), anyInt(), any());
+    }
+
+    @Test
+    void sweepExpired_ShouldDeleteExpiredKeys() {
+        when(idempotencyKeyRepository.deleteExpired(any(LocalDateTime.class))).thenReturn(3);
+
+        idempotencyService.sweepExpired();
+
+        verify(idempotencyKeyRepository).deleteExpired(any(LocalDateTime.class));
+    }
+
+    private IdempotencyKey storedKey(String key, Integer status, String body) throws Exception {
+        String hash =
+                HexFormat.of()
+                        .formatHex(
+                                MessageDigest.getInstance("SHA-256")
+                                        .digest(objectMapper.writeValueAsBytes(request)));
+        LocalDateTime now = LocalDateTime.now();
+        return new IdempotencyKey(SCOPE + " " + key, hash, status, body, now, now.plusHours(1));
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.scooterrental.service.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+@ExtendWith(MockitoExtension.class)
+public class RentalPartitionServiceImplTest {
+
+    private static final DateTimeFormatter PARTITION_SUFFIX =
+            DateTimeFormatter.ofPattern("yyyy_MM");
+
+    @Mock private JdbcTemplate jdbcTemplate;
+
+    private RentalPartitionServiceImpl rentalPartitionService;
+
+    @BeforeEach
+    void setUp() {
+        rentalPartitionService = new RentalPartitionServiceImpl(jdbcTemplate, 2, 6);
+    }
+
+    @Test
+    void ensureFuturePartitions_ShouldCreateCurrentAndUpcomingMonths() {
+        when(jdbcTemplate.queryForObject(
+                        eq("SELECT ensure_rentals_partition(?)"),
+                        eq(String.class),
+                        any(LocalDate.class)))
+                .thenReturn("rentals_p");
+
+        List<String> partitions = rentalPartitionService.ensureFuturePartitions();
+
+        assertEquals(3, partitions.size());
+        YearMonth current = YearMonth.now();
+        for (int i = 0; i <= 2; i++) {
+            verify(jdbcTemplate)
+                    .queryForObject(
+                            "SELECT ensure_rentals_partition(?)",
+                            String.class,
+                            current.plusMonths(i).atDay(1));
+        }
+    }
+
+    @Test
+    void archivePartitionsBefore_ShouldDetachOnlyMonthsBeforeCutoff() {
+        YearMonth current = YearMonth.now();
+        String old = partitionName(current.minusMonths(8));
+        String recent = partitionName(current.minusMonths(2));
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class)))
+                .thenReturn(List.of("rentals_default", old, recent, partitionName(current)));
+        when(jdbcTemplate.queryForObject(contains(old), eq(Boolean.class))).thenReturn(false);
+
+        List<String> archived =
+                rentalPartitionService.archivePartitionsBefore(current.minusMonths(6));
+
+        assertEquals(List.of(old), archived);
+        verify(jdbcTemplate).execute("ALTER TABLE rentals DETACH PARTITION public." + old);
+        verify(jdbcTemplate).execute("ALTER TABLE public." + old + " SET SCHEMA rentals_archive");
+        verify(jdbcTemplate, times(2)).execute(anyString());
+    }
+
+    @Test
+    void archivePartitionsBefore_ShouldSkipPartitionsWithOpenRentals() {
+        YearMonth current = YearMonth.now();
+        String withOpenRental = partitionName(current.minusMonths(9));
+        String closed = partitionName(current.minusMonths(8));
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class)))
+                .thenReturn(List.of(withOpenRental, closed));
+        when(jdbcTemplate.queryForObject(contains(withOpenRental), eq(Boolean.class)))
+                .thenReturn(true);
+        when(jdbcTemplate.queryForObject(contains(closed), eq(Boolean.class))).thenReturn(false);
+
+        List<String> archived =
+                rentalPartitionService.archivePartitionsBefore(current.minusMonths(6));
+
+        assertEquals(List.of(closed), archived);
+        verify(jdbcTemplate, never())
+                .execute("ALTER TABLE rentals DETACH PARTITION public." + withOpenRental);
+    }
+
+    @Test
+    void archivePartitionsBefore_ShouldNeverDetachCurrentMonth() {
+        YearMonth current = YearMonth.now();
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class)))
+                .thenReturn(List.of(partitionName(current), partitionName(current.plusMonths(1))));
+
+        List<String> archived =
+                rentalPartitionService.archivePartitionsBefore(current.plusMonths(5));
+
+        assertTrue(archived.isEmpty());
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+
+    private String partitionName(YearMonth month) {
+        return "rentals_p" + month.format(PARTITION_SUFFIX);
+    }
+}
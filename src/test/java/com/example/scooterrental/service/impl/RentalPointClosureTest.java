@@ -0,0 +1,209 @@
+package com.example.scooterrental.service.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.example.scooterrental.dto.CursorPageDto;
+import com.example.scooterrental.dto.RentalPointDto;
+import com.example.scooterrental.dto.ScooterInfoDto;
+import com.example.scooterrental.dto.ScooterSearchFilterDto;
+import com.example.scooterrental.exception.RentalPointNotFoundException;
+import com.example.scooterrental.fleet.FleetStateStore;
+import com.example.scooterrental.fleet.MapClusterIndex;
+import com.example.scooterrental.fleet.RentalPointHierarchyStore;
+import com.example.scooterrental.fleet.RentalPointIndex;
+import com.example.scooterrental.fleet.ScooterChangeStream;
+import com.example.scooterrental.model.RentalPoint;
+import com.example.scooterrental.model.RentalPointClosure;
+import com.example.scooterrental.model.Scooter;
+import com.example.scooterrental.model.ScooterStatus;
+import com.example.scooterrental.repository.RentalPointClosureRepository;
+import com.example.scooterrental.service.RentalPointService;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Таблица замыкания на H2: те же запросы, которыми сервис поддерживает её при создании
+// и переносе точек, и выборки по поддереву поверх неё. Блокировка иерархии специфична
+// для PostgreSQL, поэтому замыкание строится вызовами репозитория напрямую
+@DataJpaTest(
+        properties = {
+            "spring.flyway.enabled=false",
+            "spring.jpa.hibernate.ddl-auto=create-drop",
+            "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect"
+        })
+@Import({
+    RentalPointServiceImpl.class,
+    ScooterServiceImpl.class,
+    FleetStateStore.class,
+    RentalPointHierarchyStore.class,
+    MapClusterIndex.class,
+    RentalPointIndex.class,
+    ScooterChangeStream.class
+})
+public class RentalPointClosureTest {
+
+    @Autowired private TestEntityManager entityManager;
+
+    @Autowired private RentalPointClosureRepository closureRepository;
+
+    @Autowired private RentalPointService rentalPointService;
+
+    private RentalPoint city;
+    private RentalPoint district;
+    private RentalPoint stop;
+    private RentalPoint otherCity;
+    private int serials;
+
+    @BeforeEach
+    void setUp() {
+        city = point("Гомель", null);
+        district = point("Центральный", city);
+        stop = point("Вокзал", district);
+        otherCity = point("Минск", null);
+        scooter(city, ScooterStatus.AVAILABLE);
+        scooter(district, ScooterStatus.MAINTENANCE);
+        scooter(stop, ScooterStatus.AVAILABLE);
+        scooter(stop, ScooterStatus.AVAILABLE);
+        scooter(otherCity, ScooterStatus.AVAILABLE);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void insertAndAttach_ShouldStoreEveryAncestorWithDepth() {
+        assertEquals(2, depth(city, stop));
+        assertEquals(1, depth(district, stop));
+        assertEquals(0, depth(stop, stop));
+        assertNull(entityManager.find(RentalPointClosure.class, key(stop, city)));
+    }
+
+    @Test
+    void getSubtreeScooters_ShouldPageThroughWholeSubtreeOnly() throws Exception {
+        List<ScooterInfoDto> all = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPageDto<ScooterInfoDto> page =
+                    rentalPointService.getSubtreeScooters(
+                            city.getId(), new ScooterSearchFilterDto(), "id", cursor, 3);
+            all.addAll(page.getItems());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(4, all.size());
+        assertTrue(
+                all.stream()
+                        .map(ScooterInfoDto::getRentalPointId)
+                        .noneMatch(otherCity.getId()::equals));
+
+        ScooterSearchFilterDto available = new ScooterSearchFilterDto();
+        available.setStatus(ScooterStatus.AVAILABLE);
+        CursorPageDto<ScooterInfoDto> page =
+                rentalPointService.getSubtreeScooters(district.getId(), available, "id", null, 10);
+        assertEquals(2, page.getItems().size());
+        assertTrue(
+                page.getItems().stream()
+                        .allMatch(scooter -> stop.getId().equals(scooter.getRentalPointId())));
+    }
+
+    @Test
+    void getSubtreeScooterCounts_ShouldAggregateDescendants() throws Exception {
+        assertEquals(
+                3,
+                rentalPointService
+                        .getSubtreeScooterCounts(city.getId())
+                        .getScooterCounts()
+                        .get(ScooterStatus.AVAILABLE));
+        assertEquals(
+                1,
+                rentalPointService
+                        .getSubtreeScooterCounts(district.getId())
+                        .getScooterCounts()
+                        .get(ScooterStatus.MAINTENANCE));
+        assertThrows(
+                RentalPointNotFoundException.class,
+                () -> rentalPointService.getSubtreeScooterCounts(-1L));
+    }
+
+    @Test
+    void detachAndAttach_ShouldMoveWholeSubtree() throws Exception {
+        closureRepository.detachSubtree(district.getId());
+        closureRepository.attachSubtree(district.getId(), otherCity.getId());
+        entityManager.clear();
+
+        assertNull(entityManager.find(RentalPointClosure.class, key(city, stop)));
+        assertEquals(2, depth(otherCity, stop));
+        assertEquals(1, depth(district, stop));
+        assertEquals(
+                1,
+                rentalPointService
+                        .getSubtreeScooterCounts(city.getId())
+                        .getScooterCounts()
+                        .get(ScooterStatus.AVAILABLE));
+        assertEquals(
+                3,
+                rentalPointService
+                        .getSubtreeScooterCounts(otherCity.getId())
+                        .getScooterCounts()
+                        .get(ScooterStatus.AVAILABLE));
+        assertTrue(
+                closureRepository.existsByAncestorIdAndDescendantId(
+                        district.getId(), stop.getId()));
+    }
+
+    @Test
+    void getAncestors_ShouldReturnChainFromRoot() throws Exception {
+        assertEquals(
+                List.of(city.getId(), district.getId()),
+                rentalPointService.getAncestors(stop.getId()).stream()
+                        .map(RentalPointDto::getId)
+                        .toList());
+        assertEquals(
+                city.getId(), rentalPointService.getAncestors(district.getId()).get(0).getId());
+        assertTrue(rentalPointService.getAncestors(city.getId()).isEmpty());
+        assertThrows(
+                RentalPointNotFoundException.class, () -> rentalPointService.getAncestors(-1L));
+    }
+
+    private RentalPoint point(String name, RentalPoint parent) {
+        RentalPoint point =
+                entityManager.persist(
+                        new RentalPoint(
+                                null, name, "Адрес", 52.4, 31.0, null, parent, null, null));
+        closureRepository.insertSelf(point.getId());
+        if (parent != null) {
+            closureRepository.attachSubtree(point.getId(), parent.getId());
+        }
+        return point;
+    }
+
+    private void scooter(RentalPoint point, ScooterStatus status) {
+        entityManager.persist(
+                new Scooter(
+                        null,
+                        "Ninebot",
+                        point.getName() + "-" + ++serials,
+                        status,
+                        80,
+                        0.0,
+                        point,
+                        null,
+                        null));
+    }
+
+    private int depth(RentalPoint ancestor, RentalPoint descendant) {
+        return entityManager
+                .find(RentalPointClosure.class, key(ancestor, descendant))
+                .getDepth();
+    }
+
+    private static RentalPointClosure.Key key(RentalPoint ancestor, RentalPoint descendant) {
+        return new RentalPointClosure.Key(ancestor.getId(), descendant.getId());
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.scooterrental.service.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.example.scooterrental.dto.RentalPointInfoDto;
+import com.example.scooterrental.dto.RentalPointViewDto;
+import com.example.scooterrental.fleet.FleetStateStore;
+import com.example.scooterrental.fleet.MapClusterIndex;
+import com.example.scooterrental.fleet.RentalPointHierarchyStore;
+import com.example.scooterrental.fleet.RentalPointIndex;
+import com.example.scooterrental.fleet.ScooterChangeStream;
+import com.example.scooterrental.model.RentalPoint;
+import com.example.scooterrental.model.Scooter;
+import com.example.scooterrental.model.ScooterStatus;
+import com.example.scooterrental.model.Tariff;
+import com.example.scooterrental.service.RentalPointService;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import jakarta.persistence.EntityManagerFactory;
+
+// дерево точек с самокатами собирается фиксированным числом запросов независимо от размера:
+// иерархия берётся из снимка в памяти, в БД остаются только самокаты поддерева и их статистика
+@DataJpaTest(
+        properties = {
+            "spring.flyway.enabled=false",
+            "spring.jpa.hibernate.ddl-auto=create-drop",
+            "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+            "spring.jpa.properties.hibernate.generate_statistics=true"
+        })
+@Import({
+    RentalPointServiceImpl.class,
+    ScooterServiceImpl.class,
+    FleetStateStore.class,
+    RentalPointHierarchyStore.class,
+    MapClusterIndex.class,
+    RentalPointIndex.class,
+    ScooterChangeStream.class
+})
+public class RentalPointServiceImplQueryCountTest {
+
+    private static final int FAN_OUT = 3;
+    private static final int SCOOTERS_PER_POINT = 2;
+
+    @Autowired private TestEntityManager entityManager;
+
+    @Autowired private EntityManagerFactory entityManagerFactory;
+
+    @Autowired private RentalPointService rentalPointService;
+
+    @Autowired private RentalPointHierarchyStore hierarchyStore;
+
+    private Statistics statistics;
+    private RentalPoint city;
+    private RentalPoint district;
+
+    @BeforeEach
+    void setUp() {
+        Tariff tariff =
+                entityManager.persist(
+                        new Tariff(
+                                null, "Почасовой", null, 5.0, null, null, false, null, null, null));
+        city = point("Город", null, tariff);
+        for (int d = 0; d < FAN_OUT; d++) {
+            RentalPoint current = point("Район " + d, city, tariff);
+            for (int s = 0; s < FAN_OUT; s++) {
+                point("Стоянка " + d + "-" + s, current, tariff);
+            }
+            district = current;
+        }
+        entityManager.flush();
+        entityManager.clear();
+        // точки сохранены в обход сервиса, поэтому снимок перечитывается явно
+        hierarchyStore.reload();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void getRentalPointById_ShouldAssembleWholeSubtreeInTwoStatements() {
+        RentalPointInfoDto tree =
+                countStatements(
+                        2,
+                        () ->
+                                rentalPointService.getRentalPointById(
+                                        city.getId(), RentalPointViewDto.full()));
+
+        assertEquals(FAN_OUT, tree.getChildPoints().size());
+        RentalPointInfoDto lastDistrict = tree.getChildPoints().get(FAN_OUT - 1);
+        assertEquals(district.getId(), lastDistrict.getId());
+        assertEquals(FAN_OUT, lastDistrict.getChildPoints().size());
+        RentalPointInfoDto leaf = lastDistrict.getChildPoints().get(0);
+        assertEquals(district.getId(), leaf.getParentPointId());
+        assertEquals(SCOOTERS_PER_POINT, leaf.getScooters().size());
+        assertEquals("Почасовой", leaf.getScooters().get(0).getTariffName());
+        assertEquals(leaf.getName(), leaf.getScooters().get(0).getRentalPointName());
+        assertTrue(leaf.getChildPoints().isEmpty());
+    }
+
+    @Test
+    void getChildRentalPoints_ShouldAssembleSubtreeInTwoStatements() {
+        List<RentalPointInfoDto> children =
+                countStatements(
+                        2,
+                        () ->
+                                rentalPointService.getChildRentalPoints(
+                                        district.getId(), RentalPointViewDto.full()));
+
+        assertEquals(FAN_OUT, children.size());
+        assertTrue(children.stream().allMatch(child -> child.getScooters().size() == 2));
+    }
+
+    @Test
+    void getRootRentalPoints_ShouldAssembleForestInTwoStatements() {
+        List<RentalPointInfoDto> roots =
+                countStatements(
+                        2, () -> rentalPointService.getRootRentalPoints(RentalPointViewDto.full()));
+
+        assertEquals(1, roots.size());
+        assertEquals(FAN_OUT, roots.get(0).getChildPoints().size());
+    }
+
+    @Test
+    void getRentalPointById_ShouldStopAtDepthAndSkipScooters_WhenNotRequested() {
+        RentalPointInfoDto tree =
+                countStatements(
+                        0,
+                        () ->
+                                rentalPointService.getRentalPointById(
+                                        city.getId(),
+                                        new RentalPointViewDto(
+                                                1, RentalPointViewDto.Include.COUNTS, false)));
+
+        assertEquals(FAN_OUT, tree.getChildPoints().size());
+        RentalPointInfoDto firstDistrict = tree.getChildPoints().get(0);
+        assertNull(firstDistrict.getChildPoints());
+        assertNull(firstDistrict.getScooters());
+        assertNotNull(firstDistrict.getScooterCounts());
+    }
+
+    @Test
+    void getAllRentalPoints_ShouldListEachPointOnce_WhenFlat() {
+        List<RentalPointInfoDto> points =
+                countStatements(
+                        0,
+                        () ->
+                                rentalPointService.getAllRentalPoints(
+                                        new RentalPointViewDto(
+                                                null, RentalPointViewDto.Include.NONE, true)));
+
+        assertEquals(1 + FAN_OUT + FAN_OUT * FAN_OUT, points.size());
+        assertTrue(points.stream().allMatch(point -> point.getChildPoints() == null));
+        assertTrue(points.stream().allMatch(point -> point.getScooterCounts() == null));
+    }
+
+    private RentalPoint point(String name, RentalPoint parent, Tariff tariff) {
+        RentalPoint point =
+                entityManager.persist(
+                        new RentalPoint(
+                                null, name, "Адрес", 53.9, 27.5, null, parent, null, null));
+        for (int i = 0; i < SCOOTERS_PER_POINT; i++) {
+            entityManager.persist(
+                    new Scooter(
+                            null,
+                            "Ninebot",
+                            name + "-" + i,
+                            ScooterStatus.AVAILABLE,
+                            90,
+                            0.0,
+                            point,
+                            tariff,
+                            null));
+        }
+        return point;
+    }
+
+    private <T> T countStatements(int expected, Supplier<T> call) {
+        T result = call.get();
+        assertEquals(expected, statistics.getPrepareStatementCount());
+        return result;
+    }
+}
@@ -7,29 +7,61 @@ import static org.mockito.Mockito.*;
 
 import com.example.scooterrental.dto.RentalPointDto;
 import com.example.scooterrental.dto.RentalPointInfoDto;
+import com.example.scooterrental.dto.RentalPointScooterCountsDto;
+import com.example.scooterrental.dto.RentalPointViewDto;
+import com.example.scooterrental.dto.ScooterInfoDto;
+import com.example.scooterrental.event.RentalPointChangedEvent;
+import com.example.scooterrental.event.ScooterStateChangedEvent;
+import com.example.scooterrental.exception.PreconditionFailedException;
 import com.example.scooterrental.exception.RentalPointNotFoundException;
+import com.example.scooterrental.fleet.FleetStateStore;
+import com.example.scooterrental.fleet.MapClusterIndex;
+import com.example.scooterrental.fleet.RentalPointHierarchy;
+import com.example.scooterrental.fleet.RentalPointHierarchyStore;
 import com.example.scooterrental.model.RentalPoint;
+import com.example.scooterrental.model.Scooter;
+import com.example.scooterrental.model.ScooterStatus;
+import com.example.scooterrental.repository.RentalPointClosureRepository;
 import com.example.scooterrental.repository.RentalPointRepository;
+import com.example.scooterrental.repository.RentalPointTreeRow;
+import com.example.scooterrental.repository.ScooterRepository;
+import com.example.scooterrental.repository.ScooterStatusCount;
 import com.example.scooterrental.service.ScooterService;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @ExtendWith(MockitoExtension.class)
 public class RentalPointServiceImplTest {
 
     @Mock private RentalPointRepository rentalPointRepository;
 
+    @Mock private RentalPointClosureRepository closureRepository;
+
+    @Mock private ScooterRepository scooterRepository;
+
     @Mock private ScooterService scooterService;
 
+    @Mock private FleetStateStore fleetStateStore;
+
+    @Mock private RentalPointHierarchyStore hierarchyStore;
+
+    @Mock private MapClusterIndex mapClusterIndex;
+
+    @Mock private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks private RentalPointServiceImpl rentalPointService;
 
     private RentalPoint rentalPoint1;
@@ -38,11 +70,14 @@ public class RentalPointServiceImplTest {
 
     @BeforeEach
     void setUp() {
-        rentalPoint1 = new RentalPoint(1L, "Точка 1", "Адрес 1", 55.75, 37.62, null, null, null);
-        rentalPoint2 = new RentalPoint(2L, "Точка 2", "Адрес 2", 55.76, 37.63, null, null, null);
+        rentalPoint1 =
+                new RentalPoint(1L, "Точка 1", "Адрес 1", 55.75, 37.62, null, null, null, null);
+        rentalPoint2 =
+                new RentalPoint(2L, "Точка 2", "Адрес 2", 55.76, 37.63, null, null, null, null);
         rentalPointDto1 = new RentalPointDto(null, "Точка DTO", "Адрес DTO", 55.77, 37.64, null);
 
-        new RentalPointInfoDto(1L, "Точка 1", "Адрес 1", 55.75, 37.62, null, null, null);
+        new RentalPointInfoDto(
+                1L, "Точка 1", "Адрес 1", 55.75, 37.62, null, null, null, null);
     }
 
     @Test
@@ -64,30 +99,68 @@ public class RentalPointServiceImplTest {
         assertEquals(savedRentalPoint.getAddress(), createdRentalPoint.getAddress());
         assertEquals(savedRentalPoint.getId(), createdRentalPoint.getId());
         verify(rentalPointRepository, times(1)).save(any(RentalPoint.class));
+        verify(closureRepository).insertSelf(1L);
+        verify(closureRepository, never()).attachSubtree(anyLong(), anyLong());
+        ArgumentCaptor<RentalPointChangedEvent> captor =
+                ArgumentCaptor.forClass(RentalPointChangedEvent.class);
+        verify(eventPublisher, times(1)).publishEvent(captor.capture());
+        assertEquals(1L, captor.getValue().getRentalPointId());
+        assertEquals(rentalPointDto1.getLatitude(), captor.getValue().getLatitude());
     }
 
     @Test
     void getRentalPointById_ShouldReturnRentalPointDto_WhenRentalPointExists()
             throws RentalPointNotFoundException {
-        when(rentalPointRepository.findById(1L)).thenReturn(Optional.of(rentalPoint1));
-        when(scooterService.getScootersByRentalPoint(anyLong())).thenReturn(List.of());
+        hierarchy(rentalPoint1);
+        when(scooterService.getScootersByRentalPoints(any())).thenReturn(Map.of());
 
-        RentalPointInfoDto rentalPointDto = rentalPointService.getRentalPointById(1L);
+        RentalPointInfoDto rentalPointDto =
+                rentalPointService.getRentalPointById(1L, RentalPointViewDto.full());
 
         assertNotNull(rentalPointDto);
         assertEquals(rentalPoint1.getId(), rentalPointDto.getId());
         assertEquals(rentalPoint1.getName(), rentalPointDto.getName());
-        verify(rentalPointRepository, times(1)).findById(1L);
+        assertTrue(rentalPointDto.getScooters().isEmpty());
+        verifyNoInteractions(rentalPointRepository);
+    }
+
+    @Test
+    void getRentalPointById_ShouldAssembleSubtreeFromPreloadedRows()
+            throws RentalPointNotFoundException {
+        RentalPoint district =
+                new RentalPoint(3L, "Район", "Адрес 3", 55.0, 37.0, null, rentalPoint1, null, null);
+        rentalPoint2.setParentPoint(rentalPoint1);
+        RentalPoint corner =
+                new RentalPoint(4L, "Угол", "Адрес 4", 55.0, 37.0, null, district, null, null);
+        hierarchy(rentalPoint1, rentalPoint2, district, corner);
+        ScooterInfoDto scooter = new ScooterInfoDto();
+        scooter.setId(7L);
+        scooter.setRentalPointId(4L);
+        when(scooterService.getScootersByRentalPoints(Set.of(1L, 2L, 3L, 4L)))
+                .thenReturn(Map.of(4L, List.of(scooter)));
+
+        RentalPointInfoDto root =
+                rentalPointService.getRentalPointById(1L, RentalPointViewDto.full());
+
+        assertEquals(
+                List.of(2L, 3L),
+                root.getChildPoints().stream().map(RentalPointInfoDto::getId).toList());
+        RentalPointInfoDto leaf = root.getChildPoints().get(1).getChildPoints().get(0);
+        assertEquals(4L, leaf.getId());
+        assertEquals(3L, leaf.getParentPointId());
+        assertEquals(List.of(scooter), leaf.getScooters());
+        assertTrue(root.getScooters().isEmpty());
+        verify(scooterService, never()).getScootersByRentalPoint(anyLong());
     }
 
     @Test
     void getRentalPointById_ShouldThrowRentalPointNotFoundException_WhenRentalPointDoesNotExist() {
-        when(rentalPointRepository.findById(1L)).thenReturn(Optional.empty());
+        hierarchy(rentalPoint2);
 
         assertThrows(
                 RentalPointNotFoundException.class,
-                () -> rentalPointService.getRentalPointById(1L));
-        verify(rentalPointRepository, times(1)).findById(1L);
+                () -> rentalPointService.getRentalPointById(1L, RentalPointViewDto.full()));
+        verifyNoInteractions(scooterService);
     }
 
     @Test
@@ -100,7 +173,7 @@ public class RentalPointServiceImplTest {
                 .thenAnswer(invocation -> invocation.getArgument(0));
 
         RentalPointDto updatedRentalPointDto =
-                rentalPointService.updateRentalPoint(1L, rentalPointDtoUpdate);
+                rentalPointService.updateRentalPoint(1L, rentalPointDtoUpdate, null);
 
         assertNotNull(updatedRentalPointDto);
         assertEquals(rentalPointDtoUpdate.getName(), updatedRentalPointDto.getName());
@@ -109,6 +182,35 @@ public class RentalPointServiceImplTest {
         verify(rentalPointRepository, times(1)).save(any(RentalPoint.class));
     }
 
+    @Test
+    void updateRentalPoint_ShouldMoveSubtreeInClosure_WhenParentChanges()
+            throws RentalPointNotFoundException {
+        rentalPointDto1.setParentPointId(2L);
+        when(rentalPointRepository.findById(1L)).thenReturn(Optional.of(rentalPoint1));
+        when(rentalPointRepository.findById(2L)).thenReturn(Optional.of(rentalPoint2));
+
+        rentalPointService.updateRentalPoint(1L, rentalPointDto1, null);
+
+        verify(closureRepository).lockHierarchy();
+        verify(closureRepository).detachSubtree(1L);
+        verify(closureRepository).attachSubtree(1L, 2L);
+        assertEquals(rentalPoint2, rentalPoint1.getParentPoint());
+    }
+
+    @Test
+    void updateRentalPoint_ShouldRejectMoveIntoOwnSubtree() {
+        rentalPointDto1.setParentPointId(2L);
+        when(rentalPointRepository.findById(1L)).thenReturn(Optional.of(rentalPoint1));
+        when(rentalPointRepository.findById(2L)).thenReturn(Optional.of(rentalPoint2));
+        when(closureRepository.existsByAncestorIdAndDescendantId(1L, 2L)).thenReturn(true);
+
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> rentalPointService.updateRentalPoint(1L, rentalPointDto1, null));
+        verify(closureRepository, never()).detachSubtree(anyLong());
+        verify(rentalPointRepository, never()).save(any(RentalPoint.class));
+    }
+
     @Test
     void updateRentalPoint_ShouldThrowRentalPointNotFoundException_WhenRentalPointDoesNotExist() {
         RentalPointDto rentalPointDtoUpdate =
@@ -117,7 +219,7 @@ public class RentalPointServiceImplTest {
 
         assertThrows(
                 RentalPointNotFoundException.class,
-                () -> rentalPointService.updateRentalPoint(1L, rentalPointDtoUpdate));
+                () -> rentalPointService.updateRentalPoint(1L, rentalPointDtoUpdate, null));
         verify(rentalPointRepository, times(1)).findById(1L);
         verify(rentalPointRepository, never()).save(any(RentalPoint.class));
     }
@@ -133,6 +235,26 @@ public class RentalPointServiceImplTest {
         verify(rentalPointRepository, times(1)).delete(rentalPoint1);
     }
 
+    @Test
+    void deleteRentalPoint_ShouldPublishRemovalForWholeSubtree()
+            throws RentalPointNotFoundException {
+        Scooter scooter = new Scooter();
+        scooter.setId(7L);
+        rentalPoint2.setScooters(List.of(scooter));
+        rentalPoint1.setChildPoints(List.of(rentalPoint2));
+        when(rentalPointRepository.findById(1L)).thenReturn(Optional.of(rentalPoint1));
+
+        rentalPointService.deleteRentalPoint(1L);
+
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        verify(eventPublisher, times(3)).publishEvent(captor.capture());
+        List<Object> events = captor.getAllValues();
+        assertEquals(7L, ((ScooterStateChangedEvent) events.get(0)).getScooterId());
+        assertEquals(2L, ((RentalPointChangedEvent) events.get(1)).getRentalPointId());
+        assertEquals(1L, ((RentalPointChangedEvent) events.get(2)).getRentalPointId());
+        assertTrue(((RentalPointChangedEvent) events.get(2)).isRemoved());
+    }
+
     @Test
     void deleteRentalPoint_ShouldThrowRentalPointNotFoundException_WhenRentalPointDoesNotExist() {
         when(rentalPointRepository.findById(1L)).thenReturn(Optional.empty());
@@ -145,57 +267,240 @@ public class RentalPointServiceImplTest {
 
     @Test
     void getAllRentalPoints_ShouldReturnListOfRentalPointDtos() {
-        List<RentalPoint> rentalPoints = Arrays.asList(rentalPoint1, rentalPoint2);
-        when(rentalPointRepository.findAll()).thenReturn(rentalPoints);
-        when(scooterService.getScootersByRentalPoint(anyLong())).thenReturn(List.of());
+        hierarchy(rentalPoint1, rentalPoint2);
+        when(scooterService.getScootersByRentalPoints(any())).thenReturn(Map.of());
 
-        List<RentalPointInfoDto> rentalPointDtos = rentalPointService.getAllRentalPoints();
+        List<RentalPointInfoDto> rentalPointDtos =
+                rentalPointService.getAllRentalPoints(RentalPointViewDto.full());
 
         assertNotNull(rentalPointDtos);
         assertEquals(2, rentalPointDtos.size());
-        verify(rentalPointRepository, times(1)).findAll();
+        verify(scooterService, times(1)).getScootersByRentalPoints(any());
     }
 
     @Test
     void getRootRentalPoints_ShouldReturnListOfRootRentalPointDtos() {
-        List<RentalPoint> rootRentalPoints = Arrays.asList(rentalPoint1, rentalPoint2);
-        when(rentalPointRepository.findRootRentalPoints()).thenReturn(rootRentalPoints);
-        when(scooterService.getScootersByRentalPoint(anyLong())).thenReturn(List.of());
+        RentalPoint child =
+                new RentalPoint(
+                        3L, "Дочерняя", "Адрес", 55.0, 37.0, null, rentalPoint1, null, null);
+        hierarchy(rentalPoint1, rentalPoint2, child);
+        when(scooterService.getScootersByRentalPoints(any())).thenReturn(Map.of());
 
-        List<RentalPointInfoDto> rootRentalPointDtos = rentalPointService.getRootRentalPoints();
+        List<RentalPointInfoDto> rootRentalPointDtos =
+                rentalPointService.getRootRentalPoints(RentalPointViewDto.full());
 
         assertNotNull(rootRentalPointDtos);
         assertEquals(2, rootRentalPointDtos.size());
-        verify(rentalPointRepository, times(1)).findRootRentalPoints();
+        assertEquals(3L, rootRentalPointDtos.get(0).getChildPoints().get(0).getId());
     }
 
     @Test
     void getChildRentalPoints_ShouldReturnListOfChildRentalPointDtos()
             throws RentalPointNotFoundException {
-        RentalPoint parent = new RentalPoint(3L, "Родитель", "Адрес", 55.0, 37.0, null, null, null);
+        RentalPoint parent =
+                new RentalPoint(3L, "Родитель", "Адрес", 55.0, 37.0, null, null, null, null);
         rentalPoint1.setParentPoint(parent);
         rentalPoint2.setParentPoint(parent);
-        List<RentalPoint> childRentalPoints = Arrays.asList(rentalPoint1, rentalPoint2);
-
-        when(rentalPointRepository.existsById(3L)).thenReturn(true);
-        when(rentalPointRepository.findByParentPointId(3L)).thenReturn(childRentalPoints);
-        when(scooterService.getScootersByRentalPoint(anyLong())).thenReturn(List.of());
+        hierarchy(rentalPoint1, rentalPoint2, parent);
+        when(scooterService.getScootersByRentalPoints(any())).thenReturn(Map.of());
 
-        List<RentalPointInfoDto> childRentalPointDtos = rentalPointService.getChildRentalPoints(3L);
+        List<RentalPointInfoDto> childRentalPointDtos =
+                rentalPointService.getChildRentalPoints(3L, RentalPointViewDto.full());
 
         assertNotNull(childRentalPointDtos);
         assertEquals(2, childRentalPointDtos.size());
-        verify(rentalPointRepository, times(1)).findByParentPointId(3L);
+        verifyNoInteractions(rentalPointRepository);
     }
 
     @Test
     void getChildRentalPoints_ShouldThrowRentalPointNotFoundException_WhenParentDoesNotExist() {
-        when(rentalPointRepository.existsById(3L)).thenReturn(false);
+        hierarchy(rentalPoint1);
 
         assertThrows(
                 RentalPointNotFoundException.class,
-                () -> rentalPointService.getChildRentalPoints(3L));
-        verify(rentalPointRepository, times(1)).existsById(3L);
-        verify(rentalPointRepository, never()).findByParentPointId(anyLong());
+                () -> rentalPointService.getChildRentalPoints(3L, RentalPointViewDto.full()));
+        verifyNoInteractions(scooterService);
+    }
+
+    @Test
+    void getScooterCounts_ShouldReadCountersSortedByRentalPoint() {
+        when(fleetStateStore.countsByRentalPoint())
+                .thenReturn(
+                        Map.of(
+                                2L, Map.of(ScooterStatus.AVAILABLE, 3),
+                                1L, Map.of(ScooterStatus.AVAILABLE, 5)));
+
+        List<RentalPointScooterCountsDto> counts = rentalPointService.getScooterCounts();
+
+        assertEquals(2, counts.size());
+        assertEquals(1L, counts.get(0).getRentalPointId());
+        assertEquals(5, counts.get(0).getScooterCounts().get(ScooterStatus.AVAILABLE));
+        verifyNoInteractions(rentalPointRepository);
+    }
+
+    @Test
+    void getSubtreeScooterCounts_ShouldFillMissingStatusesWithZero()
+            throws RentalPointNotFoundException {
+        when(rentalPointRepository.existsById(1L)).thenReturn(true);
+        when(scooterRepository.countByStatusUnderRentalPoint(1L))
+                .thenReturn(List.of(statusCount(ScooterStatus.AVAILABLE, 4)));
+
+        RentalPointScooterCountsDto counts = rentalPointService.getSubtreeScooterCounts(1L);
+
+        assertEquals(1L, counts.getRentalPointId());
+        assertEquals(4, counts.getScooterCounts().get(ScooterStatus.AVAILABLE));
+        assertEquals(0, counts.getScooterCounts().get(ScooterStatus.MAINTENANCE));
+        assertEquals(ScooterStatus.values().length, counts.getScooterCounts().size());
+    }
+
+    @Test
+    void getSubtreeScooterCounts_ShouldThrowRentalPointNotFoundException_WhenPointIsMissing() {
+        when(rentalPointRepository.existsById(9L)).thenReturn(false);
+
+        assertThrows(
+                RentalPointNotFoundException.class,
+                () -> rentalPointService.getSubtreeScooterCounts(9L));
+        verifyNoInteractions(scooterRepository);
+    }
+
+    @Test
+    void getMapClusters_ShouldRejectInvalidBoundsAndZoom() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> rentalPointService.getMapClusters(56, 23, 51, 33, 5));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> rentalPointService.getMapClusters(51, 23, 56, 181, 5));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> rentalPointService.getMapClusters(51, 23, 56, 33, -1));
+        assertThrows(
+                IllegalArgumentException.class,
+                () ->
+                        rentalPointService.getMapClusters(
+                                51, 23, 56, 33, MapClusterIndex.MAX_ZOOM + 1));
+        verifyNoInteractions(mapClusterIndex);
+    }
+
+    @Test
+    void getRentalPointEntityTag_ShouldTakePointVersionAndHashSubtreeWithScooters()
+            throws RentalPointNotFoundException {
+        rentalPoint2.setParentPoint(rentalPoint1);
+        hierarchy(rentalPoint1, rentalPoint2);
+        when(rentalPointRepository.findVersionById(1L)).thenReturn(Optional.of(5L));
+        when(rentalPointRepository.findSubtreeScooterDigest(1L)).thenReturn("a1b2", "c3d4");
+
+        String before = rentalPointService.getRentalPointEntityTag(1L);
+        // заряд или статистика самоката в поддереве изменились, версия точки — нет
+        String after = rentalPointService.getRentalPointEntityTag(1L);
+
+        assertTrue(before.startsWith("5-"));
+        assertTrue(after.startsWith("5-"));
+        assertNotEquals(before, after);
+        assertThrows(
+                RentalPointNotFoundException.class,
+                () -> rentalPointService.getRentalPointEntityTag(9L));
+        verify(rentalPointRepository, never()).findSubtreeScooterDigest(9L);
+    }
+
+    @Test
+    void getRentalPointEntityTag_ShouldChange_WhenChildPointChangesInSnapshot()
+            throws RentalPointNotFoundException {
+        rentalPoint2.setParentPoint(rentalPoint1);
+        when(rentalPointRepository.findVersionById(1L)).thenReturn(Optional.of(5L));
+        when(rentalPointRepository.findSubtreeScooterDigest(1L)).thenReturn("a1b2");
+        hierarchy(rentalPoint1, rentalPoint2);
+        String before = rentalPointService.getRentalPointEntityTag(1L);
+
+        rentalPoint2.setName("Точка 2, новый вход");
+        hierarchy(rentalPoint1, rentalPoint2);
+
+        assertNotEquals(before, rentalPointService.getRentalPointEntityTag(1L));
+    }
+
+    @Test
+    void updateRentalPoint_ShouldCompareIfMatchWithPointVersionOnly() {
+        rentalPoint1.setVersion(3L);
+        when(rentalPointRepository.findById(1L)).thenReturn(Optional.of(rentalPoint1));
+
+        assertThrows(
+                PreconditionFailedException.class,
+                () -> rentalPointService.updateRentalPoint(1L, rentalPointDto1, "2"));
+        verify(rentalPointRepository, never()).save(any(RentalPoint.class));
+        // самокаты и другие точки на проверку не влияют
+        verify(rentalPointRepository, never()).findSubtreeScooterDigest(anyLong());
+        verifyNoInteractions(hierarchyStore);
+    }
+
+    @Test
+    void updateRentalPoint_ShouldSave_WhenIfMatchVersionIsCurrent()
+            throws RentalPointNotFoundException {
+        rentalPoint1.setVersion(3L);
+        when(rentalPointRepository.findById(1L)).thenReturn(Optional.of(rentalPoint1));
+        when(rentalPointRepository.save(rentalPoint1)).thenReturn(rentalPoint1);
+
+        rentalPointService.updateRentalPoint(1L, rentalPointDto1, "3");
+
+        verify(rentalPointRepository, times(1)).save(rentalPoint1);
+    }
+
+    private void hierarchy(RentalPoint... rentalPoints) {
+        when(hierarchyStore.current())
+                .thenReturn(
+                        RentalPointHierarchy.of(
+                                1L,
+                                Arrays.stream(rentalPoints)
+                                        .map(RentalPointServiceImplTest::row)
+                                        .toList()));
+    }
+
+    private static RentalPointTreeRow row(RentalPoint rentalPoint) {
+        return new RentalPointTreeRow() {
+            @Override
+            public Long getId() {
+                return rentalPoint.getId();
+            }
+
+            @Override
+            public String getName() {
+                return rentalPoint.getName();
+            }
+
+            @Override
+            public String getAddress() {
+                return rentalPoint.getAddress();
+            }
+
+            @Override
+            public Double getLatitude() {
+                return rentalPoint.getLatitude();
+            }
+
+            @Override
+            public Double getLongitude() {
+                return rentalPoint.getLongitude();
+            }
+
+            @Override
+            public Long getParentPointId() {
+                return rentalPoint.getParentPoint() == null
+                        ? null
+                        : rentalPoint.getParentPoint().getId();
+            }
+        };
+    }
+
+    private static ScooterStatusCount statusCount(ScooterStatus status, long scooters) {
+        return new ScooterStatusCount() {
+            @Override
+            public ScooterStatus getStatus() {
+                return status;
+            }
+
+            @Override
+            public long getScooters() {
+                return scooters;
+            }
+        };
     }
 }
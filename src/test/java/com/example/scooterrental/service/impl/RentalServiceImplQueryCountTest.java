@@ -0,0 +1,159 @@
+package com.example.scooterrental.service.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.example.scooterrental.dto.RentalInfoDto;
+import com.example.scooterrental.model.*;
+import com.example.scooterrental.outbox.OutboxWriter;
+import com.example.scooterrental.pricing.PricingEngine;
+import com.example.scooterrental.pricing.TariffCache;
+import com.example.scooterrental.service.RentalService;
+import com.example.scooterrental.service.ScooterService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Supplier;
+
+import jakarta.persistence.EntityManagerFactory;
+
+@DataJpaTest(
+        properties = {
+            "spring.flyway.enabled=false",
+            "spring.jpa.hibernate.ddl-auto=create-drop",
+            "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+            "spring.jpa.properties.hibernate.generate_statistics=true"
+        })
+@Import({
+    RentalServiceImpl.class,
+    PricingEngine.class,
+    TariffCache.class,
+    SimpleMeterRegistry.class
+})
+public class RentalServiceImplQueryCountTest {
+
+    private static final int RENTALS_PER_SCOOTER = 5;
+
+    @Autowired private TestEntityManager entityManager;
+
+    @Autowired private EntityManagerFactory entityManagerFactory;
+
+    @Autowired private RentalService rentalService;
+
+    @MockBean private ScooterService scooterService;
+
+    @MockBean private OutboxWriter outboxWriter;
+
+    private Statistics statistics;
+    private User user;
+    private Scooter scooter;
+    private RentalPoint rentalPoint;
+
+    @BeforeEach
+    void setUp() {
+        rentalPoint =
+                entityManager.persist(
+                        new RentalPoint(
+                                null, "Центр", "Адрес", 53.9, 27.5, null, null, null, null));
+        Tariff tariff =
+                entityManager.persist(
+                        new Tariff(
+                                null, "Почасовой", null, 5.0, null, null, false, null, null, null));
+        user =
+                entityManager.persist(
+                        new User(null, "user1", "password", null, null, null, null, null));
+        LocalDateTime start = LocalDateTime.of(2024, 5, 1, 10, 0);
+        for (int i = 0; i < 3; i++) {
+            Scooter current =
+                    entityManager.persist(
+                            new Scooter(
+                                    null,
+                                    "Model " + i,
+                                    "SN" + i,
+                                    ScooterStatus.AVAILABLE,
+                                    100,
+                                    0.0,
+                                    rentalPoint,
+                                    tariff,
+                                    null));
+            for (int j = 0; j < RENTALS_PER_SCOOTER; j++) {
+                LocalDateTime rentalStart = start.plusHours(i * 10L + j);
+                // последняя аренда каждого самоката остаётся открытой
+                LocalDateTime rentalEnd =
+                        j == RENTALS_PER_SCOOTER - 1 ? null : rentalStart.plusMinutes(30);
+                entityManager.persist(
+                        new Rental(
+                                null,
+                                user,
+                                current,
+                                rentalStart,
+                                rentalEnd,
+                                0.0,
+                                1.0,
+                                2.5,
+                                tariff));
+            }
+            scooter = current;
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void getRentalsByUser_ShouldIssueSingleStatement() {
+        List<RentalInfoDto> rentals =
+                countStatements(() -> rentalService.getRentalsByUser(user.getId(), null, null));
+
+        assertEquals(3 * RENTALS_PER_SCOOTER, rentals.size());
+        assertEquals("user1", rentals.get(0).getUserUsername());
+        assertEquals("Почасовой", rentals.get(0).getTariffName());
+    }
+
+    @Test
+    void getRentalsByScooter_ShouldIssueSingleStatement() {
+        List<RentalInfoDto> rentals =
+                countStatements(
+                        () -> rentalService.getRentalsByScooter(scooter.getId(), null, null));
+
+        assertEquals(RENTALS_PER_SCOOTER, rentals.size());
+        assertEquals(scooter.getModel(), rentals.get(0).getScooterModel());
+    }
+
+    @Test
+    void getRentalHistoryByScooter_ShouldIssueSingleStatement() {
+        List<RentalInfoDto> rentals =
+                countStatements(
+                        () -> rentalService.getRentalHistoryByScooter(scooter.getId(), null, null));
+
+        assertEquals(RENTALS_PER_SCOOTER, rentals.size());
+    }
+
+    @Test
+    void getActiveRentals_ShouldIssueSingleStatement() {
+        List<RentalInfoDto> rentals =
+                countStatements(
+                        () -> rentalService.getActiveRentals(null, null, rentalPoint.getId()));
+
+        assertEquals(3, rentals.size());
+        assertTrue(rentals.stream().allMatch(rental -> rental.getEndTime() == null));
+    }
+
+    private <T> T countStatements(Supplier<T> call) {
+        T result = call.get();
+        assertEquals(1, statistics.getPrepareStatementCount());
+        return result;
+    }
+}
@@ -2,16 +2,26 @@ package com.example.scooterrental.service.impl;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
+import com.example.scooterrental.dto.CursorPageDto;
 import com.example.scooterrental.dto.RentalDto;
 import com.example.scooterrental.dto.RentalInfoDto;
+import com.example.scooterrental.dto.TariffDto;
 import com.example.scooterrental.exception.RentalNotFoundException;
 import com.example.scooterrental.exception.ScooterNotFoundException;
+import com.example.scooterrental.exception.ScooterUnavailableException;
 import com.example.scooterrental.exception.UserNotFoundException;
 import com.example.scooterrental.model.*;
+import com.example.scooterrental.outbox.OutboxEventTypes;
+import com.example.scooterrental.outbox.OutboxWriter;
+import com.example.scooterrental.outbox.RentalEndedPayload;
+import com.example.scooterrental.pricing.PricingEngine;
+import com.example.scooterrental.pricing.TariffCache;
 import com.example.scooterrental.repository.RentalRepository;
 import com.example.scooterrental.repository.ScooterRepository;
+import com.example.scooterrental.repository.ScooterReservation;
 import com.example.scooterrental.repository.TariffRepository;
 import com.example.scooterrental.repository.UserRepository;
 import com.example.scooterrental.service.ScooterService;
@@ -19,14 +29,19 @@ import com.example.scooterrental.service.ScooterService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @ExtendWith(MockitoExtension.class)
 public class RentalServiceImplTest {
@@ -41,6 +56,12 @@ public class RentalServiceImplTest {
 
     @Mock private TariffRepository tariffRepository;
 
+    @Mock private TariffCache tariffCache;
+
+    @Spy private PricingEngine pricingEngine = new PricingEngine();
+
+    @Mock private OutboxWriter outboxWriter;
+
     @InjectMocks private RentalServiceImpl rentalService;
 
     private User user;
@@ -53,8 +74,21 @@ public class RentalServiceImplTest {
     @BeforeEach
     void setUp() {
         user = new User(1L, "user1", "password", "Имя", "Фамилия", "email", "телефон", null);
-        scooter = new Scooter(1L, "Model", "SN123", ScooterStatus.AVAILABLE, 100, 0.0, null, null);
-        tariff = new Tariff(1L, "TariffName", "TariffDescription", 10.0, 100.0, 0.1, true);
+        scooter =
+                new Scooter(
+                        1L, "Model", "SN123", ScooterStatus.AVAILABLE, 100, 0.0, null, null, null);
+        tariff =
+                new Tariff(
+                        1L,
+                        "TariffName",
+                        "TariffDescription",
+                        10.0,
+                        100.0,
+                        0.1,
+                        true,
+                        null,
+                        null,
+                        null);
         rental1 =
                 new Rental(
                         1L,
@@ -84,17 +118,41 @@ public class RentalServiceImplTest {
     void createRental_ShouldReturnRentalDto_WhenRentalIsCreated()
             throws UserNotFoundException, ScooterNotFoundException {
         when(userRepository.findById(1L)).thenReturn(Optional.of(user));
-        when(scooterRepository.findById(1L)).thenReturn(Optional.of(scooter));
-        when(tariffRepository.findById(1L)).thenReturn(Optional.of(tariff));
+        when(scooterService.reserveScooter(1L)).thenReturn(reservation(1L, 0.0));
+        when(scooterRepository.getReferenceById(1L)).thenReturn(scooter);
+        when(tariffCache.find(1L)).thenReturn(Optional.of(new TariffDto()));
+        when(tariffRepository.getReferenceById(1L)).thenReturn(tariff);
         when(rentalRepository.save(any(Rental.class))).thenReturn(rental1);
-        doNothing().when(scooterService).updateScooterStatus(1L, ScooterStatus.IN_USE);
 
         RentalDto createdRental = rentalService.createRental(rentalDto);
 
         assertNotNull(createdRental);
         assertEquals(rental1.getId(), createdRental.getId());
         verify(rentalRepository, times(1)).save(any(Rental.class));
-        verify(scooterService, times(1)).updateScooterStatus(1L, ScooterStatus.IN_USE);
+        verify(scooterService, times(1)).reserveScooter(1L);
+        verify(scooterRepository, never()).findById(any());
+        verify(tariffRepository, never()).findById(any());
+    }
+
+    @Test
+    void createRental_ShouldThrowIllegalArgumentException_WhenTariffDoesNotExist() {
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(scooterService.reserveScooter(1L)).thenReturn(reservation(1L, 0.0));
+        when(tariffCache.find(1L)).thenReturn(Optional.empty());
+
+        assertThrows(IllegalArgumentException.class, () -> rentalService.createRental(rentalDto));
+        verify(rentalRepository, never()).save(any(Rental.class));
+    }
+
+    @Test
+    void createRental_ShouldThrowIllegalArgumentException_WhenStartTimeIsFarFromNow() {
+        rentalDto.setStartTime(LocalDateTime.now().minusDays(40));
+
+        assertThrows(IllegalArgumentException.class, () -> rentalService.createRental(rentalDto));
+
+        rentalDto.setStartTime(LocalDateTime.now().plusHours(1));
+        assertThrows(IllegalArgumentException.class, () -> rentalService.createRental(rentalDto));
+        verifyNoInteractions(userRepository, scooterService, rentalRepository);
     }
 
     @Test
@@ -103,19 +161,31 @@ public class RentalServiceImplTest {
 
         assertThrows(UserNotFoundException.class, () -> rentalService.createRental(rentalDto));
         verify(rentalRepository, never()).save(any(Rental.class));
-        verify(scooterService, never()).updateScooterStatus(any(), any());
-        verify(tariffRepository, never()).findById(any());
+        verify(scooterService, never()).reserveScooter(any());
+        verify(tariffCache, never()).find(any());
     }
 
     @Test
     void createRental_ShouldThrowScooterNotFoundException_WhenScooterDoesNotExist() {
         when(userRepository.findById(1L)).thenReturn(Optional.of(user));
-        when(scooterRepository.findById(1L)).thenReturn(Optional.empty());
+        when(scooterService.reserveScooter(1L))
+                .thenThrow(new ScooterNotFoundException("Самокат с ID 1 не найден"));
 
         assertThrows(ScooterNotFoundException.class, () -> rentalService.createRental(rentalDto));
         verify(rentalRepository, never()).save(any(Rental.class));
-        verify(scooterService, never()).updateScooterStatus(any(), any());
-        verify(tariffRepository, never()).findById(any());
+        verify(tariffCache, never()).find(any());
+    }
+
+    @Test
+    void createRental_ShouldThrowScooterUnavailableException_WhenScooterIsAlreadyTaken() {
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(scooterService.reserveScooter(1L))
+                .thenThrow(new ScooterUnavailableException("Самокат с ID 1 недоступен для аренды"));
+
+        assertThrows(
+                ScooterUnavailableException.class, () -> rentalService.createRental(rentalDto));
+        verify(rentalRepository, never()).save(any(Rental.class));
+        verify(tariffCache, never()).find(any());
     }
 
     @Test
@@ -138,38 +208,193 @@ public class RentalServiceImplTest {
     }
 
     @Test
-    void getAllRentals_ShouldReturnListOfRentalDtos() {
-        List<Rental> rentals = Arrays.asList(rental1, rental2);
-        when(rentalRepository.findAll()).thenReturn(rentals);
+    void getRentalsPage_ShouldReturnNextCursor_WhenMoreRowsExist() {
+        LocalDateTime start = LocalDateTime.of(2024, 5, 1, 10, 0);
+        List<RentalInfoDto> rows = List.of(info(1L, start), info(2L, start), info(3L, start));
+        when(rentalRepository.findRentalInfoPage(PageRequest.of(0, 3))).thenReturn(rows);
 
-        List<RentalInfoDto> rentalDtos = rentalService.getAllRentals();
+        CursorPageDto<RentalInfoDto> page = rentalService.getRentalsPage(null, 2);
 
-        assertNotNull(rentalDtos);
-        assertEquals(2, rentalDtos.size());
-        verify(rentalRepository, times(1)).findAll();
+        assertEquals(2, page.getItems().size());
+        assertEquals(new KeysetCursor(start, 2L).encode(), page.getNextCursor());
+        verify(rentalRepository, never()).findAll();
+    }
+
+    @Test
+    void getRentalsPage_ShouldContinueAfterCursor_WhenCursorIsGiven() {
+        LocalDateTime start = LocalDateTime.of(2024, 5, 1, 10, 0);
+        String cursor = new KeysetCursor(start, 2L).encode();
+        when(rentalRepository.findRentalInfoPageAfter(start, 2L, PageRequest.of(0, 3)))
+                .thenReturn(List.of(info(3L, start.plusMinutes(1))));
+
+        CursorPageDto<RentalInfoDto> page = rentalService.getRentalsPage(cursor, 2);
+
+        assertEquals(1, page.getItems().size());
+        assertEquals(3L, page.getItems().get(0).getId());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void getRentalsPage_ShouldThrowIllegalArgumentException_WhenCursorIsMalformed() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> rentalService.getRentalsPage("not-a-cursor", 10));
+        verifyNoInteractions(rentalRepository);
+    }
+
+    @Test
+    void streamAllRentals_ShouldPassEveryRowToConsumer() {
+        LocalDateTime start = LocalDateTime.of(2024, 5, 1, 10, 0);
+        when(rentalRepository.streamAllRentalInfo())
+                .thenReturn(Stream.of(info(1L, start), info(2L, start)));
+        List<Long> ids = new ArrayList<>();
+
+        rentalService.streamAllRentals(rental -> ids.add(rental.getId()));
+
+        assertEquals(List.of(1L, 2L), ids);
     }
 
     @Test
     void getRentalsByUser_ShouldReturnListOfRentalDtos_WhenUserExists() {
-        List<Rental> rentals = Arrays.asList(rental1, rental2);
-        when(rentalRepository.findByUserId(1L)).thenReturn(rentals);
+        List<RentalInfoDto> rentals =
+                Arrays.asList(info(1L, rental1.getStartTime()), info(2L, rental2.getStartTime()));
+        when(rentalRepository.findRentalInfoByUserId(1L)).thenReturn(rentals);
 
-        List<RentalInfoDto> rentalDtos = rentalService.getRentalsByUser(1L);
+        List<RentalInfoDto> rentalDtos = rentalService.getRentalsByUser(1L, null, null);
 
         assertNotNull(rentalDtos);
         assertEquals(2, rentalDtos.size());
-        verify(rentalRepository, times(1)).findByUserId(1L);
+        verify(rentalRepository, times(1)).findRentalInfoByUserId(1L);
     }
 
     @Test
     void getRentalsByScooter_ShouldReturnListOfRentalDtos_WhenScooterExists() {
-        List<Rental> rentals = Arrays.asList(rental1, rental2);
-        when(rentalRepository.findByScooterId(1L)).thenReturn(rentals);
+        List<RentalInfoDto> rentals =
+                Arrays.asList(info(1L, rental1.getStartTime()), info(2L, rental2.getStartTime()));
+        when(rentalRepository.findRentalInfoByScooterId(1L)).thenReturn(rentals);
 
-        List<RentalInfoDto> rentalDtos = rentalService.getRentalsByScooter(1L);
+        List<RentalInfoDto> rentalDtos = rentalService.getRentalsByScooter(1L, null, null);
 
         assertNotNull(rentalDtos);
         assertEquals(2, rentalDtos.size());
-        verify(rentalRepository, times(1)).findByScooterId(1L);
+        verify(rentalRepository, times(1)).findRentalInfoByScooterId(1L);
+    }
+
+    @Test
+    void getRentalHistoryByScooter_ShouldUseWindowedQuery_WhenWindowIsGiven() {
+        LocalDateTime from = LocalDateTime.of(2024, 5, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2024, 6, 1, 0, 0);
+        when(rentalRepository.findRentalInfoByScooterIdInWindow(1L, from, to))
+                .thenReturn(List.of(info(1L, from.plusDays(3))));
+
+        List<RentalInfoDto> rentalDtos = rentalService.getRentalHistoryByScooter(1L, from, to);
+
+        assertEquals(1, rentalDtos.size());
+        verify(rentalRepository, never()).findRentalInfoByScooterId(any());
+    }
+
+    @Test
+    void getRentalsByUser_ShouldThrowIllegalArgumentException_WhenWindowIsIncomplete() {
+        LocalDateTime from = LocalDateTime.of(2024, 5, 1, 0, 0);
+
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> rentalService.getRentalsByUser(1L, from, null));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> rentalService.getRentalsByUser(1L, from, from));
+        verifyNoInteractions(rentalRepository);
+    }
+
+    @Test
+    void getActiveRentals_ShouldReturnOnlyOpenRentals_ForGivenFilters() {
+        RentalInfoDto openRental = info(3L, LocalDateTime.now());
+        when(rentalRepository.findActiveRentalInfo(1L, null, 2L)).thenReturn(List.of(openRental));
+
+        List<RentalInfoDto> rentalDtos = rentalService.getActiveRentals(1L, null, 2L);
+
+        assertEquals(1, rentalDtos.size());
+        assertEquals(3L, rentalDtos.get(0).getId());
+        assertNull(rentalDtos.get(0).getEndTime());
+        verify(rentalRepository, never()).findAll();
+    }
+
+    @Test
+    void endRental_ShouldChargeCompiledTariffPrice_WhenRentalIsOpen()
+            throws RentalNotFoundException, ScooterNotFoundException {
+        Rental openRental =
+                new Rental(
+                        3L,
+                        user,
+                        scooter,
+                        LocalDateTime.now().minusMinutes(30),
+                        null,
+                        0.0,
+                        null,
+                        null,
+                        tariff);
+        when(rentalRepository.findById(3L)).thenReturn(Optional.of(openRental));
+        when(scooterService.releaseScooter(1L)).thenReturn(Optional.of(reservation(1L, 12.5)));
+
+        RentalDto endedRental = rentalService.endRental(3L);
+
+        // абонемент 100.0 со скидкой 10%
+        assertEquals(90.0, endedRental.getTotalCost());
+        assertNotNull(endedRental.getEndTime());
+        // пробег берётся из строки, возвращённой условным UPDATE
+        assertEquals(12.5, endedRental.getEndMileage());
+        verify(scooterService, never()).updateScooterStatus(any(), any());
+        verify(rentalRepository, times(1)).save(openRental);
+        // статистику самоката пополняет обработчик события, поэтому в нём всё нужное для неё
+        ArgumentCaptor<RentalEndedPayload> payload =
+                ArgumentCaptor.forClass(RentalEndedPayload.class);
+        verify(outboxWriter, times(1))
+                .append(eq(OutboxEventTypes.RENTAL_ENDED), eq(3L), payload.capture());
+        assertEquals(1L, payload.getValue().getScooterId());
+        assertEquals(90.0, payload.getValue().getTotalCost());
+        assertEquals(0.0, payload.getValue().getStartMileage());
+        assertEquals(12.5, payload.getValue().getEndMileage());
+        assertEquals(endedRental.getEndTime(), payload.getValue().getEndTime());
+    }
+
+    @Test
+    void endRental_ShouldThrowIllegalArgumentException_WhenRentalAlreadyEnded() {
+        when(rentalRepository.findById(1L)).thenReturn(Optional.of(rental1));
+
+        assertThrows(IllegalArgumentException.class, () -> rentalService.endRental(1L));
+        verify(rentalRepository, never()).save(any(Rental.class));
+        verify(pricingEngine, never()).pricingFor(any());
+        verifyNoInteractions(outboxWriter);
+    }
+
+    private RentalInfoDto info(Long id, LocalDateTime startTime) {
+        RentalInfoDto dto = new RentalInfoDto();
+        dto.setId(id);
+        dto.setStartTime(startTime);
+        return dto;
+    }
+
+    private ScooterReservation reservation(Long id, Double mileage) {
+        return new ScooterReservation() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Double getMileage() {
+                return mileage;
+            }
+
+            @Override
+            public Integer getChargeLevel() {
+                return 100;
+            }
+
+            @Override
+            public Long getRentalPointId() {
+                return null;
+            }
+        };
     }
 }
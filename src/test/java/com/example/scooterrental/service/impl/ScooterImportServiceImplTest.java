@@ -0,0 +1,299 @@
+package com.example.scooterrental.service.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.example.scooterrental.dto.ScooterImportResultDto;
+import com.example.scooterrental.event.ScooterStateChangedEvent;
+import com.example.scooterrental.model.ScooterStatus;
+import com.example.scooterrental.repository.RentalPointRepository;
+import com.example.scooterrental.repository.ScooterImportRow;
+import com.example.scooterrental.repository.ScooterRepository;
+import com.example.scooterrental.repository.TariffRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jakarta.validation.Validation;
+import jakarta.validation.ValidatorFactory;
+
+@ExtendWith(MockitoExtension.class)
+public class ScooterImportServiceImplTest {
+
+    private static final String HEADER = "model,serialNumber,status,chargeLevel,rentalPointId\n";
+
+    @Mock private ScooterRepository scooterRepository;
+
+    @Mock private RentalPointRepository rentalPointRepository;
+
+    @Mock private TariffRepository tariffRepository;
+
+    @Mock private PlatformTransactionManager transactionManager;
+
+    @Mock private ApplicationEventPublisher eventPublisher;
+
+    private ValidatorFactory validatorFactory;
+    private ScooterImportServiceImpl scooterImportService;
+    private final List<Integer> insertedBatchSizes = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        scooterImportService =
+                new ScooterImportServiceImpl(
+                        scooterRepository,
+                        rentalPointRepository,
+                        tariffRepository,
+                        transactionManager,
+                        new ObjectMapper(),
+                        validatorFactory.getValidator(),
+                        eventPublisher,
+                        2,
+                        10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Test
+    void importCsv_ShouldInsertValidRowsInBatchesAndPublishState() throws Exception {
+        insertAll();
+        when(rentalPointRepository.findExistingIds(any())).thenReturn(List.of(10L));
+
+        ScooterImportResultDto result =
+                scooterImportService.importCsv(
+                        csv(
+                                HEADER
+                                        + "\"Ninebot, Max\",SN1,available,90,10\n"
+                                        + "Xiaomi,SN2,AVAILABLE,80,10\n"
+                                        + "\n"
+                                        + "Xiaomi,SN3,MAINTENANCE,5,\n"));
+
+        assertEquals(3, result.getTotal());
+        assertEquals(3, result.getImported());
+        assertEquals(0, result.getFailed());
+        assertEquals(List.of(2, 1), insertedBatchSizes);
+        // точка 10 уже проверена в первой пачке и повторно не запрашивается
+        verify(rentalPointRepository, times(1)).findExistingIds(any());
+        verifyNoInteractions(tariffRepository);
+        ArgumentCaptor<ScooterStateChangedEvent> events =
+                ArgumentCaptor.forClass(ScooterStateChangedEvent.class);
+        verify(eventPublisher, times(3)).publishEvent(events.capture());
+        assertEquals(ScooterStatus.MAINTENANCE, events.getAllValues().get(2).getStatus());
+        // каждая пачка берёт один блок id, а не по значению последовательности на строку
+        verify(scooterRepository, times(2)).allocateIdBlocks(1);
+        assertEquals(2L, events.getAllValues().get(1).getScooterId());
+        assertEquals(51L, events.getAllValues().get(2).getScooterId());
+        assertNull(events.getAllValues().get(2).getRentalPointId());
+    }
+
+    @Test
+    void importCsv_ShouldReportEveryRejectedRow() throws Exception {
+        insertAll();
+        when(rentalPointRepository.findExistingIds(any())).thenReturn(List.of(10L));
+        when(scooterRepository.findExistingSerialNumbers(any())).thenReturn(List.of("SN5"));
+
+        ScooterImportResultDto result =
+                scooterImportService.importCsv(
+                        csv(
+                                HEADER
+                                        + "Xiaomi,SN1,AVAILABLE,150,10\n"
+                                        + "Xiaomi,SN2,FLYING,50,10\n"
+                                        + "Xiaomi,SN3,AVAILABLE,50,99\n"
+                                        + "Xiaomi,SN3,AVAILABLE,50,10\n"
+                                        + "Xiaomi,SN5,AVAILABLE,50,10\n"
+                                        + "Xiaomi,SN6,AVAILABLE\n"
+                                        + "Xiaomi,SN7,AVAILABLE,50,10\n"
+                                        + "Xiaomi,SN8,IN_USE,50,10\n"));
+
+        assertEquals(8, result.getTotal());
+        assertEquals(2, result.getImported());
+        assertEquals(6, result.getFailed());
+        assertEquals(
+                List.of(
+                        "2:Некорректное значение в столбце status: FLYING",
+                        "1:Уровень заряда не может превышать 100",
+                        "3:Точка проката с ID 99 не найдена",
+                        "5:Самокат с таким серийным номером уже существует",
+                        "6:Ожидалось столбцов: 5, получено: 3",
+                        "8:Самокат нельзя создать в статусе IN_USE"),
+                messages(result));
+    }
+
+    @Test
+    void importCsv_ShouldRejectRowsLostToConcurrentInsert() throws Exception {
+        allocateIds();
+        when(scooterRepository.insertIgnoringDuplicates(
+                        any(), any(), any(), any(), any(), any(), any(), any()))
+                .thenReturn(List.of(row(1L, "SN1")));
+
+        ScooterImportResultDto result =
+                scooterImportService.importCsv(
+                        csv(
+                                "model,serialNumber,status,chargeLevel\n"
+                                        + "Xiaomi,SN1,AVAILABLE,50\n"
+                                        + "Xiaomi,SN2,AVAILABLE,50\n"));
+
+        assertEquals(1, result.getImported());
+        assertEquals(
+                List.of("2:Самокат с таким серийным номером уже существует"), messages(result));
+        verify(eventPublisher, times(1)).publishEvent(any(ScooterStateChangedEvent.class));
+    }
+
+    @Test
+    void importCsv_ShouldFailWholeBatch_WhenInsertThrows() throws Exception {
+        allocateIds();
+        when(scooterRepository.insertIgnoringDuplicates(
+                        any(), any(), any(), any(), any(), any(), any(), any()))
+                .thenThrow(new IllegalStateException("нарушение внешнего ключа"));
+
+        ScooterImportResultDto result =
+                scooterImportService.importCsv(
+                        csv(
+                                "model,serialNumber,status,chargeLevel\n"
+                                        + "Xiaomi,SN1,AVAILABLE,50\n"
+                                        + "Xiaomi,SN2,AVAILABLE,50\n"));
+
+        assertEquals(0, result.getImported());
+        assertEquals(2, result.getFailed());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void importCsv_ShouldRejectUnknownOrMissingColumns() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> scooterImportService.importCsv(csv("model,serialNumber,color\n")));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> scooterImportService.importCsv(csv("model,serialNumber,status\n")));
+        assertThrows(IllegalArgumentException.class, () -> scooterImportService.importCsv(csv("")));
+        verifyNoInteractions(scooterRepository);
+    }
+
+    @Test
+    void importJson_ShouldImportArrayAndStopAtMalformedTail() throws Exception {
+        insertAll();
+
+        ScooterImportResultDto result =
+                scooterImportService.importJson(
+                        csv(
+                                "[{\"model\":\"X\",\"serialNumber\":\"SN1\","
+                                        + "\"status\":\"AVAILABLE\",\"chargeLevel\":70},"
+                                        + "{\"model\":\"X\",\"serialNumber\":\"SN2\","
+                                        + "\"status\":\"BROKEN\",\"chargeLevel\":70},"
+                                        + "{\"model\":\"X\",\"serialNumber\":\"SN3\","));
+
+        assertEquals(2, result.getTotal());
+        assertEquals(1, result.getImported());
+        assertEquals(1, result.getFailed());
+        assertEquals(2, result.getErrors().size());
+        assertEquals("SN2", result.getErrors().get(0).getSerialNumber());
+        assertEquals(3, result.getErrors().get(1).getRow());
+        assertTrue(result.getErrors().get(1).getMessage().startsWith("Некорректный JSON"));
+    }
+
+    @Test
+    void importJson_ShouldCapReportedErrors() throws Exception {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 15; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"serialNumber\":\"SN").append(i).append("\"}");
+        }
+        json.append("]");
+
+        ScooterImportResultDto result = scooterImportService.importJson(csv(json.toString()));
+
+        assertEquals(15, result.getFailed());
+        assertEquals(10, result.getErrors().size());
+        assertTrue(result.isErrorsTruncated());
+        verifyNoInteractions(scooterRepository);
+    }
+
+    @Test
+    void importJson_ShouldRejectNonArrayBody() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> scooterImportService.importJson(csv("{\"model\":\"X\"}")));
+    }
+
+    @Test
+    void splitCsvLine_ShouldHandleQuotesAndEmptyFields() {
+        assertEquals(
+                Arrays.asList("a", "b, \"c\"", null, " d "),
+                ScooterImportServiceImpl.splitCsvLine("a,\"b, \"\"c\"\"\",,\" d \""));
+    }
+
+    // вставка возвращает все переданные серийные номера с выделенными им id
+    private void insertAll() {
+        allocateIds();
+        when(scooterRepository.insertIgnoringDuplicates(
+                        any(), any(), any(), any(), any(), any(), any(), any()))
+                .thenAnswer(
+                        invocation -> {
+                            Long[] ids = invocation.getArgument(0);
+                            String[] serials = invocation.getArgument(2);
+                            insertedBatchSizes.add(serials.length);
+                            List<ScooterImportRow> rows = new ArrayList<>();
+                            for (int i = 0; i < serials.length; i++) {
+                                rows.add(row(ids[i], serials[i]));
+                            }
+                            return rows;
+                        });
+    }
+
+    // последовательность выдаёт верхние границы блоков: 50, 100, ...
+    private void allocateIds() {
+        AtomicLong upper = new AtomicLong();
+        when(scooterRepository.allocateIdBlocks(anyInt()))
+                .thenAnswer(
+                        invocation -> {
+                            List<Long> blocks = new ArrayList<>();
+                            for (int i = 0; i < (int) invocation.getArgument(0); i++) {
+                                blocks.add(upper.addAndGet(50));
+                            }
+                            return blocks;
+                        });
+    }
+
+    private static List<String> messages(ScooterImportResultDto result) {
+        return result.getErrors().stream()
+                .map(error -> error.getRow() + ":" + error.getMessage())
+                .toList();
+    }
+
+    private static ScooterImportRow row(Long id, String serialNumber) {
+        return new ScooterImportRow() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getSerialNumber() {
+                return serialNumber;
+            }
+        };
+    }
+
+    private static ByteArrayInputStream csv(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
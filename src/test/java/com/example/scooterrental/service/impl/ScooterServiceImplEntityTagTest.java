@@ -0,0 +1,122 @@
+package com.example.scooterrental.service.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.example.scooterrental.exception.ScooterNotFoundException;
+import com.example.scooterrental.fleet.FleetStateStore;
+import com.example.scooterrental.fleet.RentalPointIndex;
+import com.example.scooterrental.model.RentalPoint;
+import com.example.scooterrental.model.Scooter;
+import com.example.scooterrental.model.ScooterStatus;
+import com.example.scooterrental.service.ScooterService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+// ETag самоката на H2: телеметрия и статистика меняют тело ответа без роста версии,
+// поэтому тег обязан меняться вместе с ними
+@DataJpaTest(
+        properties = {
+            "spring.flyway.enabled=false",
+            "spring.jpa.hibernate.ddl-auto=create-drop",
+            "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect"
+        })
+@Import({ScooterServiceImpl.class, FleetStateStore.class, RentalPointIndex.class})
+public class ScooterServiceImplEntityTagTest {
+
+    @Autowired private TestEntityManager entityManager;
+
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    @Autowired private FleetStateStore fleetStateStore;
+
+    @Autowired private ScooterService scooterService;
+
+    private TelemetryServiceImpl telemetryService;
+    private Long scooterId;
+
+    @BeforeEach
+    void setUp() {
+        telemetryService =
+                new TelemetryServiceImpl(
+                        jdbcTemplate,
+                        transactionManager,
+                        new ObjectMapper(),
+                        fleetStateStore,
+                        new SimpleMeterRegistry(),
+                        100,
+                        10);
+        RentalPoint point =
+                entityManager.persist(
+                        new RentalPoint(
+                                null, "Точка", "Адрес", 53.9, 27.5, null, null, null, null));
+        scooterId =
+                entityManager
+                        .persist(
+                                new Scooter(
+                                        null,
+                                        "Ninebot",
+                                        "SN-1",
+                                        ScooterStatus.AVAILABLE,
+                                        80,
+                                        10.0,
+                                        point,
+                                        null,
+                                        null))
+                        .getId();
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void getScooterEntityTag_ShouldChange_WhenTelemetryIsFlushed()
+            throws IOException, ScooterNotFoundException {
+        String before = scooterService.getScooterEntityTag(scooterId);
+
+        telemetryService.ingest(
+                new ByteArrayInputStream(
+                        ("{\"scooterId\":" + scooterId + ",\"chargeLevel\":40,\"mileage\":15.0}")
+                                .getBytes(StandardCharsets.UTF_8)));
+        assertEquals(1, telemetryService.flush());
+        String after = scooterService.getScooterEntityTag(scooterId);
+
+        assertNotEquals(before, after);
+        // версия для If-Match при этом прежняя
+        assertEquals(version(before), version(after));
+    }
+
+    @Test
+    void getScooterEntityTag_ShouldChange_WhenStatsAreApplied() throws ScooterNotFoundException {
+        String before = scooterService.getScooterEntityTag(scooterId);
+
+        jdbcTemplate.update(
+                "INSERT INTO scooter_stats (scooter_id, rides, revenue_minor, distance, "
+                        + "ride_minutes, last_ride_at, updated_at) "
+                        + "VALUES (?, 1, 9000, 5.0, 30, ?, ?)",
+                scooterId,
+                LocalDateTime.of(2024, 5, 1, 10, 30),
+                LocalDateTime.of(2024, 5, 1, 10, 30));
+
+        assertNotEquals(before, scooterService.getScooterEntityTag(scooterId));
+    }
+
+    private static String version(String tag) {
+        return tag.substring(0, tag.indexOf('-'));
+    }
+}
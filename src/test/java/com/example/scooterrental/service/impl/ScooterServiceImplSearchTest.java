@@ -0,0 +1,229 @@
+package com.example.scooterrental.service.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.example.scooterrental.dto.CursorPageDto;
+import com.example.scooterrental.dto.ScooterInfoDto;
+import com.example.scooterrental.dto.ScooterSearchFilterDto;
+import com.example.scooterrental.fleet.FleetStateStore;
+import com.example.scooterrental.fleet.RentalPointIndex;
+import com.example.scooterrental.fleet.ScooterChangeStream;
+import com.example.scooterrental.model.RentalPoint;
+import com.example.scooterrental.model.Scooter;
+import com.example.scooterrental.model.ScooterStatus;
+import com.example.scooterrental.model.Tariff;
+import com.example.scooterrental.service.ScooterService;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Поиск на H2 с индексами из миграции V11: фильтры, keyset-пагинация и план запроса.
+// Внешние ключи не создаются: H2 индексирует их автоматически, а PostgreSQL — нет, и такой
+// индекс перехватил бы план у составного
+@DataJpaTest(
+        properties = {
+            "spring.flyway.enabled=false",
+            "spring.jpa.hibernate.ddl-auto=create-drop",
+            "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+            "spring.jpa.properties.hibernate.hbm2ddl.default_constraint_mode=NO_CONSTRAINT",
+            "spring.jpa.properties.hibernate.criteria.value_handling_mode=inline",
+            "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                    + "com.example.scooterrental.service.impl."
+                    + "ScooterServiceImplSearchTest$CapturingInspector"
+        })
+@Import({
+    ScooterServiceImpl.class,
+    FleetStateStore.class,
+    RentalPointIndex.class,
+    ScooterChangeStream.class
+})
+public class ScooterServiceImplSearchTest {
+
+    private static final String MIGRATION = "db/migration/V11__scooter_search_indexes.sql";
+    private static final int POINTS = 10;
+    private static final int SCOOTERS_PER_POINT = 30;
+
+    @Autowired private TestEntityManager entityManager;
+
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    @Autowired private ScooterService scooterService;
+
+    private final List<RentalPoint> points = new ArrayList<>();
+    private Tariff tariff;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        String migration =
+                new ClassPathResource(MIGRATION).getContentAsString(StandardCharsets.UTF_8);
+        // DDL в H2 не откатывается вместе с тестом, поэтому индексы создаются один раз
+        for (String statement : migration.split(";")) {
+            String sql = statement.replaceAll("(?m)^--.*$", "").trim();
+            if (!sql.isEmpty()) {
+                jdbcTemplate.execute(
+                        sql.replaceFirst("^CREATE INDEX ", "CREATE INDEX IF NOT EXISTS "));
+            }
+        }
+
+        tariff =
+                entityManager.persist(
+                        new Tariff(
+                                null, "Почасовой", null, 5.0, null, null, false, null, null, null));
+        for (int p = 0; p < POINTS; p++) {
+            RentalPoint point =
+                    entityManager.persist(
+                            new RentalPoint(
+                                    null,
+                                    "Точка " + p,
+                                    "Адрес",
+                                    53.9,
+                                    27.5,
+                                    null,
+                                    null,
+                                    null,
+                                    null));
+            points.add(point);
+            for (int i = 0; i < SCOOTERS_PER_POINT; i++) {
+                entityManager.persist(
+                        new Scooter(
+                                null,
+                                i % 2 == 0 ? "Ninebot" : "Xiaomi",
+                                "SN-" + p + "-" + i,
+                                i % 3 == 0 ? ScooterStatus.MAINTENANCE : ScooterStatus.AVAILABLE,
+                                (i * 7) % 101,
+                                0.0,
+                                point,
+                                i % 5 == 0 ? null : tariff,
+                                null));
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        CapturingInspector.STATEMENTS.clear();
+    }
+
+    @Test
+    void searchScooters_ShouldApplyAllFilters() {
+        ScooterSearchFilterDto filter =
+                new ScooterSearchFilterDto(
+                        ScooterStatus.AVAILABLE,
+                        50,
+                        "Xiaomi",
+                        points.get(3).getId(),
+                        tariff.getId(),
+                        null);
+
+        CursorPageDto<ScooterInfoDto> page = scooterService.searchScooters(filter, "id", null, 50);
+
+        assertFalse(page.getItems().isEmpty());
+        assertNull(page.getNextCursor());
+        for (ScooterInfoDto scooter : page.getItems()) {
+            assertEquals(ScooterStatus.AVAILABLE, scooter.getStatus());
+            assertTrue(scooter.getChargeLevel() >= 50);
+            assertEquals("Xiaomi", scooter.getModel());
+            assertEquals(points.get(3).getId(), scooter.getRentalPointId());
+            assertEquals("Точка 3", scooter.getRentalPointName());
+            assertEquals("Почасовой", scooter.getTariffName());
+        }
+    }
+
+    @Test
+    void searchScooters_ShouldWalkAllPagesWithoutGapsOrRepeats() {
+        ScooterSearchFilterDto filter = new ScooterSearchFilterDto();
+        filter.setStatus(ScooterStatus.AVAILABLE);
+
+        List<ScooterInfoDto> all = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPageDto<ScooterInfoDto> page =
+                    scooterService.searchScooters(filter, "-chargeLevel", cursor, 7);
+            all.addAll(page.getItems());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(POINTS * 20, all.size());
+        assertEquals(all.size(), all.stream().map(ScooterInfoDto::getId).distinct().count());
+        for (int i = 1; i < all.size(); i++) {
+            ScooterInfoDto previous = all.get(i - 1);
+            ScooterInfoDto current = all.get(i);
+            assertTrue(
+                    previous.getChargeLevel() > current.getChargeLevel()
+                            || (previous.getChargeLevel().equals(current.getChargeLevel())
+                                    && previous.getId() > current.getId()));
+        }
+    }
+
+    @Test
+    void searchScooters_ShouldRejectCursorFromAnotherSort() {
+        CursorPageDto<ScooterInfoDto> page =
+                scooterService.searchScooters(new ScooterSearchFilterDto(), "model", null, 5);
+
+        assertThrows(
+                IllegalArgumentException.class,
+                () ->
+                        scooterService.searchScooters(
+                                new ScooterSearchFilterDto(), "id", page.getNextCursor(), 5));
+    }
+
+    @Test
+    void searchScooters_ShouldUseRentalPointStatusIndex() {
+        ScooterSearchFilterDto filter = new ScooterSearchFilterDto();
+        filter.setStatus(ScooterStatus.AVAILABLE);
+        filter.setRentalPointId(points.get(5).getId());
+
+        scooterService.searchScooters(filter, "id", null, 10);
+
+        assertTrue(
+                explainSearch().contains("IDX_SCOOTERS_RENTAL_POINT_STATUS"),
+                "план запроса не использует индекс (rental_point_id, status, id)");
+    }
+
+    @Test
+    void searchScooters_ShouldUseStatusChargeIndex() {
+        ScooterSearchFilterDto filter = new ScooterSearchFilterDto();
+        filter.setStatus(ScooterStatus.MAINTENANCE);
+        filter.setMinChargeLevel(90);
+
+        scooterService.searchScooters(filter, "chargeLevel", null, 10);
+
+        assertTrue(
+                explainSearch().contains("IDX_SCOOTERS_STATUS_CHARGE"),
+                "план запроса не использует индекс (status, charge_level, id)");
+    }
+
+    // значения фильтров подставлены в SQL литералами, остаётся только параметр LIMIT
+    private String explainSearch() {
+        String sql =
+                CapturingInspector.STATEMENTS.stream()
+                        .filter(statement -> statement.contains("from scooters"))
+                        .findFirst()
+                        .orElseThrow();
+        return String.join(
+                "\n", jdbcTemplate.queryForList("EXPLAIN " + sql, String.class, 11)).toUpperCase();
+    }
+
+    public static class CapturingInspector implements StatementInspector {
+        private static final long serialVersionUID = 1L;
+
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+}
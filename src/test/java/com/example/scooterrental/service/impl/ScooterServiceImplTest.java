@@ -1,28 +1,51 @@
 package com.example.scooterrental.service.impl;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalMatchers.aryEq;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
+import com.example.scooterrental.dto.NearbyRentalPointDto;
+import com.example.scooterrental.dto.ScooterAvailabilityDto;
+import com.example.scooterrental.dto.ScooterBulkStatusResultDto;
 import com.example.scooterrental.dto.ScooterDto;
 import com.example.scooterrental.dto.ScooterInfoDto;
+import com.example.scooterrental.dto.ScooterSearchFilterDto;
+import com.example.scooterrental.dto.ScooterStatsDto;
+import com.example.scooterrental.dto.ScooterStatusOutcomeDto;
+import com.example.scooterrental.event.ScooterStateChangedEvent;
+import com.example.scooterrental.exception.InvalidStatusTransitionException;
+import com.example.scooterrental.exception.PreconditionFailedException;
 import com.example.scooterrental.exception.RentalPointNotFoundException;
 import com.example.scooterrental.exception.ScooterNotFoundException;
+import com.example.scooterrental.exception.ScooterUnavailableException;
+import com.example.scooterrental.fleet.BoundingBox;
+import com.example.scooterrental.fleet.FleetStateStore;
+import com.example.scooterrental.fleet.RentalPointIndex;
 import com.example.scooterrental.model.RentalPoint;
 import com.example.scooterrental.model.Scooter;
+import com.example.scooterrental.model.ScooterStats;
 import com.example.scooterrental.model.ScooterStatus;
 import com.example.scooterrental.model.Tariff;
 import com.example.scooterrental.repository.RentalPointRepository;
 import com.example.scooterrental.repository.ScooterRepository;
+import com.example.scooterrental.repository.ScooterReservation;
+import com.example.scooterrental.repository.ScooterStateRow;
+import com.example.scooterrental.repository.ScooterStatsRepository;
+import com.example.scooterrental.repository.ScooterTagRow;
 import com.example.scooterrental.repository.TariffRepository;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
+import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
@@ -36,6 +59,15 @@ public class ScooterServiceImplTest {
 
     @Mock private TariffRepository tariffRepository;
 
+    @Mock private ScooterStatsRepository scooterStatsRepository;
+
+    @Mock private FleetStateStore fleetStateStore;
+
+    @Mock private RentalPointIndex rentalPointIndex;
+
+
+    @Mock private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks private ScooterServiceImpl scooterService;
 
     private Scooter scooter1;
@@ -46,8 +78,9 @@ public class ScooterServiceImplTest {
 
     @BeforeEach
     void setUp() {
-        rentalPoint1 = new RentalPoint(1L, "Точка1", "Адрес1", 1.0, 1.0, null, null, null);
-        tariff1 = new Tariff(1L, "Почасовой", "Описание", 100.0, null, null, false);
+        rentalPoint1 = new RentalPoint(1L, "Точка1", "Адрес1", 1.0, 1.0, null, null, null, null);
+        tariff1 =
+                new Tariff(1L, "Почасовой", "Описание", 100.0, null, null, false, null, null, null);
         scooter1 =
                 new Scooter(
                         1L,
@@ -57,7 +90,8 @@ public class ScooterServiceImplTest {
                         80,
                         100.0,
                         rentalPoint1,
-                        tariff1);
+                        tariff1,
+                        null);
         scooter2 =
                 new Scooter(
                         2L,
@@ -67,7 +101,8 @@ public class ScooterServiceImplTest {
                         50,
                         200.0,
                         rentalPoint1,
-                        tariff1);
+                        tariff1,
+                        null);
         scooterDto1 =
                 new ScooterDto(
                         null, "Model DTO", "SN DTO", ScooterStatus.AVAILABLE, 90, 50.0, 1L, 1L);
@@ -98,6 +133,11 @@ public class ScooterServiceImplTest {
         assertEquals(savedScooter.getModel(), createdScooter.getModel());
         assertEquals(savedScooter.getSerialNumber(), createdScooter.getSerialNumber());
         verify(scooterRepository, times(1)).save(any(Scooter.class));
+        ScooterStateChangedEvent event = captureStateEvent();
+        assertEquals(1L, event.getScooterId());
+        assertEquals(ScooterStatus.AVAILABLE, event.getStatus());
+        assertEquals(90, event.getChargeLevel());
+        assertEquals(1L, event.getRentalPointId());
     }
 
     @Test
@@ -113,6 +153,19 @@ public class ScooterServiceImplTest {
         assertEquals("Самокат с таким серийным номером уже существует", thrown.getMessage());
     }
 
+    @Test
+    void createScooter_ShouldThrowInvalidStatusTransitionException_WhenStatusIsInUse() {
+        scooterDto1.setStatus(ScooterStatus.IN_USE);
+
+        InvalidStatusTransitionException thrown =
+                assertThrows(
+                        InvalidStatusTransitionException.class,
+                        () -> scooterService.createScooter(scooterDto1));
+
+        assertEquals("Самокат нельзя создать в статусе IN_USE", thrown.getMessage());
+        verify(scooterRepository, never()).save(any(Scooter.class));
+    }
+
     @Test
     void createScooter_ShouldThrowRentalPointNotFoundException_WhenRentalPointDoesNotExist() {
         when(scooterRepository.existsBySerialNumber(anyString())).thenReturn(false);
@@ -157,7 +210,7 @@ public class ScooterServiceImplTest {
         when(scooterRepository.save(any(Scooter.class)))
                 .thenAnswer(invocation -> invocation.getArgument(0));
 
-        ScooterDto updatedScooterDto = scooterService.updateScooter(1L, scooterDtoUpdate);
+        ScooterDto updatedScooterDto = scooterService.updateScooter(1L, scooterDtoUpdate, null);
 
         assertNotNull(updatedScooterDto);
         assertEquals(scooterDtoUpdate.getModel(), updatedScooterDto.getModel());
@@ -175,7 +228,7 @@ public class ScooterServiceImplTest {
 
         assertThrows(
                 ScooterNotFoundException.class,
-                () -> scooterService.updateScooter(1L, scooterDtoUpdate));
+                () -> scooterService.updateScooter(1L, scooterDtoUpdate, null));
         verify(scooterRepository, times(1)).findById(1L);
         verify(scooterRepository, never()).save(any(Scooter.class));
     }
@@ -190,11 +243,52 @@ public class ScooterServiceImplTest {
 
         assertThrows(
                 RentalPointNotFoundException.class,
-                () -> scooterService.updateScooter(1L, scooterDtoUpdate));
+                () -> scooterService.updateScooter(1L, scooterDtoUpdate, null));
         verify(scooterRepository, times(1)).findById(1L);
         verify(scooterRepository, never()).save(any(Scooter.class));
     }
 
+    @Test
+    void updateScooter_ShouldRejectStaleVersion() {
+        scooter1.setVersion(4L);
+        when(scooterRepository.findById(1L)).thenReturn(Optional.of(scooter1));
+
+        assertThrows(
+                PreconditionFailedException.class,
+                () -> scooterService.updateScooter(1L, scooterDto1, "3"));
+        verify(scooterRepository, never()).save(any(Scooter.class));
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void updateScooterStatus_ShouldApplyChange_WhenVersionMatches()
+            throws ScooterNotFoundException {
+        scooter1.setVersion(4L);
+        when(scooterRepository.findById(1L)).thenReturn(Optional.of(scooter1));
+
+        scooterService.updateScooterStatus(1L, ScooterStatus.MAINTENANCE, "4");
+
+        assertEquals(ScooterStatus.MAINTENANCE, scooter1.getStatus());
+    }
+
+    @Test
+    void getScooterEntityTag_ShouldKeepVersionAndHashDeviceFields()
+            throws ScooterNotFoundException {
+        when(scooterRepository.findTagRowById(1L))
+                .thenReturn(Optional.of(tagRow(7L, 80, 10.0)), Optional.of(tagRow(7L, 79, 10.0)));
+        when(scooterRepository.findTagRowById(2L)).thenReturn(Optional.empty());
+
+        String before = scooterService.getScooterEntityTag(1L);
+        String after = scooterService.getScooterEntityTag(1L);
+
+        // заряд меняет телеметрия без роста версии, но тег обязан измениться
+        assertTrue(before.startsWith("7-"));
+        assertTrue(after.startsWith("7-"));
+        assertNotEquals(before, after);
+        assertThrows(ScooterNotFoundException.class, () -> scooterService.getScooterEntityTag(2L));
+        verify(scooterRepository, never()).findById(anyLong());
+    }
+
     @Test
     void deleteScooter_ShouldDeleteScooter_WhenScooterExists() throws ScooterNotFoundException {
         when(scooterRepository.findById(1L)).thenReturn(Optional.of(scooter1));
@@ -203,6 +297,7 @@ public class ScooterServiceImplTest {
 
         verify(scooterRepository, times(1)).findById(1L);
         verify(scooterRepository, times(1)).delete(scooter1);
+        assertTrue(captureStateEvent().isRemoved());
     }
 
     @Test
@@ -212,6 +307,7 @@ public class ScooterServiceImplTest {
         assertThrows(ScooterNotFoundException.class, () -> scooterService.deleteScooter(1L));
         verify(scooterRepository, times(1)).findById(1L);
         verify(scooterRepository, never()).delete(any(Scooter.class));
+        verifyNoInteractions(eventPublisher);
     }
 
     @Test
@@ -226,6 +322,58 @@ public class ScooterServiceImplTest {
         verify(scooterRepository, times(1)).findAll();
     }
 
+    @Test
+    void getAllScooters_ShouldAttachStatsLoadedInSingleQuery() {
+        ScooterStats stats = new ScooterStats(1L, 3L, 45050L, 12.5, 95L, null, null);
+        when(scooterRepository.findAll()).thenReturn(Arrays.asList(scooter1, scooter2));
+        when(scooterStatsRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(stats));
+
+        List<ScooterInfoDto> scooterInfoDtos = scooterService.getAllScooters();
+
+        assertEquals(3L, scooterInfoDtos.get(0).getStats().getRides());
+        assertEquals(450.5, scooterInfoDtos.get(0).getStats().getRevenue());
+        assertEquals(0L, scooterInfoDtos.get(1).getStats().getRides());
+        verify(scooterStatsRepository, times(1)).findAllById(any());
+        verify(scooterStatsRepository, never()).findById(any());
+    }
+
+    @Test
+    void getScooterStats_ShouldConvertRevenueToMajorUnits_WhenStatsExist() {
+        LocalDateTime lastRide = LocalDateTime.of(2024, 5, 1, 12, 0);
+        when(scooterStatsRepository.findById(1L))
+                .thenReturn(
+                        Optional.of(new ScooterStats(1L, 7L, 123456L, 40.0, 210L, lastRide, null)));
+
+        ScooterStatsDto stats = scooterService.getScooterStats(1L);
+
+        assertEquals(7L, stats.getRides());
+        assertEquals(1234.56, stats.getRevenue());
+        assertEquals(40.0, stats.getDistance());
+        assertEquals(210L, stats.getRideMinutes());
+        assertEquals(lastRide, stats.getLastRideAt());
+        verify(scooterRepository, never()).existsById(any());
+    }
+
+    @Test
+    void getScooterStats_ShouldReturnZeros_WhenScooterHasNoRides() {
+        when(scooterStatsRepository.findById(1L)).thenReturn(Optional.empty());
+        when(scooterRepository.existsById(1L)).thenReturn(true);
+
+        ScooterStatsDto stats = scooterService.getScooterStats(1L);
+
+        assertEquals(0L, stats.getRides());
+        assertEquals(0.0, stats.getRevenue());
+        assertNull(stats.getLastRideAt());
+    }
+
+    @Test
+    void getScooterStats_ShouldThrowScooterNotFoundException_WhenScooterDoesNotExist() {
+        when(scooterStatsRepository.findById(1L)).thenReturn(Optional.empty());
+        when(scooterRepository.existsById(1L)).thenReturn(false);
+
+        assertThrows(ScooterNotFoundException.class, () -> scooterService.getScooterStats(1L));
+    }
+
     @Test
     void updateScooterStatus_ShouldUpdateScooterStatus_WhenScooterExists()
             throws ScooterNotFoundException {
@@ -238,6 +386,7 @@ public class ScooterServiceImplTest {
         assertEquals(ScooterStatus.MAINTENANCE, scooter1.getStatus());
         verify(scooterRepository, times(1)).findById(1L);
         verify(scooterRepository, times(1)).save(any(Scooter.class));
+        assertEquals(ScooterStatus.MAINTENANCE, captureStateEvent().getStatus());
     }
 
     @Test
@@ -250,4 +399,310 @@ public class ScooterServiceImplTest {
         verify(scooterRepository, times(1)).findById(1L);
         verify(scooterRepository, never()).save(any(Scooter.class));
     }
+
+    @Test
+    void updateScooterStatus_ShouldRejectTransitionOutsideTable() {
+        when(scooterRepository.findById(2L)).thenReturn(Optional.of(scooter2));
+
+        assertThrows(
+                InvalidStatusTransitionException.class,
+                () -> scooterService.updateScooterStatus(2L, ScooterStatus.MAINTENANCE));
+        verify(scooterRepository, never()).save(any(Scooter.class));
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void updateScooterStatus_ShouldRejectLeavingInUse_WhenRentalIsOpen() {
+        when(scooterRepository.findById(2L)).thenReturn(Optional.of(scooter2));
+        when(scooterRepository.hasOpenRental(2L)).thenReturn(true);
+
+        assertThrows(
+                InvalidStatusTransitionException.class,
+                () -> scooterService.updateScooterStatus(2L, ScooterStatus.AVAILABLE));
+        assertEquals(ScooterStatus.IN_USE, scooter2.getStatus());
+        verify(scooterRepository, never()).save(any(Scooter.class));
+    }
+
+    @Test
+    void updateScooterStatuses_ShouldApplyOneUpdateAndReportEveryId() {
+        ScooterStateRow updated = stateRow(1L, ScooterStatus.UNAVAILABLE);
+        List<ScooterStateRow> current =
+                List.of(
+                        stateRow(2L, ScooterStatus.IN_USE),
+                        stateRow(3L, ScooterStatus.UNAVAILABLE));
+        when(scooterRepository.updateStatusWhereAllowed(
+                        aryEq(new Long[] {1L, 2L, 3L, 4L}),
+                        eq("UNAVAILABLE"),
+                        aryEq(new String[] {"AVAILABLE", "IN_USE", "MAINTENANCE"})))
+                .thenReturn(List.of(updated));
+        when(scooterRepository.findIdsWithOpenRental(aryEq(new Long[] {2L, 3L, 4L})))
+                .thenReturn(List.of(2L));
+        when(scooterRepository.findStateRowsByIdIn(List.of(2L, 3L, 4L))).thenReturn(current);
+
+        ScooterBulkStatusResultDto result =
+                scooterService.updateScooterStatuses(
+                        List.of(1L, 2L, 3L, 4L, 1L), ScooterStatus.UNAVAILABLE);
+
+        assertEquals(4, result.getRequested());
+        assertEquals(1, result.getUpdated());
+        assertEquals(
+                List.of(
+                        ScooterStatusOutcomeDto.Outcome.UPDATED,
+                        ScooterStatusOutcomeDto.Outcome.RENTAL_OPEN,
+                        ScooterStatusOutcomeDto.Outcome.UNCHANGED,
+                        ScooterStatusOutcomeDto.Outcome.NOT_FOUND),
+                result.getOutcomes().stream().map(ScooterStatusOutcomeDto::getOutcome).toList());
+        assertEquals(ScooterStatus.IN_USE, result.getOutcomes().get(1).getStatus());
+        ScooterStateChangedEvent event = captureStateEvent();
+        assertEquals(1L, event.getScooterId());
+        assertEquals(ScooterStatus.UNAVAILABLE, event.getStatus());
+    }
+
+    @Test
+    void updateScooterStatuses_ShouldReportInvalidTransitions() {
+        when(scooterRepository.updateStatusWhereAllowed(any(), eq("MAINTENANCE"), any()))
+                .thenReturn(List.of());
+        ScooterStateRow current = stateRow(2L, ScooterStatus.IN_USE);
+        when(scooterRepository.findStateRowsByIdIn(List.of(2L))).thenReturn(List.of(current));
+
+        ScooterBulkStatusResultDto result =
+                scooterService.updateScooterStatuses(List.of(2L), ScooterStatus.MAINTENANCE);
+
+        assertEquals(
+                ScooterStatusOutcomeDto.Outcome.INVALID_TRANSITION,
+                result.getOutcomes().get(0).getOutcome());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void updateScooterStatuses_ShouldRejectEmptyOrNullIds() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> scooterService.updateScooterStatuses(List.of(), ScooterStatus.AVAILABLE));
+        assertThrows(
+                IllegalArgumentException.class,
+                () ->
+                        scooterService.updateScooterStatuses(
+                                Arrays.asList(1L, null), ScooterStatus.AVAILABLE));
+        verifyNoInteractions(scooterRepository);
+    }
+
+    @Test
+    void reserveScooter_ShouldReturnReservation_WhenScooterIsAvailable() {
+        ScooterReservation reservation = mock(ScooterReservation.class);
+        when(reservation.getChargeLevel()).thenReturn(75);
+        when(reservation.getRentalPointId()).thenReturn(2L);
+        when(scooterRepository.reserveIfAvailable(1L)).thenReturn(Optional.of(reservation));
+
+        ScooterReservation result = scooterService.reserveScooter(1L);
+
+        assertSame(reservation, result);
+        verify(scooterRepository, never()).findById(any());
+        verify(scooterRepository, never()).existsById(any());
+        ScooterStateChangedEvent event = captureStateEvent();
+        assertEquals(ScooterStatus.IN_USE, event.getStatus());
+        assertEquals(75, event.getChargeLevel());
+        assertEquals(2L, event.getRentalPointId());
+    }
+
+    @Test
+    void reserveScooter_ShouldThrowScooterUnavailableException_WhenScooterIsAlreadyTaken() {
+        when(scooterRepository.reserveIfAvailable(1L)).thenReturn(Optional.empty());
+        when(scooterRepository.existsById(1L)).thenReturn(true);
+
+        assertThrows(ScooterUnavailableException.class, () -> scooterService.reserveScooter(1L));
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void reserveScooter_ShouldThrowScooterNotFoundException_WhenScooterDoesNotExist() {
+        when(scooterRepository.reserveIfAvailable(1L)).thenReturn(Optional.empty());
+        when(scooterRepository.existsById(1L)).thenReturn(false);
+
+        assertThrows(ScooterNotFoundException.class, () -> scooterService.reserveScooter(1L));
+    }
+
+    @Test
+    void releaseScooter_ShouldPublishAvailableState_WhenScooterWasInUse() {
+        ScooterReservation release = mock(ScooterReservation.class);
+        when(release.getChargeLevel()).thenReturn(40);
+        when(release.getRentalPointId()).thenReturn(2L);
+        when(scooterRepository.releaseIfInUse(1L)).thenReturn(Optional.of(release));
+
+        assertSame(release, scooterService.releaseScooter(1L).orElseThrow());
+
+        verify(scooterRepository, never()).save(any());
+        ScooterStateChangedEvent event = captureStateEvent();
+        assertEquals(ScooterStatus.AVAILABLE, event.getStatus());
+        assertEquals(40, event.getChargeLevel());
+    }
+
+    @Test
+    void releaseScooter_ShouldReturnEmpty_WhenScooterIsNotInUse() {
+        when(scooterRepository.releaseIfInUse(1L)).thenReturn(Optional.empty());
+
+        assertTrue(scooterService.releaseScooter(1L).isEmpty());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void getAvailability_ShouldQueryFleetStateStoreWithoutRepositories() {
+        List<ScooterAvailabilityDto> available =
+                List.of(new ScooterAvailabilityDto(1L, ScooterStatus.AVAILABLE, 80, 1L));
+        when(fleetStateStore.query(ScooterStatus.AVAILABLE, 1L, 0)).thenReturn(available);
+
+        List<ScooterAvailabilityDto> result =
+                scooterService.getAvailability(ScooterStatus.AVAILABLE, 1L, null);
+
+        assertSame(available, result);
+        verifyNoInteractions(scooterRepository, rentalPointRepository, scooterStatsRepository);
+    }
+
+    @Test
+    void findNearby_ShouldDelegateToRentalPointIndex() {
+        List<NearbyRentalPointDto> nearby =
+                List.of(new NearbyRentalPointDto(1L, "Точка", "Адрес", 53.9, 27.5, 120.0, 3));
+        when(rentalPointIndex.findNearest(53.9, 27.5, 500.0, 5)).thenReturn(nearby);
+
+        assertSame(nearby, scooterService.findNearby(53.9, 27.5, 500.0, 5));
+        verifyNoInteractions(scooterRepository, rentalPointRepository);
+    }
+
+    @Test
+    void findNearby_ShouldRejectInvalidArguments() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> scooterService.findNearby(91.0, 27.5, 500.0, 5));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> scooterService.findNearby(53.9, 27.5, 0.0, 5));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> scooterService.findNearby(53.9, 27.5, 60_000.0, 5));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> scooterService.findNearby(53.9, 27.5, 500.0, 0));
+        verifyNoInteractions(rentalPointIndex);
+    }
+
+    @Test
+    void resolveBoundingBox_ShouldBuildBoxFromAllFourBounds() {
+        BoundingBox box = scooterService.resolveBoundingBox(53.8, 27.4, 54.0, 27.7);
+
+        assertEquals(53.8, box.getMinLatitude());
+        assertEquals(27.7, box.getMaxLongitude());
+        assertTrue(box.contains(53.9, 27.5));
+        assertNull(scooterService.resolveBoundingBox(null, null, null, null));
+    }
+
+    @Test
+    void resolveBoundingBox_ShouldRejectIncompleteOrInvalidBounds() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> scooterService.resolveBoundingBox(53.8, 27.4, null, null));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> scooterService.resolveBoundingBox(54.0, 27.4, 53.8, 27.7));
+    }
+
+    @Test
+    void searchScooters_ShouldRejectUnknownSortAndBadCursor() {
+        ScooterSearchFilterDto filter = new ScooterSearchFilterDto();
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> scooterService.searchScooters(filter, "mileage", null, 10));
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> scooterService.searchScooters(filter, "id", "не-курсор", 10));
+        filter.setMinChargeLevel(101);
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> scooterService.searchScooters(filter, "id", null, 10));
+        verifyNoInteractions(scooterRepository);
+    }
+
+    private static ScooterStateRow stateRow(Long id, ScooterStatus status) {
+        return new ScooterStateRow() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public ScooterStatus getStatus() {
+                return status;
+            }
+
+            @Override
+            public Integer getChargeLevel() {
+                return 80;
+            }
+
+            @Override
+            public Long getRentalPointId() {
+                return 1L;
+            }
+        };
+    }
+
+    private ScooterStateChangedEvent captureStateEvent() {
+        ArgumentCaptor<ScooterStateChangedEvent> captor =
+                ArgumentCaptor.forClass(ScooterStateChangedEvent.class);
+        verify(eventPublisher, times(1)).publishEvent(captor.capture());
+        return captor.getValue();
+    }
+
+    private static ScooterTagRow tagRow(Long version, Integer chargeLevel, Double mileage) {
+        return new ScooterTagRow() {
+            @Override
+            public Long getVersion() {
+                return version;
+            }
+
+            @Override
+            public Integer getChargeLevel() {
+                return chargeLevel;
+            }
+
+            @Override
+            public Double getMileage() {
+                return mileage;
+            }
+
+            @Override
+            public String getRentalPointName() {
+                return "Центральная";
+            }
+
+            @Override
+            public String getTariffName() {
+                return null;
+            }
+
+            @Override
+            public Long getRides() {
+                return null;
+            }
+
+            @Override
+            public Long getRevenueMinor() {
+                return null;
+            }
+
+            @Override
+            public Double getDistance() {
+                return null;
+            }
+
+            @Override
+            public Long getRideMinutes() {
+                return null;
+            }
+
+            @Override
+            public LocalDateTime getLastRideAt() {
+                return null;
+            }
+        };
+    }
 }
@@ -5,8 +5,10 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 import com.example.scooterrental.dto.TariffDto;
+import com.example.scooterrental.event.TariffChangedEvent;
 import com.example.scooterrental.exception.TariffNotFoundException;
 import com.example.scooterrental.model.Tariff;
+import com.example.scooterrental.pricing.TariffCache;
 import com.example.scooterrental.repository.TariffRepository;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -15,6 +17,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.util.Arrays;
 import java.util.List;
@@ -25,18 +28,31 @@ public class TariffServiceImplTest {
 
     @Mock private TariffRepository tariffRepository;
 
+    @Mock private TariffCache tariffCache;
+
+    @Mock private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks private TariffServiceImpl tariffService;
 
     private Tariff tariff1;
-    private Tariff tariff2;
     private TariffDto tariffDto1;
 
     @BeforeEach
     void setUp() {
-        tariff1 = new Tariff(1L, "Почасовой", "Описание 1", 100.0, null, null, false);
-        tariff2 = new Tariff(2L, "Абонемент", "Описание 2", null, 500.0, 0.1, true);
+        tariff1 =
+                new Tariff(
+                        1L, "Почасовой", "Описание 1", 100.0, null, null, false, null, null, null);
         tariffDto1 =
-                new TariffDto(null, "Почасовой DTO", "Описание 1 DTO", 100.0, null, null, false);
+                new TariffDto(
+                        null,
+                        "Почасовой DTO",
+                        "Описание 1 DTO",
+                        100.0,
+                        null,
+                        null,
+                        false,
+                        null,
+                        null);
     }
 
     @Test
@@ -63,31 +79,62 @@ public class TariffServiceImplTest {
         verify(tariffRepository, times(1)).save(any(Tariff.class));
     }
 
+    @Test
+    void createTariff_ShouldThrowIllegalArgumentException_WhenMinimumExceedsMaximum() {
+        tariffDto1.setMinimumCharge(50.0);
+        tariffDto1.setMaximumCharge(20.0);
+
+        assertThrows(IllegalArgumentException.class, () -> tariffService.createTariff(tariffDto1));
+        verify(tariffRepository, never()).save(any(Tariff.class));
+    }
+
     @Test
     void getTariffById_ShouldReturnTariffDto_WhenTariffExists() throws TariffNotFoundException {
-        when(tariffRepository.findById(1L)).thenReturn(Optional.of(tariff1));
+        when(tariffCache.find(1L))
+                .thenReturn(
+                        Optional.of(
+                                new TariffDto(
+                                        1L,
+                                        tariff1.getName(),
+                                        null,
+                                        100.0,
+                                        null,
+                                        null,
+                                        false,
+                                        null,
+                                        null)));
 
         TariffDto tariffDto = tariffService.getTariffById(1L);
 
         assertNotNull(tariffDto);
         assertEquals(tariff1.getId(), tariffDto.getId());
         assertEquals(tariff1.getName(), tariffDto.getName());
-        verify(tariffRepository, times(1)).findById(1L);
+        verify(tariffCache, times(1)).find(1L);
+        verifyNoInteractions(tariffRepository);
     }
 
     @Test
     void getTariffById_ShouldThrowTariffNotFoundException_WhenTariffDoesNotExist() {
-        when(tariffRepository.findById(1L)).thenReturn(Optional.empty());
+        when(tariffCache.find(1L)).thenReturn(Optional.empty());
 
         assertThrows(TariffNotFoundException.class, () -> tariffService.getTariffById(1L));
-        verify(tariffRepository, times(1)).findById(1L);
+        verify(tariffCache, times(1)).find(1L);
     }
 
     @Test
     void updateTariff_ShouldReturnUpdatedTariffDto_WhenTariffExists()
             throws TariffNotFoundException {
         TariffDto tariffDtoUpdate =
-                new TariffDto(1L, "Новое название", "Новое описание", 120.0, null, null, false);
+                new TariffDto(
+                        1L,
+                        "Новое название",
+                        "Новое описание",
+                        120.0,
+                        null,
+                        null,
+                        false,
+                        null,
+                        null);
         when(tariffRepository.findById(1L)).thenReturn(Optional.of(tariff1));
         when(tariffRepository.save(any(Tariff.class)))
                 .thenAnswer(invocation -> invocation.getArgument(0));
@@ -104,7 +151,16 @@ public class TariffServiceImplTest {
     @Test
     void updateTariff_ShouldThrowTariffNotFoundException_WhenTariffDoesNotExist() {
         TariffDto tariffDtoUpdate =
-                new TariffDto(1L, "Новое название", "Новое описание", 120.0, null, null, false);
+                new TariffDto(
+                        1L,
+                        "Новое название",
+                        "Новое описание",
+                        120.0,
+                        null,
+                        null,
+                        false,
+                        null,
+                        null);
         when(tariffRepository.findById(1L)).thenReturn(Optional.empty());
 
         assertThrows(
@@ -114,6 +170,20 @@ public class TariffServiceImplTest {
         verify(tariffRepository, never()).save(any(Tariff.class));
     }
 
+    @Test
+    void updateTariff_ShouldThrowIllegalArgumentException_WhenMinimumExceedsStoredMaximum() {
+        tariff1.setMaximumCharge(20.0);
+        TariffDto tariffDtoUpdate = new TariffDto();
+        tariffDtoUpdate.setMinimumCharge(50.0);
+        when(tariffRepository.findById(1L)).thenReturn(Optional.of(tariff1));
+
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> tariffService.updateTariff(1L, tariffDtoUpdate));
+        verify(tariffRepository, never()).save(any(Tariff.class));
+        verifyNoInteractions(eventPublisher);
+    }
+
     @Test
     void deleteTariff_ShouldDeleteTariff_WhenTariffExists() throws TariffNotFoundException {
         when(tariffRepository.findById(1L)).thenReturn(Optional.of(tariff1));
@@ -121,6 +191,7 @@ public class TariffServiceImplTest {
 
         verify(tariffRepository, times(1)).findById(1L);
         verify(tariffRepository, times(1)).delete(tariff1);
+        verify(eventPublisher, times(1)).publishEvent(any(TariffChangedEvent.class));
     }
 
     @Test
@@ -130,17 +201,17 @@ public class TariffServiceImplTest {
         assertThrows(TariffNotFoundException.class, () -> tariffService.deleteTariff(1L));
         verify(tariffRepository, times(1)).findById(1L);
         verify(tariffRepository, never()).delete(any(Tariff.class));
+        verify(eventPublisher, never()).publishEvent(any());
     }
 
     @Test
     void getAllTariffs_ShouldReturnListOfTariffDtos() {
-        List<Tariff> tariffs = Arrays.asList(tariff1, tariff2);
-        when(tariffRepository.findAll()).thenReturn(tariffs);
+        when(tariffCache.findAll()).thenReturn(Arrays.asList(new TariffDto(), new TariffDto()));
 
         List<TariffDto> tariffDtos = tariffService.getAllTariffs();
 
         assertNotNull(tariffDtos);
         assertEquals(2, tariffDtos.size());
-        verify(tariffRepository, times(1)).findAll();
+        verifyNoInteractions(tariffRepository);
     }
 }
@@ -0,0 +1,228 @@
+package com.example.scooterrental.service.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+import com.example.scooterrental.dto.TelemetryIngestResultDto;
+import com.example.scooterrental.fleet.FleetStateStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.quality.Strictness;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@ExtendWith(MockitoExtension.class)
+public class TelemetryServiceImplTest {
+
+    @Mock private JdbcTemplate jdbcTemplate;
+
+    @Mock private PlatformTransactionManager transactionManager;
+
+    @Mock private FleetStateStore fleetStateStore;
+
+    private SimpleMeterRegistry meterRegistry;
+    private TelemetryServiceImpl telemetryService;
+
+    // значения, переданные в UPDATE: id -> {charge_level, mileage}
+    private final Map<Long, Object[]> written = new HashMap<>();
+    private final List<Integer> batchSizes = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        telemetryService =
+                new TelemetryServiceImpl(
+                        jdbcTemplate,
+                        transactionManager,
+                        new ObjectMapper().registerModule(new JavaTimeModule()),
+                        fleetStateStore,
+                        meterRegistry,
+                        3,
+                        2);
+    }
+
+    @Test
+    void ingest_ShouldCoalesceSamplesPerScooterKeepingTheLatest() throws Exception {
+        recordUpdates();
+
+        TelemetryIngestResultDto result =
+                telemetryService.ingest(
+                        ndjson(
+                                "{\"scooterId\":1,\"chargeLevel\":80,\"mileage\":10.0,"
+                                        + "\"recordedAt\":\"2026-01-01T10:00:00\"}",
+                                // пришло позже, но измерено раньше — заряд не перезаписывает
+                                "{\"scooterId\":1,\"chargeLevel\":90,"
+                                        + "\"recordedAt\":\"2026-01-01T09:59:00\"}",
+                                "{\"scooterId\":1,\"mileage\":10.4,"
+                                        + "\"recordedAt\":\"2026-01-01T10:00:05\"}"));
+        int flushed = telemetryService.flush();
+
+        assertEquals(3, result.getAccepted());
+        assertEquals(1, flushed);
+        assertArrayEquals(new Object[] {80, 10.4}, written.get(1L));
+        verify(fleetStateStore).updateChargeLevel(1L, 80);
+        assertEquals(2.0, meterRegistry.counter("telemetry.samples.coalesced").count());
+        assertEquals(0.0, meterRegistry.get("telemetry.buffer.size").gauge().value());
+    }
+
+    @Test
+    void ingest_ShouldKeepTheLargestMileage_WhenSamplesDisagree() throws Exception {
+        recordUpdates();
+
+        telemetryService.ingest(
+                ndjson(
+                        "{\"scooterId\":1,\"mileage\":10.4,"
+                                + "\"recordedAt\":\"2026-01-01T10:00:00\"}",
+                        // измерено позже, но счётчик отстал — пробег назад не откатывается
+                        "{\"scooterId\":1,\"chargeLevel\":70,\"mileage\":10.1,"
+                                + "\"recordedAt\":\"2026-01-01T10:00:05\"}"));
+        telemetryService.flush();
+
+        assertArrayEquals(new Object[] {70, 10.4}, written.get(1L));
+    }
+
+    @Test
+    void ingest_ShouldRejectInvalidLines() throws Exception {
+        TelemetryIngestResultDto result =
+                telemetryService.ingest(
+                        ndjson(
+                                "не json",
+                                "{\"chargeLevel\":50}",
+                                "{\"scooterId\":1,\"chargeLevel\":150}",
+                                "{\"scooterId\":1,\"mileage\":-1}",
+                                "{\"scooterId\":1}",
+                                "",
+                                "{\"scooterId\":1,\"chargeLevel\":50}"));
+
+        assertEquals(1, result.getAccepted());
+        assertEquals(5, result.getRejected());
+        assertEquals(
+                5.0,
+                meterRegistry.counter("telemetry.samples.dropped", "reason", "invalid").count());
+    }
+
+    @Test
+    void ingest_ShouldDropNewScooters_WhenBufferIsFull() throws Exception {
+        TelemetryIngestResultDto result =
+                telemetryService.ingest(
+                        ndjson(
+                                "{\"scooterId\":1,\"chargeLevel\":50}",
+                                "{\"scooterId\":2,\"chargeLevel\":50}",
+                                "{\"scooterId\":3,\"chargeLevel\":50}",
+                                "{\"scooterId\":4,\"chargeLevel\":50}",
+                                // уже ожидающий самокат обновляется и при полном буфере
+                                "{\"scooterId\":1,\"chargeLevel\":40}"));
+
+        assertEquals(4, result.getAccepted());
+        assertEquals(1, result.getDropped());
+        assertEquals(
+                1.0,
+                meterRegistry
+                        .counter("telemetry.samples.dropped", "reason", "backpressure")
+                        .count());
+    }
+
+    @Test
+    void flush_ShouldWriteInBatchesAndCountUnknownScooters() throws Exception {
+        recordUpdates();
+        written.put(3L, null);
+        telemetryService.ingest(
+                ndjson(
+                        "{\"scooterId\":1,\"chargeLevel\":10}",
+                        "{\"scooterId\":2,\"mileage\":5.0}",
+                        "{\"scooterId\":3,\"chargeLevel\":30}"));
+
+        int flushed = telemetryService.flush();
+
+        assertEquals(2, flushed);
+        assertEquals(List.of(2, 1), batchSizes);
+        verify(fleetStateStore).updateChargeLevel(1L, 10);
+        verify(fleetStateStore, never()).updateChargeLevel(eq(3L), anyInt());
+        assertEquals(2.0, meterRegistry.counter("telemetry.flush.rows").count());
+        assertEquals(
+                1.0,
+                meterRegistry
+                        .counter("telemetry.samples.dropped", "reason", "unknown_scooter")
+                        .count());
+        assertEquals(0, telemetryService.flush());
+    }
+
+    @Test
+    void flush_ShouldReturnSamplesToBuffer_WhenUpdateFails() throws Exception {
+        telemetryService.ingest(ndjson("{\"scooterId\":1,\"chargeLevel\":10}"));
+        when(jdbcTemplate.batchUpdate(anyString(), any(BatchPreparedStatementSetter.class)))
+                .thenThrow(new QueryTimeoutException("таймаут"));
+
+        assertEquals(0, telemetryService.flush());
+
+        assertEquals(1.0, meterRegistry.counter("telemetry.flush.failures").count());
+        assertEquals(1.0, meterRegistry.get("telemetry.buffer.size").gauge().value());
+        verifyNoInteractions(fleetStateStore);
+
+        reset(jdbcTemplate);
+        recordUpdates();
+        assertEquals(1, telemetryService.flush());
+        assertArrayEquals(new Object[] {10, null}, written.get(1L));
+    }
+
+    // самокат, помеченный в written значением null, считается отсутствующим в базе
+    private void recordUpdates() {
+        when(jdbcTemplate.batchUpdate(anyString(), any(BatchPreparedStatementSetter.class)))
+                .thenAnswer(
+                        invocation -> {
+                            BatchPreparedStatementSetter setter = invocation.getArgument(1);
+                            int[] counts = new int[setter.getBatchSize()];
+                            batchSizes.add(counts.length);
+                            for (int i = 0; i < counts.length; i++) {
+                                Object[] values = new Object[3];
+                                PreparedStatement ps =
+                                        mock(
+                                                PreparedStatement.class,
+                                                withSettings().strictness(Strictness.LENIENT));
+                                doAnswer(call -> values[0] = call.getArgument(1))
+                                        .when(ps)
+                                        .setInt(eq(1), anyInt());
+                                doAnswer(call -> values[1] = call.getArgument(1))
+                                        .when(ps)
+                                        .setDouble(eq(2), anyDouble());
+                                doAnswer(call -> values[2] = call.getArgument(1))
+                                        .when(ps)
+                                        .setLong(eq(3), anyLong());
+                                setter.setValues(ps, i);
+                                Long id = (Long) values[2];
+                                boolean known = !written.containsKey(id) || written.get(id) != null;
+                                if (known) {
+                                    written.put(id, Arrays.copyOf(values, 2));
+                                }
+                                counts[i] = known ? 1 : 0;
+                            }
+                            return counts;
+                        });
+    }
+
+    private static ByteArrayInputStream ndjson(String... lines) {
+        return new ByteArrayInputStream(
+                String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+}